@@ -0,0 +1,145 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.io.ASN1;
+import org.forgerock.opendj.io.ASN1Reader;
+import org.forgerock.opendj.io.ASN1Writer;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the byte sequence based ASN.1 reader and writer with the layout of an LDAP search result entry.
+ *
+ * @see org.forgerock.opendj.grizzly.ASN1BufferReaderBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ASN1Benchmark {
+    private static final byte TYPE_SEARCH_RESULT_ENTRY = 0x64;
+
+    @Param({ "10", "100" })
+    public int nbAttributes;
+
+    private final ByteStringBuilder builder = new ByteStringBuilder();
+    private ByteString encodedEntry;
+
+    @Setup
+    public void setup() throws IOException {
+        SearchResultEntryEncoding.encode(ASN1.getWriter(builder), nbAttributes);
+        encodedEntry = builder.toByteString();
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        builder.clear();
+        SearchResultEntryEncoding.encode(ASN1.getWriter(builder), nbAttributes);
+        return builder.length();
+    }
+
+    @Benchmark
+    public void read(final Blackhole bh) throws IOException {
+        SearchResultEntryEncoding.decode(ASN1.getReader(encodedEntry), bh);
+    }
+
+    /** Encodes and decodes a message shaped like an LDAP search result entry. */
+    public static final class SearchResultEntryEncoding {
+        private SearchResultEntryEncoding() {
+            // Utility class.
+        }
+
+        /**
+         * Encodes a search result entry having the provided number of attributes.
+         *
+         * @param writer
+         *            The writer to use.
+         * @param nbAttributes
+         *            The number of attributes of the entry.
+         * @throws IOException
+         *             If an error occurs while writing.
+         */
+        public static void encode(final ASN1Writer writer, final int nbAttributes) throws IOException {
+            writer.writeStartSequence();
+            writer.writeInteger(42);
+            writer.writeStartSequence(TYPE_SEARCH_RESULT_ENTRY);
+            writer.writeOctetString("uid=user.42,ou=People,dc=example,dc=com");
+            writer.writeStartSequence();
+            for (int i = 0; i < nbAttributes; i++) {
+                writer.writeStartSequence();
+                writer.writeOctetString("attribute" + i);
+                writer.writeStartSet();
+                writer.writeOctetString("value of attribute " + i);
+                writer.writeOctetString("another value of attribute " + i);
+                writer.writeEndSet();
+                writer.writeEndSequence();
+            }
+            writer.writeEndSequence();
+            writer.writeEndSequence();
+            writer.writeEndSequence();
+            writer.flush();
+        }
+
+        /**
+         * Decodes a search result entry.
+         *
+         * @param reader
+         *            The reader to use.
+         * @param bh
+         *            Consumes the decoded values.
+         * @throws IOException
+         *             If an error occurs while reading.
+         */
+        public static void decode(final ASN1Reader reader, final Blackhole bh) throws IOException {
+            reader.readStartSequence();
+            bh.consume(reader.readInteger());
+            reader.readStartSequence(TYPE_SEARCH_RESULT_ENTRY);
+            bh.consume(reader.readOctetStringAsString());
+            reader.readStartSequence();
+            while (reader.hasNextElement()) {
+                reader.readStartSequence();
+                bh.consume(reader.readOctetStringAsString());
+                reader.readStartSet();
+                while (reader.hasNextElement()) {
+                    bh.consume(reader.readOctetString());
+                }
+                reader.readEndSet();
+                reader.readEndSequence();
+            }
+            reader.readEndSequence();
+            reader.readEndSequence();
+            reader.readEndSequence();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.DN;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks DN parsing, comparison and normalization. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DNBenchmark {
+    /** Larger than the per-thread DN cache so that {@link #valueOf()} measures actual parsing. */
+    private static final int NB_DNS = 1024;
+
+    private final String[] dnStrings = new String[NB_DNS];
+    private final DN[] dns = new DN[NB_DNS];
+    private int index;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < NB_DNS; i++) {
+            dnStrings[i] = "uid=user." + i + ",ou=People,dc=example,dc=com";
+            dns[i] = DN.valueOf(dnStrings[i]);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (NB_DNS - 1);
+        return index;
+    }
+
+    @Benchmark
+    public DN valueOf() {
+        return DN.valueOf(dnStrings[next()]);
+    }
+
+    @Benchmark
+    public DN valueOfCached() {
+        return DN.valueOf(dnStrings[0]);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        final int i = next();
+        return dns[i].compareTo(dns[NB_DNS - 1 - i]);
+    }
+
+    @Benchmark
+    public boolean isSubordinateOrEqualTo() {
+        final int i = next();
+        return dns[i].isSubordinateOrEqualTo(dns[NB_DNS - 1 - i].parent());
+    }
+
+    @Benchmark
+    public ByteString toNormalizedByteString() {
+        // DNs cache their normalized form, so normalize a freshly parsed DN.
+        return DN.valueOf(dnStrings[next()]).toNormalizedByteString();
+    }
+}
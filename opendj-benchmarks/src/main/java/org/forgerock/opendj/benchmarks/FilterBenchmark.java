@@ -0,0 +1,90 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ConditionResult;
+import org.forgerock.opendj.ldap.Entry;
+import org.forgerock.opendj.ldap.Filter;
+import org.forgerock.opendj.ldap.LinkedHashMapEntry;
+import org.forgerock.opendj.ldap.Matcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks filter parsing and evaluation against an entry. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+    @Param({
+        "(uid=user.42)",
+        "(&(objectClass=person)(|(cn=Aaren*)(mail=*@maildomain.net)))",
+        "(&(objectClass=inetOrgPerson)(!(employeeNumber>=1000))(telephoneNumber=*))",
+    })
+    public String filterString;
+
+    private Filter filter;
+    private Matcher matcher;
+    private Entry entry;
+
+    @Setup
+    public void setup() {
+        filter = Filter.valueOf(filterString);
+        matcher = filter.matcher();
+        entry = new LinkedHashMapEntry(
+                "dn: uid=user.42,ou=People,dc=example,dc=com",
+                "objectClass: top",
+                "objectClass: person",
+                "objectClass: organizationalPerson",
+                "objectClass: inetOrgPerson",
+                "uid: user.42",
+                "cn: Aaren Atp",
+                "sn: Atp",
+                "givenName: Aaren",
+                "mail: user.42@maildomain.net",
+                "employeeNumber: 42",
+                "telephoneNumber: +1 685 622 6202",
+                "description: This is the description for Aaren Atp.");
+    }
+
+    @Benchmark
+    public Filter valueOf() {
+        return Filter.valueOf(filterString);
+    }
+
+    @Benchmark
+    public Matcher matcher() {
+        return filter.matcher();
+    }
+
+    @Benchmark
+    public ConditionResult matches() {
+        return matcher.matches(entry);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.Assertion;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ConditionResult;
+import org.forgerock.opendj.ldap.DecodeException;
+import org.forgerock.opendj.ldap.schema.CoreSchema;
+import org.forgerock.opendj.ldap.schema.MatchingRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks the normalization and assertion evaluation of the most frequently used matching rules. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchingRuleBenchmark {
+    /** Matching rules to benchmark, with a value valid for their syntax. */
+    public enum Rule {
+        CASE_IGNORE(CoreSchema.getCaseIgnoreMatchingRule(), "  Babs   JENSEN "),
+        CASE_EXACT(CoreSchema.getCaseExactMatchingRule(), "Babs Jensen"),
+        DISTINGUISHED_NAME(CoreSchema.getDistinguishedNameMatchingRule(), "uid=bjensen,ou=People,dc=example,dc=com"),
+        INTEGER(CoreSchema.getIntegerMatchingRule(), "1234567890"),
+        GENERALIZED_TIME(CoreSchema.getGeneralizedTimeMatchingRule(), "20160125143045.123Z"),
+        TELEPHONE_NUMBER(CoreSchema.getTelephoneNumberMatchingRule(), "+1 408 555 1212");
+
+        private final MatchingRule matchingRule;
+        private final ByteString value;
+
+        Rule(final MatchingRule matchingRule, final String value) {
+            this.matchingRule = matchingRule;
+            this.value = ByteString.valueOfUtf8(value);
+        }
+    }
+
+    @Param
+    public Rule rule;
+
+    private ByteString normalizedValue;
+    private Assertion assertion;
+
+    @Setup
+    public void setup() throws DecodeException {
+        normalizedValue = rule.matchingRule.normalizeAttributeValue(rule.value);
+        assertion = rule.matchingRule.getAssertion(rule.value);
+    }
+
+    @Benchmark
+    public ByteString normalizeAttributeValue() throws DecodeException {
+        return rule.matchingRule.normalizeAttributeValue(rule.value);
+    }
+
+    @Benchmark
+    public Assertion getAssertion() throws DecodeException {
+        return rule.matchingRule.getAssertion(rule.value);
+    }
+
+    @Benchmark
+    public ConditionResult matches() {
+        return assertion.matches(normalizedValue);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks.macro;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.net.InetAddress;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * The JSON report of a macro benchmark run.
+ * <p>
+ * Besides the metrics of each rate tool, the report records the build, the host and the settings of the run so that
+ * {@link CompareReports} can tell whether two reports are comparable.
+ */
+final class BenchmarkReport {
+    /** Incremented whenever the layout of the report changes in an incompatible way. */
+    static final int FORMAT_VERSION = 1;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Map<String, Object> report = new LinkedHashMap<>();
+    private final Map<String, Object> provisioning = new LinkedHashMap<>();
+    private final List<Object> workloads = new ArrayList<>();
+
+    BenchmarkReport(final BenchmarkSettings settings) {
+        report.put("formatVersion", FORMAT_VERSION);
+        report.put("startTime", now());
+        report.put("buildVersion", null);
+        report.put("host", hostName());
+        report.put("environment", environment());
+        report.put("settings", settings.toReport());
+        report.put("provisioning", provisioning);
+        report.put("workloads", workloads);
+    }
+
+    void setBuildVersion(final String buildVersion) {
+        report.put("buildVersion", buildVersion);
+    }
+
+    /**
+     * Records the duration of a provisioning step.
+     *
+     * @param step
+     *            The name of the provisioning step.
+     * @param startTimeNanos
+     *            The {@link System#nanoTime()} at the start of the step.
+     */
+    void addProvisioningStep(final String step, final long startTimeNanos) {
+        provisioning.put(step + "Seconds", (System.nanoTime() - startTimeNanos) / 1e9);
+    }
+
+    /**
+     * Records the results of a workload.
+     *
+     * @param workload
+     *            The workload.
+     * @param servers
+     *            The names of the servers used by the workload.
+     * @param clients
+     *            The reports of the rate tools of the workload.
+     */
+    void addWorkload(final Workload workload, final List<String> servers, final List<Map<String, Object>> clients) {
+        final Map<String, Object> workloadReport = new LinkedHashMap<>();
+        workloadReport.put("name", workload.toString());
+        workloadReport.put("servers", servers);
+        workloadReport.put("clients", clients);
+        workloads.add(workloadReport);
+    }
+
+    /**
+     * Writes the report.
+     *
+     * @param file
+     *            The report file.
+     * @param error
+     *            The error which aborted the run, or {@code null} if the run completed.
+     * @throws IOException
+     *             If the report cannot be written.
+     */
+    void write(final File file, final Throwable error) throws IOException {
+        report.put("endTime", now());
+        report.put("status", error == null ? "success" : "failure");
+        if (error != null) {
+            report.put("error", String.valueOf(error.getMessage()));
+        }
+        MAPPER.writeValue(file, report);
+    }
+
+    /**
+     * Reads a report written by {@link #write(File, Throwable)}.
+     *
+     * @param file
+     *            The report file.
+     * @return The report as a tree of maps and lists.
+     * @throws IOException
+     *             If the report cannot be read.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> read(final File file) throws IOException {
+        return MAPPER.readValue(file, Map.class);
+    }
+
+    private static String now() {
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date());
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (final IOException e) {
+            return "unknown";
+        }
+    }
+
+    private static Map<String, Object> environment() {
+        final RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        final Map<String, Object> environment = new LinkedHashMap<>();
+        environment.put("javaVersion", System.getProperty("java.version"));
+        environment.put("javaVendor", System.getProperty("java.vendor"));
+        environment.put("jvmArguments", runtime.getInputArguments());
+        environment.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version") + " "
+                + System.getProperty("os.arch"));
+        environment.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        environment.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        return environment;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks.macro;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tuning of a macro benchmark run, read from the {@code benchmark.*} system properties.
+ * <p>
+ * The settings are recorded in the report: runs are only comparable when they were made with the same settings.
+ */
+final class BenchmarkSettings {
+    static final String BASE_DN = "dc=example,dc=com";
+    static final String PEOPLE_DN = "ou=People," + BASE_DN;
+    static final String ROOT_USER_DN = "cn=Directory Manager";
+    static final String PASSWORD = "password";
+
+    /** Number of users in the generated dataset. */
+    final int users = Integer.getInteger("benchmark.users", 100000);
+    /** Random seed of the dataset generator, the same seed always generates the same dataset. */
+    final int seed = Integer.getInteger("benchmark.seed", 0);
+    /** MakeLDIF template of the dataset, the SDK example template is used when not specified. */
+    final String template = System.getProperty("benchmark.template");
+    /** Backend type of the provisioned servers. */
+    final String backendType = System.getProperty("benchmark.backendType", "je");
+    /** Measured duration of each workload, in seconds. */
+    final int durationSeconds = Integer.getInteger("benchmark.duration", 60);
+    /** Warm up duration of each workload, in seconds, before the statistics are reset. */
+    final int warmUpSeconds = Integer.getInteger("benchmark.warmUp", 10);
+    /** Number of connections of the main rate tool of each workload. */
+    final int connections = Integer.getInteger("benchmark.connections", 8);
+    /** Number of worker threads per connection. */
+    final int threads = Integer.getInteger("benchmark.threads", 2);
+    /** First port used by the provisioned servers, each server uses four consecutive ports from there. */
+    final int basePort = Integer.getInteger("benchmark.basePort", 11389);
+    /** JVM options of the rate tool processes. */
+    final List<String> clientJvmOptions =
+            Arrays.asList(System.getProperty("benchmark.clientJvmOptions", "-Xms256m -Xmx256m").trim().split("\\s+"));
+
+    Map<String, Object> toReport() {
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("users", users);
+        report.put("seed", seed);
+        report.put("template", template != null ? template : "example.template");
+        report.put("backendType", backendType);
+        report.put("durationSeconds", durationSeconds);
+        report.put("warmUpSeconds", warmUpSeconds);
+        report.put("connections", connections);
+        report.put("threads", threads);
+        report.put("clientJvmOptions", Collections.unmodifiableList(clientJvmOptions));
+        return report;
+    }
+}
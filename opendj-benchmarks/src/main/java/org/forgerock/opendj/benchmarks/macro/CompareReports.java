@@ -0,0 +1,164 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks.macro;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compares the report of a macro benchmark run with the report of a baseline run.
+ * <p>
+ * For each rate tool present in both reports, the throughput and the 99th percentile response time are compared.
+ * The comparison fails if the throughput decreased, or if the response time increased, by more than the tolerance.
+ */
+public final class CompareReports {
+    private static final double DEFAULT_TOLERANCE_PERCENT = 5;
+
+    private final PrintStream out;
+    private final double tolerancePercent;
+    private int nbRegressions;
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            The command line arguments: baselineReport candidateReport [tolerancePercent]
+     */
+    public static void main(final String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: baselineReport candidateReport [tolerancePercent]");
+            System.exit(1);
+        }
+        final double tolerance = args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE_PERCENT;
+        try {
+            final CompareReports comparison = new CompareReports(System.out, tolerance);
+            final int nbRegressions = comparison.compare(
+                    BenchmarkReport.read(new File(args[0])), BenchmarkReport.read(new File(args[1])));
+            System.exit(nbRegressions == 0 ? 0 : 2);
+        } catch (final IOException e) {
+            System.err.println("Unable to read the reports: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private CompareReports(final PrintStream out, final double tolerancePercent) {
+        this.out = out;
+        this.tolerancePercent = tolerancePercent;
+    }
+
+    private int compare(final Map<String, Object> baseline, final Map<String, Object> candidate) {
+        if (!Objects.equals(baseline.get("formatVersion"), candidate.get("formatVersion"))) {
+            out.println("WARNING: the reports have different format versions");
+        }
+        if (!Objects.equals(baseline.get("settings"), candidate.get("settings"))) {
+            out.println("WARNING: the runs used different settings, the results are not comparable");
+        }
+        if (!Objects.equals(baseline.get("host"), candidate.get("host"))) {
+            out.println("WARNING: the runs were made on different hosts, the results are not comparable");
+        }
+        out.println(String.format(Locale.ENGLISH, "Baseline:  %s (%s)", baseline.get("buildVersion"),
+                baseline.get("startTime")));
+        out.println(String.format(Locale.ENGLISH, "Candidate: %s (%s)", candidate.get("buildVersion"),
+                candidate.get("startTime")));
+        out.println(String.format(Locale.ENGLISH, "%-24s %-12s %-16s %14s %14s %9s",
+                "workload", "tool", "metric", "baseline", "candidate", "change"));
+
+        for (final Map<String, Object> workload : maps(candidate.get("workloads"))) {
+            final Map<String, Object> baselineWorkload = find(maps(baseline.get("workloads")), workload.get("name"));
+            if (baselineWorkload == null) {
+                out.println(workload.get("name") + ": not in the baseline");
+                continue;
+            }
+            final List<Map<String, Object>> clients = maps(workload.get("clients"));
+            final List<Map<String, Object>> baselineClients = maps(baselineWorkload.get("clients"));
+            for (int i = 0; i < clients.size() && i < baselineClients.size(); i++) {
+                compareClient(String.valueOf(workload.get("name")), baselineClients.get(i), clients.get(i));
+            }
+        }
+        out.println(nbRegressions == 0
+                ? "No regression above " + tolerancePercent + "%"
+                : nbRegressions + " regression(s) above " + tolerancePercent + "%");
+        return nbRegressions;
+    }
+
+    private void compareClient(final String workload, final Map<String, Object> baseline,
+            final Map<String, Object> candidate) {
+        final String tool = String.valueOf(candidate.get("tool"));
+        if (!tool.equals(baseline.get("tool"))) {
+            out.println(workload + ": rate tools differ from the baseline");
+            return;
+        }
+        final Map<String, Object> baselineMetrics = map(baseline.get("metrics"));
+        final Map<String, Object> metrics = map(candidate.get("metrics"));
+        if (baselineMetrics.isEmpty() || metrics.isEmpty()) {
+            out.println(String.format(Locale.ENGLISH, "%-24s %-12s failed in the %s", workload, tool,
+                    metrics.isEmpty() ? "candidate" : "baseline"));
+            nbRegressions += metrics.isEmpty() ? 1 : 0;
+            return;
+        }
+        compareMetric(workload, tool, "throughput", number(baselineMetrics.get("throughput")),
+                number(metrics.get("throughput")), true);
+        compareMetric(workload, tool, "responseTimeMs", number(baselineMetrics.get("responseTimeMs")),
+                number(metrics.get("responseTimeMs")), false);
+        compareMetric(workload, tool, "p99Ms", number(map(baselineMetrics.get("percentilesMs")).get("p99")),
+                number(map(metrics.get("percentilesMs")).get("p99")), false);
+    }
+
+    private void compareMetric(final String workload, final String tool, final String metric,
+            final Double baseline, final Double candidate, final boolean higherIsBetter) {
+        if (baseline == null || candidate == null || baseline == 0) {
+            return;
+        }
+        final double changePercent = (candidate - baseline) * 100 / baseline;
+        final boolean regression = higherIsBetter ? changePercent < -tolerancePercent
+                                                  : changePercent > tolerancePercent;
+        if (regression) {
+            nbRegressions++;
+        }
+        out.println(String.format(Locale.ENGLISH, "%-24s %-12s %-16s %14.3f %14.3f %+8.1f%%%s",
+                workload, tool, metric, baseline, candidate, changePercent, regression ? "  REGRESSION" : ""));
+    }
+
+    private static Map<String, Object> find(final List<Map<String, Object>> workloads, final Object name) {
+        for (final Map<String, Object> workload : workloads) {
+            if (Objects.equals(workload.get("name"), name)) {
+                return workload;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> maps(final Object value) {
+        return value instanceof List ? (List<Map<String, Object>>) value
+                                     : Collections.<Map<String, Object>> emptyList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(final Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : Collections.<String, Object> emptyMap();
+    }
+
+    private static Double number(final Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks.macro;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.opendj.ldif.EntryGenerator;
+import org.forgerock.opendj.ldif.LDIFEntryWriter;
+import org.forgerock.opendj.server.embedded.EmbeddedDirectoryServerException;
+
+/**
+ * Runs the macro benchmark workloads against directory servers provisioned from an OpenDJ archive.
+ * <p>
+ * A run goes through the following steps:
+ * <ol>
+ * <li>a dataset is generated with a MakeLDIF template and a fixed random seed,</li>
+ * <li>a server is set up with the dataset and started embedded in this JVM,</li>
+ * <li>each requested workload starts its rate tools, waits for them to complete and records their statistics.
+ * Workloads requiring a second server provision it on demand, replicated with the first one,</li>
+ * <li>the servers are stopped and the JSON report is written.</li>
+ * </ol>
+ * The run is tuned with the {@code benchmark.*} system properties described in {@link BenchmarkSettings}.
+ */
+public final class MacroBenchmark {
+    private final BenchmarkSettings settings;
+    private final File archive;
+    private final File workDirectory;
+    private final File resultDirectory;
+    private final PrintStream out;
+    private final List<ServerInstance> servers = new ArrayList<>();
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            The command line arguments: openDJArchive workDirectory reportFile [workload ...]
+     */
+    public static void main(final String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: openDJArchive workDirectory reportFile [workload ...]");
+            System.err.println("Workloads: " + Arrays.toString(Workload.values()) + ", all of them by default");
+            System.exit(1);
+        }
+
+        final Set<Workload> workloads = new LinkedHashSet<>();
+        try {
+            for (int i = 3; i < args.length; i++) {
+                workloads.add(Workload.forName(args[i]));
+            }
+        } catch (final IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        if (workloads.isEmpty()) {
+            workloads.addAll(Arrays.asList(Workload.values()));
+        }
+
+        final File workDirectory = new File(args[1]).getAbsoluteFile();
+        final String[] existingFiles = workDirectory.list();
+        if (existingFiles != null && existingFiles.length > 0) {
+            System.err.println("The work directory " + workDirectory + " must be empty");
+            System.exit(1);
+        }
+
+        final MacroBenchmark benchmark =
+                new MacroBenchmark(new BenchmarkSettings(), new File(args[0]), workDirectory, System.out);
+        System.exit(benchmark.run(workloads, new File(args[2])) ? 0 : 1);
+    }
+
+    private MacroBenchmark(final BenchmarkSettings settings, final File archive, final File workDirectory,
+            final PrintStream out) {
+        this.settings = settings;
+        this.archive = archive;
+        this.workDirectory = workDirectory;
+        this.resultDirectory = new File(workDirectory, "results");
+        this.out = out;
+    }
+
+    /**
+     * Runs the provided workloads and writes the report.
+     *
+     * @return {@code true} if all the workloads completed and all their rate tools succeeded.
+     */
+    private boolean run(final Set<Workload> workloads, final File reportFile) {
+        final BenchmarkReport report = new BenchmarkReport(settings);
+        Throwable error = null;
+        boolean success = true;
+        try {
+            resultDirectory.mkdirs();
+            final File dataset = generateDataset(report);
+            final ServerInstance primary = provision("primary", dataset, report);
+            report.setBuildVersion(primary.getBuildVersion());
+            for (final Workload workload : workloads) {
+                while (servers.size() < workload.getNbServers()) {
+                    provisionReplica(primary, report);
+                }
+                success &= runWorkload(workload, report);
+            }
+        } catch (final EmbeddedDirectoryServerException | IOException | InterruptedException e) {
+            error = e;
+            success = false;
+            e.printStackTrace();
+        } finally {
+            for (int i = servers.size() - 1; i >= 0; i--) {
+                servers.get(i).stop(System.err);
+            }
+        }
+
+        try {
+            report.write(reportFile, error);
+            out.println("Report written to " + reportFile);
+        } catch (final IOException e) {
+            System.err.println("Unable to write the report " + reportFile + ": " + e.getMessage());
+            success = false;
+        }
+        return success;
+    }
+
+    private File generateDataset(final BenchmarkReport report) throws IOException {
+        final File ldif = new File(workDirectory, "dataset.ldif");
+        out.println("Generating " + settings.users + " users in " + ldif);
+        final long start = System.nanoTime();
+        try (EntryGenerator generator = newEntryGenerator();
+             LDIFEntryWriter writer = new LDIFEntryWriter(new FileOutputStream(ldif))) {
+            generator.setRandomSeed(settings.seed)
+                     .setConstant("numusers", settings.users);
+            while (generator.hasNext()) {
+                writer.writeEntry(generator.readEntry());
+            }
+        }
+        report.addProvisioningStep("datasetGeneration", start);
+        return ldif;
+    }
+
+    private EntryGenerator newEntryGenerator() {
+        return settings.template != null ? new EntryGenerator(settings.template) : new EntryGenerator();
+    }
+
+    private ServerInstance provision(final String name, final File dataset, final BenchmarkReport report)
+            throws EmbeddedDirectoryServerException, IOException {
+        final ServerInstance server = new ServerInstance(
+                name, workDirectory, servers.size(), settings, new PrintStream(new File(workDirectory, name + ".log")));
+        out.println("Setting up " + server);
+        long start = System.nanoTime();
+        server.setup(archive, settings.backendType, dataset);
+        report.addProvisioningStep(name + "Setup", start);
+
+        start = System.nanoTime();
+        server.start();
+        servers.add(server);
+        report.addProvisioningStep(name + "Start", start);
+        return server;
+    }
+
+    private void provisionReplica(final ServerInstance primary, final BenchmarkReport report)
+            throws EmbeddedDirectoryServerException, IOException {
+        final String name = "replica" + servers.size();
+        final ServerInstance replica = provision(name, null, report);
+        out.println("Initializing " + replica + " from " + primary);
+        final long start = System.nanoTime();
+        primary.replicateTo(replica);
+        report.addProvisioningStep(name + "Initialization", start);
+    }
+
+    private boolean runWorkload(final Workload workload, final BenchmarkReport report) throws InterruptedException {
+        out.println("Running " + workload + " for " + settings.durationSeconds + "s after a "
+                + settings.warmUpSeconds + "s warm up");
+        final List<RateToolClient> clients = workload.clients(settings, servers);
+        final List<Map<String, Object>> clientReports = new ArrayList<>();
+        boolean success = true;
+        try {
+            for (int i = 0; i < clients.size(); i++) {
+                clients.get(i).start(settings, resultDirectory, workload + "-" + i);
+            }
+            for (final RateToolClient client : clients) {
+                final Map<String, Object> clientReport = client.waitForReport();
+                success &= "success".equals(clientReport.get("status"));
+                clientReports.add(clientReport);
+            }
+        } catch (final IOException e) {
+            System.err.println("Unable to start the rate tools of " + workload + ": " + e.getMessage());
+            success = false;
+        } finally {
+            for (final RateToolClient client : clients) {
+                client.destroy();
+            }
+        }
+
+        final List<String> serverNames = new ArrayList<>();
+        for (final ServerInstance server : servers.subList(0, workload.getNbServers())) {
+            serverNames.add(server.getName());
+        }
+        report.addWorkload(workload, serverNames, clientReports);
+        return success;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks.macro;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.forgerock.opendj.benchmarks.macro.BenchmarkSettings.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.forgerock.opendj.ldap.tools.AuthRate;
+import com.forgerock.opendj.ldap.tools.ModRate;
+import com.forgerock.opendj.ldap.tools.SearchRate;
+
+/**
+ * A rate tool generating load on a server during a workload.
+ * <p>
+ * Each rate tool runs in its own JVM, so that the load generators do not compete with the embedded server for heap
+ * and compiler threads and so that their exit does not stop the benchmark. The rate tools print their statistics
+ * in CSV, which is kept next to the report.
+ */
+final class RateToolClient {
+    /** The rate tools of the LDAP toolkit. */
+    enum Tool {
+        AUTHRATE(AuthRate.class),
+        MODRATE(ModRate.class),
+        SEARCHRATE(SearchRate.class);
+
+        private final Class<?> mainClass;
+
+        Tool(final Class<?> mainClass) {
+            this.mainClass = mainClass;
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    /** Percentiles computed by all the rate tools, the tools only accept integer percentiles. */
+    private static final List<String> PERCENTILES = Arrays.asList("50", "90", "99");
+
+    private final Tool tool;
+    private final ServerInstance server;
+    private final List<String> bindArguments;
+    private final List<String> toolArguments;
+    private Process process;
+    private File csvFile;
+    private File errFile;
+
+    private RateToolClient(final Tool tool, final ServerInstance server, final List<String> bindArguments,
+            final String... toolArguments) {
+        this.tool = tool;
+        this.server = server;
+        this.bindArguments = bindArguments;
+        this.toolArguments = Arrays.asList(toolArguments);
+    }
+
+    /**
+     * Creates a rate tool binding as the root user.
+     *
+     * @param tool
+     *            The rate tool.
+     * @param server
+     *            The server to send the requests to.
+     * @param toolArguments
+     *            The arguments specific to the workload.
+     * @return The new rate tool.
+     */
+    static RateToolClient rootClient(final Tool tool, final ServerInstance server, final String... toolArguments) {
+        return new RateToolClient(tool, server, Arrays.asList("-D", ROOT_USER_DN, "-w", PASSWORD), toolArguments);
+    }
+
+    /**
+     * Creates a rate tool providing its own bind arguments in the tool arguments.
+     *
+     * @param tool
+     *            The rate tool.
+     * @param server
+     *            The server to send the requests to.
+     * @param toolArguments
+     *            The arguments specific to the workload, including the bind arguments.
+     * @return The new rate tool.
+     */
+    static RateToolClient client(final Tool tool, final ServerInstance server, final String... toolArguments) {
+        return new RateToolClient(tool, server, Collections.<String> emptyList(), toolArguments);
+    }
+
+    /**
+     * Starts the rate tool process.
+     *
+     * @param settings
+     *            The benchmark settings.
+     * @param resultDirectory
+     *            The directory where the output of the rate tool is kept.
+     * @param prefix
+     *            The prefix of the output file names.
+     * @throws IOException
+     *             If the process cannot be started.
+     */
+    void start(final BenchmarkSettings settings, final File resultDirectory, final String prefix) throws IOException {
+        csvFile = new File(resultDirectory, prefix + "-" + tool + ".csv");
+        errFile = new File(resultDirectory, prefix + "-" + tool + ".err");
+        process = new ProcessBuilder(commandLine(settings))
+                .redirectOutput(csvFile)
+                .redirectError(errFile)
+                .start();
+    }
+
+    private List<String> commandLine(final BenchmarkSettings settings) {
+        final List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(settings.clientJvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(tool.mainClass.getName());
+        command.add("--noPropertiesFile");
+        command.add("--scriptFriendly");
+        command.addAll(Arrays.asList("-h", server.getHostName(), "-p", String.valueOf(server.getLdapPort())));
+        command.addAll(bindArguments);
+        command.addAll(Arrays.asList("-d", String.valueOf(settings.durationSeconds),
+                                     "-B", String.valueOf(settings.warmUpSeconds)));
+        for (final String percentile : PERCENTILES) {
+            command.add("-e");
+            command.add(percentile);
+        }
+        command.addAll(toolArguments);
+        return command;
+    }
+
+    /**
+     * Waits for the end of the rate tool and returns its entry in the report.
+     *
+     * @return The entry of the rate tool in the report, including its metrics if it completed successfully.
+     * @throws InterruptedException
+     *             If the current thread is interrupted while waiting.
+     */
+    Map<String, Object> waitForReport() throws InterruptedException {
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("tool", tool.toString());
+        report.put("server", server.getName());
+        report.put("arguments", toolArguments);
+        final int exitCode = process.waitFor();
+        try {
+            if (exitCode != 0) {
+                throw new IOException(tool + " exited with code " + exitCode + ": "
+                        + new String(Files.readAllBytes(errFile.toPath()), UTF_8).trim());
+            }
+            report.put("status", "success");
+            report.put("metrics", RateToolResult.parse(csvFile).getMetrics());
+        } catch (final IOException e) {
+            report.put("status", "failure");
+            report.put("error", e.getMessage());
+        }
+        return report;
+    }
+
+    /** Kills the rate tool if it is still running. */
+    void destroy() {
+        if (process != null) {
+            process.destroy();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks.macro;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summary of the statistics printed by a rate tool run with the {@code --scriptFriendly} option.
+ * <p>
+ * In this mode the rate tools print a CSV title line followed by one line per statistics interval. Throughput,
+ * response time and percentiles are cumulated since the end of the warm up, hence the last line holds the figures of
+ * the whole measured run.
+ */
+final class RateToolResult {
+    private static final String TIME = "Time (seconds)";
+    private static final String AVERAGE_THROUGHPUT = "Average throughput (ops/second)";
+    private static final String RECENT_THROUGHPUT = "Recent throughput (ops/second)";
+    private static final String AVERAGE_RESPONSE_TIME = "Average response time (milliseconds)";
+    private static final String RECENT_RESPONSE_TIME = "Recent response time (milliseconds)";
+    private static final String PERCENTILE_SUFFIX = "% response time (milliseconds)";
+    private static final String ERRORS_PER_SECOND = "Errors/second";
+
+    private final Map<String, Object> metrics;
+
+    private RateToolResult(final Map<String, Object> metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Parses the CSV output of a rate tool.
+     *
+     * @param csvFile
+     *            The file holding the standard output of the rate tool.
+     * @return The summary of the run.
+     * @throws IOException
+     *             If the file cannot be read or does not contain any statistics.
+     */
+    static RateToolResult parse(final File csvFile) throws IOException {
+        final List<String> lines = Files.readAllLines(csvFile.toPath(), UTF_8);
+        String[] titles = null;
+        final List<double[]> intervals = new ArrayList<>();
+        for (final String line : lines) {
+            final String[] cells = line.split(",");
+            if (titles == null) {
+                if (cells.length > 0 && cells[0].trim().equals(TIME)) {
+                    titles = cells;
+                }
+            } else if (cells.length == titles.length) {
+                intervals.add(toDoubles(cells));
+            }
+        }
+        if (titles == null || intervals.isEmpty()) {
+            throw new IOException("No statistics found in " + csvFile);
+        }
+        return new RateToolResult(summarize(titles, intervals));
+    }
+
+    private static Map<String, Object> summarize(final String[] titles, final List<double[]> intervals) {
+        final double[] last = intervals.get(intervals.size() - 1);
+        final Map<String, Object> metrics = new LinkedHashMap<>();
+        final Map<String, Object> percentiles = new LinkedHashMap<>();
+        final Map<String, Object> additional = new LinkedHashMap<>();
+        for (int i = 0; i < titles.length; i++) {
+            final String title = titles[i].trim();
+            switch (title) {
+            case TIME:
+                metrics.put("durationSeconds", value(last[i]));
+                break;
+            case AVERAGE_THROUGHPUT:
+                metrics.put("throughput", value(last[i]));
+                break;
+            case AVERAGE_RESPONSE_TIME:
+                metrics.put("responseTimeMs", value(last[i]));
+                break;
+            case ERRORS_PER_SECOND:
+                metrics.put("errorsPerSecond", value(average(intervals, i)));
+                break;
+            case RECENT_THROUGHPUT:
+            case RECENT_RESPONSE_TIME:
+                // Only meaningful per interval, the averages are kept instead.
+                break;
+            default:
+                if (title.endsWith(PERCENTILE_SUFFIX)) {
+                    percentiles.put(percentileKey(title), value(last[i]));
+                } else {
+                    additional.put(title, value(last[i]));
+                }
+                break;
+            }
+        }
+        metrics.put("percentilesMs", percentiles);
+        if (!additional.isEmpty()) {
+            metrics.put("additional", additional);
+        }
+        metrics.put("intervals", intervals.size());
+        return metrics;
+    }
+
+    /** Turns {@code "99.9% response time (milliseconds)"} into {@code "p99.9"} and {@code "50.0% ..."} into "p50". */
+    private static String percentileKey(final String title) {
+        String percentile = title.substring(0, title.length() - PERCENTILE_SUFFIX.length());
+        if (percentile.endsWith(".0")) {
+            percentile = percentile.substring(0, percentile.length() - 2);
+        }
+        return "p" + percentile;
+    }
+
+    /** Unavailable statistics are reported as JSON nulls. */
+    private static Double value(final double d) {
+        return Double.isNaN(d) ? null : d;
+    }
+
+    private static double average(final List<double[]> intervals, final int column) {
+        double sum = 0;
+        int count = 0;
+        for (final double[] interval : intervals) {
+            if (!Double.isNaN(interval[column])) {
+                sum += interval[column];
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    private static double[] toDoubles(final String[] cells) {
+        final double[] values = new double[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            try {
+                values[i] = Double.parseDouble(cells[i].trim());
+            } catch (final NumberFormatException e) {
+                // "-" is printed when a statistic is not available.
+                values[i] = Double.NaN;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the metrics of the run, as they are written in the report.
+     *
+     * @return The metrics of the run.
+     */
+    Map<String, Object> getMetrics() {
+        return metrics;
+    }
+}
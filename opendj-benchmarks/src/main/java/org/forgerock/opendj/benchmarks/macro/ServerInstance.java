@@ -0,0 +1,225 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks.macro;
+
+import static org.forgerock.opendj.benchmarks.macro.BenchmarkSettings.*;
+import static org.forgerock.opendj.server.embedded.ConfigParameters.configParams;
+import static org.forgerock.opendj.server.embedded.ConnectionParameters.connectionParams;
+import static org.forgerock.opendj.server.embedded.EmbeddedDirectoryServer.manageEmbeddedDirectoryServer;
+import static org.forgerock.opendj.server.embedded.ReplicationParameters.replicationParams;
+import static org.forgerock.opendj.server.embedded.SetupParameters.setupParams;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.server.embedded.ConnectionParameters;
+import org.forgerock.opendj.server.embedded.EmbeddedDirectoryServer;
+import org.forgerock.opendj.server.embedded.EmbeddedDirectoryServerException;
+import org.forgerock.opendj.server.embedded.SetupParameters;
+
+/**
+ * A directory server provisioned from an OpenDJ archive for the duration of a macro benchmark run.
+ * <p>
+ * The directory server is a singleton in its JVM: the first instance runs embedded in the benchmark JVM, the other
+ * ones run in their own JVM, started and stopped with the scripts of the archive. All the instances are provisioned
+ * and administered through the {@link EmbeddedDirectoryServer} API.
+ */
+final class ServerInstance {
+    private static final String HOST_NAME = "localhost";
+
+    private final String name;
+    private final File rootDirectory;
+    private final boolean embedded;
+    private final int ldapPort;
+    private final int adminPort;
+    private final int jmxPort;
+    private final int replicationPort;
+    private final ConnectionParameters connectionParameters;
+    private final EmbeddedDirectoryServer server;
+    private boolean running;
+
+    /**
+     * Creates a server instance which will be installed in {@code <workDirectory>/<name>/opendj}.
+     *
+     * @param name
+     *            The name of the instance, used in the report.
+     * @param workDirectory
+     *            The directory where the instance is installed.
+     * @param index
+     *            The index of the instance, used to allocate its ports. The instance with index 0 runs embedded.
+     * @param settings
+     *            The benchmark settings.
+     * @param out
+     *            The stream where the setup and replication tools print their output.
+     */
+    ServerInstance(final String name, final File workDirectory, final int index, final BenchmarkSettings settings,
+            final PrintStream out) {
+        this.name = name;
+        this.rootDirectory = new File(new File(workDirectory, name), "opendj");
+        this.embedded = index == 0;
+        final int firstPort = settings.basePort + 4 * index;
+        this.ldapPort = firstPort;
+        this.adminPort = firstPort + 1;
+        this.jmxPort = firstPort + 2;
+        this.replicationPort = firstPort + 3;
+        this.connectionParameters = connectionParams()
+                .hostName(HOST_NAME)
+                .ldapPort(ldapPort)
+                .adminPort(adminPort)
+                .bindDn(ROOT_USER_DN)
+                .bindPassword(PASSWORD)
+                .adminUid("admin")
+                .adminPassword(PASSWORD);
+        this.server = manageEmbeddedDirectoryServer(
+                configParams()
+                    .serverRootDirectory(rootDirectory.getPath())
+                    .configurationFile(new File(rootDirectory, "config" + File.separator + "config.ldif").getPath()),
+                connectionParameters,
+                out,
+                out);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getHostName() {
+        return HOST_NAME;
+    }
+
+    int getLdapPort() {
+        return ldapPort;
+    }
+
+    /**
+     * Extracts the archive and sets the server up, without starting it.
+     *
+     * @param archive
+     *            The OpenDJ archive.
+     * @param backendType
+     *            The type of the backend holding the benchmark data.
+     * @param ldif
+     *            The LDIF file to import during the setup, or {@code null} if the base entry only should be created.
+     * @throws EmbeddedDirectoryServerException
+     *             If the archive cannot be extracted or the setup fails.
+     */
+    void setup(final File archive, final String backendType, final File ldif) throws EmbeddedDirectoryServerException {
+        server.extractArchiveForSetup(archive);
+        final SetupParameters parameters = setupParams()
+                .baseDn(BASE_DN)
+                .backendType(backendType)
+                .jmxPort(jmxPort);
+        if (ldif != null) {
+            parameters.ldifFile(ldif.getPath());
+        }
+        server.setup(parameters);
+    }
+
+    /**
+     * Starts the server, either in this JVM or in its own process.
+     *
+     * @throws EmbeddedDirectoryServerException
+     *             If the embedded server cannot be started.
+     * @throws IOException
+     *             If the server process cannot be started.
+     */
+    void start() throws EmbeddedDirectoryServerException, IOException {
+        if (embedded) {
+            server.start();
+        } else {
+            runScript("start-ds");
+        }
+        running = true;
+    }
+
+    /** Stops the server if it is running, errors are printed to the provided stream. */
+    void stop(final PrintStream err) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (embedded) {
+            server.stop(MacroBenchmark.class.getName(), LocalizableMessage.raw("Macro benchmark completed"));
+            return;
+        }
+        try {
+            runScript("stop-ds");
+        } catch (final IOException e) {
+            err.println("Unable to stop server " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Configures replication of the benchmark data between this server and the provided one, then initializes the
+     * provided server with the data of this server. Both servers must be running.
+     *
+     * @param replica
+     *            The server to replicate with.
+     * @throws EmbeddedDirectoryServerException
+     *             If replication cannot be configured or initialized.
+     */
+    void replicateTo(final ServerInstance replica) throws EmbeddedDirectoryServerException {
+        server.configureReplication(replicationParams()
+                .baseDn(BASE_DN)
+                .replicationPortSource(replicationPort)
+                .replicationPortDestination(replica.replicationPort)
+                .connectionParamsForDestination(replica.connectionParameters));
+        server.initializeReplication(replicationParams()
+                .baseDn(BASE_DN)
+                .connectionParamsForDestination(replica.connectionParameters));
+    }
+
+    /**
+     * Returns the build version of the server.
+     *
+     * @return The build version of the server.
+     * @throws EmbeddedDirectoryServerException
+     *             If the version cannot be read.
+     */
+    String getBuildVersion() throws EmbeddedDirectoryServerException {
+        return server.getBuildVersion();
+    }
+
+    private void runScript(final String scriptName) throws IOException {
+        final boolean isWindows = File.separatorChar == '\\';
+        final File script = isWindows
+                ? new File(new File(rootDirectory, "bat"), scriptName + ".bat")
+                : new File(new File(rootDirectory, "bin"), scriptName);
+        final File log = new File(rootDirectory.getParentFile(), scriptName + ".log");
+        final Process process = new ProcessBuilder(script.getPath())
+                .directory(rootDirectory)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                .start();
+        try {
+            final int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException(script + " exited with code " + exitCode + ", see " + log);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            throw new IOException(script + " was interrupted", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + HOST_NAME + ":" + ldapPort + (embedded ? ", embedded)" : ")");
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.benchmarks.macro;
+
+import static org.forgerock.opendj.benchmarks.macro.BenchmarkSettings.*;
+import static org.forgerock.opendj.benchmarks.macro.RateToolClient.client;
+import static org.forgerock.opendj.benchmarks.macro.RateToolClient.rootClient;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.forgerock.opendj.benchmarks.macro.RateToolClient.Tool;
+
+/**
+ * The standard workloads of the macro benchmark.
+ * <p>
+ * All the workloads target the users of the generated dataset, {@code uid=user.<n>,ou=People,dc=example,dc=com}.
+ */
+enum Workload {
+    /** Search then bind as random users, opening a new connection for each authentication. */
+    AUTH_STORM("auth-storm", 1) {
+        @Override
+        List<RateToolClient> clients(final BenchmarkSettings settings, final List<ServerInstance> servers) {
+            return Arrays.asList(
+                    client(Tool.AUTHRATE, servers.get(0),
+                           "-c", s(settings.connections), "-t", s(settings.threads),
+                           "-D", "%2$s", "-w", PASSWORD,
+                           "-b", PEOPLE_DN, "-s", "one", "-g", randomUser(settings), "(uid=user.%d)"));
+        }
+    },
+
+    /** Equality searches and modifications of random users, with three searching connections for one modifying. */
+    MIXED_READ_WRITE("mixed-read-write", 1) {
+        @Override
+        List<RateToolClient> clients(final BenchmarkSettings settings, final List<ServerInstance> servers) {
+            final ServerInstance server = servers.get(0);
+            return Arrays.asList(
+                    searchUsers(settings, server, readConnections(settings)),
+                    modifyUsers(settings, server, writeConnections(settings)));
+        }
+    },
+
+    /** Subtree searches returning all the users of the dataset. */
+    LARGE_SUBTREE_SEARCH("large-subtree-search", 1) {
+        @Override
+        List<RateToolClient> clients(final BenchmarkSettings settings, final List<ServerInstance> servers) {
+            return Arrays.asList(
+                    rootClient(Tool.SEARCHRATE, servers.get(0),
+                               "-F", "-c", s(writeConnections(settings)), "-t", "1",
+                               "-b", BASE_DN, "-s", "sub", "(objectClass=inetOrgPerson)"));
+        }
+    },
+
+    /** Modifications of random users on a server while another server replicating them serves the searches. */
+    REPLICATION_PAIR("replication-pair", 2) {
+        @Override
+        List<RateToolClient> clients(final BenchmarkSettings settings, final List<ServerInstance> servers) {
+            return Arrays.asList(
+                    modifyUsers(settings, servers.get(0), writeConnections(settings)),
+                    searchUsers(settings, servers.get(1), readConnections(settings)));
+        }
+    };
+
+    private final String workloadName;
+    private final int nbServers;
+
+    Workload(final String workloadName, final int nbServers) {
+        this.workloadName = workloadName;
+        this.nbServers = nbServers;
+    }
+
+    /**
+     * Returns the rate tools generating the load of this workload.
+     *
+     * @param settings
+     *            The benchmark settings.
+     * @param servers
+     *            The running servers, at least {@link #getNbServers()} of them.
+     * @return The rate tools generating the load of this workload.
+     */
+    abstract List<RateToolClient> clients(BenchmarkSettings settings, List<ServerInstance> servers);
+
+    int getNbServers() {
+        return nbServers;
+    }
+
+    @Override
+    public String toString() {
+        return workloadName;
+    }
+
+    /**
+     * Returns the workload with the provided name.
+     *
+     * @param name
+     *            The name of the workload, as printed by {@link #toString()}.
+     * @return The workload with the provided name.
+     * @throws IllegalArgumentException
+     *             If there is no workload with the provided name.
+     */
+    static Workload forName(final String name) {
+        for (final Workload workload : values()) {
+            if (workload.workloadName.equalsIgnoreCase(name)) {
+                return workload;
+            }
+        }
+        throw new IllegalArgumentException("Unknown workload '" + name + "', expected one of "
+                + Arrays.toString(values()));
+    }
+
+    private static RateToolClient searchUsers(final BenchmarkSettings settings, final ServerInstance server,
+            final int connections) {
+        return rootClient(Tool.SEARCHRATE, server,
+                          "-F", "-c", s(connections), "-t", s(settings.threads),
+                          "-b", PEOPLE_DN, "-s", "one", "-g", randomUser(settings), "(uid=user.%d)");
+    }
+
+    private static RateToolClient modifyUsers(final BenchmarkSettings settings, final ServerInstance server,
+            final int connections) {
+        return rootClient(Tool.MODRATE, server,
+                          "-F", "-c", s(connections), "-t", s(settings.threads),
+                          "-b", "uid=user.%d," + PEOPLE_DN,
+                          "-g", randomUser(settings), "-g", "randstr(16)", "description:%2$s");
+    }
+
+    private static int readConnections(final BenchmarkSettings settings) {
+        return Math.max(1, settings.connections - writeConnections(settings));
+    }
+
+    private static int writeConnections(final BenchmarkSettings settings) {
+        return Math.max(1, settings.connections / 4);
+    }
+
+    private static String randomUser(final BenchmarkSettings settings) {
+        return "rand(0," + (settings.users - 1) + ")";
+    }
+
+    private static String s(final int i) {
+        return String.valueOf(i);
+    }
+}
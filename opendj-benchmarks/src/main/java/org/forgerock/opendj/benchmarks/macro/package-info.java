@@ -0,0 +1,24 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+/**
+ * Macro benchmarks driving embedded directory servers with the rate tools.
+ * <p>
+ * {@link org.forgerock.opendj.benchmarks.macro.MacroBenchmark} provisions servers from an OpenDJ archive with a
+ * generated dataset, runs the standard workloads and writes a JSON report which
+ * {@link org.forgerock.opendj.benchmarks.macro.CompareReports} compares against the report of another build.
+ */
+package org.forgerock.opendj.benchmarks.macro;
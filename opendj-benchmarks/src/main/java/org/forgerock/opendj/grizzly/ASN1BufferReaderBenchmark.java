@@ -0,0 +1,86 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.grizzly;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.benchmarks.ASN1Benchmark.SearchResultEntryEncoding;
+import org.forgerock.opendj.io.ASN1;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.ByteBufferWrapper;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the Grizzly buffer based ASN.1 reader and writer used by the LDAP connection handlers.
+ *
+ * @see org.forgerock.opendj.benchmarks.ASN1Benchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ASN1BufferReaderBenchmark {
+    private static final int MAX_ELEMENT_SIZE = 5 * 1024 * 1024;
+
+    @Param({ "10", "100" })
+    public int nbAttributes;
+
+    private byte[] encodedEntry;
+    private ASN1BufferWriter writer;
+
+    @Setup
+    public void setup() throws IOException {
+        final ByteStringBuilder builder = new ByteStringBuilder();
+        SearchResultEntryEncoding.encode(ASN1.getWriter(builder), nbAttributes);
+        encodedEntry = builder.toByteArray();
+        writer = new ASN1BufferWriter();
+    }
+
+    @Benchmark
+    public void read(final Blackhole bh) throws IOException {
+        try (final ASN1BufferReader reader =
+                new ASN1BufferReader(MAX_ELEMENT_SIZE, new ByteBufferWrapper(ByteBuffer.wrap(encodedEntry)))) {
+            SearchResultEntryEncoding.decode(reader, bh);
+        }
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        writer.reset(MemoryManager.DEFAULT_MEMORY_MANAGER);
+        SearchResultEntryEncoding.encode(writer, nbAttributes);
+        final Buffer buffer = writer.getBuffer();
+        final int length = buffer.remaining();
+        buffer.tryDispose();
+        return length;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.backends.pluggable.EntryIDSet.EntryIDSetCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the {@link EntryIDSet} codecs and the set operations performed while evaluating indexed
+ * search filters.
+ * <p>
+ * The mutating operations first copy their input set: the cost of the copy is part of the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntryIDSetBenchmark
+{
+  /** Codecs of the on-disk formats. */
+  public enum Codec
+  {
+    V1(EntryIDSet.CODEC_V1),
+    V2(EntryIDSet.CODEC_V2);
+
+    private final EntryIDSetCodec codec;
+
+    Codec(EntryIDSetCodec codec)
+    {
+      this.codec = codec;
+    }
+  }
+
+  /** The codec is only a parameter of the encode and decode benchmarks. */
+  @State(Scope.Thread)
+  public static class CodecState
+  {
+    @Param
+    public Codec codec;
+
+    private ByteString encoded;
+
+    @Setup
+    public void setup(EntryIDSetBenchmark benchmark)
+    {
+      encoded = codec.codec.encode(EntryIDSet.newDefinedSet(benchmark.ids));
+    }
+  }
+
+  private static final ByteString KEY = ByteString.valueOfUtf8("key");
+
+  @Param({ "100", "10000" })
+  public int size;
+
+  private long[] ids;
+  private EntryIDSet otherSet;
+  private List<EntryIDSet> unionSets;
+
+  @Setup
+  public void setup()
+  {
+    final Random random = new Random(0);
+    ids = randomSortedIDs(random, size);
+    otherSet = EntryIDSet.newDefinedSet(randomSortedIDs(random, size));
+
+    unionSets = new ArrayList<>();
+    for (int i = 0; i < 10; i++)
+    {
+      unionSets.add(EntryIDSet.newDefinedSet(randomSortedIDs(random, size / 10)));
+    }
+  }
+
+  /** Generates sorted IDs spread over a range four times larger than the number of IDs. */
+  private static long[] randomSortedIDs(Random random, int nbIDs)
+  {
+    final long[] results = new long[nbIDs];
+    for (int i = 0; i < nbIDs; i++)
+    {
+      results[i] = random.nextInt(nbIDs * 4);
+    }
+    Arrays.sort(results);
+    int j = 0;
+    for (int i = 0; i < nbIDs; i++)
+    {
+      if (j == 0 || results[i] != results[j - 1])
+      {
+        results[j++] = results[i];
+      }
+    }
+    return Arrays.copyOf(results, j);
+  }
+
+  @Benchmark
+  public ByteString encode(CodecState state)
+  {
+    return state.codec.codec.encode(EntryIDSet.newDefinedSet(ids));
+  }
+
+  @Benchmark
+  public EntryIDSet decode(CodecState state)
+  {
+    return state.codec.codec.decode(KEY, state.encoded);
+  }
+
+  @Benchmark
+  public EntryIDSet retainAll()
+  {
+    final EntryIDSet set = EntryIDSet.newDefinedSet(ids.clone());
+    set.retainAll(otherSet);
+    return set;
+  }
+
+  @Benchmark
+  public EntryIDSet addAll()
+  {
+    final EntryIDSet set = EntryIDSet.newDefinedSet(ids.clone());
+    set.addAll(otherSet);
+    return set;
+  }
+
+  @Benchmark
+  public EntryIDSet removeAll()
+  {
+    final EntryIDSet set = EntryIDSet.newDefinedSet(ids.clone());
+    set.removeAll(otherSet);
+    return set;
+  }
+
+  @Benchmark
+  public EntryIDSet newSetFromUnion()
+  {
+    return EntryIDSet.newSetFromUnion(unionSets);
+  }
+}
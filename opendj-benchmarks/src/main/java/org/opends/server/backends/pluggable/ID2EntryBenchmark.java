@@ -0,0 +1,129 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.forgerock.opendj.adapter.server3x.Converters.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.LinkedHashMapEntry;
+import org.opends.server.api.CompressedSchema;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.Entry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the encoding and decoding of entries stored in the id2entry tree, with and without the
+ * {@link CompressedSchema} and data compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ID2EntryBenchmark
+{
+  /** The id2entry encodings of a backend. */
+  public enum Format
+  {
+    /** Attribute descriptions and object classes are stored as strings. */
+    PLAIN(false, false),
+    /** Attribute descriptions and object classes are replaced by compressed schema tokens. */
+    COMPRESSED_SCHEMA(true, false),
+    /** Compressed schema tokens and deflated data. */
+    COMPRESSED(true, true);
+
+    private final boolean encode;
+    private final boolean compress;
+
+    Format(boolean encode, boolean compress)
+    {
+      this.encode = encode;
+      this.compress = compress;
+    }
+  }
+
+  @Param
+  public Format format;
+
+  private CompressedSchema compressedSchema;
+  private DataConfig dataConfig;
+  private ID2Entry id2entry;
+  private Entry entry;
+  private ByteString encodedEntry;
+
+  @Setup
+  public void setup() throws Exception
+  {
+    DirectoryServer.bootstrapClient();
+    compressedSchema = new CompressedSchema(DirectoryServer.getInstance().getServerContext());
+    dataConfig = new DataConfig.Builder()
+        .encode(format.encode)
+        .compress(format.compress)
+        .schema(compressedSchema)
+        .build();
+    id2entry = new ID2Entry(new TreeName("dc=example,dc=com", "id2entry"), dataConfig);
+    entry = to(new LinkedHashMapEntry(
+        "dn: uid=user.42,ou=People,dc=example,dc=com",
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: user.42",
+        "cn: Aaren Atp",
+        "sn: Atp",
+        "givenName: Aaren",
+        "initials: ASA",
+        "mail: user.42@maildomain.net",
+        "userPassword: {SSHA}YXJlbiBhdHAgc2FsdGVkIHBhc3N3b3Jk",
+        "employeeNumber: 42",
+        "telephoneNumber: +1 685 622 6202",
+        "homePhone: +1 225 216 5900",
+        "pager: +1 779 041 6341",
+        "mobile: +1 010 154 3228",
+        "street: 01020 Fifth Street",
+        "l: Panama City",
+        "st: DE",
+        "postalCode: 50369",
+        "postalAddress: Aaren Atp$01020 Fifth Street$Panama City, DE  50369",
+        "description: This is the description for Aaren Atp."));
+    encodedEntry = id2entry.entryToDatabase(entry, dataConfig);
+  }
+
+  @Benchmark
+  public ByteString entryToDatabase() throws Exception
+  {
+    return id2entry.entryToDatabase(entry, dataConfig);
+  }
+
+  @Benchmark
+  public Entry entryFromDatabase() throws Exception
+  {
+    return id2entry.entryFromDatabase(encodedEntry, compressedSchema);
+  }
+}
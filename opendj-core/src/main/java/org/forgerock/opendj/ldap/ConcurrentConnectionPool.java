@@ -0,0 +1,630 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.ldap;
+
+import static org.forgerock.opendj.ldap.LdapException.*;
+import static org.forgerock.opendj.ldap.requests.Requests.newSingleEntrySearchRequest;
+import static org.forgerock.util.promise.Promises.*;
+
+import static com.forgerock.opendj.ldap.CoreMessages.*;
+import static com.forgerock.opendj.util.StaticUtils.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.requests.AbandonRequest;
+import org.forgerock.opendj.ldap.requests.AddRequest;
+import org.forgerock.opendj.ldap.requests.BindRequest;
+import org.forgerock.opendj.ldap.requests.CompareRequest;
+import org.forgerock.opendj.ldap.requests.DeleteRequest;
+import org.forgerock.opendj.ldap.requests.ExtendedRequest;
+import org.forgerock.opendj.ldap.requests.ModifyDNRequest;
+import org.forgerock.opendj.ldap.requests.ModifyRequest;
+import org.forgerock.opendj.ldap.requests.SearchRequest;
+import org.forgerock.opendj.ldap.requests.UnbindRequest;
+import org.forgerock.opendj.ldap.responses.BindResult;
+import org.forgerock.opendj.ldap.responses.CompareResult;
+import org.forgerock.opendj.ldap.responses.ExtendedResult;
+import org.forgerock.opendj.ldap.responses.Result;
+import org.forgerock.opendj.ldap.responses.SearchResultEntry;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.time.TimeService;
+
+import com.forgerock.opendj.util.ReferenceCountedObject;
+
+/**
+ * A connection pool implementation whose connection requests and releases never contend on a lock.
+ * <p>
+ * Idle connections are kept in a lock-free stack so that the most recently used, and therefore warmest, connections
+ * are reused first. In addition each thread remembers the last connection it released and tries to reuse it before
+ * looking at the shared stack, which avoids any contention for applications whose threads perform one request at a
+ * time. Connection requests which cannot be satisfied immediately are queued in a lock-free queue and are handed
+ * released connections directly.
+ * <p>
+ * A background task periodically opens connections until the pool contains at least its minimum number of
+ * connections, closes connections which have remained idle for longer than the idle timeout and asynchronously
+ * validates idle connections by reading the root DSE. Connections whose validation fails, or which report a
+ * connection error while being used, are considered unhealthy and are closed instead of being returned to the pool.
+ * <p>
+ * The pool records the number of connections in use and a histogram of the time spent waiting for a connection.
+ * Both are reported by {@link #toString()}.
+ */
+final class ConcurrentConnectionPool implements ConnectionPool {
+    /** A pooled connection is passed to the client and lasts until the client application closes it. */
+    private final class PooledConnection extends AbstractAsynchronousConnection {
+        private final PoolEntry entry;
+        private final AtomicBoolean isClosed = new AtomicBoolean();
+        private final List<ConnectionEventListener> listeners = new CopyOnWriteArrayList<>();
+
+        private PooledConnection(final PoolEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public LdapPromise<Void> abandonAsync(final AbandonRequest request) {
+            return checkState().abandonAsync(request);
+        }
+
+        @Override
+        public LdapPromise<Result> addAsync(final AddRequest request,
+                final IntermediateResponseHandler intermediateResponseHandler) {
+            return checkState().addAsync(request, intermediateResponseHandler);
+        }
+
+        @Override
+        public void addConnectionEventListener(final ConnectionEventListener listener) {
+            Reject.ifNull(listener);
+            if (isClosed()) {
+                listener.handleConnectionClosed();
+                return;
+            }
+            listeners.add(listener);
+            final LdapException error = entry.error;
+            if (error != null) {
+                listener.handleConnectionError(entry.isDisconnectNotification, error);
+            }
+        }
+
+        @Override
+        public LdapPromise<BindResult> bindAsync(final BindRequest request,
+                final IntermediateResponseHandler intermediateResponseHandler) {
+            return checkState().bindAsync(request, intermediateResponseHandler);
+        }
+
+        @Override
+        public void close(final UnbindRequest request, final String reason) {
+            if (!isClosed.compareAndSet(false, true)) {
+                return;
+            }
+            entry.current = null;
+            activeConnections.decrementAndGet();
+            if (entry.isHealthy() && entry.connection.isValid()) {
+                publishEntry(entry);
+            } else {
+                logger.debug(LocalizableMessage.raw("Connection no longer valid: %s", ConcurrentConnectionPool.this));
+                discardEntry(entry);
+            }
+            for (final ConnectionEventListener listener : listeners) {
+                listener.handleConnectionClosed();
+            }
+        }
+
+        @Override
+        public LdapPromise<CompareResult> compareAsync(final CompareRequest request,
+                final IntermediateResponseHandler intermediateResponseHandler) {
+            return checkState().compareAsync(request, intermediateResponseHandler);
+        }
+
+        @Override
+        public LdapPromise<Result> deleteAsync(final DeleteRequest request,
+                final IntermediateResponseHandler intermediateResponseHandler) {
+            return checkState().deleteAsync(request, intermediateResponseHandler);
+        }
+
+        @Override
+        public <R extends ExtendedResult> LdapPromise<R> extendedRequestAsync(final ExtendedRequest<R> request,
+                final IntermediateResponseHandler intermediateResponseHandler) {
+            return checkState().extendedRequestAsync(request, intermediateResponseHandler);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return isClosed.get();
+        }
+
+        @Override
+        public boolean isValid() {
+            return !isClosed() && entry.connection.isValid();
+        }
+
+        @Override
+        public LdapPromise<Result> modifyAsync(final ModifyRequest request,
+                final IntermediateResponseHandler intermediateResponseHandler) {
+            return checkState().modifyAsync(request, intermediateResponseHandler);
+        }
+
+        @Override
+        public LdapPromise<Result> modifyDNAsync(final ModifyDNRequest request,
+                final IntermediateResponseHandler intermediateResponseHandler) {
+            return checkState().modifyDNAsync(request, intermediateResponseHandler);
+        }
+
+        @Override
+        public void removeConnectionEventListener(final ConnectionEventListener listener) {
+            Reject.ifNull(listener);
+            listeners.remove(listener);
+        }
+
+        @Override
+        public LdapPromise<Result> searchAsync(final SearchRequest request,
+                final IntermediateResponseHandler intermediateResponseHandler, final SearchResultHandler entryHandler) {
+            return checkState().searchAsync(request, intermediateResponseHandler, entryHandler);
+        }
+
+        @Override
+        public String toString() {
+            return "PooledConnection(" + entry.connection + ')';
+        }
+
+        /** Checks that this pooled connection has not been closed. */
+        private Connection checkState() {
+            if (isClosed()) {
+                throw new IllegalStateException();
+            }
+            return entry.connection;
+        }
+    }
+
+    /** A connection of the pool, whether it is idle, in use or being validated. */
+    private final class PoolEntry implements ConnectionEventListener {
+        private final Connection connection;
+        /** One of {@link #IDLE}, {@link #IN_USE} or {@link #REMOVED}. */
+        private final AtomicInteger state = new AtomicInteger(IN_USE);
+        /** Ensures that an entry is present at most once in the idle stack. */
+        private final AtomicBoolean isInIdleStack = new AtomicBoolean();
+        private volatile long lastUseTimeMillis;
+        private volatile long lastValidationTimeMillis;
+        private volatile LdapException error;
+        private volatile boolean isDisconnectNotification;
+        /** The pooled connection currently wrapping this entry, if any. */
+        private volatile PooledConnection current;
+
+        private PoolEntry(final Connection connection) {
+            this.connection = connection;
+            this.lastUseTimeMillis = timeService.now();
+            this.lastValidationTimeMillis = lastUseTimeMillis;
+            connection.addConnectionEventListener(this);
+        }
+
+        private boolean claim() {
+            return state.compareAndSet(IDLE, IN_USE);
+        }
+
+        private boolean isHealthy() {
+            return error == null;
+        }
+
+        @Override
+        public void handleConnectionClosed() {
+            // This can only be caused by the pool closing the connection.
+        }
+
+        @Override
+        public void handleConnectionError(final boolean isDisconnectNotification, final LdapException error) {
+            this.isDisconnectNotification = isDisconnectNotification;
+            this.error = error;
+            final PooledConnection pooledConnection = current;
+            if (pooledConnection != null) {
+                for (final ConnectionEventListener listener : pooledConnection.listeners) {
+                    listener.handleConnectionError(isDisconnectNotification, error);
+                }
+            }
+        }
+
+        @Override
+        public void handleUnsolicitedNotification(final ExtendedResult notification) {
+            final PooledConnection pooledConnection = current;
+            if (pooledConnection != null) {
+                for (final ConnectionEventListener listener : pooledConnection.listeners) {
+                    listener.handleUnsolicitedNotification(notification);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(connection);
+        }
+    }
+
+    /** A connection request which could not be satisfied immediately. */
+    private static final class Waiter {
+        private final PromiseImpl<Connection, LdapException> promise = PromiseImpl.create();
+        private final long startTimeMillis;
+
+        private Waiter(final long startTimeMillis) {
+            this.startTimeMillis = startTimeMillis;
+        }
+    }
+
+    /** Scheduled task responsible for warming up, purging and validating pooled connections. */
+    private final class MaintenanceTask implements Runnable {
+        @Override
+        public void run() {
+            if (isClosed.get()) {
+                return;
+            }
+            final long now = timeService.now();
+            final List<PoolEntry> toBeValidated = new ArrayList<>();
+            int nonCoreConnectionCount = poolSize.get() - minPoolSize;
+            // Least recently used connections are at the end of the stack.
+            for (final Iterator<PoolEntry> i = idleEntries.descendingIterator(); i.hasNext();) {
+                final PoolEntry entry = i.next();
+                if (entry.state.get() == REMOVED) {
+                    i.remove();
+                } else if (idleTimeoutMillis > 0 && nonCoreConnectionCount > 0
+                        && entry.lastUseTimeMillis < now - idleTimeoutMillis && entry.claim()) {
+                    i.remove();
+                    entry.isInIdleStack.set(false);
+                    discardEntry(entry);
+                    nonCoreConnectionCount--;
+                } else if (entry.lastValidationTimeMillis < now - VALIDATION_INTERVAL_MILLIS && entry.claim()) {
+                    toBeValidated.add(entry);
+                }
+            }
+            for (final PoolEntry entry : toBeValidated) {
+                validate(entry, now);
+            }
+            warmUp();
+        }
+
+        private void validate(final PoolEntry entry, final long now) {
+            entry.lastValidationTimeMillis = now;
+            entry.connection.searchSingleEntryAsync(VALIDATION_REQUEST)
+                    .thenOnResult(new ResultHandler<SearchResultEntry>() {
+                        @Override
+                        public void handleResult(final SearchResultEntry result) {
+                            publishEntry(entry);
+                        }
+                    })
+                    .thenOnException(new ExceptionHandler<LdapException>() {
+                        @Override
+                        public void handleException(final LdapException e) {
+                            logger.debug(LocalizableMessage.raw("Idle connection %s failed validation", entry, e));
+                            entry.error = e;
+                            discardEntry(entry);
+                        }
+                    });
+        }
+    }
+
+    private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+    private static final int IDLE = 0;
+    private static final int IN_USE = 1;
+    private static final int REMOVED = 2;
+
+    /** Idle connections are validated when they have not been used or validated for this long. */
+    private static final long VALIDATION_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    /** Interval between two executions of the maintenance task. */
+    private static final long MAINTENANCE_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final SearchRequest VALIDATION_REQUEST =
+            newSingleEntrySearchRequest("", SearchScope.BASE_OBJECT, "(objectClass=*)", "1.1");
+
+    /** Upper bounds, exclusive, of the wait time histogram buckets. The last bucket has no upper bound. */
+    static final long[] WAIT_TIME_BUCKETS_MILLIS = { 1, 10, 100, 1000 };
+
+    /** This is package private in order to allow unit tests to inject fake time stamps. */
+    TimeService timeService = TimeService.SYSTEM;
+
+    private final ConnectionFactory factory;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long idleTimeoutMillis;
+    private final ReferenceCountedObject<ScheduledExecutorService>.Reference scheduler;
+    private final ScheduledFuture<?> maintenanceFuture;
+    private final AtomicBoolean isClosed = new AtomicBoolean();
+
+    /** Idle connections, most recently used first. May contain entries which have been claimed since. */
+    private final ConcurrentLinkedDeque<PoolEntry> idleEntries = new ConcurrentLinkedDeque<>();
+    /** The last connection released by each thread, which may have been claimed by another thread since. */
+    private final ThreadLocal<PoolEntry> lastReleasedEntry = new ThreadLocal<>();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    /** The number of connections in the pool, including the ones being established. */
+    private final AtomicInteger poolSize = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicLongArray waitTimeHistogram = new AtomicLongArray(WAIT_TIME_BUCKETS_MILLIS.length + 1);
+
+    ConcurrentConnectionPool(final ConnectionFactory factory, final int minPoolSize, final int maxPoolSize,
+            final long idleTimeout, final TimeUnit unit, final ScheduledExecutorService scheduler) {
+        Reject.ifNull(factory);
+        Reject.ifFalse(minPoolSize >= 0, "minPoolSize < 0");
+        Reject.ifFalse(maxPoolSize > 0, "maxPoolSize <= 0");
+        Reject.ifFalse(minPoolSize <= maxPoolSize, "minPoolSize > maxPoolSize");
+        Reject.ifFalse(idleTimeout >= 0, "idleTimeout < 0");
+        Reject.ifFalse(idleTimeout == 0 || unit != null, "time unit is null");
+
+        this.factory = factory;
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.idleTimeoutMillis = idleTimeout > 0 ? unit.toMillis(idleTimeout) : 0;
+        this.scheduler = DEFAULT_SCHEDULER.acquireIfNull(scheduler);
+        this.maintenanceFuture = this.scheduler.get().scheduleWithFixedDelay(new MaintenanceTask(),
+                0, MAINTENANCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (!isClosed.compareAndSet(false, true)) {
+            return;
+        }
+        logger.debug(LocalizableMessage.raw("Connection pool is closing: %s", this));
+        maintenanceFuture.cancel(false);
+        scheduler.release();
+
+        // Connections in use will be closed when they are released.
+        for (PoolEntry entry = idleEntries.pollFirst(); entry != null; entry = idleEntries.pollFirst()) {
+            entry.isInIdleStack.set(false);
+            if (entry.claim()) {
+                discardEntry(entry);
+            }
+        }
+        failWaiters(newPoolClosingException());
+        factory.close();
+    }
+
+    @Override
+    public Connection getConnection() throws LdapException {
+        try {
+            return getConnectionAsync().getOrThrow();
+        } catch (final InterruptedException e) {
+            throw newLdapException(ResultCode.CLIENT_SIDE_USER_CANCELLED, e);
+        }
+    }
+
+    @Override
+    public Promise<Connection, LdapException> getConnectionAsync() {
+        if (isClosed.get()) {
+            throw new IllegalStateException("ConcurrentConnectionPool is already closed");
+        }
+        final long startTimeMillis = timeService.now();
+        final PoolEntry entry = claimIdleEntry();
+        if (entry != null) {
+            recordWaitTime(startTimeMillis);
+            return newResultPromise((Connection) newPooledConnection(entry));
+        }
+
+        final Waiter waiter = new Waiter(startTimeMillis);
+        waiters.add(waiter);
+        if (isClosed.get()) {
+            failWaiters(newPoolClosingException());
+        } else if (!growPool()) {
+            // A connection may have been released before the waiter was queued.
+            final PoolEntry releasedEntry = claimIdleEntry();
+            if (releasedEntry != null) {
+                publishEntry(releasedEntry);
+            }
+        }
+        return waiter.promise;
+    }
+
+    @Override
+    public String toString() {
+        final int size = poolSize.get();
+        final int active = activeConnections.get();
+        final StringBuilder builder = new StringBuilder();
+        builder.append("ConcurrentConnectionPool(size=").append(size);
+        builder.append("[active:").append(active);
+        builder.append(" + idle:").append(getIdleConnectionCount()).append(']');
+        builder.append(", minSize=").append(minPoolSize);
+        builder.append(", maxSize=").append(maxPoolSize);
+        builder.append(", utilization=").append(active * 100 / maxPoolSize).append('%');
+        builder.append(", waiting=").append(waiters.size());
+        builder.append(", waitTimes={");
+        final long[] histogram = getWaitTimeHistogram();
+        for (int i = 0; i < histogram.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(i < WAIT_TIME_BUCKETS_MILLIS.length ? "<" + WAIT_TIME_BUCKETS_MILLIS[i] : ">="
+                    + WAIT_TIME_BUCKETS_MILLIS[i - 1]).append("ms:").append(histogram[i]);
+        }
+        builder.append("}, factory=").append(factory).append(')');
+        return builder.toString();
+    }
+
+    /** Package private for unit testing. */
+    int currentPoolSize() {
+        return poolSize.get();
+    }
+
+    /** Package private for unit testing. */
+    int getActiveConnectionCount() {
+        return activeConnections.get();
+    }
+
+    /** Package private for unit testing. */
+    int getIdleConnectionCount() {
+        int count = 0;
+        for (final PoolEntry entry : idleEntries) {
+            if (entry.state.get() == IDLE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of connection requests whose wait time fell in each bucket defined by
+     * {@link #WAIT_TIME_BUCKETS_MILLIS}. Package private for unit testing.
+     */
+    long[] getWaitTimeHistogram() {
+        final long[] histogram = new long[waitTimeHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = waitTimeHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    /** Opens connections until the pool contains its minimum number of connections. */
+    void warmUp() {
+        while (!isClosed.get() && poolSize.get() < minPoolSize && growPool()) {
+            // Keep going.
+        }
+    }
+
+    /** Returns an idle connection which has been claimed for the caller, or {@code null} if there is none. */
+    private PoolEntry claimIdleEntry() {
+        PoolEntry entry = lastReleasedEntry.get();
+        if (entry != null) {
+            lastReleasedEntry.remove();
+            if (entry.claim()) {
+                return entry;
+            }
+        }
+        for (entry = idleEntries.pollFirst(); entry != null; entry = idleEntries.pollFirst()) {
+            entry.isInIdleStack.set(false);
+            if (entry.claim()) {
+                return entry;
+            } else if (entry.state.get() == IDLE && entry.isInIdleStack.compareAndSet(false, true)) {
+                // The entry was released while being removed from the stack and must not get lost.
+                idleEntries.offerFirst(entry);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hands a claimed connection to the oldest waiting connection request or, if there is none, makes it available
+     * to subsequent connection requests.
+     */
+    private void publishEntry(final PoolEntry entry) {
+        if (isClosed.get()) {
+            discardEntry(entry);
+            return;
+        }
+        for (Waiter waiter = waiters.poll(); waiter != null; waiter = waiters.poll()) {
+            if (waiter.promise.tryHandleResult(newPooledConnection(entry))) {
+                recordWaitTime(waiter.startTimeMillis);
+                return;
+            }
+            // The waiting request has already completed, so the pooled connection was never seen.
+            activeConnections.decrementAndGet();
+        }
+        entry.lastUseTimeMillis = timeService.now();
+        entry.state.set(IDLE);
+        if (entry.isInIdleStack.compareAndSet(false, true)) {
+            idleEntries.offerFirst(entry);
+        }
+        lastReleasedEntry.set(entry);
+
+        // A connection request may have been queued after the waiters were polled.
+        if (!waiters.isEmpty()) {
+            final PoolEntry idleEntry = claimIdleEntry();
+            if (idleEntry != null) {
+                publishEntry(idleEntry);
+            }
+        }
+    }
+
+    /** Closes a claimed connection and opens a new one if connection requests are waiting. */
+    private void discardEntry(final PoolEntry entry) {
+        entry.state.set(REMOVED);
+        poolSize.decrementAndGet();
+        entry.connection.removeConnectionEventListener(entry);
+        entry.connection.close();
+        if (!isClosed.get() && !waiters.isEmpty()) {
+            growPool();
+        }
+    }
+
+    /** Opens a new connection unless the pool is full, returning {@code false} if the pool is full. */
+    private boolean growPool() {
+        for (;;) {
+            final int size = poolSize.get();
+            if (size >= maxPoolSize) {
+                return false;
+            }
+            if (poolSize.compareAndSet(size, size + 1)) {
+                break;
+            }
+        }
+        factory.getConnectionAsync()
+                .thenOnResult(new ResultHandler<Connection>() {
+                    @Override
+                    public void handleResult(final Connection connection) {
+                        logger.debug(LocalizableMessage.raw("Connection attempt succeeded: %s",
+                                ConcurrentConnectionPool.this));
+                        publishEntry(new PoolEntry(connection));
+                    }
+                })
+                .thenOnException(new ExceptionHandler<LdapException>() {
+                    @Override
+                    public void handleException(final LdapException e) {
+                        poolSize.decrementAndGet();
+                        logger.debug(LocalizableMessage.raw("Connection attempt failed: %s",
+                                ConcurrentConnectionPool.this, e));
+                        // If one connection attempt fails then the others are likely to fail as well.
+                        failWaiters(e);
+                    }
+                });
+        return true;
+    }
+
+    private void failWaiters(final LdapException e) {
+        for (Waiter waiter = waiters.poll(); waiter != null; waiter = waiters.poll()) {
+            waiter.promise.tryHandleException(e);
+        }
+    }
+
+    private LdapException newPoolClosingException() {
+        return newLdapException(ResultCode.CLIENT_SIDE_USER_CANCELLED,
+                ERR_CONNECTION_POOL_CLOSING.get(toString()).toString());
+    }
+
+    private PooledConnection newPooledConnection(final PoolEntry entry) {
+        final PooledConnection pooledConnection = new PooledConnection(entry);
+        entry.current = pooledConnection;
+        activeConnections.incrementAndGet();
+        return pooledConnection;
+    }
+
+    private void recordWaitTime(final long startTimeMillis) {
+        final long waitTimeMillis = timeService.now() - startTimeMillis;
+        int bucket = 0;
+        while (bucket < WAIT_TIME_BUCKETS_MILLIS.length && waitTimeMillis >= WAIT_TIME_BUCKETS_MILLIS[bucket]) {
+            bucket++;
+        }
+        waitTimeHistogram.incrementAndGet(bucket);
+    }
+}
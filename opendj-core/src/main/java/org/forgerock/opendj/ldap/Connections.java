@@ -29,6 +29,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLongArray;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.ldap.RequestLoadBalancer.PartitionedRequest;
+import org.forgerock.opendj.ldap.RequestLoadBalancer.TerminatedRequest;
 import org.forgerock.opendj.ldap.requests.AddRequest;
 import org.forgerock.opendj.ldap.requests.CRAMMD5SASLBindRequest;
 import org.forgerock.opendj.ldap.requests.CompareRequest;
@@ -218,6 +219,101 @@ public final class Connections {
                 scheduler);
     }
 
+    /**
+     * Creates a new connection pool which will maintain between
+     * {@code minPoolSize} and {@code maxPoolSize} connections created using the
+     * provided connection factory, without contending on a lock when
+     * connections are obtained and released.
+     * <p>
+     * Idle connections are reused most recently used first, and a thread
+     * preferably reuses the last connection that it released. The pool is
+     * eagerly filled with {@code minPoolSize} connections, and non-core
+     * connections which remain idle for longer than {@code idleTimeout} are
+     * closed. Idle connections are periodically validated by reading the root
+     * DSE, and connections which fail validation or report a connection error
+     * are closed rather than returned to the pool.
+     * <p>
+     * Attempts to use more than {@code maxPoolSize} connections at once will
+     * block until a connection is released back to the pool.
+     * <p>
+     * The default scheduler is used for periodically maintaining the pool.
+     *
+     * @param factory
+     *            The connection factory to use for creating new connections.
+     * @param minPoolSize
+     *            The minimum number of connections to keep in the pool, even if
+     *            they are idle.
+     * @param maxPoolSize
+     *            The maximum number of connections to allow in the pool.
+     * @param idleTimeout
+     *            The time out period, after which unused non-core connections
+     *            will be closed.
+     * @param unit
+     *            The time unit for the {@code idleTimeout} argument.
+     * @return The new connection pool.
+     * @throws IllegalArgumentException
+     *             If {@code minPoolSize} is negative, if {@code maxPoolSize}
+     *             is less than or equal to zero, or if {@code idleTimeout} is
+     *             negative, or if {@code minPoolSize} is greater than
+     *             {@code maxPoolSize}, or if {@code idleTimeout} is non-zero
+     *             and {@code unit} is {@code null}.
+     * @throws NullPointerException
+     *             If {@code factory} was {@code null}.
+     */
+    public static ConnectionPool newConcurrentConnectionPool(final ConnectionFactory factory,
+            final int minPoolSize, final int maxPoolSize, final long idleTimeout, final TimeUnit unit) {
+        return new ConcurrentConnectionPool(factory, minPoolSize, maxPoolSize, idleTimeout, unit, null);
+    }
+
+    /**
+     * Creates a new connection pool which will maintain between
+     * {@code minPoolSize} and {@code maxPoolSize} connections created using the
+     * provided connection factory, without contending on a lock when
+     * connections are obtained and released.
+     * <p>
+     * Idle connections are reused most recently used first, and a thread
+     * preferably reuses the last connection that it released. The pool is
+     * eagerly filled with {@code minPoolSize} connections, and non-core
+     * connections which remain idle for longer than {@code idleTimeout} are
+     * closed. Idle connections are periodically validated by reading the root
+     * DSE, and connections which fail validation or report a connection error
+     * are closed rather than returned to the pool.
+     * <p>
+     * Attempts to use more than {@code maxPoolSize} connections at once will
+     * block until a connection is released back to the pool.
+     *
+     * @param factory
+     *            The connection factory to use for creating new connections.
+     * @param minPoolSize
+     *            The minimum number of connections to keep in the pool, even if
+     *            they are idle.
+     * @param maxPoolSize
+     *            The maximum number of connections to allow in the pool.
+     * @param idleTimeout
+     *            The time out period, after which unused non-core connections
+     *            will be closed.
+     * @param unit
+     *            The time unit for the {@code idleTimeout} argument.
+     * @param scheduler
+     *            The scheduler which should be used for periodically
+     *            maintaining the pool, or {@code null} if the default
+     *            scheduler should be used.
+     * @return The new connection pool.
+     * @throws IllegalArgumentException
+     *             If {@code minPoolSize} is negative, if {@code maxPoolSize}
+     *             is less than or equal to zero, or if {@code idleTimeout} is
+     *             negative, or if {@code minPoolSize} is greater than
+     *             {@code maxPoolSize}, or if {@code idleTimeout} is non-zero
+     *             and {@code unit} is {@code null}.
+     * @throws NullPointerException
+     *             If {@code factory} was {@code null}.
+     */
+    public static ConnectionPool newConcurrentConnectionPool(final ConnectionFactory factory,
+            final int minPoolSize, final int maxPoolSize, final long idleTimeout, final TimeUnit unit,
+            final ScheduledExecutorService scheduler) {
+        return new ConcurrentConnectionPool(factory, minPoolSize, maxPoolSize, idleTimeout, unit, scheduler);
+    }
+
     /**
      * Creates a new connection pool which will maintain {@code poolSize}
      * connections created using the provided connection factory.
@@ -732,6 +828,7 @@ public final class Connections {
      * @see #newRoundRobinLoadBalancer(Collection, Options)
      * @see #newFailoverLoadBalancer(Collection, Options)
      * @see #newAffinityRequestLoadBalancer(Collection, Options)
+     * @see #newLatencyAwareLoadBalancer(Collection, Options)
      * @see #LOAD_BALANCER_EVENT_LISTENER
      * @see #LOAD_BALANCER_MONITORING_INTERVAL
      * @see #LOAD_BALANCER_SCHEDULER
@@ -775,22 +872,22 @@ public final class Connections {
         };
     }
 
-    static Function<Integer, Void, NeverThrowsException> newLeastRequestsLoadBalancerEndOfRequestFunction(
+    static Function<TerminatedRequest, Void, NeverThrowsException> newLeastRequestsLoadBalancerEndOfRequestFunction(
             final LeastRequestsDispatcher dispatcher) {
-        return new Function<Integer, Void, NeverThrowsException>() {
+        return new Function<TerminatedRequest, Void, NeverThrowsException>() {
             @Override
-            public Void apply(final Integer index) {
-                dispatcher.terminatedRequest(index);
+            public Void apply(final TerminatedRequest request) {
+                dispatcher.terminatedRequest(request.getServerIndex());
                 return null;
             }
         };
     }
 
     /** No-op "end of request" function for the saturation-based request load balancer. */
-    static final Function<Integer, Void, NeverThrowsException> NOOP_END_OF_REQUEST_FUNCTION =
-            new Function<Integer, Void, NeverThrowsException>() {
+    static final Function<TerminatedRequest, Void, NeverThrowsException> NOOP_END_OF_REQUEST_FUNCTION =
+            new Function<TerminatedRequest, Void, NeverThrowsException>() {
                 @Override
-                public Void apply(Integer index) {
+                public Void apply(TerminatedRequest request) {
                     return null;
                 }
             };
@@ -835,7 +932,9 @@ public final class Connections {
          *            The index of server that processed the request.
          */
         void terminatedRequest(Integer index) {
-            serversCounters.decrementAndGet(index);
+            if (index >= 0) {
+                serversCounters.decrementAndGet(index);
+            }
         }
 
         private int getLessSaturatedIndex() {
@@ -853,6 +952,80 @@ public final class Connections {
         }
     }
 
+    /**
+     * Creates a new "latency aware" load-balancer which will load-balance individual requests across the provided set
+     * of connection factories, each typically representing a single replica, using an algorithm that routes requests
+     * away from replicas which are responding slowly.
+     * <p>
+     * For each request, two replicas are picked at random and the request is routed to the one having the lowest
+     * cost, which is the exponentially weighted moving average of its response times multiplied by its number of
+     * active requests plus one. The moving average immediately follows response time increases and only progressively
+     * follows decreases, so that a replica which hiccups (garbage collection, slow disk, etc.) stops receiving its
+     * share of requests straight away. Picking the best of two random replicas, rather than the best replica, prevents
+     * all clients from herding to the same replica.
+     * <p/>
+     * A replica whose last five requests failed because it was unavailable (busy, unavailable, time out, server down)
+     * is ejected: it is considered offline, as if it had failed to return a connection, until a new connection can be
+     * established to it. The last operational replica is never ejected.
+     * <p/>
+     * <b>NOTE:</b> this connection factory returns fake connections, since real connections are obtained for each
+     * request. Therefore, the returned fake connections have certain limitations: abandon requests will be ignored
+     * since they cannot be routed; connection event listeners can be registered, but will only be notified when the
+     * fake connection is closed or when all of the connection factories are unavailable.
+     * <p/>
+     * <b>NOTE:</b>Server selection is only based on information which is local to the client application. If other
+     * applications are accessing the same servers then their additional load is only taken into account through the
+     * response times they cause.
+     * <p/>
+     * The implementation periodically attempts to connect to failed or ejected connection factories in order to
+     * determine if they have become available again.
+     *
+     * @param factories
+     *            The connection factories.
+     * @param options
+     *            This configuration options for the load-balancer.
+     * @return The new latency aware load balancer.
+     * @see #newRoundRobinLoadBalancer(Collection, Options)
+     * @see #newFailoverLoadBalancer(Collection, Options)
+     * @see #newAffinityRequestLoadBalancer(Collection, Options)
+     * @see #newLeastRequestsLoadBalancer(Collection, Options)
+     * @see #LOAD_BALANCER_EVENT_LISTENER
+     * @see #LOAD_BALANCER_MONITORING_INTERVAL
+     * @see #LOAD_BALANCER_SCHEDULER
+     */
+    public static ConnectionFactory newLatencyAwareLoadBalancer(
+            final Collection<? extends ConnectionFactory> factories, final Options options) {
+        final LatencyAwareDispatcher dispatcher = new LatencyAwareDispatcher(factories.size());
+        final RequestLoadBalancer loadBalancer = new RequestLoadBalancer("LatencyAwareRequestLoadBalancer",
+                factories, options,
+                newLatencyAwareLoadBalancerNextFunction(dispatcher),
+                newLatencyAwareLoadBalancerEndOfRequestFunction(dispatcher));
+        dispatcher.setLoadBalancer(loadBalancer);
+        return loadBalancer;
+    }
+
+    static Function<Request, PartitionedRequest, NeverThrowsException> newLatencyAwareLoadBalancerNextFunction(
+            final LatencyAwareDispatcher dispatcher) {
+        return new Function<Request, PartitionedRequest, NeverThrowsException>() {
+            @Override
+            public PartitionedRequest apply(final Request request) {
+                return new PartitionedRequest(request, dispatcher.selectServer());
+            }
+        };
+    }
+
+    static Function<TerminatedRequest, Void, NeverThrowsException> newLatencyAwareLoadBalancerEndOfRequestFunction(
+            final LatencyAwareDispatcher dispatcher) {
+        return new Function<TerminatedRequest, Void, NeverThrowsException>() {
+            @Override
+            public Void apply(final TerminatedRequest request) {
+                dispatcher.terminatedRequest(request);
+                return null;
+            }
+        };
+    }
+
+
     /**
      * Creates a new connection factory which forwards connection requests to
      * the provided factory, but whose {@code toString} method will always
@@ -0,0 +1,179 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.ldap;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.forgerock.opendj.ldap.RequestLoadBalancer.TerminatedRequest;
+
+/**
+ * Dispatches requests to servers based on their observed response times, using the "power of two choices" algorithm:
+ * two servers are picked at random and the request is sent to the one having the lowest cost, which is its
+ * exponentially weighted moving average (EWMA) response time multiplied by its number of active requests plus one.
+ * <p>
+ * The moving average is a "peak" EWMA: a response time greater than the average immediately replaces it, so that a
+ * server which starts responding slowly is avoided right away, whereas faster response times are only taken into
+ * account progressively. The average decays with time, so that a server which has been avoided for a while is
+ * eventually tried again.
+ * <p>
+ * A server whose last {@link #MAX_CONSECUTIVE_FAILURES} requests failed because it was unavailable is ejected by
+ * marking it offline in the load balancer, unless it is the last operational server. The load balancer's monitoring
+ * task then reinstates it as soon as a new connection can be established to it.
+ */
+final class LatencyAwareDispatcher {
+    /** Number of consecutive failures after which a server is ejected. */
+    static final int MAX_CONSECUTIVE_FAILURES = 5;
+    /** Time after which the weight of a response time in the moving average has decreased by a factor e. */
+    private static final long DECAY_TIME_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** Peak EWMA response time of each server. */
+    private final AtomicLongArray responseTimes;
+    /** {@link System#nanoTime()} at which each moving average was last updated. */
+    private final AtomicLongArray lastUpdateTimes;
+    private final AtomicLongArray activeRequests;
+    private final AtomicIntegerArray consecutiveFailures;
+    /** The load balancer using this dispatcher, or {@code null} if servers should never be ejected. */
+    private volatile LoadBalancer loadBalancer;
+
+    LatencyAwareDispatcher(final int numberOfServers) {
+        responseTimes = new AtomicLongArray(numberOfServers);
+        lastUpdateTimes = new AtomicLongArray(numberOfServers);
+        activeRequests = new AtomicLongArray(numberOfServers);
+        consecutiveFailures = new AtomicIntegerArray(numberOfServers);
+    }
+
+    void setLoadBalancer(final LoadBalancer loadBalancer) {
+        this.loadBalancer = loadBalancer;
+    }
+
+    int size() {
+        return activeRequests.length();
+    }
+
+    /**
+     * Returns the server index to use.
+     *
+     * @return the server index
+     */
+    int selectServer() {
+        return selectServer(System.nanoTime());
+    }
+
+    int selectServer(final long now) {
+        final int size = size();
+        int index = 0;
+        if (size > 1) {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+            final boolean isFirstOperational = isOperational(first);
+            if (isFirstOperational != isOperational(second)) {
+                // Let the load balancer's monitoring decide when an offline server may be used again.
+                index = isFirstOperational ? first : second;
+            } else {
+                index = cost(first, now) <= cost(second, now) ? first : second;
+            }
+        }
+        activeRequests.incrementAndGet(index);
+        return index;
+    }
+
+    /**
+     * Signals to this dispatcher that a request has been terminated.
+     *
+     * @param request
+     *            The terminated request.
+     */
+    void terminatedRequest(final TerminatedRequest request) {
+        final int index = request.getServerIndex();
+        if (index < 0) {
+            return;
+        }
+        activeRequests.decrementAndGet(index);
+        final LdapException error = request.getError();
+        if (error != null && isUnavailable(error.getResult().getResultCode())) {
+            // Fast failures must not make the server look more attractive, only slow ones are recorded.
+            updateResponseTime(index, request.getResponseTimeNanos(), request.getTerminationTimeNanos(), true);
+            if (consecutiveFailures.incrementAndGet(index) >= MAX_CONSECUTIVE_FAILURES) {
+                consecutiveFailures.set(index, 0);
+                eject(index, error);
+            }
+        } else {
+            updateResponseTime(index, request.getResponseTimeNanos(), request.getTerminationTimeNanos(), false);
+            consecutiveFailures.set(index, 0);
+        }
+    }
+
+    /** Returns the moving average response time of a server, decayed as of {@code now}. */
+    long getResponseTime(final int index, final long now) {
+        final long elapsed = Math.max(0, now - lastUpdateTimes.get(index));
+        return (long) (responseTimes.get(index) * Math.exp(-(double) elapsed / DECAY_TIME_NANOS));
+    }
+
+    private double cost(final int index, final long now) {
+        return (double) getResponseTime(index, now) * (activeRequests.get(index) + 1);
+    }
+
+    /** Modifications performed concurrently may be lost, the effects on the average are not dramatic. */
+    private void updateResponseTime(final int index, final long responseTime, final long now,
+            final boolean increaseOnly) {
+        final long average = getResponseTime(index, now);
+        if (responseTime >= average) {
+            responseTimes.set(index, responseTime);
+        } else if (!increaseOnly) {
+            final long elapsed = Math.max(0, now - lastUpdateTimes.get(index));
+            final double weight = Math.exp(-(double) elapsed / DECAY_TIME_NANOS);
+            responseTimes.set(index, (long) (responseTimes.get(index) * weight + responseTime * (1 - weight)));
+        } else {
+            return;
+        }
+        lastUpdateTimes.set(index, now);
+    }
+
+    private boolean isOperational(final int index) {
+        final LoadBalancer lb = loadBalancer;
+        return lb == null || lb.isOperational(index);
+    }
+
+    private void eject(final int index, final LdapException error) {
+        final LoadBalancer lb = loadBalancer;
+        if (lb == null) {
+            return;
+        }
+        // Never eject the last operational server: a slow or busy server is better than none.
+        for (int i = 0; i < lb.size(); i++) {
+            if (i != index && lb.isOperational(i)) {
+                lb.markOffline(index, error);
+                return;
+            }
+        }
+    }
+
+    /** Returns {@code true} if the result code indicates that the server could not process requests. */
+    private static boolean isUnavailable(final ResultCode resultCode) {
+        return resultCode == ResultCode.BUSY
+                || resultCode == ResultCode.UNAVAILABLE
+                || resultCode == ResultCode.CLIENT_SIDE_SERVER_DOWN
+                || resultCode == ResultCode.CLIENT_SIDE_TIMEOUT
+                || resultCode == ResultCode.CLIENT_SIDE_CONNECT_ERROR;
+    }
+}
@@ -291,6 +291,31 @@ abstract class LoadBalancer implements ConnectionFactory {
         throw newLdapException(CLIENT_SIDE_CONNECT_ERROR, "No operational connection factories available", lastFailure);
     }
 
+    /**
+     * Returns {@code true} if the connection factory at the provided index is currently considered operational.
+     *
+     * @param index The index of the connection factory.
+     * @return {@code true} if the connection factory at the provided index is currently considered operational.
+     */
+    final boolean isOperational(final int index) {
+        return monitoredFactories.get(index).isOperational.get();
+    }
+
+    /**
+     * Marks the connection factory at the provided index as offline, as if it had failed to return a connection, so
+     * that it is skipped until the monitoring task has successfully reconnected to it.
+     *
+     * @param index The index of the connection factory to be marked as offline.
+     * @param error The error which caused the connection factory to be considered as unavailable.
+     */
+    final void markOffline(final int index, final LdapException error) {
+        monitoredFactories.get(index).notifyOffline(error);
+    }
+
+    final int size() {
+        return monitoredFactories.size();
+    }
+
     final String getLoadBalancerName() {
         return loadBalancerName;
     }
@@ -65,13 +65,13 @@ final class RequestLoadBalancer extends LoadBalancer {
      */
     private final Function<Request, PartitionedRequest, NeverThrowsException> nextFactoryFunction;
     /** A function which is called after a request is terminated. */
-    private final Function<Integer, Void, NeverThrowsException> endOfRequestFunction;
+    private final Function<TerminatedRequest, Void, NeverThrowsException> endOfRequestFunction;
 
     RequestLoadBalancer(final String loadBalancerName,
                         final Collection<? extends ConnectionFactory> factories,
                         final Options options,
                         final Function<Request, PartitionedRequest, NeverThrowsException> nextFactoryFunction,
-                        final Function<Integer, Void, NeverThrowsException> endOfRequestFunction) {
+                        final Function<TerminatedRequest, Void, NeverThrowsException> endOfRequestFunction) {
         super(loadBalancerName, factories, options);
         this.nextFactoryFunction = nextFactoryFunction;
         this.endOfRequestFunction = endOfRequestFunction;
@@ -246,8 +246,8 @@ final class RequestLoadBalancer extends LoadBalancer {
             if (state.isClosed()) {
                 throw new IllegalStateException();
             }
+            final PartitionedRequest partitionedRequest = nextFactoryFunction.apply(request);
             try {
-                final PartitionedRequest partitionedRequest = nextFactoryFunction.apply(request);
                 final ConnectionFactory factory = getMonitoredConnectionFactory(partitionedRequest.getServerIndex());
                 return new ConnectionContext(
                         LdapPromises.asPromise(factory.getConnectionAsync()
@@ -260,7 +260,8 @@ final class RequestLoadBalancer extends LoadBalancer {
             } catch (final LdapException e) {
                 state.notifyConnectionError(false, e);
                 LdapPromise<Connection> failedLdapPromise = newFailedLdapPromise(e);
-                return new ConnectionContext(failedLdapPromise, new PartitionedRequest(request, -1));
+                // Keep the selected server index so that the end of request function can release it.
+                return new ConnectionContext(failedLdapPromise, partitionedRequest);
             }
         }
 
@@ -274,11 +275,17 @@ final class RequestLoadBalancer extends LoadBalancer {
                         }
                     })
                     .thenAsync(requestSender)
+                    .thenOnException(new ExceptionHandler<LdapException>() {
+                        @Override
+                        public void handleException(final LdapException e) {
+                            connectionContext.setError(e);
+                        }
+                    })
                     .thenFinally(new Runnable() {
                         @Override
                         public void run() {
                             closeSilently(connectionContext.getConnection());
-                            endOfRequestFunction.apply(connectionContext.getServerIndex());
+                            endOfRequestFunction.apply(connectionContext.terminate());
                         }
                     });
         }
@@ -304,17 +311,63 @@ final class RequestLoadBalancer extends LoadBalancer {
         }
     }
 
+    /** Utility class describing the outcome of a request sent to a server. */
+    static class TerminatedRequest {
+        /** The index of server chosen for the request. */
+        private final int serverIndex;
+        private final long responseTimeNanos;
+        private final long terminationTimeNanos;
+        private final LdapException error;
+
+        TerminatedRequest(int serverIndex, long responseTimeNanos, long terminationTimeNanos, LdapException error) {
+            this.serverIndex = serverIndex;
+            this.responseTimeNanos = responseTimeNanos;
+            this.terminationTimeNanos = terminationTimeNanos;
+            this.error = error;
+        }
+
+        int getServerIndex() {
+            return serverIndex;
+        }
+
+        /** Returns the time elapsed between the selection of the server and the termination of the request. */
+        long getResponseTimeNanos() {
+            return responseTimeNanos;
+        }
+
+        /** Returns the {@link System#nanoTime()} at which the request terminated. */
+        long getTerminationTimeNanos() {
+            return terminationTimeNanos;
+        }
+
+        /** Returns the error which caused the request to fail, or {@code null} if it succeeded. */
+        LdapException getError() {
+            return error;
+        }
+    }
+
     /** Utility class to hold together parameters for a request and the connection used to perform it. */
     private static class ConnectionContext {
         private final AtomicReference<Connection> connectionHolder = new AtomicReference<>();
         private final LdapPromise<Connection> connectionPromise;
         private final PartitionedRequest partitionedRequest;
+        private final long startTimeNanos = System.nanoTime();
+        private volatile LdapException error;
 
         ConnectionContext(LdapPromise<Connection> connectionPromise, PartitionedRequest partitionedRequest) {
             this.partitionedRequest = partitionedRequest;
             this.connectionPromise = connectionPromise;
         }
 
+        void setError(LdapException error) {
+            this.error = error;
+        }
+
+        TerminatedRequest terminate() {
+            final long now = System.nanoTime();
+            return new TerminatedRequest(getServerIndex(), now - startTimeNanos, now, error);
+        }
+
         Connection getConnection() {
             return connectionHolder.get();
         }
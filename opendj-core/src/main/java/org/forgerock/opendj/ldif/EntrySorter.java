@@ -0,0 +1,246 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.ldif;
+
+import static org.forgerock.opendj.ldif.LDIF.*;
+import static org.forgerock.util.Utils.closeSilently;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.forgerock.opendj.ldap.Entry;
+
+/**
+ * Sorts entries by normalized DN, spilling sorted runs of entries to temporary files whenever the entries held in
+ * memory exceed a configurable size. The sorted entries are then read by merging the runs, so that the number of
+ * entries which can be sorted is only limited by the available disk space.
+ * <p>
+ * Entries having the same DN are returned in the order in which they have been added.
+ */
+final class EntrySorter implements Closeable {
+    /** Estimated memory used by an encoded entry in addition to its DN and content. */
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    /** A sorted run of entries stored in a temporary file. */
+    private static final class Run implements Closeable {
+        private final int index;
+        private final DataInputStream in;
+        /** The encoded DN and entry read last, or {@code null} if the end of the run has been reached. */
+        private byte[][] current;
+
+        private Run(final int index, final File file) throws IOException {
+            this.index = index;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), RUN_BUFFER_SIZE));
+            next();
+        }
+
+        private void next() throws IOException {
+            final int dnLength;
+            try {
+                dnLength = in.readInt();
+            } catch (final EOFException e) {
+                current = null;
+                in.close();
+                return;
+            }
+            final byte[][] entry = new byte[2][];
+            entry[0] = new byte[dnLength];
+            in.readFully(entry[0]);
+            entry[1] = new byte[in.readInt()];
+            in.readFully(entry[1]);
+            current = entry;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /** Orders runs by the DN of their current entry, then by creation order so that sorting remains stable. */
+    private static final Comparator<Run> RUN_ORDER = new Comparator<Run>() {
+        @Override
+        public int compare(final Run r1, final Run r2) {
+            final int cmp = DN_ORDER2.compare(r1.current, r2.current);
+            return cmp != 0 ? cmp : Integer.compare(r1.index, r2.index);
+        }
+    };
+
+    /** Reads the sorted entries by merging all the runs. */
+    private final class MergingEntryReader implements EntryReader {
+        private final PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(1, runFiles.size()), RUN_ORDER);
+
+        private MergingEntryReader() throws IOException {
+            for (final File file : runFiles) {
+                final Run run = new Run(runs.size(), file);
+                runs.add(run);
+                if (run.current != null) {
+                    queue.add(run);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            EntrySorter.this.close();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Entry readEntry() throws IOException {
+            final Run run = queue.poll();
+            if (run == null) {
+                throw new NoSuchElementException();
+            }
+            final byte[][] entry = run.current;
+            run.next();
+            if (run.current != null) {
+                queue.add(run);
+            }
+            return decodeEntry(entry[1]);
+        }
+    }
+
+    /** Reads the sorted entries when all of them could be held in memory. */
+    private final class InMemoryEntryReader implements EntryReader {
+        private final Iterator<byte[][]> iterator = buffer.iterator();
+
+        @Override
+        public void close() throws IOException {
+            EntrySorter.this.close();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Entry readEntry() {
+            return decodeEntry(iterator.next()[1]);
+        }
+    }
+
+    private final File tempDirectory;
+    private final long maxBufferSize;
+    private final List<byte[][]> buffer = new ArrayList<>();
+    private long bufferSize;
+    private final List<File> runFiles = new ArrayList<>();
+    private final List<Run> runs = new ArrayList<>();
+
+    /**
+     * Creates a new entry sorter.
+     *
+     * @param tempDirectory
+     *            The directory where runs are written, or {@code null} if the default temporary directory should be
+     *            used.
+     * @param maxBufferSize
+     *            The approximate amount of memory, in bytes, that the entries held in memory may use.
+     */
+    EntrySorter(final File tempDirectory, final long maxBufferSize) {
+        this.tempDirectory = tempDirectory;
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * Reads all the entries of the provided reader and returns a reader returning them sorted by DN. Closing the
+     * returned reader deletes the temporary files used for sorting, but does not close the provided reader.
+     * <p>
+     * The sort stops, deleting the temporary files written so far, if the current thread is interrupted.
+     *
+     * @param reader
+     *            The reader whose entries should be sorted.
+     * @return A reader returning the entries sorted by DN.
+     * @throws IOException
+     *             If an error occurs while reading the entries or while writing or reading the temporary files,
+     *             or if the current thread is interrupted.
+     */
+    EntryReader sort(final EntryReader reader) throws IOException {
+        try {
+            while (reader.hasNext()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException();
+                }
+                final byte[][] entry = encodeEntry(reader.readEntry());
+                buffer.add(entry);
+                bufferSize += entry[0].length + entry[1].length + ENTRY_OVERHEAD;
+                if (bufferSize >= maxBufferSize) {
+                    writeRun();
+                }
+            }
+            if (runFiles.isEmpty()) {
+                Collections.sort(buffer, DN_ORDER2);
+                return new InMemoryEntryReader();
+            }
+            if (!buffer.isEmpty()) {
+                writeRun();
+            }
+            return new MergingEntryReader();
+        } catch (final IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void writeRun() throws IOException {
+        Collections.sort(buffer, DN_ORDER2);
+        final File file = File.createTempFile("ldif-sort", ".run", tempDirectory);
+        runFiles.add(file);
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), RUN_BUFFER_SIZE))) {
+            for (final byte[][] entry : buffer) {
+                out.writeInt(entry[0].length);
+                out.write(entry[0]);
+                out.writeInt(entry[1].length);
+                out.write(entry[1]);
+            }
+        }
+        buffer.clear();
+        bufferSize = 0;
+    }
+
+    @Override
+    public void close() {
+        closeSilently(runs);
+        runs.clear();
+        for (final File file : runFiles) {
+            file.delete();
+        }
+        runFiles.clear();
+        buffer.clear();
+    }
+}
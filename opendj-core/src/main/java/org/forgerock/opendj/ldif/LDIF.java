@@ -18,11 +18,12 @@ package org.forgerock.opendj.ldif;
 import static com.forgerock.opendj.ldap.CoreMessages.*;
 import static org.forgerock.opendj.ldap.LdapException.newLdapException;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -30,6 +31,9 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.forgerock.i18n.LocalizedIllegalArgumentException;
 import org.forgerock.opendj.io.ASN1;
@@ -60,6 +64,7 @@ import org.forgerock.opendj.ldap.requests.Requests;
 import org.forgerock.opendj.ldap.requests.SearchRequest;
 import org.forgerock.opendj.ldap.schema.AttributeUsage;
 import org.forgerock.opendj.ldap.schema.Schema;
+import org.forgerock.util.Utils;
 
 /**
  * This class contains common utility methods for creating and manipulating
@@ -82,7 +87,7 @@ public final class LDIF {
     /**
      * Comparator ordering the DN ASC.
      */
-    private static final Comparator<byte[][]> DN_ORDER2 = new Comparator<byte[][]>() {
+    static final Comparator<byte[][]> DN_ORDER2 = new Comparator<byte[][]>() {
         @Override
         public int compare(byte[][] b1, byte[][] b2) {
             return DN_ORDER.compare(b1[0], b2[0]);
@@ -150,7 +155,8 @@ public final class LDIF {
      * <b>NOTE:</b> this method reads the content of {@code source} and
      * {@code target} into memory before calculating the differences, and is
      * therefore not suited for use in cases where a very large number of
-     * entries are to be compared.
+     * entries are to be compared. Use
+     * {@link #diff(EntryReader, EntryReader, File, long)} in such cases.
      *
      * @param source
      *            The entry reader containing the source entries to be compared.
@@ -162,22 +168,115 @@ public final class LDIF {
      */
     public static ChangeRecordReader diff(final EntryReader source, final EntryReader target)
             throws IOException {
+        final EntrySorter sourceSorter = new EntrySorter(null, Long.MAX_VALUE);
+        final EntrySorter targetSorter = new EntrySorter(null, Long.MAX_VALUE);
+        return newDiffReader(source, sourceSorter.sort(source), target, targetSorter.sort(target));
+    }
 
-        final List<byte[][]> source2 = readEntriesAsList(source);
-        final List<byte[][]> target2 = readEntriesAsList(target);
-        final Iterator<byte[][]> sourceIterator = source2.iterator();
-        final Iterator<byte[][]> targetIterator = target2.iterator();
+    /**
+     * Compares the content of {@code source} to the content of {@code target}
+     * and returns the differences in a change record reader, without holding
+     * more than a bounded number of entries in memory. Closing the returned
+     * reader will cause {@code source} and {@code target} to be closed as well.
+     * <p>
+     * The entries of {@code source} and {@code target} are read concurrently
+     * and sorted by DN using temporary files: whenever the entries read from
+     * one of the readers use more than {@code maxMemorySize} bytes of memory,
+     * they are sorted and written to a temporary file. The differences are
+     * then computed by merging the sorted temporary files. The temporary files
+     * are deleted when the returned reader is closed.
+     *
+     * @param source
+     *            The entry reader containing the source entries to be compared.
+     * @param target
+     *            The entry reader containing the target entries to be compared.
+     * @param tempDirectory
+     *            The directory where the temporary files should be created, or
+     *            {@code null} if the default temporary directory should be
+     *            used.
+     * @param maxMemorySize
+     *            The approximate amount of memory, in bytes, that the entries
+     *            read from each reader may use before being written to a
+     *            temporary file.
+     * @return A change record reader containing the differences.
+     * @throws IOException
+     *             If an unexpected IO error occurred.
+     */
+    public static ChangeRecordReader diff(final EntryReader source, final EntryReader target,
+            final File tempDirectory, final long maxMemorySize) throws IOException {
+        final EntrySorter sourceSorter = new EntrySorter(tempDirectory, maxMemorySize);
+        final EntrySorter targetSorter = new EntrySorter(tempDirectory, maxMemorySize);
+        final FutureTask<EntryReader> sortedTarget = new FutureTask<>(new Callable<EntryReader>() {
+            @Override
+            public EntryReader call() throws IOException {
+                return targetSorter.sort(target);
+            }
+        });
+        final Thread targetSorterThread =
+                Utils.newThreadFactory(null, "OpenDJ LDAP SDK LDIF Diff Sorter", true).newThread(sortedTarget);
+        targetSorterThread.start();
 
+        boolean succeeded = false;
+        try {
+            final EntryReader sortedSource = sourceSorter.sort(source);
+            final ChangeRecordReader reader = newDiffReader(source, sortedSource, target, sortedTarget.get());
+            succeeded = true;
+            return reader;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (!succeeded) {
+                // The target sorter may still be writing temporary files until its thread has ended
+                sortedTarget.cancel(true);
+                joinUninterruptibly(targetSorterThread);
+                sourceSorter.close();
+                targetSorter.close();
+            }
+        }
+    }
+
+    /** Waits for the provided thread to end, preserving the interrupted status of the current thread. */
+    private static void joinUninterruptibly(final Thread thread) {
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                thread.join();
+                break;
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Returns the differences between entries sorted by DN. */
+    private static ChangeRecordReader newDiffReader(final EntryReader source, final EntryReader sortedSource,
+            final EntryReader target, final EntryReader sortedTarget) throws IOException {
         return new ChangeRecordReader() {
-            private Entry sourceEntry = nextEntry(sourceIterator);
-            private Entry targetEntry = nextEntry(targetIterator);
+            private Entry sourceEntry = nextEntry(sortedSource);
+            private Entry targetEntry = nextEntry(sortedTarget);
 
             @Override
             public void close() throws IOException {
                 try {
                     source.close();
                 } finally {
-                    target.close();
+                    try {
+                        target.close();
+                    } finally {
+                        Utils.closeSilently(sortedSource, sortedTarget);
+                    }
                 }
             }
 
@@ -197,39 +296,39 @@ public final class LDIF {
                         // Modify record: entry in both source and target.
                         final ModifyRequest request =
                                 Requests.newModifyRequest(sourceEntry, targetEntry);
-                        sourceEntry = nextEntry(sourceIterator);
-                        targetEntry = nextEntry(targetIterator);
+                        sourceEntry = nextEntry(sortedSource);
+                        targetEntry = nextEntry(sortedTarget);
                         return request;
                     } else if (cmp < 0) {
                         // Delete record: entry in source but not in target.
                         final DeleteRequest request =
                                 Requests.newDeleteRequest(sourceEntry.getName());
-                        sourceEntry = nextEntry(sourceIterator);
+                        sourceEntry = nextEntry(sortedSource);
                         return request;
                     } else {
                         // Add record: entry in target but not in source.
                         final AddRequest request = Requests.newAddRequest(targetEntry);
-                        targetEntry = nextEntry(targetIterator);
+                        targetEntry = nextEntry(sortedTarget);
                         return request;
                     }
                 } else if (sourceEntry != null) {
                     // Delete remaining source records.
                     final DeleteRequest request = Requests.newDeleteRequest(sourceEntry.getName());
-                    sourceEntry = nextEntry(sourceIterator);
+                    sourceEntry = nextEntry(sortedSource);
                     return request;
                 } else if (targetEntry != null) {
                     // Add remaining target records.
                     final AddRequest request = Requests.newAddRequest(targetEntry);
-                    targetEntry = nextEntry(targetIterator);
+                    targetEntry = nextEntry(sortedTarget);
                     return request;
                 } else {
                     throw new NoSuchElementException();
                 }
             }
 
-            private Entry nextEntry(final Iterator<byte[][]> i) {
-                if (i.hasNext()) {
-                    return decodeEntry(i.next()[1]);
+            private Entry nextEntry(final EntryReader sortedEntries) throws IOException {
+                if (sortedEntries.hasNext()) {
+                    return sortedEntries.readEntry();
                 }
                 return null;
             }
@@ -829,19 +928,6 @@ public final class LDIF {
         }
     }
 
-    private static List<byte[][]> readEntriesAsList(final EntryReader reader) throws IOException {
-        final List<byte[][]> entries = new ArrayList<>();
-
-        while (reader.hasNext()) {
-            final Entry entry = reader.readEntry();
-            entries.add(encodeEntry(entry));
-        }
-        // Sorting the list by DN
-        Collections.sort(entries, DN_ORDER2);
-
-        return entries;
-    }
-
     private static TreeMap<byte[], byte[]> readEntriesAsMap(final EntryReader reader)
             throws IOException {
         final TreeMap<byte[], byte[]> entries = new TreeMap<>(DN_ORDER);
@@ -855,7 +941,7 @@ public final class LDIF {
         return entries;
     }
 
-    private static Entry decodeEntry(final byte[] asn1EntryFormat) {
+    static Entry decodeEntry(final byte[] asn1EntryFormat) {
         try {
             return LDAP.readEntry(ASN1.getReader(asn1EntryFormat), new DecodeOptions());
         } catch (IOException ex) {
@@ -867,7 +953,7 @@ public final class LDIF {
         return dn.toNormalizedByteString().toByteArray();
     }
 
-    private static byte[][] encodeEntry(final Entry entry) {
+    static byte[][] encodeEntry(final Entry entry) {
         final byte[][] bEntry = new byte[2][];
         // Store normalized DN
         bEntry[0] = toNormalizedByteArray(entry.getName());
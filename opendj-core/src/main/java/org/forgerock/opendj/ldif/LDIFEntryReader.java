@@ -20,11 +20,23 @@ import static com.forgerock.opendj.ldap.CoreMessages.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.LocalizedIllegalArgumentException;
@@ -37,6 +49,7 @@ import org.forgerock.opendj.ldap.Matcher;
 import org.forgerock.opendj.ldap.schema.Schema;
 import org.forgerock.opendj.ldap.schema.SchemaValidationPolicy;
 import org.forgerock.util.Reject;
+import org.forgerock.util.Utils;
 
 /**
  * An LDIF entry reader reads attribute value records (entries) using the LDAP
@@ -92,8 +105,36 @@ public final class LDIFEntryReader extends AbstractLDIFReader implements EntryRe
         }
     }
 
+    /** Number of LDIF records decoded at once by a thread when several threads are used. */
+    private static final int CHUNK_SIZE = 256;
+
+    /** The outcome of decoding an LDIF record, whose listener notifications have not been performed yet. */
+    private static final class DecodedRecord {
+        private final LDIFRecord record;
+        /** The decoded entry, or {@code null} if the record is a version record or has been rejected. */
+        private Entry entry;
+        private LocalizableMessage skippedMessage;
+        private LocalizableMessage malformedMessage;
+        private boolean schemaValidationFailure;
+        private final List<LocalizableMessage> schemaErrors = new LinkedList<>();
+
+        private DecodedRecord(final LDIFRecord record) {
+            this.record = record;
+        }
+    }
+
     private Entry nextEntry;
 
+    private int numberOfThreads = 1;
+    private boolean preserveOrder = true;
+    /** The following fields are only used when entries are decoded by several threads. */
+    private ExecutorService decoders;
+    private final Deque<Future<List<DecodedRecord>>> pendingChunks = new ArrayDeque<>();
+    private CompletionService<List<DecodedRecord>> decodedChunks;
+    private int pendingChunkCount;
+    private Iterator<DecodedRecord> currentChunk;
+    private boolean isSourceExhausted;
+
     /**
      * Creates a new LDIF entry reader whose source is the provided input
      * stream.
@@ -148,6 +189,9 @@ public final class LDIFEntryReader extends AbstractLDIFReader implements EntryRe
 
     @Override
     public void close() throws IOException {
+        if (decoders != null) {
+            decoders.shutdownNow();
+        }
         close0();
     }
 
@@ -349,7 +393,53 @@ public final class LDIFEntryReader extends AbstractLDIFReader implements EntryRe
         return this;
     }
 
+    /**
+     * Specifies the number of threads which should be used for decoding
+     * entries. The default is {@code 1}, which means that entries are decoded
+     * by the thread reading them.
+     * <p>
+     * When several threads are used, the LDIF source is still read and split
+     * into records by the thread reading entries, but records are decoded by a
+     * pool of threads, at most a few thousand records ahead of the entry being
+     * read. The rejected record listener is always notified by the thread
+     * reading entries.
+     *
+     * @param numberOfThreads
+     *            The number of threads which should be used for decoding
+     *            entries.
+     * @return A reference to this {@code LDIFEntryReader}.
+     * @throws IllegalArgumentException
+     *             If {@code numberOfThreads} is less than {@code 1}.
+     */
+    public LDIFEntryReader setNumberOfThreads(final int numberOfThreads) {
+        Reject.ifFalse(numberOfThreads >= 1, "numberOfThreads < 1");
+        this.numberOfThreads = numberOfThreads;
+        return this;
+    }
+
+    /**
+     * Specifies whether entries decoded by several threads should be returned
+     * in the order in which they appear in the LDIF source. The default is
+     * {@code true}. Returning entries as soon as they are decoded avoids
+     * waiting for large entries, but the order of entries, and of rejected
+     * records notifications, is then unspecified. This setting has no effect
+     * when a single thread is used.
+     *
+     * @param preserveOrder
+     *            {@code true} if entries should be returned in the order in
+     *            which they appear in the LDIF source.
+     * @return A reference to this {@code LDIFEntryReader}.
+     * @see #setNumberOfThreads(int)
+     */
+    public LDIFEntryReader setPreserveOrder(final boolean preserveOrder) {
+        this.preserveOrder = preserveOrder;
+        return this;
+    }
+
     private Entry getNextEntry() throws DecodeException, IOException {
+        if (numberOfThreads > 1) {
+            return getNextEntryInParallel();
+        }
         while (nextEntry == null) {
             // Read the set of lines that make up the next entry.
             final LDIFRecord record = readLDIFRecord();
@@ -357,64 +447,164 @@ public final class LDIFEntryReader extends AbstractLDIFReader implements EntryRe
                 nextEntry = EOF;
                 break;
             }
+            nextEntry = acceptRecord(decodeRecord(record));
+        }
+        return nextEntry;
+    }
 
-            try {
-                /* Read the DN of the entry and see if it is one that should be included in the import. */
-                final DN entryDN = readLDIFRecordDN(record);
-                if (entryDN == null) {
-                    // Skip version record.
-                    continue;
-                }
+    private Entry getNextEntryInParallel() throws DecodeException, IOException {
+        while (nextEntry == null) {
+            if (currentChunk != null && currentChunk.hasNext()) {
+                nextEntry = acceptRecord(currentChunk.next());
+                continue;
+            }
+            submitChunks();
+            if (pendingChunkCount == 0) {
+                nextEntry = EOF;
+                decoders.shutdown();
+                break;
+            }
+            currentChunk = takeChunk().iterator();
+        }
+        return nextEntry;
+    }
 
-                // Skip if branch containing the entry DN is excluded.
-                if (isBranchExcluded(entryDN)) {
-                    final LocalizableMessage message =
-                            ERR_LDIF_ENTRY_EXCLUDED_BY_DN
-                                    .get(record.lineNumber, entryDN.toString());
-                    handleSkippedRecord(record, message);
-                    continue;
+    /** Keeps the decoding threads busy until the end of the LDIF source has been reached. */
+    private void submitChunks() throws DecodeException, IOException {
+        if (decoders == null) {
+            decoders = Executors.newFixedThreadPool(numberOfThreads,
+                    Utils.newThreadFactory(null, "OpenDJ LDAP SDK LDIF Decoder %d", true));
+            if (!preserveOrder) {
+                decodedChunks = new ExecutorCompletionService<>(decoders);
+            }
+        }
+        final int maxPendingChunks = 2 * numberOfThreads;
+        while (!isSourceExhausted && pendingChunkCount < maxPendingChunks) {
+            final List<LDIFRecord> records = new ArrayList<>(CHUNK_SIZE);
+            LDIFRecord record;
+            while (records.size() < CHUNK_SIZE && (record = readLDIFRecord()) != null) {
+                records.add(record);
+            }
+            if (records.size() < CHUNK_SIZE) {
+                isSourceExhausted = true;
+                if (records.isEmpty()) {
+                    break;
                 }
-
-                // Use an Entry for the AttributeSequence.
-                final Entry entry = new LinkedHashMapEntry(entryDN);
-                boolean schemaValidationFailure = false;
-                final List<LocalizableMessage> schemaErrors = new LinkedList<>();
-                while (record.iterator.hasNext()) {
-                    final String ldifLine = record.iterator.next();
-                    if (!readLDIFRecordAttributeValue(record, ldifLine, entry, schemaErrors)) {
-                        schemaValidationFailure = true;
+            }
+            final Callable<List<DecodedRecord>> task = new Callable<List<DecodedRecord>>() {
+                @Override
+                public List<DecodedRecord> call() {
+                    final List<DecodedRecord> decodedRecords = new ArrayList<>(records.size());
+                    for (final LDIFRecord ldifRecord : records) {
+                        decodedRecords.add(decodeRecord(ldifRecord));
                     }
+                    return decodedRecords;
                 }
+            };
+            if (preserveOrder) {
+                pendingChunks.add(decoders.submit(task));
+            } else {
+                decodedChunks.submit(task);
+            }
+            pendingChunkCount++;
+        }
+    }
 
-                // Skip if the entry is excluded by any filters.
-                if (isEntryExcluded(entry)) {
-                    final LocalizableMessage message =
-                            ERR_LDIF_ENTRY_EXCLUDED_BY_FILTER.get(record.lineNumber, entryDN
-                                    .toString());
-                    handleSkippedRecord(record, message);
-                    continue;
-                }
+    private List<DecodedRecord> takeChunk() throws IOException {
+        try {
+            final Future<List<DecodedRecord>> chunk = preserveOrder ? pendingChunks.remove() : decodedChunks.take();
+            pendingChunkCount--;
+            return chunk.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
 
-                if (!schema.validateEntry(entry, schemaValidationPolicy, schemaErrors)) {
-                    schemaValidationFailure = true;
-                }
+    /**
+     * Decodes an LDIF record without notifying the rejected record listener, so
+     * that records can be decoded by any thread.
+     */
+    private DecodedRecord decodeRecord(final LDIFRecord record) {
+        final DecodedRecord decodedRecord = new DecodedRecord(record);
+        try {
+            /* Read the DN of the entry and see if it is one that should be included in the import. */
+            final DN entryDN = readLDIFRecordDN(record);
+            if (entryDN == null) {
+                // Skip version record.
+                return decodedRecord;
+            }
 
-                if (schemaValidationFailure) {
-                    handleSchemaValidationFailure(record, schemaErrors);
-                    continue;
-                }
+            // Skip if branch containing the entry DN is excluded.
+            if (isBranchExcluded(entryDN)) {
+                decodedRecord.skippedMessage =
+                        ERR_LDIF_ENTRY_EXCLUDED_BY_DN.get(record.lineNumber, entryDN.toString());
+                return decodedRecord;
+            }
 
-                if (!schemaErrors.isEmpty()) {
-                    handleSchemaValidationWarning(record, schemaErrors);
+            // Use an Entry for the AttributeSequence.
+            final Entry entry = new LinkedHashMapEntry(entryDN);
+            while (record.iterator.hasNext()) {
+                final String ldifLine = record.iterator.next();
+                if (!readLDIFRecordAttributeValue(record, ldifLine, entry, decodedRecord.schemaErrors)) {
+                    decodedRecord.schemaValidationFailure = true;
                 }
+            }
 
-                nextEntry = entry;
-            } catch (final DecodeException e) {
-                handleMalformedRecord(record, e.getMessageObject());
-                continue;
+            // Skip if the entry is excluded by any filters.
+            if (isEntryExcluded(entry)) {
+                decodedRecord.skippedMessage =
+                        ERR_LDIF_ENTRY_EXCLUDED_BY_FILTER.get(record.lineNumber, entryDN.toString());
+                return decodedRecord;
+            }
+
+            if (!schema.validateEntry(entry, schemaValidationPolicy, decodedRecord.schemaErrors)) {
+                decodedRecord.schemaValidationFailure = true;
             }
+            decodedRecord.entry = entry;
+        } catch (final DecodeException e) {
+            decodedRecord.malformedMessage = e.getMessageObject();
         }
+        return decodedRecord;
+    }
 
-        return nextEntry;
+    /**
+     * Notifies the rejected record listener if needed and returns the decoded
+     * entry, or {@code null} if the record has been rejected.
+     */
+    private Entry acceptRecord(final DecodedRecord decodedRecord) throws DecodeException {
+        final LDIFRecord record = decodedRecord.record;
+        if (decodedRecord.malformedMessage != null) {
+            handleMalformedRecord(record, decodedRecord.malformedMessage);
+            return null;
+        }
+        try {
+            if (decodedRecord.skippedMessage != null) {
+                handleSkippedRecord(record, decodedRecord.skippedMessage);
+                return null;
+            } else if (decodedRecord.entry == null) {
+                // Version record.
+                return null;
+            } else if (decodedRecord.schemaValidationFailure) {
+                handleSchemaValidationFailure(record, decodedRecord.schemaErrors);
+                return null;
+            }
+
+            if (!decodedRecord.schemaErrors.isEmpty()) {
+                handleSchemaValidationWarning(record, decodedRecord.schemaErrors);
+            }
+            return decodedRecord.entry;
+        } catch (final DecodeException e) {
+            handleMalformedRecord(record, e.getMessageObject());
+            return null;
+        }
     }
 }
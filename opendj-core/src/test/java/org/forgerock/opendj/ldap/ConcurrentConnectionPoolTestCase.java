@@ -0,0 +1,209 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.ldap;
+
+import static org.fest.assertions.Assertions.*;
+import static org.forgerock.opendj.ldap.LdapException.*;
+import static org.forgerock.opendj.ldap.TestCaseUtils.*;
+import static org.mockito.Mockito.*;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.util.promise.Promise;
+import org.testng.annotations.Test;
+
+/** Tests the lock-free connection pool implementation. */
+@SuppressWarnings("javadoc")
+public class ConcurrentConnectionPoolTestCase extends SdkTestCase {
+
+    @Test
+    public void testWarmUp() throws Exception {
+        final Connection connection1 = mockValidConnection();
+        final Connection connection2 = mockValidConnection();
+        final ConnectionFactory factory = mockConnectionFactory(connection1, connection2);
+        final MockScheduler scheduler = new MockScheduler();
+        final ConcurrentConnectionPool pool = newPool(factory, 2, 4, 0, scheduler);
+        assertThat(scheduler.isScheduled()).isTrue();
+        assertThat(pool.currentPoolSize()).isEqualTo(0);
+
+        scheduler.runFirstTask();
+        assertThat(pool.currentPoolSize()).isEqualTo(2);
+        assertThat(pool.getIdleConnectionCount()).isEqualTo(2);
+
+        // Warm connections are used without opening new ones.
+        final Connection c1 = pool.getConnection();
+        final Connection c2 = pool.getConnection();
+        verify(factory, times(2)).getConnectionAsync();
+        assertThat(pool.getActiveConnectionCount()).isEqualTo(2);
+        c1.close();
+        c2.close();
+
+        pool.close();
+        verify(connection1).close();
+        verify(connection2).close();
+        assertThat(scheduler.isScheduled()).isFalse();
+    }
+
+    @Test
+    public void testMostRecentlyReleasedConnectionIsReused() throws Exception {
+        final Connection connection1 = mockValidConnection();
+        final Connection connection2 = mockValidConnection();
+        final ConnectionFactory factory = mockConnectionFactory(connection1, connection2);
+        final ConcurrentConnectionPool pool = newPool(factory, 0, 2, 0, new MockScheduler());
+
+        final Connection c1 = pool.getConnection();
+        final Connection c2 = pool.getConnection();
+        c1.close();
+        c2.close();
+        assertThat(pool.getIdleConnectionCount()).isEqualTo(2);
+
+        // connection2 was released last.
+        pool.getConnection().abandonAsync(null);
+        verify(connection2).abandonAsync(null);
+        verify(connection1, never()).abandonAsync(null);
+        verify(factory, times(2)).getConnectionAsync();
+        pool.close();
+    }
+
+    @Test
+    public void testReleasedConnectionIsHandedToWaitingRequest() throws Exception {
+        final Connection connection = mockValidConnection();
+        final ConnectionFactory factory = mockConnectionFactory(connection);
+        final ConcurrentConnectionPool pool = newPool(factory, 0, 1, 0, new MockScheduler());
+
+        final Connection c1 = pool.getConnection();
+        final Promise<? extends Connection, LdapException> promise = pool.getConnectionAsync();
+        assertThat(promise.isDone()).isFalse();
+
+        c1.close();
+        assertThat(promise.isDone()).isTrue();
+        promise.get().close();
+        verify(factory, times(1)).getConnectionAsync();
+        verify(connection, never()).close();
+        pool.close();
+    }
+
+    @Test
+    public void testConnectionReportingErrorIsDiscarded() throws Exception {
+        final List<ConnectionEventListener> listeners = new LinkedList<>();
+        final Connection connection = mockConnection(listeners);
+        when(connection.isValid()).thenReturn(true);
+        final ConnectionFactory factory = mockConnectionFactory(connection);
+        final ConcurrentConnectionPool pool = newPool(factory, 0, 1, 0, new MockScheduler());
+
+        final Connection c1 = pool.getConnection();
+        final ConnectionEventListener listener = mock(ConnectionEventListener.class);
+        c1.addConnectionEventListener(listener);
+        assertThat(listeners).hasSize(1);
+        listeners.get(0).handleConnectionError(false, newLdapException(ResultCode.CLIENT_SIDE_SERVER_DOWN));
+        verify(listener).handleConnectionError(eq(false), isA(ConnectionException.class));
+
+        c1.close();
+        verify(connection).close();
+        assertThat(listeners).isEmpty();
+        assertThat(pool.currentPoolSize()).isEqualTo(0);
+        pool.close();
+    }
+
+    @Test
+    public void testIdleConnectionsArePurged() throws Exception {
+        final Connection connection1 = mockValidConnection();
+        final Connection connection2 = mockValidConnection();
+        final Connection connection3 = mockValidConnection();
+        final ConnectionFactory factory = mockConnectionFactory(connection1, connection2, connection3);
+        final MockScheduler scheduler = new MockScheduler();
+        final ConcurrentConnectionPool pool = newPool(factory, 1, 3, 100, scheduler);
+
+        final Connection c1 = pool.getConnection();
+        final Connection c2 = pool.getConnection();
+        final Connection c3 = pool.getConnection();
+        c1.close();
+        c2.close();
+        c3.close();
+        assertThat(pool.currentPoolSize()).isEqualTo(3);
+
+        when(pool.timeService.now()).thenReturn(50L);
+        scheduler.runFirstTask();
+        assertThat(pool.currentPoolSize()).isEqualTo(3);
+
+        // The least recently used non-core connections are closed first.
+        when(pool.timeService.now()).thenReturn(150L);
+        scheduler.runFirstTask();
+        assertThat(pool.currentPoolSize()).isEqualTo(1);
+        verify(connection1).close();
+        verify(connection2).close();
+        verify(connection3, never()).close();
+
+        pool.close();
+        verify(connection3).close();
+    }
+
+    @Test
+    public void testWaitTimesAreRecorded() throws Exception {
+        final Connection connection = mockValidConnection();
+        final ConnectionFactory factory = mockConnectionFactory(connection);
+        final ConcurrentConnectionPool pool = newPool(factory, 0, 1, 0, new MockScheduler());
+
+        final Connection c1 = pool.getConnection();
+        final Promise<? extends Connection, LdapException> promise = pool.getConnectionAsync();
+        when(pool.timeService.now()).thenReturn(20L);
+        c1.close();
+        promise.get().close();
+
+        assertThat(pool.getWaitTimeHistogram()).isEqualTo(new long[] { 1, 0, 1, 0, 0 });
+        assertThat(pool.toString()).contains("<1ms:1").contains("<100ms:1");
+        pool.close();
+    }
+
+    @Test
+    public void testCloseFailsWaitingRequests() throws Exception {
+        final Connection connection = mockValidConnection();
+        final ConnectionFactory factory = mockConnectionFactory(connection);
+        final ConcurrentConnectionPool pool = newPool(factory, 0, 1, 0, new MockScheduler());
+
+        final Connection c1 = pool.getConnection();
+        final Promise<? extends Connection, LdapException> promise = pool.getConnectionAsync();
+        pool.close();
+        try {
+            promise.getOrThrow();
+            failWasExpected(LdapException.class);
+        } catch (final LdapException e) {
+            assertThat(e.getResult().getResultCode()).isEqualTo(ResultCode.CLIENT_SIDE_USER_CANCELLED);
+        }
+        verify(factory).close();
+
+        // Connections in use are closed when they are released.
+        verify(connection, never()).close();
+        c1.close();
+        verify(connection).close();
+    }
+
+    private static ConcurrentConnectionPool newPool(final ConnectionFactory factory, final int minPoolSize,
+            final int maxPoolSize, final long idleTimeoutMillis, final MockScheduler scheduler) {
+        final ConcurrentConnectionPool pool = new ConcurrentConnectionPool(
+                factory, minPoolSize, maxPoolSize, idleTimeoutMillis, TimeUnit.MILLISECONDS, scheduler);
+        pool.timeService = mockTimeService(0);
+        return pool;
+    }
+
+    private static Connection mockValidConnection() {
+        final Connection connection = mock(Connection.class);
+        when(connection.isValid()).thenReturn(true);
+        return connection;
+    }
+}
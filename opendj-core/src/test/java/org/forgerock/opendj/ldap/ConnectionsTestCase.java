@@ -18,13 +18,18 @@ package org.forgerock.opendj.ldap;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.forgerock.opendj.ldap.Connections.*;
+import static org.forgerock.opendj.ldap.LdapException.newLdapException;
+import static org.forgerock.util.Options.defaultOptions;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.TimeUnit;
+
 import org.forgerock.opendj.ldap.Connections.LeastRequestsDispatcher;
 import org.forgerock.opendj.ldap.RequestLoadBalancer.PartitionedRequest;
+import org.forgerock.opendj.ldap.RequestLoadBalancer.TerminatedRequest;
 import org.forgerock.opendj.ldap.requests.AddRequest;
 import org.forgerock.opendj.ldap.requests.CRAMMD5SASLBindRequest;
 import org.forgerock.opendj.ldap.requests.CompareRequest;
@@ -42,6 +47,7 @@ import org.forgerock.opendj.ldap.requests.SearchRequest;
 import org.forgerock.opendj.ldap.requests.SimpleBindRequest;
 import org.forgerock.util.Function;
 import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.PromiseImpl;
 import org.testng.annotations.Test;
 
 import com.forgerock.opendj.ldap.controls.AffinityControl;
@@ -148,7 +154,7 @@ public class ConnectionsTestCase extends SdkTestCase {
         LeastRequestsDispatcher dispatcher = new Connections.LeastRequestsDispatcher(3);
         Function<Request, PartitionedRequest, NeverThrowsException> next =
                 newLeastRequestsLoadBalancerNextFunction(dispatcher);
-        Function<Integer, Void, NeverThrowsException> end =
+        Function<TerminatedRequest, Void, NeverThrowsException> end =
                 newLeastRequestsLoadBalancerEndOfRequestFunction(dispatcher);
 
         final SearchRequest[] reqs = new SearchRequest[11];
@@ -158,15 +164,15 @@ public class ConnectionsTestCase extends SdkTestCase {
         assertThat(next.apply(reqs[0]).getServerIndex()).isEqualTo(0);  // number of reqs = [1, 0, 0]
         assertThat(next.apply(reqs[1]).getServerIndex()).isEqualTo(1);  // number of reqs = [1, 1, 0]
         assertThat(next.apply(reqs[2]).getServerIndex()).isEqualTo(2);  // number of reqs = [1, 1, 1]
-        end.apply(1);                                                   // number of reqs = [1, 0, 1]
+        end.apply(terminated(1));                                       // number of reqs = [1, 0, 1]
         assertThat(next.apply(reqs[3]).getServerIndex()).isEqualTo(1);  // number of reqs = [1, 1, 1]
-        end.apply(1);                                                   // number of reqs = [1, 0, 1]
+        end.apply(terminated(1));                                       // number of reqs = [1, 0, 1]
         assertThat(next.apply(reqs[5]).getServerIndex()).isEqualTo(1);  // number of reqs = [1, 1, 1]
         assertThat(next.apply(reqs[6]).getServerIndex()).isEqualTo(0);  // number of reqs = [2, 1, 1]
         assertThat(next.apply(reqs[7]).getServerIndex()).isEqualTo(1);  // number of reqs = [2, 2, 1]
         assertThat(next.apply(reqs[8]).getServerIndex()).isEqualTo(2);  // number of reqs = [2, 2, 2]
         assertThat(next.apply(reqs[9]).getServerIndex()).isEqualTo(0);  // number of reqs = [3, 2, 2]
-        end.apply(2);                                                   // number of reqs = [3, 2, 1]
+        end.apply(terminated(2));                                       // number of reqs = [3, 2, 1]
         assertThat(next.apply(reqs[10]).getServerIndex()).isEqualTo(2); // number of reqs = [3, 2, 2]
     }
 
@@ -211,6 +217,93 @@ public class ConnectionsTestCase extends SdkTestCase {
         assertThat(next.apply(reqs[9]).getServerIndex()).isEqualTo(2); // number of reqs = [4, 3, 3]
     }
 
+    @Test
+    public void latencyAwareDispatcherMustChooseTheFastestServer() {
+        final LatencyAwareDispatcher dispatcher = new LatencyAwareDispatcher(2);
+        final long now = System.nanoTime();
+        // The first two requests sample both servers, subsequent requests must all go to the fastest one.
+        for (int i = 0; i < 2; i++) {
+            final int index = dispatcher.selectServer(now);
+            dispatcher.terminatedRequest(terminated(index, index == 0 ? millis(10) : millis(1), now, null));
+        }
+        for (int i = 0; i < 10; i++) {
+            final int index = dispatcher.selectServer(now);
+            assertThat(index).isEqualTo(1);
+            dispatcher.terminatedRequest(terminated(index, millis(1), now, null));
+        }
+
+        // A single slow response is enough to avoid a server.
+        dispatcher.terminatedRequest(terminated(dispatcher.selectServer(now), millis(50), now, null));
+        assertThat(dispatcher.selectServer(now)).isEqualTo(0);
+    }
+
+    @Test
+    public void latencyAwareDispatcherMustTakeActiveRequestsIntoAccount() {
+        final LatencyAwareDispatcher dispatcher = new LatencyAwareDispatcher(2);
+        final long now = System.nanoTime();
+        for (int i = 0; i < 2; i++) {
+            dispatcher.terminatedRequest(terminated(dispatcher.selectServer(now), millis(1), now, null));
+        }
+        final int first = dispatcher.selectServer(now);
+        assertThat(dispatcher.selectServer(now)).isEqualTo(1 - first);
+    }
+
+    @Test
+    public void latencyAwareDispatcherResponseTimesMustDecay() {
+        final LatencyAwareDispatcher dispatcher = new LatencyAwareDispatcher(1);
+        final long now = System.nanoTime();
+        dispatcher.terminatedRequest(terminated(dispatcher.selectServer(now), millis(100), now, null));
+        assertThat(dispatcher.getResponseTime(0, now)).isEqualTo(millis(100));
+        assertThat(dispatcher.getResponseTime(0, now + TimeUnit.SECONDS.toNanos(10))).isLessThan(millis(50));
+
+        // Faster responses only progressively lower the average, fast failures never do.
+        dispatcher.terminatedRequest(terminated(dispatcher.selectServer(now), millis(1), now, null));
+        assertThat(dispatcher.getResponseTime(0, now)).isEqualTo(millis(100));
+        dispatcher.terminatedRequest(terminated(dispatcher.selectServer(now), millis(1), now + millis(1000),
+                newLdapException(ResultCode.BUSY)));
+        assertThat(dispatcher.getResponseTime(0, now + millis(1000))).isGreaterThan(millis(90));
+    }
+
+    @Test
+    public void latencyAwareDispatcherMustEjectUnavailableServers() {
+        final ConnectionFactory factory1 = mock(ConnectionFactory.class);
+        final ConnectionFactory factory2 = mock(ConnectionFactory.class);
+        // Reconnection attempts performed by the monitoring task never complete.
+        when(factory1.getConnectionAsync()).thenReturn(PromiseImpl.<Connection, LdapException> create());
+        when(factory2.getConnectionAsync()).thenReturn(PromiseImpl.<Connection, LdapException> create());
+        final LatencyAwareDispatcher dispatcher = new LatencyAwareDispatcher(2);
+        final RequestLoadBalancer loadBalancer = new RequestLoadBalancer("Test", asList(factory1, factory2),
+                defaultOptions(), newLatencyAwareLoadBalancerNextFunction(dispatcher),
+                newLatencyAwareLoadBalancerEndOfRequestFunction(dispatcher));
+        dispatcher.setLoadBalancer(loadBalancer);
+        try {
+            final long now = System.nanoTime();
+            final LdapException serverDown = newLdapException(ResultCode.CLIENT_SIDE_SERVER_DOWN);
+            for (int i = 1; i < LatencyAwareDispatcher.MAX_CONSECUTIVE_FAILURES; i++) {
+                dispatcher.terminatedRequest(terminated(0, millis(1), now, serverDown));
+            }
+            dispatcher.terminatedRequest(terminated(0, millis(1), now, null));
+            for (int i = 1; i < LatencyAwareDispatcher.MAX_CONSECUTIVE_FAILURES; i++) {
+                dispatcher.terminatedRequest(terminated(0, millis(1), now, serverDown));
+            }
+            assertThat(loadBalancer.isOperational(0)).isTrue();
+
+            dispatcher.terminatedRequest(terminated(0, millis(1), now, serverDown));
+            assertThat(loadBalancer.isOperational(0)).isFalse();
+            for (int i = 0; i < 10; i++) {
+                assertThat(dispatcher.selectServer(now)).isEqualTo(1);
+            }
+
+            // The last operational server is never ejected.
+            for (int i = 0; i < LatencyAwareDispatcher.MAX_CONSECUTIVE_FAILURES; i++) {
+                dispatcher.terminatedRequest(terminated(1, millis(1), now, serverDown));
+            }
+            assertThat(loadBalancer.isOperational(1)).isTrue();
+        } finally {
+            loadBalancer.close();
+        }
+    }
+
     private void assertRequestsAreRoutedConsistently(
             final Function<Request, PartitionedRequest, NeverThrowsException> f, final Request r,
             final int firstExpectedIndex, final int secondExpectedIndex) {
@@ -218,6 +311,19 @@ public class ConnectionsTestCase extends SdkTestCase {
         assertThat(index(f, r)).isEqualTo(secondExpectedIndex);
     }
 
+    private TerminatedRequest terminated(final int index) {
+        return terminated(index, 0, 0, null);
+    }
+
+    private TerminatedRequest terminated(final int index, final long responseTime, final long now,
+            final LdapException error) {
+        return new TerminatedRequest(index, responseTime, now, error);
+    }
+
+    private long millis(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
     private int index(final Function<Request, PartitionedRequest, NeverThrowsException> function,
                       final Request request) {
         return function.apply(request).getServerIndex();
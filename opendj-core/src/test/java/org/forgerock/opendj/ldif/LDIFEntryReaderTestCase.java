@@ -22,8 +22,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.LocalizedIllegalArgumentException;
@@ -584,6 +588,90 @@ public final class LDIFEntryReaderTestCase extends AbstractLDIFTestCase {
         reader.close();
     }
 
+    /**
+     * Tests that entries decoded by several threads are returned in the order
+     * in which they appear in the LDIF source.
+     *
+     * @throws Exception
+     *             if an unexpected error occurred.
+     */
+    @Test
+    public void testReadEntriesWithSeveralThreadsPreservesOrder() throws Exception {
+        final int nbEntries = 2000;
+        try (LDIFEntryReader reader = new LDIFEntryReader(generateUserEntries(nbEntries)).setNumberOfThreads(4)) {
+            for (int i = 0; i < nbEntries; i++) {
+                assertThat(reader.hasNext()).isTrue();
+                assertThat(reader.readEntry().getName().toString())
+                        .isEqualTo("uid=user." + i + ",ou=People,dc=example,dc=com");
+            }
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+
+    /**
+     * Tests that all the entries are returned when entries decoded by several
+     * threads do not need to be returned in order.
+     *
+     * @throws Exception
+     *             if an unexpected error occurred.
+     */
+    @Test
+    public void testReadEntriesWithSeveralThreadsWithoutPreservingOrder() throws Exception {
+        final int nbEntries = 2000;
+        final Set<String> names = new HashSet<>();
+        try (LDIFEntryReader reader =
+                new LDIFEntryReader(generateUserEntries(nbEntries)).setNumberOfThreads(4).setPreserveOrder(false)) {
+            while (reader.hasNext()) {
+                names.add(reader.readEntry().getName().toString());
+            }
+        }
+        assertThat(names).hasSize(nbEntries);
+        assertThat(names).contains("uid=user.0,ou=People,dc=example,dc=com",
+                "uid=user." + (nbEntries - 1) + ",ou=People,dc=example,dc=com");
+    }
+
+    /**
+     * Tests that the rejected LDIF listener is notified in order when entries
+     * are decoded by several threads.
+     *
+     * @throws Exception
+     *             if an unexpected error occurred.
+     */
+    @Test
+    public void testRejectedLDIFListenerWithSeveralThreads() throws Exception {
+        final RejectedLDIFListener listener = mock(RejectedLDIFListener.class);
+        final List<String> ldifLines = generateUserEntries(1000);
+        ldifLines.addAll(Arrays.asList("", "dn: baddn", "objectClass: top", ""));
+        ldifLines.addAll(generateUserEntries(1000));
+
+        int nbEntries = 0;
+        try (LDIFEntryReader reader = new LDIFEntryReader(ldifLines).setNumberOfThreads(4)) {
+            reader.setRejectedLDIFListener(listener);
+            while (reader.hasNext()) {
+                reader.readEntry();
+                if (++nbEntries == 1000) {
+                    verifyZeroInteractions(listener);
+                }
+            }
+        }
+        assertThat(nbEntries).isEqualTo(2000);
+        verify(listener).handleMalformedRecord(eq(4001L), eq(Arrays.asList("dn: baddn", "objectClass: top")),
+                any(LocalizableMessage.class));
+    }
+
+    private static List<String> generateUserEntries(final int nbEntries) {
+        final List<String> ldifLines = new ArrayList<>();
+        for (int i = 0; i < nbEntries; i++) {
+            if (i > 0) {
+                ldifLines.add("");
+            }
+            ldifLines.add("dn: uid=user." + i + ",ou=People,dc=example,dc=com");
+            ldifLines.add("objectClass: person");
+            ldifLines.add("uid: user." + i);
+        }
+        return ldifLines;
+    }
+
     /**
      * Tests reading a LDIF which does not conform to the schema invokes the
      * rejected LDIF listener.
@@ -18,6 +18,7 @@ package org.forgerock.opendj.ldif;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -1289,6 +1290,105 @@ public class LDIFTestCase extends AbstractLDIFTestCase {
         target.close();
     }
 
+    /**
+     * The diff using temporary files must return the same changes as the
+     * in-memory diff, and delete its temporary files when closed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public final void testLdifDiffUsingTemporaryFiles() throws Exception {
+        // @formatter:off
+        final String[] sourceLines = {
+            "dn: uid=user.2,ou=People,dc=example,dc=com",
+            "cn: user 2",
+            "",
+            "dn: uid=user.0,ou=People,dc=example,dc=com",
+            "cn: user 0",
+            "",
+            "dn: ou=People,dc=example,dc=com",
+            "ou: People",
+            "",
+            "dn: uid=user.3,ou=People,dc=example,dc=com",
+            "cn: user 3"
+        };
+        final String[] targetLines = {
+            "dn: uid=user.3,ou=People,dc=example,dc=com",
+            "cn: user three",
+            "",
+            "dn: ou=People,dc=example,dc=com",
+            "ou: People",
+            "",
+            "dn: uid=user.1,ou=People,dc=example,dc=com",
+            "cn: user 1",
+            "",
+            "dn: uid=user.0,ou=People,dc=example,dc=com",
+            "cn: user 0"
+        };
+        // @formatter:on
+        final List<String> expected = new ArrayList<>();
+        try (ChangeRecordReader reader =
+                LDIF.diff(new LDIFEntryReader(sourceLines), new LDIFEntryReader(targetLines))) {
+            while (reader.hasNext()) {
+                expected.add(LDIF.toLDIF(reader.readChangeRecord()));
+            }
+        }
+
+        final File tempDirectory = Files.createTempDirectory("ldifdiff").toFile();
+        final List<String> actual = new ArrayList<>();
+        // Write each entry to its own temporary file.
+        final ChangeRecordReader reader =
+                LDIF.diff(new LDIFEntryReader(sourceLines), new LDIFEntryReader(targetLines), tempDirectory, 1);
+        assertThat(tempDirectory.list()).hasSize(8);
+        while (reader.hasNext()) {
+            actual.add(LDIF.toLDIF(reader.readChangeRecord()));
+        }
+        reader.close();
+
+        assertThat(actual).isEqualTo(expected);
+        assertThat(expected).hasSize(5);
+        assertThat(tempDirectory.list()).isEmpty();
+        tempDirectory.delete();
+    }
+
+    @Test
+    public final void testLdifDiffUsingTemporaryFilesDeletesThemWhenSourceIsMalformed() throws Exception {
+        final File tempDirectory = Files.createTempDirectory("ldifdiff").toFile();
+        try {
+            LDIF.diff(new LDIFEntryReader("dn: wrongRDN"), new LDIFEntryReader(generateEntries(1000)),
+                      tempDirectory, 1);
+            TestCaseUtils.failWasExpected(DecodeException.class);
+        } catch (final DecodeException expected) {
+            assertThat(tempDirectory.list()).isEmpty();
+        } finally {
+            tempDirectory.delete();
+        }
+    }
+
+    @Test
+    public final void testLdifDiffUsingTemporaryFilesDeletesThemWhenTargetIsMalformed() throws Exception {
+        final File tempDirectory = Files.createTempDirectory("ldifdiff").toFile();
+        try {
+            LDIF.diff(new LDIFEntryReader(generateEntries(1000)), new LDIFEntryReader("dn: wrongRDN"),
+                      tempDirectory, 1);
+            TestCaseUtils.failWasExpected(DecodeException.class);
+        } catch (final DecodeException expected) {
+            assertThat(tempDirectory.list()).isEmpty();
+        } finally {
+            tempDirectory.delete();
+        }
+    }
+
+    private static List<String> generateEntries(final int nbEntries) {
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < nbEntries; i++) {
+            lines.add("dn: uid=user." + i + ",ou=People,dc=example,dc=com");
+            lines.add("cn: user " + i);
+            lines.add("");
+        }
+        return lines;
+    }
+
     /**
      * The diff function doesn't allow malformed ldif. Exception expected.
      *
@@ -27,6 +27,13 @@ import com.forgerock.reactive.Completable;
 
 final class LdapResponseMessageWriter implements Subscriber<LdapResponseMessage>, CompletionHandler {
 
+    /**
+     * Maximum number of responses which may be pending in Grizzly's asynchronous write queue. Search results are
+     * streamed to the client as soon as they are produced, the window only bounds the amount of memory used by a
+     * slow reader.
+     */
+    static final int MAX_PENDING_WRITES = 16;
+
     private final Connection<?> connection;
     private final Completable.Subscriber downstream;
     private Subscription upstream;
@@ -43,9 +50,9 @@ final class LdapResponseMessageWriter implements Subscriber<LdapResponseMessage>
             return;
         }
         upstream = s;
-        // We're requesting two response to allow overlap between async I/O and response computation.
-        // (allows to generate a response while we're waiting for the previous message to be written)
-        upstream.request(2);
+        // Request a window of responses to allow overlap between async I/O and response computation
+        // (allows to generate the next responses while we're waiting for the previous ones to be written).
+        upstream.request(MAX_PENDING_WRITES);
     }
 
     @Override
@@ -147,9 +147,11 @@ public final class LDIFDiff extends ToolConsoleApplication {
 
             try (LDIFEntryReader sourceReader = new LDIFEntryReader(sourceInputStream);
                  LDIFEntryReader targetReader = new LDIFEntryReader(targetInputStream);
-                 LDIFChangeRecordWriter outputWriter = new LDIFChangeRecordWriter(outputStream)) {
+                 LDIFChangeRecordWriter outputWriter = new LDIFChangeRecordWriter(outputStream);
+                 // Sort the entries using temporary files so that files larger than the heap can be compared.
+                 ChangeRecordReader changes =
+                         LDIF.diff(sourceReader, targetReader, null, Runtime.getRuntime().maxMemory() / 8)) {
                 outputWriter.setWrapColumn(computeWrapColumn(wrapColumn));
-                final ChangeRecordReader changes = LDIF.diff(sourceReader, targetReader);
                 LDIF.copyTo(changes, outputWriter);
                 if (outputWriter.containsChanges()) {
                     return DIFFERENCES_FOUND;
@@ -189,6 +189,8 @@ public final class LDIFSearch extends ToolConsoleApplication {
         try (final LDIFEntryReader sourceReader =
                      new LDIFEntryReader(getLDIFToolInputStream(this, trailingArguments.get(0)));
              final LDIFEntryWriter outputWriter = new LDIFEntryWriter(getLDIFToolOutputStream(this, outputFilename))) {
+            // Decoding entries is the bottleneck when searching large LDIF files.
+            sourceReader.setNumberOfThreads(Runtime.getRuntime().availableProcessors());
             outputWriter.setWrapColumn(computeWrapColumn(wrapColumn));
             LDIF.copyTo(LDIF.search(sourceReader, search), outputWriter);
         } catch (final LdapException e) {
@@ -35,7 +35,19 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPOutputStream;
 
 import org.forgerock.i18n.LocalizableMessage;
@@ -61,6 +73,12 @@ public final class MakeLDIF extends ToolConsoleApplication {
     /** The value for the path to look for LDIF resources (e.g data files). */
     public static final String OPTION_LONG_RESOURCE_PATH = "resourcePath";
 
+    /** The value for the number of threads option. */
+    public static final String OPTION_LONG_NUMBER_OF_THREADS = "numThreads";
+
+    /** Number of entries encoded at once by each thread when several threads are used. */
+    private static final int BATCH_SIZE = 1000;
+
     /**
      * The main method for makeldif tool.
      *
@@ -117,6 +135,7 @@ public final class MakeLDIF extends ToolConsoleApplication {
         StringArgument resourcePath;
         StringArgument constants;
         IntegerArgument wrapColumn;
+        IntegerArgument numberOfThreads;
         try {
             resourcePath =
                     StringArgument.builder(OPTION_LONG_RESOURCE_PATH)
@@ -145,6 +164,13 @@ public final class MakeLDIF extends ToolConsoleApplication {
                             .multiValued()
                             .valuePlaceholder(INFO_CONSTANT_PLACEHOLDER.get())
                             .buildAndAddToParser(argParser);
+            numberOfThreads =
+                    IntegerArgument.builder(OPTION_LONG_NUMBER_OF_THREADS)
+                            .description(INFO_MAKELDIF_DESCRIPTION_NUMBER_OF_THREADS.get())
+                            .lowerBound(1)
+                            .defaultValue(1)
+                            .valuePlaceholder(INFO_NUM_THREADS_PLACEHOLDER.get())
+                            .buildAndAddToParser(argParser);
 
             showUsage = showUsageArgument();
             argParser.addArgument(showUsage);
@@ -163,7 +189,7 @@ public final class MakeLDIF extends ToolConsoleApplication {
             return ResultCode.SUCCESS.intValue();
         }
         final String templatePath = argParser.getTrailingArguments().get(0);
-        return run(templatePath, resourcePath, ldifFile, randomSeed, constants, wrapColumn);
+        return run(templatePath, resourcePath, ldifFile, randomSeed, constants, wrapColumn, numberOfThreads);
     }
 
     /** Run Make LDIF with provided arguments. */
@@ -172,8 +198,9 @@ public final class MakeLDIF extends ToolConsoleApplication {
                     final StringArgument ldifFile,
                     final IntegerArgument randomSeedArg,
                     final StringArgument constants,
-                    final IntegerArgument wrapColumn)  throws LDAPToolException {
-        LDIFEntryWriter writer = null;
+                    final IntegerArgument wrapColumn,
+                    final IntegerArgument numberOfThreadsArg)  throws LDAPToolException {
+        Writer writer = null;
         try (EntryGenerator generator = createGenerator(templatePath, resourcePath, randomSeedArg, constants)) {
             if (generator == null) {
                 // Root exception has already been printed
@@ -186,8 +213,12 @@ public final class MakeLDIF extends ToolConsoleApplication {
                 }
             }
 
+            final int wrapColumnValue;
+            final int numberOfThreads;
             try {
-                writer = createLdifWriter(ldifFile, computeWrapColumn(wrapColumn));
+                wrapColumnValue = computeWrapColumn(wrapColumn);
+                numberOfThreads = numberOfThreadsArg.getIntValue();
+                writer = createOutputWriter(ldifFile);
             } catch (final IOException e) {
                 throw newToolParamException(
                         e, ERR_MAKELDIF_UNABLE_TO_CREATE_LDIF.get(ldifFile.getValue(), e.getMessage()));
@@ -196,7 +227,11 @@ public final class MakeLDIF extends ToolConsoleApplication {
                         e, ERR_ERROR_PARSING_ARGS.get(e.getMessageObject()));
             }
 
-            generateEntries(generator, writer, ldifFile);
+            if (numberOfThreads > 1) {
+                generateEntriesInParallel(generator, writer, wrapColumnValue, numberOfThreads, ldifFile);
+            } else {
+                generateEntries(generator, new LDIFEntryWriter(writer).setWrapColumn(wrapColumnValue), ldifFile);
+            }
 
             println(INFO_MAKELDIF_PROCESSING_COMPLETE.get(numberOfEntriesWritten));
             return ResultCode.SUCCESS.intValue();
@@ -205,20 +240,15 @@ public final class MakeLDIF extends ToolConsoleApplication {
         }
     }
 
-    private LDIFEntryWriter createLdifWriter(final StringArgument ldifFile, final int wrapColumn)
-            throws IOException, ArgumentException {
-        final LDIFEntryWriter writer;
+    private Writer createOutputWriter(final StringArgument ldifFile) throws IOException {
         if (ldifFile.isPresent()) {
             final String ldifFileName = ldifFile.getValue();
             if (ldifFileName.toLowerCase().endsWith(".gz")) {
-                writer = new LDIFEntryWriter(new GZIPOutputStream(new FileOutputStream(ldifFileName)));
-            } else {
-                writer = new LDIFEntryWriter(new BufferedWriter(new FileWriter(ldifFileName)));
+                return new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(ldifFileName)));
             }
-        } else {
-            writer = new LDIFEntryWriter(getOutputStream());
+            return new BufferedWriter(new FileWriter(ldifFileName));
         }
-        return writer.setWrapColumn(wrapColumn);
+        return new OutputStreamWriter(getOutputStream());
     }
 
     static EntryGenerator createGenerator(final String templatePath, final StringArgument resourcePath,
@@ -300,9 +330,79 @@ public final class MakeLDIF extends ToolConsoleApplication {
                     errPrintln(INFO_MAKELDIF_PROCESSED_N_ENTRIES.get(numberOfEntriesWritten));
                 }
             }
+            writer.flush();
+        } catch (final Exception e) {
+            throw newToolException(
+                    e, ResultCode.UNDEFINED, ERR_MAKELDIF_EXCEPTION_DURING_PROCESSING.get(e.getMessage()));
+        }
+    }
+
+    /**
+     * Generates entries using several threads.
+     * <p>
+     * Template evaluation stays on the calling thread because template tags (sequences, name iteration, random
+     * values) depend on the previously generated entries. Batches of generated entries are encoded as LDIF by the
+     * other threads, which is where most of the time is spent, and written in generation order, so that the output
+     * is the same whatever the number of threads.
+     */
+    private void generateEntriesInParallel(final EntryGenerator generator, final Writer writer,
+            final int wrapColumn, final int numberOfThreads, final StringArgument ldifFile)
+            throws LDAPToolException {
+        final ExecutorService encoders = Executors.newFixedThreadPool(numberOfThreads);
+        // Bounds memory usage while keeping all the threads busy.
+        final int maxPendingBatches = 2 * numberOfThreads;
+        final Deque<Future<String>> pendingBatches = new ArrayDeque<>(maxPendingBatches);
+        final Deque<Integer> pendingBatchSizes = new ArrayDeque<>(maxPendingBatches);
+        try {
+            while (generator.hasNext()) {
+                final List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+                while (batch.size() < BATCH_SIZE && generator.hasNext()) {
+                    batch.add(generator.readEntry());
+                }
+                pendingBatches.add(encoders.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        final StringWriter ldif = new StringWriter();
+                        final LDIFEntryWriter batchWriter = new LDIFEntryWriter(ldif).setWrapColumn(wrapColumn);
+                        for (final Entry entry : batch) {
+                            batchWriter.writeEntry(entry);
+                        }
+                        batchWriter.flush();
+                        return ldif.toString();
+                    }
+                }));
+                pendingBatchSizes.add(batch.size());
+                if (pendingBatches.size() >= maxPendingBatches) {
+                    writeBatch(pendingBatches.remove(), pendingBatchSizes.remove(), writer, ldifFile);
+                }
+            }
+            while (!pendingBatches.isEmpty()) {
+                writeBatch(pendingBatches.remove(), pendingBatchSizes.remove(), writer, ldifFile);
+            }
+            writer.flush();
+        } catch (final ExecutionException e) {
+            throw newToolException(e.getCause(), ResultCode.UNDEFINED,
+                    ERR_MAKELDIF_EXCEPTION_DURING_PROCESSING.get(e.getCause().getMessage()));
         } catch (final Exception e) {
             throw newToolException(
                     e, ResultCode.UNDEFINED, ERR_MAKELDIF_EXCEPTION_DURING_PROCESSING.get(e.getMessage()));
+        } finally {
+            encoders.shutdownNow();
+        }
+    }
+
+    private void writeBatch(final Future<String> batch, final int batchSize, final Writer writer,
+            final StringArgument ldifFile) throws InterruptedException, ExecutionException, LDAPToolException {
+        final String ldif = batch.get();
+        try {
+            writer.write(ldif);
+        } catch (final IOException e) {
+            throw newToolParamException(
+                    e, ERR_MAKELDIF_ERROR_WRITING_LDIF.get(ldifFile.getValue(), e.getMessage()));
+        }
+        numberOfEntriesWritten += batchSize;
+        if ((numberOfEntriesWritten % 1000) == 0) {
+            errPrintln(INFO_MAKELDIF_PROCESSED_N_ENTRIES.get(numberOfEntriesWritten));
         }
     }
 }
@@ -27,6 +27,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.ldap.Connection;
@@ -44,6 +46,7 @@ import com.forgerock.opendj.cli.ArgumentParser;
 import com.forgerock.opendj.cli.BooleanArgument;
 import com.forgerock.opendj.cli.ConsoleApplication;
 import com.forgerock.opendj.cli.IntegerArgument;
+import com.forgerock.opendj.cli.MultiChoiceArgument;
 import com.forgerock.opendj.cli.StringArgument;
 import com.forgerock.opendj.util.StaticUtils;
 
@@ -51,6 +54,14 @@ import com.forgerock.opendj.util.StaticUtils;
 abstract class PerformanceRunner implements ConnectionEventListener {
     private static final double[] DEFAULT_PERCENTILES = new double[] { 99.9, 99.99, 99.999 };
 
+    /** Distribution of the intervals between the intended send times of two requests in open-loop mode. */
+    enum ArrivalDistribution {
+        /** Requests are sent at a constant rate. */
+        CONSTANT,
+        /** Requests are sent at exponentially distributed intervals, i.e. they form a Poisson process. */
+        POISSON;
+    }
+
     class TimerThread extends Thread {
         private final long timeToWait;
 
@@ -131,9 +142,17 @@ abstract class PerformanceRunner implements ConnectionEventListener {
             Connection connection;
             final double targetTimeMs = 1000.0 / (targetThroughput / (double) (numThreads * numConnections));
             double sleepTimeMs = 0;
+            long intendedStartTimeNs = System.nanoTime();
 
             while (!stopRequested && !localStopRequested
                     && (maxIterations <= 0 || count < maxIterations)) {
+                if (arrivalDistribution != null) {
+                    intendedStartTimeNs += nextIntervalNs(MILLISECONDS.toNanos(1) * targetTimeMs);
+                    if (!waitUntil(intendedStartTimeNs)) {
+                        break;
+                    }
+                }
+
                 try {
                     connection = getConnectionToUse();
                 } catch (final InterruptedException e) {
@@ -165,7 +184,11 @@ abstract class PerformanceRunner implements ConnectionEventListener {
                     }
                 }
 
-                if (targetThroughput > 0) {
+                if (arrivalDistribution != null) {
+                    // When the server stalls, the following requests of this worker are sent late: measuring from
+                    // the intended send time charges them the delay a client sending at the target rate would see.
+                    statsThread.addCorrectedResponseTime(System.nanoTime() - intendedStartTimeNs);
+                } else if (targetThroughput > 0) {
                     try {
                         if (sleepTimeMs > 1) {
                             sleep((long) Math.floor(sleepTimeMs));
@@ -184,6 +207,25 @@ abstract class PerformanceRunner implements ConnectionEventListener {
             }
         }
 
+        private long nextIntervalNs(final double meanIntervalNs) {
+            if (arrivalDistribution == ArrivalDistribution.POISSON) {
+                return (long) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanIntervalNs);
+            }
+            return (long) meanIntervalNs;
+        }
+
+        /** Returns {@code false} if the tool has been stopped before the provided time has been reached. */
+        private boolean waitUntil(final long timeNs) {
+            long remainingNs;
+            while ((remainingNs = timeNs - System.nanoTime()) > 0) {
+                if (stopRequested || localStopRequested) {
+                    return false;
+                }
+                LockSupport.parkNanos(remainingNs);
+            }
+            return true;
+        }
+
         private Connection getConnectionToUse() throws InterruptedException, LdapException {
             if (this.connection == null) {
                 return connectionFactory.getConnectionAsync().getOrThrow();
@@ -224,6 +266,8 @@ abstract class PerformanceRunner implements ConnectionEventListener {
     private boolean stopRequested;
 
     private int targetThroughput;
+    /** The distribution of the requests intended send times, or {@code null} if running in closed-loop mode. */
+    private ArrivalDistribution arrivalDistribution;
     private int maxIterations;
     /** Warm-up duration time in ms. */
     private long warmUpDurationMs;
@@ -236,6 +280,7 @@ abstract class PerformanceRunner implements ConnectionEventListener {
     private final IntegerArgument maxDurationArgument;
     private final IntegerArgument statsIntervalArgument;
     private final IntegerArgument targetThroughputArgument;
+    private final MultiChoiceArgument<ArrivalDistribution> arrivalDistributionArgument;
     private final IntegerArgument numConnectionsArgument;
     private final IntegerArgument percentilesArgument;
     private final BooleanArgument keepConnectionsOpen;
@@ -311,6 +356,15 @@ abstract class PerformanceRunner implements ConnectionEventListener {
                         .defaultValue(0)
                         .valuePlaceholder(LocalizableMessage.raw("{targetThroughput}"))
                         .buildAndAddToParser(argParser);
+        arrivalDistributionArgument =
+                MultiChoiceArgument.<ArrivalDistribution>builder("arrivalDistribution")
+                        .description(LocalizableMessage.raw("Send requests at the target throughput regardless of "
+                                + "the server response times, using either constant or exponentially distributed "
+                                + "(Poisson) intervals between requests, and report percentiles of the response "
+                                + "times measured from the intended send times"))
+                        .allowedValues(ArrivalDistribution.values())
+                        .valuePlaceholder(LocalizableMessage.raw("{constant|poisson}"))
+                        .buildAndAddToParser(argParser);
         percentilesArgument =
                 IntegerArgument.builder("percentile")
                         .shortIdentifier('e')
@@ -382,6 +436,7 @@ abstract class PerformanceRunner implements ConnectionEventListener {
         maxDurationTimeMs = maxDurationArgument.getIntValue() * 1000L;
         statsIntervalMs = statsIntervalArgument.getIntValue() * 1000;
         targetThroughput = targetThroughputArgument.getIntValue();
+        arrivalDistribution = arrivalDistributionArgument.getTypedValue();
 
         noRebind = noRebindArgument.isPresent();
 
@@ -390,6 +445,12 @@ abstract class PerformanceRunner implements ConnectionEventListener {
                 "--" + noRebindArgument.getLongIdentifier(), "--" + numThreadsArgument.getLongIdentifier(), "> 1"));
         }
 
+        if (arrivalDistribution != null && targetThroughput <= 0) {
+            throw new ArgumentException(ERR_TOOL_ARG_MUST_BE_USED_WHEN_ARG_CONDITION.get(
+                "--" + targetThroughputArgument.getLongIdentifier(),
+                "--" + arrivalDistributionArgument.getLongIdentifier(), "used"));
+        }
+
         if (maxIterationsArgument.isPresent() && maxIterations <= 0) {
             throw new ArgumentException(ERR_TOOL_NOT_ENOUGH_ITERATIONS.get(
                 "--" + maxIterationsArgument.getLongIdentifier(), numConnections * numThreads,
@@ -493,6 +554,10 @@ abstract class PerformanceRunner implements ConnectionEventListener {
         return DEFAULT_PERCENTILES;
     }
 
+    boolean isOpenLoop() {
+        return arrivalDistribution != null;
+    }
+
     long getWarmUpDurationMs() {
         return warmUpDurationMs;
     }
@@ -58,6 +58,7 @@ class StatsThread extends Thread {
     private static final String RECENT_RESPONSE_TIME_MS = STAT_ID_PREFIX + "recent_response_time";
     private static final String AVERAGE_RESPONSE_TIME_MS = STAT_ID_PREFIX + "average_response_time";
     private static final String PERCENTILES = STAT_ID_PREFIX + "percentiles";
+    private static final String CORRECTED_PERCENTILES = STAT_ID_PREFIX + "corrected_percentiles";
     private static final String ERROR_PER_SECOND = STAT_ID_PREFIX + "error_per_second";
 
     public static final double MS_IN_S = TimeUnit.SECONDS.toMillis(1);
@@ -82,6 +83,7 @@ class StatsThread extends Thread {
                            final SortedMap<String, Meter> meters,
                            final SortedMap<String, Timer> timers) {
             int percentileIndex = 0;
+            int correctedPercentileIndex = 0;
             for (final MultiColumnPrinter.Column column : printer.getColumns()) {
                 final String statKey = column.getId();
                 if (gauges.containsKey(statKey)) {
@@ -90,6 +92,10 @@ class StatsThread extends Thread {
                     final double quantile = percentiles[percentileIndex++] / 100.0;
                     printer.printData(
                             histograms.get(PERCENTILES).getSnapshot().getValue(quantile) / MILLISECONDS.toNanos(1));
+                } else if (statKey.startsWith(CORRECTED_PERCENTILES)) {
+                    final double quantile = percentiles[correctedPercentileIndex++] / 100.0;
+                    printer.printData(histograms.get(CORRECTED_PERCENTILES).getSnapshot().getValue(quantile)
+                            / MILLISECONDS.toNanos(1));
                 } else {
                     printer.printData("-");
                 }
@@ -110,9 +116,15 @@ class StatsThread extends Thread {
             printer.printDashedLine();
             printer.printTitleSection("Throughput", throughputRawSpan);
             printer.printTitleSection("Response Time", responseTimeRawSpan);
+            if (openLoop) {
+                printer.printTitleSection("Corrected Response Time", percentiles.length);
+            }
             printer.printTitleSection(additionalStatsRawSpan > 1 ? "Additional" : "", additionalStatsRawSpan);
             printer.printTitleSection("(ops/second)", throughputRawSpan);
             printer.printTitleSection("(milliseconds)", responseTimeRawSpan);
+            if (openLoop) {
+                printer.printTitleSection("(milliseconds)", percentiles.length);
+            }
             printer.printTitleSection(additionalStatsRawSpan > 1 ? "Statistics" : "", additionalStatsRawSpan);
             printer.printTitleLine();
             printer.printDashedLine();
@@ -132,6 +144,13 @@ class StatsThread extends Thread {
             for (double percentile : percentiles) {
                 columns.add(column(PERCENTILES + percentile, percentile + "%", STANDARD_WIDTH, 2));
             }
+            if (openLoop) {
+                // Response times measured from the intended send times (open-loop mode)
+                columns.add(separatorColumn());
+                for (double percentile : percentiles) {
+                    columns.add(column(CORRECTED_PERCENTILES + percentile, percentile + "%", STANDARD_WIDTH, 2));
+                }
+            }
             // Additional stats
             columns.add(separatorColumn());
             columns.add(column(ERROR_PER_SECOND, "err/sec", STANDARD_WIDTH, 1));
@@ -167,6 +186,12 @@ class StatsThread extends Thread {
                 columns.add(column(
                         PERCENTILES + percentile, percentile + "% response time (milliseconds)", 2));
             }
+            if (openLoop) {
+                for (double percentile : percentiles) {
+                    columns.add(column(CORRECTED_PERCENTILES + percentile,
+                            percentile + "% corrected response time (milliseconds)", 2));
+                }
+            }
             columns.add(column(ERROR_PER_SECOND, "Errors/second", 1));
             columns.addAll(registerAdditionalColumns());
 
@@ -229,6 +254,8 @@ class StatsThread extends Thread {
 
     final MetricRegistry registry = new MetricRegistry();
     private final Histogram responseTimes = new Histogram(new HdrHistogramReservoir());
+    /** Response times measured from the intended send times, only used in open-loop mode. */
+    private final Histogram correctedResponseTimes = new Histogram(new HdrHistogramReservoir());
 
     private final StatsTimer gcTimerMs = new StatsTimer() {
         private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
@@ -259,6 +286,7 @@ class StatsThread extends Thread {
 
     private final ConsoleApplication app;
     private final double[] percentiles;
+    private final boolean openLoop;
     private final PerformanceRunner performanceRunner;
     private final RateReporter reporter;
     private long startTimeMs;
@@ -271,6 +299,7 @@ class StatsThread extends Thread {
         this.performanceRunner = performanceRunner;
         this.app = application;
         this.percentiles = performanceRunner.getPercentiles();
+        this.openLoop = performanceRunner.isOpenLoop();
         this.reporter = app.isScriptFriendly() ? new CsvRateReporter()
                                                : new ConsoleRateReporter();
         registerStats();
@@ -335,6 +364,9 @@ class StatsThread extends Thread {
             }
         });
         registry.register(PERCENTILES, responseTimes);
+        if (openLoop) {
+            registry.register(CORRECTED_PERCENTILES, correctedResponseTimes);
+        }
     }
 
     void startReporting() throws InterruptedException {
@@ -399,6 +431,16 @@ class StatsThread extends Thread {
         }
     }
 
+    /**
+     * Records the response time of an operation measured from the time at which it should have been sent, which
+     * accounts for the delays induced by the previous operations (coordinated omission).
+     */
+    void addCorrectedResponseTime(final long responseTimeNs) {
+        if (!warmingUp && responseTimeNs >= 0) {
+            correctedResponseTimes.update(responseTimeNs);
+        }
+    }
+
     void incrementFailedCount() {
         errorCount.inc();
     }
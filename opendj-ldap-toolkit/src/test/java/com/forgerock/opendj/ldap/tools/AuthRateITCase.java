@@ -17,6 +17,7 @@ package com.forgerock.opendj.ldap.tools;
 
 import static com.forgerock.opendj.cli.CliMessages.*;
 import static com.forgerock.opendj.ldap.tools.ToolsMessages.ERR_ERROR_PARSING_ARGS;
+import static com.forgerock.opendj.ldap.tools.ToolsMessages.ERR_TOOL_ARG_MUST_BE_USED_WHEN_ARG_CONDITION;
 import static com.forgerock.opendj.ldap.tools.ToolsMessages.INFO_TOOL_WARMING_UP;
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -52,6 +53,22 @@ public class AuthRateITCase extends ToolsITCase {
                      "-g", "rand(0,1000)", "-D", "uid=%d,ou=people,o=test", "-w", "password",
                      "-i", "1", "-c", "1", "-m", "10", "-f", "-S", "-B", "0"),
                 THROUGHPUT_TEXT, "" },
+
+            // Open-loop test cases
+            {
+                args("-h", TestCaseUtils.getServerSocketAddress().getHostName(),
+                     "-p", Integer.toString(TestCaseUtils.getServerSocketAddress().getPort()),
+                     "-g", "rand(0,1000)", "-D", "uid=%d,ou=people,o=test", "-w", "password",
+                     "-i", "1", "-m", "10", "-f", "-S", "--arrivalDistribution", "poisson"),
+                "", ERR_TOOL_ARG_MUST_BE_USED_WHEN_ARG_CONDITION.get(
+                        "--targetThroughput", "--arrivalDistribution", "used") },
+            {
+                args("-h", TestCaseUtils.getServerSocketAddress().getHostName(),
+                     "-p", Integer.toString(TestCaseUtils.getServerSocketAddress().getPort()),
+                     "-g", "rand(0,1000)", "-D", "uid=%d,ou=people,o=test", "-w", "password",
+                     "-i", "1", "-c", "1", "-m", "10", "-f", "-S", "-B", "0",
+                     "-M", "1000", "--arrivalDistribution", "poisson"),
+                "99.9% corrected response time (milliseconds)", "" },
         };
     }
 
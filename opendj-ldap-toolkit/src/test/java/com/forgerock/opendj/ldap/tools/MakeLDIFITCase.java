@@ -152,6 +152,25 @@ public class MakeLDIFITCase extends ToolsITCase {
         Files.delete(tempOutputFile);
     }
 
+    @Test
+    public void testMakeLDIFWithSeveralThreadsGeneratesSameOutput() throws Exception {
+        final Path sequentialOutputFile = Paths.get(TEST_RESOURCE_PATH, TEMP_OUTPUT_FILE);
+        final Path parallelOutputFile = Paths.get(TEST_RESOURCE_PATH, "parallel" + TEMP_OUTPUT_FILE);
+        run(args("-o", sequentialOutputFile.toString(), "-s", "42", "-c", "numusers=2500", "example.template"),
+            SUCCESS,
+            INFO_MAKELDIF_PROCESSING_COMPLETE.get(2502),
+            "");
+        refreshStreams();
+        run(args("-o", parallelOutputFile.toString(), "-s", "42", "-c", "numusers=2500", "--numThreads", "4",
+                 "example.template"),
+            SUCCESS,
+            INFO_MAKELDIF_PROCESSING_COMPLETE.get(2502),
+            "");
+        assertFilesAreEquals(parallelOutputFile.getFileName().toString(), TEMP_OUTPUT_FILE);
+        Files.delete(sequentialOutputFile);
+        Files.delete(parallelOutputFile);
+    }
+
     private void assertFilesAreEquals(final String outputFile, final String expectedOutputFileName) throws IOException {
         assertThat(Files.readAllBytes(Paths.get(TEST_RESOURCE_PATH, outputFile))).isEqualTo(
                    Files.readAllBytes(Paths.get(TEST_RESOURCE_PATH, expectedOutputFileName)));
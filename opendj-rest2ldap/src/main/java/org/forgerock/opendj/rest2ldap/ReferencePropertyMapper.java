@@ -278,49 +278,45 @@ public final class ReferencePropertyMapper extends AbstractLdapPropertyMapper<Re
     @Override
     Promise<JsonValue, ResourceException> read(final Context context, final Resource resource,
                                                final JsonPointer path, final Entry e) {
-        final Set<DN> dns = e.parseAttribute(ldapAttributeName).usingSchema(schema).asSetOfDN();
+        final Set<DN> dns;
+        try {
+            dns = e.parseAttribute(ldapAttributeName).usingSchema(schema).asSetOfDN();
+        } catch (final Exception ex) {
+            // The LDAP attribute could not be decoded.
+            return Promises.newExceptionPromise(asResourceException(ex));
+        }
         switch (dns.size()) {
         case 0:
             return newResultPromise(null);
         case 1:
             if (attributeIsSingleValued()) {
-                try {
-                    return readEntry(context, resource, path, dns.iterator().next());
-                } catch (final Exception ex) {
-                    // The LDAP attribute could not be decoded.
-                    return Promises.newExceptionPromise(asResourceException(ex));
-                }
+                return readEntry(context, resource, path, resolver(context, path).resolve(dns).get(0));
             }
             // Fall-though: unexpectedly got multiple values. It's probably best to just return them.
         default:
-            try {
-                final List<Promise<JsonValue, ResourceException>> promises = new ArrayList<>(dns.size());
-                for (final DN dn : dns) {
-                    promises.add(readEntry(context, resource, path, dn));
-                }
-                return Promises.when(promises)
-                               .then(new Function<List<JsonValue>, JsonValue, ResourceException>() {
-                                   @Override
-                                   public JsonValue apply(final List<JsonValue> value) {
-                                       if (value.isEmpty()) {
-                                           // No values, so omit the entire JSON object from the resource.
-                                           return null;
-                                       } else {
-                                           // Combine values into a single JSON array.
-                                           final List<Object> result = new ArrayList<>(value.size());
-                                           for (final JsonValue e : value) {
-                                               if (e != null) {
-                                                   result.add(e.getObject());
-                                               }
+            final List<Promise<JsonValue, ResourceException>> promises = new ArrayList<>(dns.size());
+            for (final Promise<SearchResultEntry, LdapException> entry : resolver(context, path).resolve(dns)) {
+                promises.add(readEntry(context, resource, path, entry));
+            }
+            return Promises.when(promises)
+                           .then(new Function<List<JsonValue>, JsonValue, ResourceException>() {
+                               @Override
+                               public JsonValue apply(final List<JsonValue> value) {
+                                   if (value.isEmpty()) {
+                                       // No values, so omit the entire JSON object from the resource.
+                                       return null;
+                                   } else {
+                                       // Combine values into a single JSON array.
+                                       final List<Object> result = new ArrayList<>(value.size());
+                                       for (final JsonValue e : value) {
+                                           if (e != null) {
+                                               result.add(e.getObject());
                                            }
-                                           return result.isEmpty() ? null : new JsonValue(result);
                                        }
+                                       return result.isEmpty() ? null : new JsonValue(result);
                                    }
-                               });
-            } catch (final Exception ex) {
-                // The LDAP attribute could not be decoded.
-                return Promises.newExceptionPromise(asResourceException(ex));
-            }
+                               }
+                           });
         }
     }
 
@@ -330,32 +326,39 @@ public final class ReferencePropertyMapper extends AbstractLdapPropertyMapper<Re
         return newSearchRequest(baseDnTemplate.format(context), scope, searchFilter, "1.1");
     }
 
-    private Promise<JsonValue, ResourceException> readEntry(
-            final Context context, final Resource resource, final JsonPointer path, final DN dn) {
+    /**
+     * Returns the resolver which should be used for fetching referenced entries. Queries share a resolver between
+     * all the returned resources so that their references are fetched in batches, while other requests only batch
+     * the references of a single entry.
+     */
+    private ReferenceResolver resolver(final Context context, final JsonPointer path) {
         final Set<String> requestedLDAPAttributes = new LinkedHashSet<>();
         mapper.getLdapAttributes(path, new JsonPointer(), requestedLDAPAttributes);
-
-        final Filter searchFilter = filter != null ? filter : Filter.alwaysTrue();
         final String[] attributes = requestedLDAPAttributes.toArray(new String[requestedLDAPAttributes.size()]);
-        final SearchRequest request = newSearchRequest(dn, SearchScope.BASE_OBJECT, searchFilter, attributes);
 
-        return connectionFrom(context)
-                .searchSingleEntryAsync(request)
-                .thenAsync(new AsyncFunction<SearchResultEntry, JsonValue, ResourceException>() {
-                    @Override
-                    public Promise<JsonValue, ResourceException> apply(final SearchResultEntry result) {
-                        return mapper.read(context, resource, path, result);
-                    }
-                }, new AsyncFunction<LdapException, JsonValue, ResourceException>() {
-                    @Override
-                    public Promise<JsonValue, ResourceException> apply(final LdapException error) {
-                        if (error instanceof EntryNotFoundException) {
-                            // Ignore missing entry since it cannot be mapped.
-                            return Promises.newResultPromise(null);
-                        }
-                        return Promises.newExceptionPromise(asResourceException(error));
-                    }
-                });
+        if (context.containsContext(ReferenceResolutionContext.class)) {
+            return context.asContext(ReferenceResolutionContext.class).getResolver(this, filter, attributes);
+        }
+        return new ReferenceResolver(connectionFrom(context), filter, attributes, false);
+    }
+
+    private Promise<JsonValue, ResourceException> readEntry(final Context context, final Resource resource,
+            final JsonPointer path, final Promise<SearchResultEntry, LdapException> entry) {
+        return entry.thenAsync(new AsyncFunction<SearchResultEntry, JsonValue, ResourceException>() {
+            @Override
+            public Promise<JsonValue, ResourceException> apply(final SearchResultEntry result) {
+                if (result == null) {
+                    // Ignore missing entry since it cannot be mapped.
+                    return Promises.newResultPromise(null);
+                }
+                return mapper.read(context, resource, path, result);
+            }
+        }, new AsyncFunction<LdapException, JsonValue, ResourceException>() {
+            @Override
+            public Promise<JsonValue, ResourceException> apply(final LdapException error) {
+                return Promises.newExceptionPromise(asResourceException(error));
+            }
+        });
     }
 
     @Override
@@ -0,0 +1,66 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.rest2ldap;
+
+import static org.forgerock.opendj.rest2ldap.Utils.connectionFrom;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.opendj.ldap.Filter;
+import org.forgerock.services.context.AbstractContext;
+import org.forgerock.services.context.Context;
+
+/**
+ * A {@link Context} which shares the {@link ReferenceResolver}s used for resolving references across all the
+ * resources returned by a query, so that referenced entries are fetched in batches and at most once per request.
+ */
+final class ReferenceResolutionContext extends AbstractContext {
+    /** Resolvers indexed by the reference property mapper which uses them, guarded by this context. */
+    private final Map<ReferencePropertyMapper, ReferenceResolver> resolvers = new IdentityHashMap<>();
+    private boolean isFlushed;
+
+    ReferenceResolutionContext(final Context parent) {
+        super(parent, "reference resolution context");
+    }
+
+    synchronized ReferenceResolver getResolver(final ReferencePropertyMapper mapper, final Filter filter,
+                                               final String[] attributes) {
+        ReferenceResolver resolver = resolvers.get(mapper);
+        if (resolver == null) {
+            resolver = new ReferenceResolver(connectionFrom(this), filter, attributes, !isFlushed);
+            resolvers.put(mapper, resolver);
+        }
+        return resolver;
+    }
+
+    /**
+     * Resolves all the pending references. Must be called once all the resources of the query have been
+     * received, after which references are resolved as soon as they are read.
+     */
+    void flush() {
+        final List<ReferenceResolver> toBeFlushed;
+        synchronized (this) {
+            isFlushed = true;
+            toBeFlushed = new ArrayList<>(resolvers.values());
+        }
+        for (final ReferenceResolver resolver : toBeFlushed) {
+            resolver.flush();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.rest2ldap;
+
+import static org.forgerock.opendj.ldap.requests.Requests.newSearchRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.opendj.ldap.AVA;
+import org.forgerock.opendj.ldap.Connection;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.EntryNotFoundException;
+import org.forgerock.opendj.ldap.Filter;
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.opendj.ldap.SearchResultHandler;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.opendj.ldap.requests.SearchRequest;
+import org.forgerock.opendj.ldap.responses.Result;
+import org.forgerock.opendj.ldap.responses.SearchResultEntry;
+import org.forgerock.opendj.ldap.responses.SearchResultReference;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.promise.ResultHandler;
+
+/**
+ * Resolves the LDAP entries referenced by a {@link ReferencePropertyMapper} in batches.
+ * <p>
+ * Referenced DNs are grouped by parent entry and each group is fetched using a single one-level search whose
+ * filter is a disjunction of the RDNs of the referenced entries. Resolved entries are memoized so that a DN which
+ * is referenced several times is only fetched once for the lifetime of the resolver, which is normally the
+ * current request.
+ * <p>
+ * While the resolver is <em>deferred</em> the searches are only sent once enough DNs have been collected to fill
+ * a batch or when {@link #flush()} is called. This allows references read from all the resources returned by a
+ * query to be resolved together.
+ */
+final class ReferenceResolver {
+    /** The maximum number of referenced entries to fetch using a single search. */
+    static final int MAX_BATCH_SIZE = 100;
+
+    private final Connection connection;
+    private final Filter filter;
+    private final String[] attributes;
+
+    /** The entries which have been or are being fetched, guarded by this resolver. */
+    private final Map<DN, PromiseImpl<SearchResultEntry, LdapException>> entries = new HashMap<>();
+    /** The DNs which have not been searched for yet, guarded by this resolver. */
+    private final Map<DN, PromiseImpl<SearchResultEntry, LdapException>> pending = new LinkedHashMap<>();
+    /** Whether searches should be delayed until a batch is full or {@link #flush()} is called. */
+    private boolean isDeferred;
+
+    /**
+     * Creates a new reference resolver.
+     *
+     * @param connection
+     *         The connection which should be used for searching referenced entries.
+     * @param filter
+     *         The filter which referenced entries must match, or {@code null} if there is none.
+     * @param attributes
+     *         The LDAP attributes to be returned for referenced entries.
+     * @param isDeferred
+     *         Whether searches should be delayed until a batch is full or {@link #flush()} is called.
+     */
+    ReferenceResolver(final Connection connection, final Filter filter, final String[] attributes,
+                      final boolean isDeferred) {
+        this.connection = connection;
+        this.filter = filter;
+        this.attributes = attributes;
+        this.isDeferred = isDeferred;
+    }
+
+    /**
+     * Returns the referenced entries having the provided DNs, in the same order. A promise will complete with
+     * {@code null} if the referenced entry does not exist or does not match the filter.
+     *
+     * @param dns
+     *         The DNs of the referenced entries.
+     * @return The promises of the referenced entries.
+     */
+    List<Promise<SearchResultEntry, LdapException>> resolve(final Collection<DN> dns) {
+        final List<Promise<SearchResultEntry, LdapException>> results = new ArrayList<>(dns.size());
+        final Map<DN, PromiseImpl<SearchResultEntry, LdapException>> batch;
+        synchronized (this) {
+            for (final DN dn : dns) {
+                PromiseImpl<SearchResultEntry, LdapException> entry = entries.get(dn);
+                if (entry == null) {
+                    entry = PromiseImpl.create();
+                    entries.put(dn, entry);
+                    pending.put(dn, entry);
+                }
+                results.add(entry);
+            }
+            batch = !isDeferred || pending.size() >= MAX_BATCH_SIZE ? takePending() : null;
+        }
+        search(batch);
+        return results;
+    }
+
+    /**
+     * Immediately searches for all pending referenced entries and stops deferring subsequent searches. This
+     * method must be called once no more references are expected to be collected, otherwise pending resolutions
+     * would never complete.
+     */
+    void flush() {
+        final Map<DN, PromiseImpl<SearchResultEntry, LdapException>> batch;
+        synchronized (this) {
+            isDeferred = false;
+            batch = takePending();
+        }
+        search(batch);
+    }
+
+    /** This method must be invoked while holding the lock on this resolver. */
+    private Map<DN, PromiseImpl<SearchResultEntry, LdapException>> takePending() {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        final Map<DN, PromiseImpl<SearchResultEntry, LdapException>> batch = new LinkedHashMap<>(pending);
+        pending.clear();
+        return batch;
+    }
+
+    private void search(final Map<DN, PromiseImpl<SearchResultEntry, LdapException>> batch) {
+        if (batch == null) {
+            return;
+        }
+        // Group references by parent so that siblings can be fetched using a single one-level search.
+        final Map<DN, Map<DN, PromiseImpl<SearchResultEntry, LdapException>>> siblings = new LinkedHashMap<>();
+        for (final Map.Entry<DN, PromiseImpl<SearchResultEntry, LdapException>> reference : batch.entrySet()) {
+            final DN dn = reference.getKey();
+            if (dn.size() <= 1) {
+                // Naming contexts are unlikely to be siblings worth grouping.
+                searchEntry(dn, reference.getValue());
+                continue;
+            }
+            final DN parent = dn.parent();
+            Map<DN, PromiseImpl<SearchResultEntry, LdapException>> group = siblings.get(parent);
+            if (group == null || group.size() >= MAX_BATCH_SIZE) {
+                if (group != null) {
+                    searchSiblings(parent, group);
+                }
+                group = new LinkedHashMap<>();
+                siblings.put(parent, group);
+            }
+            group.put(dn, reference.getValue());
+        }
+        for (final Map.Entry<DN, Map<DN, PromiseImpl<SearchResultEntry, LdapException>>> group
+                : siblings.entrySet()) {
+            searchSiblings(group.getKey(), group.getValue());
+        }
+    }
+
+    private void searchSiblings(final DN parent,
+                                final Map<DN, PromiseImpl<SearchResultEntry, LdapException>> references) {
+        if (references.size() == 1) {
+            searchEntry(references.keySet().iterator().next(), references.values().iterator().next());
+            return;
+        }
+
+        final List<Filter> rdnFilters = new ArrayList<>(references.size());
+        for (final DN dn : references.keySet()) {
+            rdnFilters.add(toFilter(dn));
+        }
+        final Filter rdnFilter = Filter.or(rdnFilters);
+        final Filter searchFilter = filter != null ? Filter.and(filter, rdnFilter) : rdnFilter;
+        final SearchRequest request = newSearchRequest(parent, SearchScope.SINGLE_LEVEL, searchFilter, attributes);
+
+        final Map<DN, SearchResultEntry> found = new HashMap<>();
+        connection.searchAsync(request, new SearchResultHandler() {
+            @Override
+            public boolean handleEntry(final SearchResultEntry entry) {
+                // The RDN filters may also match siblings which merely contain the same attribute values.
+                if (references.containsKey(entry.getName())) {
+                    synchronized (found) {
+                        found.put(entry.getName(), entry);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public boolean handleReference(final SearchResultReference reference) {
+                // Ignore references.
+                return true;
+            }
+        }).thenOnResult(new ResultHandler<Result>() {
+            @Override
+            public void handleResult(final Result result) {
+                synchronized (found) {
+                    for (final Map.Entry<DN, PromiseImpl<SearchResultEntry, LdapException>> reference
+                            : references.entrySet()) {
+                        reference.getValue().handleResult(found.get(reference.getKey()));
+                    }
+                }
+            }
+        }).thenOnException(new ExceptionHandler<LdapException>() {
+            @Override
+            public void handleException(final LdapException exception) {
+                for (final PromiseImpl<SearchResultEntry, LdapException> reference : references.values()) {
+                    if (exception instanceof EntryNotFoundException) {
+                        // The parent entry does not exist, so neither do the referenced entries.
+                        reference.handleResult(null);
+                    } else {
+                        reference.handleException(exception);
+                    }
+                }
+            }
+        });
+    }
+
+    private void searchEntry(final DN dn, final PromiseImpl<SearchResultEntry, LdapException> reference) {
+        final Filter searchFilter = filter != null ? filter : Filter.alwaysTrue();
+        final SearchRequest request = newSearchRequest(dn, SearchScope.BASE_OBJECT, searchFilter, attributes);
+        connection.searchSingleEntryAsync(request)
+                  .thenOnResult(new ResultHandler<SearchResultEntry>() {
+                      @Override
+                      public void handleResult(final SearchResultEntry result) {
+                          reference.handleResult(result);
+                      }
+                  })
+                  .thenOnException(new ExceptionHandler<LdapException>() {
+                      @Override
+                      public void handleException(final LdapException exception) {
+                          if (exception instanceof EntryNotFoundException) {
+                              // Ignore missing entry since it cannot be mapped.
+                              reference.handleResult(null);
+                          } else {
+                              reference.handleException(exception);
+                          }
+                      }
+                  });
+    }
+
+    private static Filter toFilter(final DN dn) {
+        final Set<Filter> avaFilters = new LinkedHashSet<>();
+        for (final AVA ava : dn.rdn()) {
+            avaFilters.add(Filter.equality(ava.getAttributeName(), ava.getAttributeValue()));
+        }
+        return avaFilters.size() == 1 ? avaFilters.iterator().next() : Filter.and(avaFilters);
+    }
+}
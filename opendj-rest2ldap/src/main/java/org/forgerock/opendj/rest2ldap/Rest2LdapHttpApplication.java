@@ -26,6 +26,7 @@ import static org.forgerock.opendj.ldap.KeyManagers.useSingleCertificate;
 import static org.forgerock.opendj.rest2ldap.Rest2LdapJsonConfigurator.*;
 import static org.forgerock.opendj.rest2ldap.Rest2ldapMessages.*;
 import static org.forgerock.opendj.rest2ldap.Utils.newJsonValueException;
+import static org.forgerock.opendj.rest2ldap.authz.AuthenticationStrategies.newCachingAuthenticationStrategy;
 import static org.forgerock.opendj.rest2ldap.authz.AuthenticationStrategies.newSaslPlainStrategy;
 import static org.forgerock.opendj.rest2ldap.authz.AuthenticationStrategies.newSearchThenBindStrategy;
 import static org.forgerock.opendj.rest2ldap.authz.AuthenticationStrategies.newSimpleBindStrategy;
@@ -115,6 +116,9 @@ public class Rest2LdapHttpApplication implements HttpApplication {
     private static final String CACHE_CONFIG_OBJECT = "accessTokenCache";
     private static final String CACHE_ENABLED = "enabled";
     private static final String CACHE_EXPIRATION = "cacheExpiration";
+    private static final String AUTHENTICATION_CACHE_CONFIG_OBJECT = "authenticationCache";
+    private static final String AUTHENTICATION_CACHE_MAX_ENTRIES = "maxEntries";
+    private static final int AUTHENTICATION_CACHE_MAX_ENTRIES_DEFAULT = 10000;
 
     private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
@@ -449,7 +453,9 @@ public class Rest2LdapHttpApplication implements HttpApplication {
     private ConditionalFilter buildBasicFilter(final JsonValue config) {
         final String bind = config.get("bind").required().asString();
         final BindStrategy strategy = BindStrategy.valueOf(bind.toUpperCase().replace('-', '_'));
-        return newBasicAuthenticationFilter(buildBindStrategy(strategy, config.get(bind).required()),
+        final AuthenticationStrategy authenticationStrategy = createCachingAuthenticationStrategyIfNeeded(
+                config, buildBindStrategy(strategy, config.get(bind).required()));
+        return newBasicAuthenticationFilter(authenticationStrategy,
                 config.get("supportAltAuthentication").defaultTo(Boolean.FALSE).asBoolean()
                         ? newCustomHeaderExtractor(
                                 config.get("altAuthenticationUsernameHeader").required().asString(),
@@ -476,6 +482,19 @@ public class Rest2LdapHttpApplication implements HttpApplication {
                                     httpBasicFilter.getCondition());
     }
 
+    private AuthenticationStrategy createCachingAuthenticationStrategyIfNeeded(final JsonValue config,
+            final AuthenticationStrategy strategy) {
+        final JsonValue cacheConfig = config.get(AUTHENTICATION_CACHE_CONFIG_OBJECT);
+        if (cacheConfig.isNull() || !cacheConfig.get(CACHE_ENABLED).defaultTo(Boolean.FALSE).asBoolean()) {
+            return strategy;
+        }
+        final Duration expiration = parseCacheExpiration(
+                cacheConfig.get(CACHE_EXPIRATION).defaultTo(CACHE_EXPIRATION_DEFAULT));
+        final int maxEntries = cacheConfig.get(AUTHENTICATION_CACHE_MAX_ENTRIES)
+                                          .defaultTo(AUTHENTICATION_CACHE_MAX_ENTRIES_DEFAULT).asInteger();
+        return newCachingAuthenticationStrategy(strategy, expiration, maxEntries);
+    }
+
     private AuthenticationStrategy buildBindStrategy(final BindStrategy strategy, final JsonValue config) {
         switch (strategy) {
         case SIMPLE:
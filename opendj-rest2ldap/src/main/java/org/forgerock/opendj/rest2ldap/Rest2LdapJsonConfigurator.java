@@ -337,6 +337,7 @@ public final class Rest2LdapJsonConfigurator {
 
         final Boolean flattenSubtree = config.get("flattenSubtree").defaultTo(false).asBoolean();
         final String searchFilter = config.get("baseSearchFilter").asString();
+        final String virtualListViewSortKeys = config.get("virtualListViewSortKeys").asString();
 
         final SubResourceCollection collection =
             collectionOf(resourceId)
@@ -345,7 +346,8 @@ public final class Rest2LdapJsonConfigurator {
                 .isReadOnly(isReadOnly)
                 .glueObjectClasses(glueObjectClasses)
                 .flattenSubtree(flattenSubtree)
-                .baseSearchFilter(searchFilter);
+                .baseSearchFilter(searchFilter)
+                .virtualListViewSortKeys(virtualListViewSortKeys);
 
         configureCollectionNamingStrategy(config, collection);
 
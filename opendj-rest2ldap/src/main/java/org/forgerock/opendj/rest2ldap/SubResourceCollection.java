@@ -77,6 +77,7 @@ public final class SubResourceCollection extends SubResource {
     private NamingStrategy namingStrategy;
     private boolean flattenSubtree;
     private Filter baseSearchFilter;
+    private VirtualListViewPaging virtualListView;
 
     SubResourceCollection(final String resourceId) {
         super(resourceId);
@@ -107,6 +108,18 @@ public final class SubResourceCollection extends SubResource {
         return baseSearchFilter;
     }
 
+    /**
+     * Gets the sort keys of the virtual list view index which should be used for computing paged results offsets.
+     *
+     * The default is {@code null} (offsets are computed by reading and discarding the preceding resources).
+     *
+     * @return  Either a comma separated list of sort keys; or {@code null} if no virtual list view index has been
+     *          defined.
+     */
+    public String getVirtualListViewSortKeys() {
+        return virtualListView != null ? virtualListView.getSortKeys() : null;
+    }
+
     /**
      * Indicates that the JSON resource ID must be provided by the user, and will be used for naming the associated LDAP
      * entry. More specifically, LDAP entry names will be derived by appending a single RDN to the collection's base DN
@@ -309,6 +322,29 @@ public final class SubResourceCollection extends SubResource {
         return this;
     }
 
+    /**
+     * Sets the sort keys of a virtual list view (VLV) index which may be used for retrieving pages at an offset and
+     * counting the resources of this collection. The VLV index must have the same base DN and scope as the collection
+     * and its filter must be the base search filter, or {@code (objectClass=*)} if there is none.
+     * <p>
+     * When the directory server advertises support for the server side sort and virtual list view controls,
+     * unfiltered queries requesting a page offset or the total number of results are sorted using these keys and
+     * the directory server returns the requested page directly, as well as the total number of resources. Otherwise,
+     * offsets are computed by reading and discarding all the resources preceding the requested page.
+     *
+     * The default is {@code null} (no virtual list view index).
+     *
+     * @param   sortKeys
+     *          The comma separated list of sort keys of the VLV index, for example {@code "sn,givenName"}.
+     * @return  A reference to this object.
+     * @throws LocalizedIllegalArgumentException
+     *          If {@code sortKeys} is not a valid list of sort keys.
+     */
+    public SubResourceCollection virtualListViewSortKeys(final String sortKeys) {
+        this.virtualListView = sortKeys != null ? new VirtualListViewPaging(sortKeys) : null;
+        return this;
+    }
+
     @Override
     Router addRoutes(final Router router) {
         router.addRoute(requestUriMatcher(EQUALS, urlTemplate), readOnly(new CollectionHandler()));
@@ -350,7 +386,8 @@ public final class SubResourceCollection extends SubResource {
             namingStrategy,
             resource,
             flattenSubtree,
-            baseSearchFilter);
+            baseSearchFilter,
+            virtualListView);
     }
 
     private String idFrom(final Context context) {
@@ -62,6 +62,7 @@ import org.forgerock.json.JsonValueException;
 import org.forgerock.json.resource.ActionRequest;
 import org.forgerock.json.resource.ActionResponse;
 import org.forgerock.json.resource.BadRequestException;
+import org.forgerock.json.resource.CountPolicy;
 import org.forgerock.json.resource.CreateRequest;
 import org.forgerock.json.resource.DeleteRequest;
 import org.forgerock.json.resource.NotSupportedException;
@@ -142,15 +143,17 @@ final class SubResourceImpl {
     private final Attribute glueObjectClasses;
     private final boolean flattenSubtree;
     private final Filter baseSearchFilter;
+    private final VirtualListViewPaging virtualListView;
 
     SubResourceImpl(final Rest2Ldap rest2Ldap, final DN baseDn, final Attribute glueObjectClasses,
                     final NamingStrategy namingStrategy, final Resource resource) {
-        this(rest2Ldap, baseDn, glueObjectClasses, namingStrategy, resource, false, null);
+        this(rest2Ldap, baseDn, glueObjectClasses, namingStrategy, resource, false, null, null);
     }
 
     SubResourceImpl(final Rest2Ldap rest2Ldap, final DN baseDn, final Attribute glueObjectClasses,
                     final NamingStrategy namingStrategy, final Resource resource,
-                    final boolean flattenSubtree, final Filter baseSearchFilter) {
+                    final boolean flattenSubtree, final Filter baseSearchFilter,
+                    final VirtualListViewPaging virtualListView) {
         this.readOnUpdatePolicy = rest2Ldap.getOptions().get(READ_ON_UPDATE_POLICY);
         this.useSubtreeDelete = rest2Ldap.getOptions().get(USE_SUBTREE_DELETE);
         this.usePermissiveModify = rest2Ldap.getOptions().get(USE_PERMISSIVE_MODIFY);
@@ -163,6 +166,7 @@ final class SubResourceImpl {
         this.resource = resource;
         this.flattenSubtree = flattenSubtree;
         this.baseSearchFilter = baseSearchFilter;
+        this.virtualListView = virtualListView;
     }
 
     Promise<ActionResponse, ResourceException> action(
@@ -531,7 +535,10 @@ final class SubResourceImpl {
                 final Filter baseSearchFilter = SubResourceImpl.this.baseSearchFilter,
                              searchFilter;
 
-                if (baseSearchFilter != null) {
+                if (baseSearchFilter != null && requestFilter == alwaysTrue()) {
+                    // Keep the filter identical to the base search filter so that it may match a VLV index.
+                    searchFilter = baseSearchFilter;
+                } else if (baseSearchFilter != null) {
                     searchFilter = Filter.and(baseSearchFilter, requestFilter);
                 } else {
                     searchFilter = requestFilter;
@@ -724,6 +731,7 @@ final class SubResourceImpl {
             // we send one JSON resource at a time back to the client.
             private final Object sequenceLock = new Object();
             private String cookie;
+            private int totalPagedResults = -1;
             private ResourceException pendingResult;
             private int pendingResourceCount;
             private boolean resultSent;
@@ -736,17 +744,38 @@ final class SubResourceImpl {
                     return newQueryResponse().asPromise();
                 }
                 final PromiseImpl<QueryResponse, ResourceException> promise = PromiseImpl.create();
-                // Perform the search.
-                final String[] attributes = getLdapAttributesForUnknownType(request.getFields()).toArray(new String[0]);
                 final Filter searchFilter = ldapFilter == Filter.alwaysTrue() ? Filter.objectClassPresent()
                         : ldapFilter;
+
+                // A VLV index can only serve unfiltered queries: its filter is the collection's base search filter.
+                if (virtualListView != null && virtualListView.isApplicable(request)
+                        && (ldapFilter == Filter.alwaysTrue() || ldapFilter == baseSearchFilter)) {
+                    virtualListView.isSupported(connectionFrom(context))
+                                   .thenOnResult(new ResultHandler<Boolean>() {
+                                       @Override
+                                       public void handleResult(final Boolean isSupported) {
+                                           search(searchFilter, isSupported, promise);
+                                       }
+                                   });
+                } else {
+                    search(searchFilter, false, promise);
+                }
+                return promise;
+            }
+
+            private void search(final Filter searchFilter, final boolean useVirtualListView,
+                                final PromiseImpl<QueryResponse, ResourceException> promise) {
+                final String[] attributes = getLdapAttributesForUnknownType(request.getFields()).toArray(new String[0]);
                 final SearchRequest searchRequest = createSearchRequest(searchFilter, attributes);
 
                 // Add the page results control. We can support the page offset by reading the next offset pages, or
-                // offset x page size resources.
+                // offset x page size resources, unless the directory server positions the page using a VLV index.
                 final int pageResultStartIndex;
                 final int pageSize = request.getPageSize();
-                if (request.getPageSize() > 0) {
+                if (useVirtualListView) {
+                    virtualListView.addControls(searchRequest, request.getPagedResultsOffset() * pageSize, pageSize);
+                    pageResultStartIndex = 0;
+                } else if (request.getPageSize() > 0) {
                     final int pageResultEndIndex;
                     if (request.getPagedResultsOffset() > 0) {
                         pageResultStartIndex = request.getPagedResultsOffset() * pageSize;
@@ -764,6 +793,8 @@ final class SubResourceImpl {
                     pageResultStartIndex = 0;
                 }
 
+                // Resolve the references of all the returned resources together once the search completes.
+                final ReferenceResolutionContext references = new ReferenceResolutionContext(context);
                 connectionFrom(context).searchAsync(searchRequest, new SearchResultHandler() {
                     @Override
                     public boolean handleEntry(final SearchResultEntry entry) {
@@ -795,7 +826,7 @@ final class SubResourceImpl {
                         final String id = namingStrategy.decodeResourceId(entry);
                         final String revision = getRevisionFromEntry(entry);
                         final Resource subType = resource.resolveSubTypeFromObjectClasses(entry);
-                        final RoutingContext dnAndType = newRoutingContext(context, entry.getName(), subType);
+                        final RoutingContext dnAndType = newRoutingContext(references, entry.getName(), subType);
                         final PropertyMapper propertyMapper = subType.getPropertyMapper();
                         propertyMapper.read(dnAndType, subType, ROOT, entry)
                                       .thenOnResult(new ResultHandler<JsonValue>() {
@@ -832,8 +863,15 @@ final class SubResourceImpl {
                 }).thenOnResult(new ResultHandler<Result>() {
                     @Override
                     public void handleResult(Result result) {
+                        references.flush();
                         synchronized (sequenceLock) {
-                            if (request.getPageSize() > 0) {
+                            if (useVirtualListView) {
+                                totalPagedResults = virtualListView.getContentCount(result, decodeOptions);
+                                if (totalPagedResults < 0 && retryWithoutVirtualListView()) {
+                                    search(searchFilter, false, promise);
+                                    return;
+                                }
+                            } else if (request.getPageSize() > 0) {
                                 try {
                                     final SimplePagedResultsControl control =
                                             result.getControl(SimplePagedResultsControl.DECODER, decodeOptions);
@@ -850,8 +888,13 @@ final class SubResourceImpl {
                 }).thenOnException(new ExceptionHandler<LdapException>() {
                     @Override
                     public void handleException(final LdapException e) {
+                        references.flush();
                         synchronized (sequenceLock) {
-                            if (glueObjectClasses != null && e instanceof EntryNotFoundException) {
+                            if (useVirtualListView && virtualListView.isUnsupported(e)
+                                    && retryWithoutVirtualListView()) {
+                                logger.traceException(e);
+                                search(searchFilter, false, promise);
+                            } else if (glueObjectClasses != null && e instanceof EntryNotFoundException) {
                                 // Glue entry does not exist, so treat this as an empty result set.
                                 completeIfNecessary(SUCCESS, promise);
                             } else {
@@ -860,8 +903,19 @@ final class SubResourceImpl {
                         }
                     }
                 });
+            }
 
-                return promise;
+            /**
+             * Returns {@code true} if a VLV search which could not be served by a VLV index can be retried using the
+             * simple paged results control, which is the case as long as no resources have been returned yet.
+             * This method must be invoked with the sequenceLock held.
+             */
+            private boolean retryWithoutVirtualListView() {
+                if (totalResourceCount > 0 || pendingResult != null) {
+                    return false;
+                }
+                totalPagedResults = -1;
+                return true;
             }
 
             /** This method must be invoked with the sequenceLock held. */
@@ -880,10 +934,12 @@ final class SubResourceImpl {
              */
             private void completeIfNecessary(final PromiseImpl<QueryResponse, ResourceException> handler) {
                 if (pendingResourceCount == 0 && pendingResult != null && !resultSent) {
-                    if (pendingResult == SUCCESS) {
-                        handler.handleResult(newQueryResponse(cookie));
-                    } else {
+                    if (pendingResult != SUCCESS) {
                         handler.handleException(pendingResult);
+                    } else if (totalPagedResults >= 0) {
+                        handler.handleResult(newQueryResponse(cookie, CountPolicy.EXACT, totalPagedResults));
+                    } else {
+                        handler.handleResult(newQueryResponse(cookie));
                     }
                     resultSent = true;
                 }
@@ -0,0 +1,153 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.rest2ldap;
+
+import static org.forgerock.opendj.rest2ldap.Rest2ldapMessages.WARN_VLV_CONTROLS_NOT_SUPPORTED;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.util.Collection;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.json.resource.CountPolicy;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.opendj.ldap.Connection;
+import org.forgerock.opendj.ldap.DecodeException;
+import org.forgerock.opendj.ldap.DecodeOptions;
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.opendj.ldap.RootDSE;
+import org.forgerock.opendj.ldap.controls.ServerSideSortRequestControl;
+import org.forgerock.opendj.ldap.controls.VirtualListViewRequestControl;
+import org.forgerock.opendj.ldap.controls.VirtualListViewResponseControl;
+import org.forgerock.opendj.ldap.requests.SearchRequest;
+import org.forgerock.opendj.ldap.responses.Result;
+import org.forgerock.util.Function;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+
+/**
+ * Computes paged results offsets of a collection using the server side sort and virtual list view (VLV) controls,
+ * so that the directory server positions the page using a VLV index instead of rest2ldap reading and discarding
+ * all the entries preceding the page.
+ * <p>
+ * LDAP provides no way to discover the VLV indexes of a directory server, so the sort keys of a VLV index matching
+ * the collection's base DN, scope and base search filter must be configured explicitly. The controls are only used
+ * once the directory server advertises support for them in its root DSE.
+ */
+final class VirtualListViewPaging {
+    private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+    private final String sortKeys;
+    private final ServerSideSortRequestControl sortControl;
+    /** Whether the directory server supports the controls, or {@code null} if it is not known yet. */
+    private volatile Boolean isSupported;
+
+    /**
+     * Creates a new VLV paging strategy.
+     *
+     * @param sortKeys
+     *         The comma separated list of sort keys of the VLV index, as defined by
+     *         {@link org.forgerock.opendj.ldap.SortKey#valueOf(String)}.
+     * @throws org.forgerock.i18n.LocalizedIllegalArgumentException
+     *         If {@code sortKeys} is not a valid list of sort keys.
+     */
+    VirtualListViewPaging(final String sortKeys) {
+        this.sortKeys = sortKeys;
+        this.sortControl = ServerSideSortRequestControl.newControl(true, sortKeys);
+    }
+
+    String getSortKeys() {
+        return sortKeys;
+    }
+
+    /**
+     * Returns {@code true} if the query only retrieves a page at an offset or the total number of results, and
+     * leaves the ordering of results up to rest2ldap. Cookie based paging keeps using the simple paged results
+     * control.
+     */
+    boolean isApplicable(final QueryRequest request) {
+        return request.getPageSize() > 0
+                && request.getPagedResultsCookie() == null
+                && request.getSortKeys().isEmpty()
+                && (request.getPagedResultsOffset() > 0
+                    || (request.getTotalPagedResultsPolicy() != null
+                        && request.getTotalPagedResultsPolicy() != CountPolicy.NONE));
+    }
+
+    /** Returns whether the directory server advertises support for the required controls. */
+    Promise<Boolean, NeverThrowsException> isSupported(final Connection connection) {
+        final Boolean supported = isSupported;
+        if (supported != null) {
+            return newResultPromise(supported);
+        }
+        return RootDSE.readRootDSEAsync(connection).then(new Function<RootDSE, Boolean, NeverThrowsException>() {
+            @Override
+            public Boolean apply(final RootDSE rootDSE) {
+                final Collection<String> controls = rootDSE.getSupportedControls();
+                final boolean supported = controls.contains(ServerSideSortRequestControl.OID)
+                        && controls.contains(VirtualListViewRequestControl.OID);
+                if (!supported) {
+                    logger.warn(WARN_VLV_CONTROLS_NOT_SUPPORTED.get(sortKeys));
+                }
+                isSupported = supported;
+                return supported;
+            }
+        }, new Function<LdapException, Boolean, NeverThrowsException>() {
+            @Override
+            public Boolean apply(final LdapException e) {
+                // Do not remember transient failures.
+                logger.traceException(e);
+                return false;
+            }
+        });
+    }
+
+    /** Adds the controls retrieving {@code pageSize} entries starting at the zero based {@code offset}. */
+    void addControls(final SearchRequest request, final int offset, final int pageSize) {
+        request.addControl(sortControl);
+        request.addControl(VirtualListViewRequestControl.newOffsetControl(true, offset + 1, 0, 0, pageSize - 1, null));
+    }
+
+    /**
+     * Returns the total number of entries reported by the directory server, or {@code -1} if the directory server
+     * did not honor the VLV request.
+     */
+    int getContentCount(final Result result, final DecodeOptions decodeOptions) {
+        try {
+            final VirtualListViewResponseControl control =
+                    result.getControl(VirtualListViewResponseControl.DECODER, decodeOptions);
+            if (control != null && control.getResult() == ResultCode.SUCCESS) {
+                return control.getContentCount();
+            }
+        } catch (final DecodeException e) {
+            logger.traceException(e);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns {@code true} if the search failed because the directory server could not serve it using a VLV index,
+     * in which case it should be retried without the VLV controls.
+     */
+    boolean isUnsupported(final LdapException e) {
+        final ResultCode resultCode = e.getResult().getResultCode();
+        return resultCode == ResultCode.UNAVAILABLE_CRITICAL_EXTENSION
+                || resultCode == ResultCode.UNWILLING_TO_PERFORM
+                || resultCode == ResultCode.INSUFFICIENT_ACCESS_RIGHTS
+                || resultCode == ResultCode.SORT_CONTROL_MISSING
+                || resultCode == ResultCode.VIRTUAL_LIST_VIEW_ERROR;
+    }
+}
@@ -19,6 +19,8 @@ import org.forgerock.opendj.ldap.ConnectionFactory;
 import org.forgerock.opendj.ldap.DN;
 import org.forgerock.opendj.ldap.SearchScope;
 import org.forgerock.opendj.ldap.schema.Schema;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
 
 
 /**
@@ -95,4 +97,24 @@ public final class AuthenticationStrategies {
                                                               String authcIdTemplate) {
         return new SaslPlainStrategy(connectionFactory, schema, authcIdTemplate);
     }
+
+    /**
+     * Creates an {@link AuthenticationStrategy} remembering the successful authentications performed by another
+     * {@link AuthenticationStrategy}, so that a user repeatedly authenticating with the same credentials is only
+     * authenticated against the LDAP server once per {@code maxAge}. Failed authentications are never cached.
+     *
+     * @param delegate
+     *            {@link AuthenticationStrategy} performing the authentications which are not cached.
+     * @param maxAge
+     *            How long a successful authentication is remembered. Must be limited and not zero.
+     * @param maxEntries
+     *            Maximum number of authentications to remember, the least recently used ones being evicted first.
+     * @return a new caching {@link AuthenticationStrategy}
+     * @throws NullPointerException
+     *             If a parameter is null
+     */
+    public static AuthenticationStrategy newCachingAuthenticationStrategy(AuthenticationStrategy delegate,
+            Duration maxAge, int maxEntries) {
+        return new CachingAuthenticationStrategy(delegate, TimeService.SYSTEM, maxAge, maxEntries);
+    }
 }
@@ -0,0 +1,179 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.rest2ldap.authz;
+
+import static org.forgerock.util.Reject.checkNotNull;
+import static org.forgerock.util.Reject.ifFalse;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.SecurityContext;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * Remembers the successful authentications performed by another {@link AuthenticationStrategy} for a limited time,
+ * so that clients repeatedly sending the same credentials do not cost a search and a bind, and therefore a password
+ * hash verification on the LDAP server, for every request.
+ * <p>
+ * The cache holds at most one authentication per user and neither usernames nor passwords are kept: entries are
+ * indexed by a salted hash of the username and verified against a salted hash of the username and password, using
+ * a salt randomly generated when the cache is created. Failed authentications are never cached so that they are
+ * always seen by the LDAP server's password policy. A failed authentication also evicts the cached authentication
+ * of the user, as does a successful authentication using a different password.
+ */
+final class CachingAuthenticationStrategy implements AuthenticationStrategy {
+    /** A successful authentication. */
+    private static final class CachedAuthentication {
+        private final byte[] credentialsHash;
+        private final long expirationTime;
+        private final String authenticationId;
+        private final Map<String, Object> authorization;
+
+        private CachedAuthentication(final byte[] credentialsHash, final long expirationTime,
+                                     final SecurityContext securityContext) {
+            this.credentialsHash = credentialsHash;
+            this.expirationTime = expirationTime;
+            this.authenticationId = securityContext.getAuthenticationId();
+            this.authorization = Collections.unmodifiableMap(
+                    new LinkedHashMap<>(securityContext.getAuthorization()));
+        }
+    }
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final AuthenticationStrategy delegate;
+    private final TimeService time;
+    private final long maxAgeMillis;
+    private final byte[] salt = new byte[16];
+    /** Least recently used authentications indexed by the hex encoded hash of the username. */
+    private final Map<String, CachedAuthentication> cache;
+
+    /**
+     * Creates a new caching authentication strategy.
+     *
+     * @param delegate
+     *            The strategy performing the authentications which are not cached.
+     * @param time
+     *            The time service used for expiring cached authentications.
+     * @param maxAge
+     *            How long a successful authentication is remembered.
+     * @param maxEntries
+     *            The maximum number of authentications to remember.
+     * @throws NullPointerException
+     *             If a parameter is null.
+     */
+    CachingAuthenticationStrategy(final AuthenticationStrategy delegate, final TimeService time,
+            final Duration maxAge, final int maxEntries) {
+        this.delegate = checkNotNull(delegate, "delegate cannot be null");
+        this.time = checkNotNull(time, "time cannot be null");
+        ifFalse(!maxAge.isUnlimited() && !maxAge.isZero(), "maxAge must be limited and positive");
+        ifFalse(maxEntries > 0, "maxEntries must be positive");
+        this.maxAgeMillis = maxAge.to(TimeUnit.MILLISECONDS);
+        this.cache = new LinkedHashMap<String, CachedAuthentication>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedAuthentication> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        new SecureRandom().nextBytes(salt);
+    }
+
+    @Override
+    public Promise<SecurityContext, LdapException> authenticate(final String username, final String password,
+            final Context parentContext) {
+        final String userKey = toHex(hash(username, null));
+        final byte[] credentialsHash = hash(username, password);
+
+        final CachedAuthentication cached;
+        synchronized (cache) {
+            cached = cache.get(userKey);
+        }
+        if (cached != null && time.now() < cached.expirationTime
+                && MessageDigest.isEqual(cached.credentialsHash, credentialsHash)) {
+            return newResultPromise(
+                    new SecurityContext(parentContext, cached.authenticationId, cached.authorization));
+        }
+
+        return delegate.authenticate(username, password, parentContext)
+                       .thenOnResult(new ResultHandler<SecurityContext>() {
+                           @Override
+                           public void handleResult(final SecurityContext result) {
+                               final CachedAuthentication authentication =
+                                       new CachedAuthentication(credentialsHash, time.now() + maxAgeMillis, result);
+                               synchronized (cache) {
+                                   cache.put(userKey, authentication);
+                               }
+                           }
+                       })
+                       .thenOnException(new ExceptionHandler<LdapException>() {
+                           @Override
+                           public void handleException(final LdapException exception) {
+                               synchronized (cache) {
+                                   cache.remove(userKey);
+                               }
+                           }
+                       });
+    }
+
+    /** Hashes the salted username, followed by the password if it is not {@code null}. */
+    private byte[] hash(final String username, final String password) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            digest.update(salt);
+            digest.update(username.getBytes(StandardCharsets.UTF_8));
+            if (password != null) {
+                // Separate the username from the password so that their boundary cannot be moved.
+                digest.update((byte) 0);
+                digest.update(password.getBytes(StandardCharsets.UTF_8));
+            }
+            return digest.digest();
+        } catch (final NoSuchAlgorithmException e) {
+            // SHA-256 is supported by all Java platforms.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /** Returns the number of cached authentications, for testing purposes. */
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
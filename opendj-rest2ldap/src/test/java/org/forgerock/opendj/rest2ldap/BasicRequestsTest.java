@@ -397,6 +397,29 @@ public final class BasicRequestsTest extends ForgeRockTestCase {
             "test3");
     }
 
+    @Test
+    public void testQueryPageResultsIndexedFallsBackWhenVirtualListViewIsNotSupported() throws Exception {
+        final Connection connection = newConnection();
+        final List<ResourceResponse> resources = new ArrayList<>();
+
+        QueryResponse result =
+            connection.query(
+                newAuthConnectionContext(),
+                newQueryRequest("vlv-users")
+                    .setQueryFilter(NO_FILTER)
+                    .setPageSize(2)
+                    .setPagedResultsOffset(1),
+                resources);
+
+        assertThat(result.getPagedResultsCookie()).isNotNull();
+        assertThat(result.getTotalPagedResults()).isEqualTo(-1);
+        assertThat(resources).hasSize(2);
+
+        checkThatUsersExist(resources,
+            "test2",
+            "test3");
+    }
+
     @Test
     public void testQueryPageResultsIndexedWithSubtreeFlatteningAndSearchFilter() throws Exception {
         final Connection connection = newConnection();
@@ -1017,7 +1040,13 @@ public final class BasicRequestsTest extends ForgeRockTestCase {
                         .useClientDnNaming("uid")
                         .isReadOnly(true)
                         .flattenSubtree(true)
-                        .baseSearchFilter("(objectClass=person)")),
+                        .baseSearchFilter("(objectClass=person)"))
+                .subResource(
+                    collectionOf("user")
+                        .urlTemplate("vlv-users")
+                        .dnTemplate("dc=test")
+                        .useClientDnNaming("uid")
+                        .virtualListViewSortKeys("uid")),
             resource("user")
                 .objectClasses("top", "person")
                 .property(
@@ -0,0 +1,182 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.rest2ldap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.resource.Requests.newQueryRequest;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.Resources.newInternalConnection;
+import static org.forgerock.opendj.ldap.Connections.newInternalConnectionFactory;
+import static org.forgerock.opendj.rest2ldap.Rest2Ldap.collectionOf;
+import static org.forgerock.opendj.rest2ldap.Rest2Ldap.reference;
+import static org.forgerock.opendj.rest2ldap.Rest2Ldap.resource;
+import static org.forgerock.opendj.rest2ldap.Rest2Ldap.rest2Ldap;
+import static org.forgerock.opendj.rest2ldap.Rest2Ldap.simple;
+import static org.forgerock.opendj.rest2ldap.TestUtils.ctx;
+import static org.forgerock.util.Options.defaultOptions;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.resource.Connection;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.opendj.ldap.MemoryBackend;
+import org.forgerock.opendj.ldap.RequestContext;
+import org.forgerock.opendj.ldap.RequestHandler;
+import org.forgerock.opendj.ldap.requests.SearchRequest;
+import org.forgerock.opendj.ldif.LDIFEntryReader;
+import org.forgerock.testng.ForgeRockTestCase;
+import org.forgerock.util.query.QueryFilter;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test
+public class ReferencePropertyMapperTest extends ForgeRockTestCase {
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @Test
+    public void testQueryResolvesReferencesInBatches() throws Exception {
+        final List<ResourceResponse> groups = new ArrayList<>();
+        final QueryFilter<JsonPointer> all = QueryFilter.alwaysTrue();
+        newConnection().query(newContext(), newQueryRequest("").setQueryFilter(all), groups);
+
+        assertThat(groups).hasSize(3);
+        for (final ResourceResponse group : groups) {
+            if (group.getId().equals("partial")) {
+                assertThat(group.getContent().get("members").asList()).containsOnly("test1");
+            } else {
+                assertThat(group.getContent().get("members").asList()).containsOnly("test1", "test2", "test3");
+            }
+        }
+        // One search for the groups and one search for all their distinct members.
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testReadIgnoresMissingReferences() throws Exception {
+        final ResourceResponse group = newConnection().read(newContext(), newReadRequest("partial"));
+
+        assertThat(group.getContent().get("members").asList()).containsOnly("test1");
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    private Connection newConnection() {
+        return newInternalConnection(rest2Ldap(
+            defaultOptions().set(Rest2Ldap.USE_MVCC, false),
+            resource("api")
+                .subResource(
+                    collectionOf("group")
+                        .dnTemplate("ou=groups,dc=test")
+                        .useClientDnNaming("cn")),
+            resource("group")
+                .objectClasses("top", "groupOfNames")
+                .property("_id", simple("cn"))
+                .property("members", reference("member", "ou=people,dc=test", "uid", simple("uid"))
+                                         .isMultiValued(true)))
+            .newRequestHandlerFor("api"));
+    }
+
+    private AuthenticatedConnectionContext newContext() throws Exception {
+        searches.set(0);
+        // @formatter:off
+        final MemoryBackend backend = new MemoryBackend(new LDIFEntryReader(
+                "dn: dc=test",
+                "objectClass: domain",
+                "objectClass: top",
+                "dc: test",
+                "",
+                "dn: ou=people,dc=test",
+                "objectClass: organizationalUnit",
+                "objectClass: top",
+                "ou: people",
+                "",
+                "dn: uid=test1,ou=people,dc=test",
+                "objectClass: top",
+                "objectClass: person",
+                "uid: test1",
+                "cn: test user 1",
+                "sn: user 1",
+                "",
+                "dn: uid=test2,ou=people,dc=test",
+                "objectClass: top",
+                "objectClass: person",
+                "uid: test2",
+                "cn: test user 2",
+                "sn: user 2",
+                "",
+                "dn: uid=test3,ou=people,dc=test",
+                "objectClass: top",
+                "objectClass: person",
+                "uid: test3",
+                "cn: test user 3",
+                "sn: user 3",
+                "",
+                "dn: ou=groups,dc=test",
+                "objectClass: organizationalUnit",
+                "objectClass: top",
+                "ou: groups",
+                "",
+                "dn: cn=all,ou=groups,dc=test",
+                "objectClass: top",
+                "objectClass: groupOfNames",
+                "cn: all",
+                "member: uid=test1,ou=people,dc=test",
+                "member: uid=test2,ou=people,dc=test",
+                "member: uid=test3,ou=people,dc=test",
+                "",
+                "dn: cn=everyone,ou=groups,dc=test",
+                "objectClass: top",
+                "objectClass: groupOfNames",
+                "cn: everyone",
+                "member: uid=test3,ou=people,dc=test",
+                "member: uid=test2,ou=people,dc=test",
+                "member: uid=test1,ou=people,dc=test",
+                "",
+                "dn: cn=partial,ou=groups,dc=test",
+                "objectClass: top",
+                "objectClass: groupOfNames",
+                "cn: partial",
+                "member: uid=test1,ou=people,dc=test",
+                "member: uid=missing,ou=people,dc=test"));
+        // @formatter:on
+        return new AuthenticatedConnectionContext(ctx(), newInternalConnectionFactory(countSearches(backend))
+                .getConnection());
+    }
+
+    @SuppressWarnings("unchecked")
+    private RequestHandler<RequestContext> countSearches(final RequestHandler<RequestContext> handler) {
+        return (RequestHandler<RequestContext>) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { RequestHandler.class }, new InvocationHandler() {
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args)
+                        throws Throwable {
+                    if (args != null) {
+                        for (final Object arg : args) {
+                            if (arg instanceof SearchRequest) {
+                                searches.incrementAndGet();
+                            }
+                        }
+                    }
+                    return method.invoke(handler, args);
+                }
+            });
+    }
+}
@@ -423,6 +423,33 @@ public class Rest2LdapJsonConfiguratorTest extends ForgeRockTestCase {
         }
     }
 
+    @Test
+    public void testVirtualListViewSortKeys() throws Exception {
+        final List<org.forgerock.opendj.rest2ldap.Resource> resources =
+            Rest2LdapJsonConfigurator.configureResources(parseJson(
+                "{"
+                    + "'example-v1': {"
+                        + "'subResources': {"
+                            + "'all-users': {"
+                                + "'type': 'collection',"
+                                + "'dnTemplate': 'ou=people,dc=example,dc=com',"
+                                + "'resource': 'frapi:opendj:rest2ldap:user:1.0',"
+                                + "'namingStrategy': {"
+                                    + "'type': 'clientDnNaming',"
+                                    + "'dnAttribute': 'uid'"
+                                + "},"
+                                + "'virtualListViewSortKeys': 'sn,givenName'"
+                            + "}"
+                        + "}"
+                    + "}"
+                + "}"));
+
+        final SubResourceCollection allUsersSubResource =
+            (SubResourceCollection) resources.get(0).getSubResourceMap().get("all-users");
+
+        assertThat(allUsersSubResource.getVirtualListViewSortKeys()).isEqualTo("sn,givenName");
+    }
+
     private RequestHandler createRequestHandler(final File endpointsDir) throws IOException {
         return Rest2LdapJsonConfigurator.configureEndpoints(endpointsDir, Options.defaultOptions());
     }
@@ -0,0 +1,135 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.opendj.rest2ldap.authz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.fail;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.services.context.SecurityContext;
+import org.forgerock.testng.ForgeRockTestCase;
+import org.forgerock.util.promise.Promises;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test
+public class CachingAuthenticationStrategyTest extends ForgeRockTestCase {
+    private AuthenticationStrategy delegate;
+    private TimeService time;
+    private CachingAuthenticationStrategy strategy;
+
+    @BeforeMethod
+    public void setUp() {
+        delegate = mock(AuthenticationStrategy.class);
+        when(delegate.authenticate(anyString(), anyString(), any(Context.class)))
+                .thenReturn(Promises.<SecurityContext, LdapException> newExceptionPromise(
+                        LdapException.newLdapException(ResultCode.INVALID_CREDENTIALS)));
+        when(delegate.authenticate(eq("user"), eq("password"), any(Context.class)))
+                .thenReturn(Promises.<SecurityContext, LdapException> newResultPromise(newSecurityContext("user")));
+        when(delegate.authenticate(eq("other"), eq("password"), any(Context.class)))
+                .thenReturn(Promises.<SecurityContext, LdapException> newResultPromise(newSecurityContext("other")));
+        time = mock(TimeService.class);
+        when(time.now()).thenReturn(0L);
+        strategy = new CachingAuthenticationStrategy(delegate, time, new Duration(1L, TimeUnit.MINUTES), 1);
+    }
+
+    @Test
+    public void testSuccessfulAuthenticationIsCached() throws Exception {
+        final Context parent = new RootContext();
+        strategy.authenticate("user", "password", new RootContext()).getOrThrow();
+        final SecurityContext context = strategy.authenticate("user", "password", parent).getOrThrow();
+
+        assertThat(context.getAuthenticationId()).isEqualTo("user");
+        assertThat(context.getAuthorization()).containsKey("dn");
+        assertThat(context.getParent()).isSameAs(parent);
+        verify(delegate, times(1)).authenticate(eq("user"), eq("password"), any(Context.class));
+    }
+
+    @Test
+    public void testDifferentPasswordIsNotCached() throws Exception {
+        strategy.authenticate("user", "password", new RootContext()).getOrThrow();
+        assertFails("user", "wrong");
+
+        verify(delegate).authenticate(eq("user"), eq("wrong"), any(Context.class));
+    }
+
+    @Test
+    public void testFailedAuthenticationEvictsCachedAuthentication() throws Exception {
+        strategy.authenticate("user", "password", new RootContext()).getOrThrow();
+        assertFails("user", "wrong");
+        assertThat(strategy.size()).isEqualTo(0);
+
+        strategy.authenticate("user", "password", new RootContext()).getOrThrow();
+        verify(delegate, times(2)).authenticate(eq("user"), eq("password"), any(Context.class));
+    }
+
+    @Test
+    public void testFailedAuthenticationIsNotCached() throws Exception {
+        assertFails("user", "wrong");
+        assertFails("user", "wrong");
+
+        verify(delegate, times(2)).authenticate(eq("user"), eq("wrong"), any(Context.class));
+    }
+
+    @Test
+    public void testCachedAuthenticationExpires() throws Exception {
+        strategy.authenticate("user", "password", new RootContext()).getOrThrow();
+        when(time.now()).thenReturn(TimeUnit.MINUTES.toMillis(1));
+        strategy.authenticate("user", "password", new RootContext()).getOrThrow();
+
+        verify(delegate, times(2)).authenticate(eq("user"), eq("password"), any(Context.class));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAuthenticationIsEvicted() throws Exception {
+        strategy.authenticate("user", "password", new RootContext()).getOrThrow();
+        strategy.authenticate("other", "password", new RootContext()).getOrThrow();
+        assertThat(strategy.size()).isEqualTo(1);
+
+        strategy.authenticate("user", "password", new RootContext()).getOrThrow();
+        verify(delegate, times(2)).authenticate(eq("user"), eq("password"), any(Context.class));
+    }
+
+    private void assertFails(final String username, final String password) throws Exception {
+        try {
+            strategy.authenticate(username, password, new RootContext()).getOrThrow();
+            fail("Authentication should have failed");
+        } catch (final LdapException e) {
+            assertThat(e.getResult().getResultCode()).isEqualTo(ResultCode.INVALID_CREDENTIALS);
+        }
+    }
+
+    private static SecurityContext newSecurityContext(final String authenticationId) {
+        return new SecurityContext(new RootContext(), authenticationId,
+                Collections.<String, Object> singletonMap("dn", "uid=" + authenticationId + ",dc=example,dc=com"));
+    }
+}
@@ -25,9 +25,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.forgerock.i18n.LocalizableMessageBuilder;
+import org.forgerock.i18n.LocalizedIllegalArgumentException;
 import org.forgerock.opendj.io.ASN1;
 import org.forgerock.opendj.io.ASN1Reader;
 import org.forgerock.opendj.io.ASN1Writer;
@@ -39,6 +42,7 @@ import org.forgerock.opendj.ldap.ByteStringBuilder;
 import org.forgerock.opendj.ldap.DN;
 import org.forgerock.opendj.ldap.DecodeException;
 import org.forgerock.opendj.ldap.DecodeOptions;
+import org.forgerock.opendj.ldap.FilterVisitor;
 import org.forgerock.opendj.ldap.LdapException;
 import org.forgerock.opendj.ldap.LinkedAttribute;
 import org.forgerock.opendj.ldap.LinkedHashMapEntry;
@@ -51,6 +55,7 @@ import org.forgerock.opendj.ldap.responses.PasswordModifyExtendedResult;
 import org.forgerock.opendj.ldap.responses.Responses;
 import org.forgerock.opendj.ldap.responses.Result;
 import org.forgerock.opendj.ldap.responses.SearchResultEntry;
+import org.forgerock.opendj.ldap.schema.AttributeType;
 import org.forgerock.opendj.ldap.schema.Schema;
 import org.forgerock.opendj.server.config.meta.VirtualAttributeCfgDefn;
 import org.forgerock.util.Function;
@@ -65,6 +70,7 @@ import org.opends.server.protocols.ldap.LDAPFilter;
 import org.opends.server.protocols.ldap.LDAPModification;
 import org.opends.server.types.AttributeBuilder;
 import org.opends.server.types.DirectoryException;
+import org.opends.server.types.FilterType;
 import org.opends.server.types.LDAPException;
 import org.opends.server.types.Operation;
 import org.opends.server.types.SearchFilter;
@@ -163,12 +169,108 @@ public final class Converters {
      */
     public static SearchFilter toSearchFilter(final org.forgerock.opendj.ldap.Filter filter) {
         try {
-            return SearchFilter.createFilterFromString(filter.toString());
-        } catch (DirectoryException e) {
+            return filter.accept(SEARCH_FILTER_CONVERTER, null);
+        } catch (LocalizedIllegalArgumentException e) {
             throw new IllegalStateException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Builds the server {@link SearchFilter} straight from the SDK filter components, without formatting the filter
+     * to a string and parsing it back.
+     */
+    private static final FilterVisitor<SearchFilter, Void> SEARCH_FILTER_CONVERTER =
+            new FilterVisitor<SearchFilter, Void>() {
+        @Override
+        public SearchFilter visitAndFilter(Void p, List<org.forgerock.opendj.ldap.Filter> subFilters) {
+            return SearchFilter.createANDFilter(toSearchFilters(subFilters));
+        }
+
+        @Override
+        public SearchFilter visitOrFilter(Void p, List<org.forgerock.opendj.ldap.Filter> subFilters) {
+            return SearchFilter.createORFilter(toSearchFilters(subFilters));
+        }
+
+        @Override
+        public SearchFilter visitNotFilter(Void p, org.forgerock.opendj.ldap.Filter subFilter) {
+            return SearchFilter.createNOTFilter(subFilter.accept(this, p));
+        }
+
+        @Override
+        public SearchFilter visitApproxMatchFilter(Void p, String attributeDescription, ByteString assertionValue) {
+            return newFilter(FilterType.APPROXIMATE_MATCH, attributeDescription, assertionValue);
+        }
+
+        @Override
+        public SearchFilter visitEqualityMatchFilter(Void p, String attributeDescription, ByteString assertionValue) {
+            return newFilter(FilterType.EQUALITY, attributeDescription, assertionValue);
+        }
+
+        @Override
+        public SearchFilter visitGreaterOrEqualFilter(Void p, String attributeDescription,
+                ByteString assertionValue) {
+            return newFilter(FilterType.GREATER_OR_EQUAL, attributeDescription, assertionValue);
+        }
+
+        @Override
+        public SearchFilter visitLessOrEqualFilter(Void p, String attributeDescription, ByteString assertionValue) {
+            return newFilter(FilterType.LESS_OR_EQUAL, attributeDescription, assertionValue);
+        }
+
+        @Override
+        public SearchFilter visitPresentFilter(Void p, String attributeDescription) {
+            return newFilter(FilterType.PRESENT, attributeDescription, null);
+        }
+
+        @Override
+        public SearchFilter visitSubstringsFilter(Void p, String attributeDescription, ByteString initialSubstring,
+                List<ByteString> anySubstrings, ByteString finalSubstring) {
+            return new SearchFilter(FilterType.SUBSTRING, null, null, toAttributeDescription(attributeDescription),
+                    null, initialSubstring, new ArrayList<>(anySubstrings), finalSubstring, null, false);
+        }
+
+        @Override
+        public SearchFilter visitExtensibleMatchFilter(Void p, String matchingRule, String attributeDescription,
+                ByteString assertionValue, boolean dnAttributes) {
+            final AttributeDescription attrDesc =
+                    attributeDescription != null ? toAttributeDescription(attributeDescription) : null;
+            return new SearchFilter(FilterType.EXTENSIBLE_MATCH, null, null, attrDesc, assertionValue, null, null,
+                    null, matchingRule, dnAttributes);
+        }
+
+        @Override
+        public SearchFilter visitUnrecognizedFilter(Void p, byte filterTag, ByteString filterBytes) {
+            throw new IllegalStateException("Unsupported filter type: " + filterTag);
+        }
+
+        private List<SearchFilter> toSearchFilters(List<org.forgerock.opendj.ldap.Filter> subFilters) {
+            final List<SearchFilter> results = new ArrayList<>(subFilters.size());
+            for (org.forgerock.opendj.ldap.Filter subFilter : subFilters) {
+                results.add(subFilter.accept(this, null));
+            }
+            return results;
+        }
+
+        private SearchFilter newFilter(FilterType filterType, String attributeDescription, ByteString value) {
+            return new SearchFilter(filterType, null, null, toAttributeDescription(attributeDescription), value,
+                    null, null, null, null, false);
+        }
+
+        /** Same normalization as the one performed when parsing a filter string. */
+        private AttributeDescription toAttributeDescription(String attributeDescription) {
+            final AttributeDescription attrDesc = AttributeDescription.valueOf(attributeDescription);
+            final AttributeType attrType = attrDesc.getAttributeType();
+            if (!attrDesc.getNameOrOID().equals(attrType.getNameOrOID())) {
+                final Set<String> options = new LinkedHashSet<>();
+                for (String option : attrDesc.getOptions()) {
+                    options.add(option);
+                }
+                return AttributeDescription.create(attrType, options);
+            }
+            return attrDesc;
+        }
+    };
+
     /**
      * Converts from OpenDJ LDAP SDK
      * {@link org.forgerock.opendj.ldap.responses.SearchResultReference} to OpenDJ
@@ -617,8 +719,7 @@ public final class Converters {
     public static SearchResultEntry from(
             final org.opends.server.types.SearchResultEntry srvResultEntry) {
 
-        final SearchResultEntry searchResultEntry =
-                Responses.newSearchResultEntry(srvResultEntry.getName().toString());
+        final SearchResultEntry searchResultEntry = Responses.newSearchResultEntry(srvResultEntry.getName());
         for (org.opends.server.types.Attribute a : srvResultEntry.getAllAttributes()) {
             searchResultEntry.addAttribute(from(a));
         }
@@ -800,7 +901,7 @@ public final class Converters {
     public static org.forgerock.opendj.ldap.Entry from(
         final org.opends.server.types.Entry srvResultEntry) {
 
-        final org.forgerock.opendj.ldap.Entry entry = new LinkedHashMapEntry(srvResultEntry.getName().toString());
+        final org.forgerock.opendj.ldap.Entry entry = new LinkedHashMapEntry(srvResultEntry.getName());
         entry.addAttribute(from(srvResultEntry.getObjectClassAttribute()));
         for (org.opends.server.types.Attribute a : srvResultEntry.getAllAttributes()) {
             entry.addAttribute(from(a));
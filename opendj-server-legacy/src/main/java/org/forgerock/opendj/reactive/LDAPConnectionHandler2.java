@@ -669,7 +669,9 @@ public final class LDAPConnectionHandler2 extends ConnectionHandler<LDAPConnecti
                     }
                 }, Options.defaultOptions()
                           .set(LDAPListener.CONNECT_MAX_BACKLOG, backlog)
-                          .set(LDAPListener.REQUEST_MAX_SIZE_IN_BYTES, (int) currentConfig.getMaxRequestSize()));
+                          .set(LDAPListener.REQUEST_MAX_SIZE_IN_BYTES, (int) currentConfig.getMaxRequestSize())
+                          .set(LDAPListener.MAX_CONCURRENT_REQUESTS,
+                                  currentConfig.getMaxConcurrentOpsPerConnection()));
         logger.info(NOTE_CONNHANDLER_STARTED_LISTENING, handlerName);
     }
 
@@ -19,6 +19,7 @@ package org.opends.server.authorization.dseecompat;
 import static org.opends.messages.AccessControlMessages.*;
 
 import org.forgerock.i18n.LocalizableMessage;
+import org.opends.server.types.CompiledSearchFilter;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.SearchFilter;
@@ -30,6 +31,8 @@ public class TargetFilter {
     private final EnumTargetOperator op;
     /** Filter parsed from the ACI used to match the resource entry. */
     private final SearchFilter filter;
+    /** Evaluation plan compiled from the filter, reused for every access check. */
+    private final CompiledSearchFilter compiledFilter;
 
     /**
      * Class representing a targetfilter keyword.
@@ -39,6 +42,7 @@ public class TargetFilter {
     private TargetFilter(EnumTargetOperator op, SearchFilter filter) {
         this.op=op;
         this.filter=filter;
+        this.compiledFilter=filter.compile();
     }
 
     /**
@@ -82,7 +86,7 @@ public class TargetFilter {
      */
     private boolean matchesFilter(Entry e) {
         try {
-            return filter.matchesEntry(e);
+            return compiledFilter.matchesEntry(e);
         } catch (DirectoryException ex) {
             //TODO information message?
             return false;
@@ -42,6 +42,8 @@ public class RebuildConfig
   private final List<String> rebuildList = new ArrayList<>();
   private String tmpDirectory;
   private boolean isClearDegradedState;
+  private boolean isOnline;
+  private int maxEntriesPerSecond;
 
   /**
    * Get the base DN to rebuild.
@@ -228,4 +230,52 @@ public class RebuildConfig
     this.isClearDegradedState = isClearDegradedState;
   }
 
+
+  /**
+   * Returns {@code true} if indexes should be rebuilt while the backend keeps
+   * serving requests.
+   *
+   * @return {@code true} if indexes should be rebuilt online.
+   */
+  public boolean isOnline()
+  {
+    return isOnline;
+  }
+
+  /**
+   * Sets the 'online rebuild' status.
+   *
+   * @param isOnline
+   *          {@code true} if indexes should be rebuilt while the backend keeps
+   *          serving requests.
+   */
+  public void setOnline(boolean isOnline)
+  {
+    this.isOnline = isOnline;
+  }
+
+  /**
+   * Returns the maximum number of entries per second processed by an online
+   * rebuild.
+   *
+   * @return The maximum number of entries per second, or {@code 0} if the
+   *         rebuild is not throttled.
+   */
+  public int getMaxEntriesPerSecond()
+  {
+    return maxEntriesPerSecond;
+  }
+
+  /**
+   * Sets the maximum number of entries per second processed by an online
+   * rebuild.
+   *
+   * @param maxEntriesPerSecond
+   *          The maximum number of entries per second, or {@code 0} if the
+   *          rebuild must not be throttled.
+   */
+  public void setMaxEntriesPerSecond(int maxEntriesPerSecond)
+  {
+    this.maxEntriesPerSecond = maxEntriesPerSecond;
+  }
 }
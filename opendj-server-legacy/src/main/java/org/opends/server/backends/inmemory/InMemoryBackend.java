@@ -0,0 +1,128 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.inmemory;
+
+import static java.nio.file.StandardCopyOption.*;
+
+import static org.opends.messages.BackendMessages.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.server.config.server.InMemoryBackendCfg;
+import org.opends.server.backends.pluggable.BackendImpl;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.core.ServerContext;
+import org.opends.server.types.ExistingFileBehavior;
+import org.opends.server.types.InitializationException;
+import org.opends.server.types.LDIFExportConfig;
+import org.opends.server.types.LDIFImportConfig;
+
+/**
+ * Class defined in the configuration for this backend type.
+ * <p>
+ * When an LDIF file is configured, the backend loads it when it is opened without any data, and
+ * writes its content to it when it is closed.
+ */
+public final class InMemoryBackend extends BackendImpl<InMemoryBackendCfg>
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  private InMemoryBackendCfg config;
+  private ServerContext serverContext;
+  /** Whether the backend was not opened since its storage was created, so it does not contain any data. */
+  private boolean mustLoadLDIF;
+
+  @Override
+  public boolean isConfigurationAcceptable(InMemoryBackendCfg cfg, List<LocalizableMessage> unacceptableReasons,
+      ServerContext serverContext)
+  {
+    return true;
+  }
+
+  @Override
+  public void configureBackend(InMemoryBackendCfg cfg, ServerContext serverContext) throws ConfigException
+  {
+    super.configureBackend(cfg, serverContext);
+    this.config = cfg;
+    this.serverContext = serverContext;
+    this.mustLoadLDIF = true;
+  }
+
+  @Override
+  protected Storage configureStorage(InMemoryBackendCfg cfg, ServerContext serverContext) throws ConfigException
+  {
+    return new InMemoryStorage(cfg.getBackendId());
+  }
+
+  @Override
+  public void openBackend() throws ConfigException, InitializationException
+  {
+    final String ldifFile = config.getLDIFFile();
+    if (mustLoadLDIF && ldifFile != null && getFileForPath(ldifFile).exists())
+    {
+      final String path = getFileForPath(ldifFile).getAbsolutePath();
+      try (LDIFImportConfig importConfig = new LDIFImportConfig(path))
+      {
+        importLDIF(importConfig, serverContext);
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+        throw new InitializationException(
+            ERR_IN_MEMORY_CANNOT_LOAD_LDIF.get(path, config.getBackendId(), stackTraceToSingleLineString(e)), e);
+      }
+    }
+    mustLoadLDIF = false;
+    super.openBackend();
+  }
+
+  @Override
+  public void closeBackend()
+  {
+    super.closeBackend();
+    if (config.getLDIFFile() != null)
+    {
+      saveToLDIF(getFileForPath(config.getLDIFFile()));
+    }
+  }
+
+  /** Writes to a temporary file first, so that the LDIF file is never left incomplete. */
+  private void saveToLDIF(File ldifFile)
+  {
+    final File tmpFile = new File(ldifFile.getPath() + ".tmp");
+    try
+    {
+      try (LDIFExportConfig exportConfig = new LDIFExportConfig(tmpFile.getPath(), ExistingFileBehavior.OVERWRITE))
+      {
+        exportLDIF(exportConfig);
+      }
+      Files.move(tmpFile.toPath(), ldifFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+      logger.info(NOTE_IN_MEMORY_LDIF_SAVED, config.getBackendId(), ldifFile.getPath());
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      logger.error(ERR_IN_MEMORY_CANNOT_SAVE_LDIF, config.getBackendId(), ldifFile.getPath(),
+          stackTraceToSingleLineString(e));
+    }
+  }
+}
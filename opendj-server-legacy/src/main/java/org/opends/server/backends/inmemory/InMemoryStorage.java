@@ -0,0 +1,645 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.inmemory;
+
+import static org.opends.messages.BackendMessages.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.util.Reject;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.Importer;
+import org.opends.server.backends.pluggable.spi.ReadOnlyStorageException;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.SequentialCursor;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
+import org.opends.server.backends.pluggable.spi.StorageStatus;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.UpdateFunction;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.types.BackupConfig;
+import org.opends.server.types.BackupDirectory;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.RestoreConfig;
+
+/**
+ * In-memory implementation of the {@link Storage} engine, keeping each tree in a concurrent
+ * skip-list.
+ * <p>
+ * Each record holds its versions, so that readers work on a snapshot of the storage without taking
+ * any lock. Write operations are serialized: they write versions which are not visible until they
+ * commit, and which are removed if they fail. Versions which cannot be read anymore are dropped by
+ * subsequent write operations.
+ * <p>
+ * The content of the storage is kept when it is closed, so that it survives the backend being taken
+ * offline for an import or an index rebuild. It is only lost when the storage files are removed, or
+ * when the server stops.
+ */
+final class InMemoryStorage implements Storage
+{
+  /** The importer commits its transaction after this number of updates. */
+  private static final int IMPORT_MAX_UPDATES_PER_TXN = 10000;
+
+  /** The trees and record counts produced by a transaction. */
+  private static final class Snapshot
+  {
+    private final long txnId;
+    private final Map<TreeName, TreeState> trees;
+    /** The number of readers currently using this snapshot. */
+    private final AtomicInteger nbReaders = new AtomicInteger();
+
+    private Snapshot(long txnId, Map<TreeName, TreeState> trees)
+    {
+      this.txnId = txnId;
+      this.trees = trees;
+    }
+  }
+
+  /** The records of a tree and their number. */
+  private static final class TreeState
+  {
+    private final ConcurrentNavigableMap<ByteString, Record> records;
+    private long recordCount;
+
+    private TreeState(ConcurrentNavigableMap<ByteString, Record> records, long recordCount)
+    {
+      this.records = records;
+      this.recordCount = recordCount;
+    }
+  }
+
+  /** A record which was deleted, and can be removed from its tree once no reader can see it. */
+  private static final class DeletedRecord
+  {
+    private final long txnId;
+    private final ConcurrentNavigableMap<ByteString, Record> records;
+    private final ByteString key;
+
+    private DeletedRecord(long txnId, ConcurrentNavigableMap<ByteString, Record> records, ByteString key)
+    {
+      this.txnId = txnId;
+      this.records = records;
+      this.key = key;
+    }
+  }
+
+  /** Restores the most recent version of a record if a write transaction fails. */
+  private static final class Undo
+  {
+    private final ConcurrentNavigableMap<ByteString, Record> records;
+    private final ByteString key;
+    private final Record previous;
+
+    private Undo(ConcurrentNavigableMap<ByteString, Record> records, ByteString key, Record previous)
+    {
+      this.records = records;
+      this.key = key;
+      this.previous = previous;
+    }
+  }
+
+  /** Read-only transaction on a snapshot. */
+  private final class SnapshotTransaction implements WriteableTransaction
+  {
+    private final Snapshot snapshot;
+
+    private SnapshotTransaction(Snapshot snapshot)
+    {
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public ByteString read(TreeName treeName, ByteSequence key)
+    {
+      final TreeState tree = snapshot.trees.get(treeName);
+      return tree != null ? Record.getVisibleValue(tree.records.get(key.toByteString()), snapshot.txnId) : null;
+    }
+
+    @Override
+    public Cursor<ByteString, ByteString> openCursor(TreeName treeName)
+    {
+      final TreeState tree = snapshot.trees.get(treeName);
+      return new RecordCursor(tree != null ? tree.records : EMPTY_TREE, snapshot.txnId);
+    }
+
+    @Override
+    public long getRecordCount(TreeName treeName)
+    {
+      final TreeState tree = snapshot.trees.get(treeName);
+      return tree != null ? tree.recordCount : 0;
+    }
+
+    @Override
+    public void openTree(TreeName name, boolean createOnDemand)
+    {
+      if (createOnDemand)
+      {
+        throw new ReadOnlyStorageException();
+      }
+    }
+
+    @Override
+    public void deleteTree(TreeName name)
+    {
+      throw new ReadOnlyStorageException();
+    }
+
+    @Override
+    public void put(TreeName treeName, ByteSequence key, ByteSequence value)
+    {
+      throw new ReadOnlyStorageException();
+    }
+
+    @Override
+    public boolean update(TreeName treeName, ByteSequence key, UpdateFunction f)
+    {
+      throw new ReadOnlyStorageException();
+    }
+
+    @Override
+    public boolean delete(TreeName treeName, ByteSequence key)
+    {
+      throw new ReadOnlyStorageException();
+    }
+  }
+
+  /** Write transaction, writing versions which are only visible to itself until it commits. */
+  private final class WriteTxn implements WriteableTransaction
+  {
+    private final long txnId;
+    /** The oldest transaction which may still be read, older versions can be dropped. */
+    private final long oldestReadTxnId;
+    private final Map<TreeName, TreeState> trees = new HashMap<>();
+    private final List<Undo> undos = new ArrayList<>();
+    private final List<DeletedRecord> deletedRecords = new ArrayList<>();
+    private int nbUpdates;
+
+    private WriteTxn(Snapshot base, long oldestReadTxnId)
+    {
+      this.txnId = base.txnId + 1;
+      this.oldestReadTxnId = oldestReadTxnId;
+      for (Map.Entry<TreeName, TreeState> entry : base.trees.entrySet())
+      {
+        final TreeState tree = entry.getValue();
+        trees.put(entry.getKey(), new TreeState(tree.records, tree.recordCount));
+      }
+    }
+
+    @Override
+    public ByteString read(TreeName treeName, ByteSequence key)
+    {
+      final TreeState tree = trees.get(treeName);
+      return tree != null ? Record.getVisibleValue(tree.records.get(key.toByteString()), txnId) : null;
+    }
+
+    @Override
+    public Cursor<ByteString, ByteString> openCursor(final TreeName treeName)
+    {
+      final TreeState tree = trees.get(treeName);
+      return new RecordCursor(tree != null ? tree.records : EMPTY_TREE, txnId)
+      {
+        @Override
+        void deleteRecord(ByteString key)
+        {
+          WriteTxn.this.delete(treeName, key);
+        }
+      };
+    }
+
+    @Override
+    public long getRecordCount(TreeName treeName)
+    {
+      final TreeState tree = trees.get(treeName);
+      return tree != null ? tree.recordCount : 0;
+    }
+
+    @Override
+    public void openTree(TreeName treeName, boolean createOnDemand)
+    {
+      if (createOnDemand)
+      {
+        getOrCreateTree(treeName);
+      }
+    }
+
+    private TreeState getOrCreateTree(TreeName treeName)
+    {
+      TreeState tree = trees.get(treeName);
+      if (tree == null)
+      {
+        tree = new TreeState(new ConcurrentSkipListMap<ByteString, Record>(), 0);
+        trees.put(treeName, tree);
+      }
+      return tree;
+    }
+
+    @Override
+    public void deleteTree(TreeName treeName)
+    {
+      // Readers of previous snapshots keep accessing the records of the deleted tree
+      trees.remove(treeName);
+    }
+
+    @Override
+    public void put(TreeName treeName, ByteSequence key, ByteSequence value)
+    {
+      final TreeState tree = getOrCreateTree(treeName);
+      if (write(tree.records, key.toByteString(), value.toByteString()) == null)
+      {
+        tree.recordCount++;
+      }
+    }
+
+    @Override
+    public boolean update(TreeName treeName, ByteSequence key, UpdateFunction f)
+    {
+      final ByteString oldValue = read(treeName, key);
+      final ByteSequence newValue = f.computeNewValue(oldValue);
+      if (Objects.equals(newValue, oldValue))
+      {
+        return false;
+      }
+      if (newValue == null)
+      {
+        delete(treeName, key);
+      }
+      else
+      {
+        put(treeName, key, newValue);
+      }
+      return true;
+    }
+
+    @Override
+    public boolean delete(TreeName treeName, ByteSequence key)
+    {
+      final TreeState tree = trees.get(treeName);
+      final ByteString k = key.toByteString();
+      if (tree == null || read(treeName, k) == null)
+      {
+        return false;
+      }
+      write(tree.records, k, null);
+      tree.recordCount--;
+      deletedRecords.add(new DeletedRecord(txnId, tree.records, k));
+      return true;
+    }
+
+    /**
+     * Writes a new version of a record.
+     *
+     * @return the value visible before this write, or {@code null} if there was none
+     */
+    private ByteString write(ConcurrentNavigableMap<ByteString, Record> records, ByteString key, ByteString value)
+    {
+      nbUpdates++;
+      final Record head = records.get(key);
+      final ByteString oldValue = Record.getVisibleValue(head, txnId);
+      if (head != null && head.txnId == txnId)
+      {
+        // Already written by this transaction
+        records.put(key, new Record(txnId, value, head.previous));
+        return oldValue;
+      }
+      if (head != null)
+      {
+        head.trim(oldestReadTxnId);
+      }
+      records.put(key, new Record(txnId, value, head));
+      undos.add(new Undo(records, key, head));
+      return oldValue;
+    }
+
+    private void rollback()
+    {
+      for (int i = undos.size() - 1; i >= 0; i--)
+      {
+        final Undo undo = undos.get(i);
+        if (undo.previous != null)
+        {
+          undo.records.put(undo.key, undo.previous);
+        }
+        else
+        {
+          undo.records.remove(undo.key);
+        }
+      }
+    }
+  }
+
+  /** Importer writing records in large transactions. */
+  private final class ImporterImpl implements Importer
+  {
+    private WriteTxn txn = beginWrite();
+
+    @Override
+    public synchronized void clearTree(TreeName treeName)
+    {
+      txn.deleteTree(treeName);
+      txn.openTree(treeName, true);
+    }
+
+    @Override
+    public synchronized void put(TreeName treeName, ByteSequence key, ByteSequence value)
+    {
+      txn.put(treeName, key, value);
+      if (txn.nbUpdates >= IMPORT_MAX_UPDATES_PER_TXN)
+      {
+        commit(txn);
+        txn = beginWrite();
+      }
+    }
+
+    @Override
+    public synchronized ByteString read(TreeName treeName, ByteSequence key)
+    {
+      return txn.read(treeName, key);
+    }
+
+    @Override
+    public synchronized SequentialCursor<ByteString, ByteString> openCursor(TreeName treeName)
+    {
+      // The cursor reads the committed snapshot, which is not modified by subsequent puts
+      commit(txn);
+      txn = beginWrite();
+      final Snapshot snapshot = acquireSnapshot();
+      final TreeState tree = snapshot.trees.get(treeName);
+      return new RecordCursor(tree != null ? tree.records : EMPTY_TREE, snapshot.txnId)
+      {
+        private boolean closed;
+
+        @Override
+        public void close()
+        {
+          if (!closed)
+          {
+            closed = true;
+            releaseSnapshot(snapshot);
+          }
+        }
+      };
+    }
+
+    @Override
+    public synchronized void close()
+    {
+      try
+      {
+        commit(txn);
+      }
+      finally
+      {
+        InMemoryStorage.this.close();
+      }
+    }
+  }
+
+  private static final ConcurrentNavigableMap<ByteString, Record> EMPTY_TREE =
+      new ConcurrentSkipListMap<ByteString, Record>();
+
+  private final String backendId;
+  /** The last committed snapshot. */
+  private volatile Snapshot current = new Snapshot(0, Collections.<TreeName, TreeState> emptyMap());
+  /** The snapshots superseded by a more recent one, which may still be used by readers. */
+  private final ConcurrentLinkedDeque<Snapshot> oldSnapshots = new ConcurrentLinkedDeque<>();
+  /** A semaphore rather than a lock, since the importer commits from any thread. */
+  private final Semaphore writeLock = new Semaphore(1);
+  /** Only accessed by the writer. */
+  private final Deque<DeletedRecord> deletedRecords = new ArrayDeque<>();
+  private volatile AccessMode accessMode;
+
+  /**
+   * Creates a new in-memory storage.
+   *
+   * @param backendId
+   *          the identifier of the backend using this storage
+   */
+  InMemoryStorage(String backendId)
+  {
+    this.backendId = backendId;
+  }
+
+  @Override
+  public void open(AccessMode accessMode)
+  {
+    Reject.ifNull(accessMode, "accessMode must not be null");
+    this.accessMode = accessMode;
+  }
+
+  @Override
+  public Importer startImport()
+  {
+    accessMode = AccessMode.READ_WRITE;
+    return new ImporterImpl();
+  }
+
+  @Override
+  public <T> T read(ReadOperation<T> operation) throws Exception
+  {
+    final Snapshot snapshot = acquireSnapshot();
+    try
+    {
+      return operation.run(new SnapshotTransaction(snapshot));
+    }
+    finally
+    {
+      releaseSnapshot(snapshot);
+    }
+  }
+
+  @Override
+  public void write(WriteOperation operation) throws Exception
+  {
+    if (accessMode == null || !accessMode.isWriteable())
+    {
+      final Snapshot snapshot = acquireSnapshot();
+      try
+      {
+        operation.run(new SnapshotTransaction(snapshot));
+      }
+      finally
+      {
+        releaseSnapshot(snapshot);
+      }
+      return;
+    }
+
+    final WriteTxn txn = beginWrite();
+    boolean committed = false;
+    try
+    {
+      operation.run(txn);
+      commit(txn);
+      committed = true;
+    }
+    finally
+    {
+      if (!committed)
+      {
+        txn.rollback();
+        writeLock.release();
+      }
+    }
+  }
+
+  private Snapshot acquireSnapshot()
+  {
+    for (;;)
+    {
+      final Snapshot snapshot = current;
+      snapshot.nbReaders.incrementAndGet();
+      // The writer may have superseded the snapshot and dropped its versions before it was pinned
+      if (snapshot == current)
+      {
+        return snapshot;
+      }
+      snapshot.nbReaders.decrementAndGet();
+    }
+  }
+
+  private void releaseSnapshot(Snapshot snapshot)
+  {
+    snapshot.nbReaders.decrementAndGet();
+  }
+
+  private WriteTxn beginWrite()
+  {
+    writeLock.acquireUninterruptibly();
+    final long oldestReadTxnId = getOldestReadTxnId();
+    // Remove the deleted records which cannot be read anymore
+    while (!deletedRecords.isEmpty() && deletedRecords.peekFirst().txnId <= oldestReadTxnId)
+    {
+      final DeletedRecord deleted = deletedRecords.removeFirst();
+      final Record head = deleted.records.get(deleted.key);
+      if (head != null && head.value == null && head.txnId <= oldestReadTxnId)
+      {
+        deleted.records.remove(deleted.key, head);
+      }
+    }
+    return new WriteTxn(current, oldestReadTxnId);
+  }
+
+  private long getOldestReadTxnId()
+  {
+    long oldestReadTxnId = current.txnId;
+    for (Iterator<Snapshot> it = oldSnapshots.iterator(); it.hasNext();)
+    {
+      final Snapshot snapshot = it.next();
+      if (snapshot.nbReaders.get() == 0)
+      {
+        it.remove();
+      }
+      else
+      {
+        oldestReadTxnId = Math.min(oldestReadTxnId, snapshot.txnId);
+      }
+    }
+    return oldestReadTxnId;
+  }
+
+  /** Publishes the versions written by the provided transaction, and ends it. */
+  private void commit(WriteTxn txn)
+  {
+    final Snapshot snapshot = new Snapshot(txn.txnId, Collections.unmodifiableMap(txn.trees));
+    oldSnapshots.add(current);
+    current = snapshot;
+    deletedRecords.addAll(txn.deletedRecords);
+    writeLock.release();
+  }
+
+  @Override
+  public void removeStorageFiles()
+  {
+    writeLock.acquireUninterruptibly();
+    try
+    {
+      oldSnapshots.add(current);
+      current = new Snapshot(current.txnId + 1, Collections.<TreeName, TreeState> emptyMap());
+      deletedRecords.clear();
+    }
+    finally
+    {
+      writeLock.release();
+    }
+  }
+
+  @Override
+  public StorageStatus getStorageStatus()
+  {
+    return StorageStatus.working();
+  }
+
+  @Override
+  public boolean supportsBackupAndRestore()
+  {
+    return false;
+  }
+
+  @Override
+  public void createBackup(BackupConfig backupConfig) throws DirectoryException
+  {
+    throw new DirectoryException(ResultCode.UNWILLING_TO_PERFORM,
+        ERR_IN_MEMORY_BACKUP_RESTORE_NOT_SUPPORTED.get(backendId));
+  }
+
+  @Override
+  public void removeBackup(BackupDirectory backupDirectory, String backupID) throws DirectoryException
+  {
+    throw new DirectoryException(ResultCode.UNWILLING_TO_PERFORM,
+        ERR_IN_MEMORY_BACKUP_RESTORE_NOT_SUPPORTED.get(backendId));
+  }
+
+  @Override
+  public void restoreBackup(RestoreConfig restoreConfig) throws DirectoryException
+  {
+    throw new DirectoryException(ResultCode.UNWILLING_TO_PERFORM,
+        ERR_IN_MEMORY_BACKUP_RESTORE_NOT_SUPPORTED.get(backendId));
+  }
+
+  @Override
+  public Set<TreeName> listTrees()
+  {
+    return new HashSet<>(current.trees.keySet());
+  }
+
+  @Override
+  public void close()
+  {
+    // Keep the content until the storage files are removed
+    accessMode = null;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.inmemory;
+
+import org.forgerock.opendj.ldap.ByteString;
+
+/**
+ * A version of a record, linked to the version it replaced. Readers walk the versions from the most
+ * recent one until they find a version committed before their snapshot.
+ */
+final class Record
+{
+  /** The transaction which wrote this version. */
+  final long txnId;
+  /** The value, or {@code null} if the record was deleted. */
+  final ByteString value;
+  /** The version replaced by this one, cleared once no reader can access it. */
+  volatile Record previous;
+
+  Record(long txnId, ByteString value, Record previous)
+  {
+    this.txnId = txnId;
+    this.value = value;
+    this.previous = previous;
+  }
+
+  /**
+   * Returns the value visible by the provided transaction.
+   *
+   * @param record
+   *          the most recent version of a record, may be {@code null}
+   * @param txnId
+   *          the last transaction visible by the reader
+   * @return the value visible by the provided transaction, or {@code null} if there is none
+   */
+  static ByteString getVisibleValue(Record record, long txnId)
+  {
+    for (Record r = record; r != null; r = r.previous)
+    {
+      if (r.txnId <= txnId)
+      {
+        return r.value;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Drops the versions which cannot be read anymore.
+   *
+   * @param oldestReadTxnId
+   *          the oldest transaction which may still be read
+   */
+  void trim(long oldestReadTxnId)
+  {
+    for (Record r = this; r != null; r = r.previous)
+    {
+      if (r.txnId <= oldestReadTxnId)
+      {
+        r.previous = null;
+        return;
+      }
+    }
+  }
+}
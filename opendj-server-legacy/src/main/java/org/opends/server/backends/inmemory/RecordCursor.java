@@ -0,0 +1,170 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.inmemory;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentNavigableMap;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.ReadOnlyStorageException;
+
+/** A cursor on the records of a tree visible by a transaction, skipping the other versions. */
+class RecordCursor implements Cursor<ByteString, ByteString>
+{
+  private final ConcurrentNavigableMap<ByteString, Record> records;
+  private final long txnId;
+  /** The key of the current record, or the key the cursor failed to position to. */
+  private ByteString referenceKey;
+  private ByteString currentValue;
+  private boolean exhausted;
+
+  /**
+   * Creates a cursor on the records of a tree.
+   *
+   * @param records
+   *          the records of the tree
+   * @param txnId
+   *          the last transaction visible by the cursor
+   */
+  RecordCursor(ConcurrentNavigableMap<ByteString, Record> records, long txnId)
+  {
+    this.records = records;
+    this.txnId = txnId;
+  }
+
+  /**
+   * Deletes the record with the provided key. Cursors are read-only by default.
+   *
+   * @param key
+   *          the key of the record to delete
+   */
+  void deleteRecord(ByteString key)
+  {
+    throw new ReadOnlyStorageException();
+  }
+
+  @Override
+  public boolean positionToKey(ByteSequence key)
+  {
+    final ByteString k = key.toByteString();
+    currentValue = Record.getVisibleValue(records.get(k), txnId);
+    referenceKey = k;
+    exhausted = false;
+    return currentValue != null;
+  }
+
+  @Override
+  public boolean positionToKeyOrNext(ByteSequence key)
+  {
+    return moveTo(records.ceilingEntry(key.toByteString()), true);
+  }
+
+  @Override
+  public boolean positionToLastKey()
+  {
+    return moveTo(records.lastEntry(), false);
+  }
+
+  @Override
+  public boolean positionToIndex(int index)
+  {
+    referenceKey = null;
+    exhausted = false;
+    for (int i = 0; i <= index; i++)
+    {
+      if (!next())
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean next()
+  {
+    if (exhausted)
+    {
+      return false;
+    }
+    return moveTo(referenceKey == null ? records.firstEntry() : records.higherEntry(referenceKey), true);
+  }
+
+  /** Moves to the first visible record starting from the provided entry, in the provided direction. */
+  private boolean moveTo(Map.Entry<ByteString, Record> entry, boolean forward)
+  {
+    Map.Entry<ByteString, Record> e = entry;
+    while (e != null)
+    {
+      final ByteString value = Record.getVisibleValue(e.getValue(), txnId);
+      if (value != null)
+      {
+        referenceKey = e.getKey();
+        currentValue = value;
+        exhausted = false;
+        return true;
+      }
+      e = forward ? records.higherEntry(e.getKey()) : records.lowerEntry(e.getKey());
+    }
+    currentValue = null;
+    exhausted = true;
+    return false;
+  }
+
+  @Override
+  public boolean isDefined()
+  {
+    return currentValue != null;
+  }
+
+  @Override
+  public ByteString getKey()
+  {
+    throwIfUndefined();
+    return referenceKey;
+  }
+
+  @Override
+  public ByteString getValue()
+  {
+    throwIfUndefined();
+    return currentValue;
+  }
+
+  @Override
+  public void delete()
+  {
+    throwIfUndefined();
+    deleteRecord(referenceKey);
+  }
+
+  @Override
+  public void close()
+  {
+    // Nothing to release
+  }
+
+  private void throwIfUndefined()
+  {
+    if (!isDefined())
+    {
+      throw new NoSuchElementException();
+    }
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import java.util.NoSuchElementException;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.ReadOnlyStorageException;
+
+/**
+ * A cursor on a B+tree, keeping the path from the root to the current leaf.
+ * <p>
+ * When the tree is modified by the transaction owning the cursor, the path is rebuilt from the key
+ * of the current record before moving the cursor.
+ */
+abstract class BTreeCursor implements Cursor<ByteString, ByteString>
+{
+  private static final int MAX_DEPTH = 32;
+
+  /** The cursor has not been positioned yet, next() moves it to the first record. */
+  private static final int UNPOSITIONED = 0;
+  /** The cursor is on the record whose key is the reference key. */
+  private static final int ON_RECORD = 1;
+  /** The cursor is before the first record greater than the reference key, which does not exist. */
+  private static final int BETWEEN_RECORDS = 2;
+  /** The cursor has moved past the last record. */
+  private static final int EXHAUSTED = 3;
+
+  private final BTreeNode[] nodes = new BTreeNode[MAX_DEPTH];
+  private final int[] indexes = new int[MAX_DEPTH];
+  /** The depth of the leaf in the current path. */
+  private int leafDepth;
+  private int state = UNPOSITIONED;
+  private ByteString referenceKey;
+  private ByteString currentValue;
+  /** The modification count of the tree when the current path was built. */
+  private int pathModCount;
+
+  /**
+   * Returns a cursor on a tree which cannot be modified.
+   *
+   * @param root
+   *          the root of the tree, or {@code null} if it is empty
+   * @return a cursor on a tree which cannot be modified
+   */
+  static BTreeCursor readOnly(final BTreeNode root)
+  {
+    return new BTreeCursor()
+    {
+      @Override
+      BTreeNode getRoot()
+      {
+        return root;
+      }
+
+      @Override
+      int getModCount()
+      {
+        return 0;
+      }
+
+      @Override
+      void deleteRecord(ByteString key)
+      {
+        throw new ReadOnlyStorageException();
+      }
+    };
+  }
+
+  /**
+   * Returns the root of the tree.
+   *
+   * @return the root of the tree, or {@code null} if it is empty
+   */
+  abstract BTreeNode getRoot();
+
+  /**
+   * Returns a counter incremented each time the tree is modified.
+   *
+   * @return a counter incremented each time the tree is modified
+   */
+  abstract int getModCount();
+
+  /**
+   * Deletes the record with the provided key.
+   *
+   * @param key
+   *          the key of the record to delete
+   */
+  abstract void deleteRecord(ByteString key);
+
+  @Override
+  public boolean isDefined()
+  {
+    return state == ON_RECORD;
+  }
+
+  @Override
+  public ByteString getKey()
+  {
+    throwIfUndefined();
+    return referenceKey;
+  }
+
+  @Override
+  public ByteString getValue()
+  {
+    throwIfUndefined();
+    if (currentValue == null)
+    {
+      if (pathModCount != getModCount() && !(seek(referenceKey) && isOnReferenceKey()))
+      {
+        throw new NoSuchElementException();
+      }
+      currentValue = nodes[leafDepth].getValue(indexes[leafDepth]);
+    }
+    return currentValue;
+  }
+
+  @Override
+  public boolean next()
+  {
+    switch (state)
+    {
+    case UNPOSITIONED:
+      return seek(null) && settle();
+    case ON_RECORD:
+      if (pathModCount != getModCount())
+      {
+        seek(referenceKey);
+        if (isOnReferenceKey())
+        {
+          indexes[leafDepth]++;
+        }
+      }
+      else
+      {
+        indexes[leafDepth]++;
+      }
+      return settle();
+    case BETWEEN_RECORDS:
+      if (pathModCount != getModCount())
+      {
+        seek(referenceKey);
+        if (isOnReferenceKey())
+        {
+          indexes[leafDepth]++;
+        }
+      }
+      return settle();
+    default:
+      return false;
+    }
+  }
+
+  @Override
+  public void delete()
+  {
+    throwIfUndefined();
+    deleteRecord(referenceKey);
+  }
+
+  @Override
+  public boolean positionToKey(ByteSequence key)
+  {
+    if (seek(key) && isOn(key))
+    {
+      return settle();
+    }
+    state = BETWEEN_RECORDS;
+    referenceKey = key.toByteString();
+    currentValue = null;
+    return false;
+  }
+
+  @Override
+  public boolean positionToKeyOrNext(ByteSequence key)
+  {
+    return seek(key) && settle();
+  }
+
+  @Override
+  public boolean positionToLastKey()
+  {
+    BTreeNode node = getRoot();
+    if (node == null)
+    {
+      return exhausted();
+    }
+    pathModCount = getModCount();
+    int depth = 0;
+    for (;;)
+    {
+      final int lastIndex = Math.max(0, node.getNbEntries() - 1);
+      nodes[depth] = node;
+      indexes[depth] = lastIndex;
+      if (node.isLeaf())
+      {
+        leafDepth = depth;
+        return settle();
+      }
+      node = node.getChild(lastIndex);
+      depth++;
+    }
+  }
+
+  @Override
+  public boolean positionToIndex(int index)
+  {
+    state = UNPOSITIONED;
+    for (int i = 0; i <= index; i++)
+    {
+      if (!next())
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close()
+  {
+    // Nothing to release by default
+  }
+
+  /**
+   * Builds the path to the first record whose key is greater than or equal to the provided key.
+   *
+   * @param key
+   *          the key, or {@code null} for the first record
+   * @return {@code false} if the tree is empty
+   */
+  private boolean seek(ByteSequence key)
+  {
+    BTreeNode node = getRoot();
+    if (node == null)
+    {
+      return exhausted();
+    }
+    pathModCount = getModCount();
+    int depth = 0;
+    for (;;)
+    {
+      nodes[depth] = node;
+      if (node.isLeaf())
+      {
+        indexes[depth] = key != null ? node.findKey(key) : 0;
+        leafDepth = depth;
+        return true;
+      }
+      final int childIndex = key != null ? node.findChild(key) : 0;
+      indexes[depth] = childIndex;
+      node = node.getChild(childIndex);
+      depth++;
+    }
+  }
+
+  private boolean isOn(ByteSequence key)
+  {
+    final BTreeNode leaf = nodes[leafDepth];
+    final int index = indexes[leafDepth];
+    return index < leaf.getNbEntries() && leaf.compareKey(index, key) == 0;
+  }
+
+  private boolean isOnReferenceKey()
+  {
+    return state != EXHAUSTED && isOn(referenceKey);
+  }
+
+  /**
+   * Moves the path to the next record if it is past the end of its leaf, then makes the cursor
+   * point to the record.
+   */
+  private boolean settle()
+  {
+    while (indexes[leafDepth] >= nodes[leafDepth].getNbEntries())
+    {
+      // Find the closest ancestor having a next child, then go down to its leftmost leaf
+      int depth = leafDepth - 1;
+      while (depth >= 0 && indexes[depth] + 1 >= nodes[depth].getNbEntries())
+      {
+        depth--;
+      }
+      if (depth < 0)
+      {
+        return exhausted();
+      }
+      indexes[depth]++;
+      for (; depth < leafDepth; depth++)
+      {
+        nodes[depth + 1] = nodes[depth].getChild(indexes[depth]);
+        indexes[depth + 1] = 0;
+      }
+    }
+    state = ON_RECORD;
+    referenceKey = nodes[leafDepth].getKey(indexes[leafDepth]);
+    currentValue = null;
+    return true;
+  }
+
+  private boolean exhausted()
+  {
+    state = EXHAUSTED;
+    currentValue = null;
+    return false;
+  }
+
+  private void throwIfUndefined()
+  {
+    if (!isDefined())
+    {
+      throw new NoSuchElementException();
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+
+/**
+ * A node of a B+tree, either read directly from a mapped page or decoded for being modified by a
+ * write transaction.
+ * <p>
+ * Leaf nodes hold records sorted by key. Branch nodes hold the children nodes, each associated to
+ * the lowest key of its subtree. The key associated to the first child is always empty.
+ * <p>
+ * Nodes are encoded in a page as follows:
+ * <ul>
+ * <li>a header made of the node type (1 byte), an unused byte, and the number of entries (2 bytes),</li>
+ * <li>the offset of each entry in the page (2 bytes each),</li>
+ * <li>leaf entries: key length (2 bytes), key, value flags (1 byte), value length (4 bytes), then
+ * either the value or the first page of the value if it is stored in its own pages (8 bytes),</li>
+ * <li>branch entries: child page (8 bytes), key length (2 bytes), key.</li>
+ * </ul>
+ */
+abstract class BTreeNode
+{
+  static final byte LEAF = 1;
+  static final byte BRANCH = 2;
+  static final byte INLINE_VALUE = 0;
+  static final byte OVERFLOW_VALUE = 1;
+  static final int HEADER_SIZE = 4;
+  /** The maximum size of a key, which ensures several entries fit in a page. */
+  static final int MAX_KEY_SIZE = PageFile.PAGE_SIZE / 4;
+  /** Values making their leaf entry larger than this size are stored in their own pages. */
+  static final int MAX_INLINE_RECORD_SIZE = PageFile.PAGE_SIZE / 4;
+
+  /**
+   * Returns whether this node is a leaf.
+   *
+   * @return whether this node is a leaf
+   */
+  abstract boolean isLeaf();
+
+  /**
+   * Returns the number of entries of this node.
+   *
+   * @return the number of entries of this node
+   */
+  abstract int getNbEntries();
+
+  /**
+   * Compares the key of the provided entry with the provided key.
+   *
+   * @param index
+   *          the entry index
+   * @param key
+   *          the key to compare with
+   * @return a negative, zero or positive value if the key of the entry is respectively lower, equal
+   *         or greater than the provided key
+   */
+  abstract int compareKey(int index, ByteSequence key);
+
+  /**
+   * Returns the key of the provided entry.
+   *
+   * @param index
+   *          the entry index
+   * @return the key of the provided entry
+   */
+  abstract ByteString getKey(int index);
+
+  /**
+   * Returns the value of the provided leaf entry.
+   *
+   * @param index
+   *          the entry index
+   * @return the value of the provided leaf entry
+   */
+  abstract ByteString getValue(int index);
+
+  /**
+   * Returns the child of the provided branch entry.
+   *
+   * @param index
+   *          the entry index
+   * @return the child of the provided branch entry
+   */
+  abstract BTreeNode getChild(int index);
+
+  /**
+   * Returns the index of the first leaf entry whose key is greater than or equal to the provided
+   * key, or the number of entries if there is none.
+   *
+   * @param key
+   *          the key to search for
+   * @return the index of the first leaf entry whose key is greater than or equal to the provided key
+   */
+  final int findKey(ByteSequence key)
+  {
+    int low = 0;
+    int high = getNbEntries();
+    while (low < high)
+    {
+      final int middle = (low + high) >>> 1;
+      if (compareKey(middle, key) < 0)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the index of the branch entry whose subtree may contain the provided key.
+   *
+   * @param key
+   *          the key to search for
+   * @return the index of the branch entry whose subtree may contain the provided key
+   */
+  final int findChild(ByteSequence key)
+  {
+    // The first key is empty, hence lower than any key
+    int low = 1;
+    int high = getNbEntries();
+    while (low < high)
+    {
+      final int middle = (low + high) >>> 1;
+      if (compareKey(middle, key) <= 0)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low - 1;
+  }
+
+  /**
+   * Returns the value of the record with the provided key in the tree rooted at the provided node.
+   *
+   * @param root
+   *          the root of the tree, or {@code null} if it is empty
+   * @param key
+   *          the key of the record
+   * @return the value of the record, or {@code null} if there is none
+   */
+  static ByteString lookup(BTreeNode root, ByteSequence key)
+  {
+    if (root == null)
+    {
+      return null;
+    }
+    BTreeNode node = root;
+    while (!node.isLeaf())
+    {
+      node = node.getChild(node.findChild(key));
+    }
+    final int index = node.findKey(key);
+    return index < node.getNbEntries() && node.compareKey(index, key) == 0 ? node.getValue(index) : null;
+  }
+
+  /**
+   * Returns whether a record is stored in its leaf entry, or in its own pages.
+   *
+   * @param keyLength
+   *          the record key length
+   * @param valueLength
+   *          the record value length
+   * @return whether a record is stored in its leaf entry
+   */
+  static boolean isInline(int keyLength, int valueLength)
+  {
+    return keyLength + valueLength <= MAX_INLINE_RECORD_SIZE;
+  }
+
+  /**
+   * Returns the number of bytes used by a leaf entry in a page.
+   *
+   * @param keyLength
+   *          the record key length
+   * @param valueLength
+   *          the record value length
+   * @return the number of bytes used by a leaf entry in a page
+   */
+  static int getLeafEntrySize(int keyLength, int valueLength)
+  {
+    return 2 + 2 + keyLength + 1 + 4 + (isInline(keyLength, valueLength) ? valueLength : 8);
+  }
+
+  /**
+   * Returns the number of bytes used by a branch entry in a page.
+   *
+   * @param keyLength
+   *          the key length
+   * @return the number of bytes used by a branch entry in a page
+   */
+  static int getBranchEntrySize(int keyLength)
+  {
+    return 2 + 8 + 2 + keyLength;
+  }
+}
@@ -0,0 +1,557 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import static org.opends.messages.BackendMessages.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.backends.mmap.Snapshot.TreeInfo;
+import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
+import org.opends.server.backends.pluggable.spi.TreeName;
+
+/**
+ * A database made of copy-on-write B+trees stored in a {@link PageFile}.
+ * <p>
+ * Readers never block: they pin the last committed {@link Snapshot} and read its pages directly
+ * from the file mappings. A single write transaction runs at a time, writing the nodes it modifies
+ * to free pages before publishing a new snapshot. The pages it replaces are reused once neither a
+ * reader nor the last synchronized meta page can reference them anymore.
+ * <p>
+ * The list of free pages is not persisted: pages which are not reachable from the last
+ * synchronized snapshot are found by a background scan after the database has been opened.
+ */
+final class Database implements Closeable
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** Delay between two synchronizations of the file when commits do not synchronize it. */
+  private static final long SYNC_INTERVAL_MS = 1000;
+
+  /** Pages freed by a transaction, which can be reused once no snapshot preceding it is used. */
+  private static final class FreedPages
+  {
+    private final long txnId;
+    private final PageList pages;
+
+    private FreedPages(long txnId, PageList pages)
+    {
+      this.txnId = txnId;
+      this.pages = pages;
+    }
+  }
+
+  private final String backendId;
+  private final PageFile file;
+  private final boolean writeable;
+  /** The last committed snapshot. */
+  private volatile Snapshot current;
+  /** The snapshots superseded by a more recent one, which may still be used by readers. */
+  private final ConcurrentLinkedDeque<Snapshot> oldSnapshots = new ConcurrentLinkedDeque<>();
+  /** A semaphore rather than a lock, since the importer commits from any thread. */
+  private final Semaphore writeLock = new Semaphore(1);
+  private final Object syncLock = new Object();
+  /** The last transaction whose snapshot has been synchronized to the storage device. */
+  private volatile long durableTxnId;
+  private volatile boolean syncCommits = true;
+  private volatile boolean closing;
+  private Thread backgroundThread;
+  /** Counted down once the scan for free pages has ended. */
+  private final CountDownLatch freePagesScanned = new CountDownLatch(1);
+
+  // The following fields are only accessed by the writer
+  private WriteTxn activeTxn;
+  private long nextPage;
+  private final PageList freePages = new PageList();
+  private final Deque<FreedPages> pendingPages = new ArrayDeque<>();
+
+  /**
+   * Opens the provided database file.
+   *
+   * @param backendId
+   *          the backend owning the database
+   * @param dbFile
+   *          the database file, which is created if it does not exist and the database is writeable
+   * @param writeable
+   *          whether the database will be written
+   * @throws IOException
+   *           if the file cannot be opened or is not a valid database file
+   */
+  Database(String backendId, File dbFile, boolean writeable) throws IOException
+  {
+    this.backendId = backendId;
+    this.writeable = writeable;
+    this.file = new PageFile(dbFile, writeable);
+    try
+    {
+      if (file.isEmpty() && writeable)
+      {
+        file.ensureCapacity(PageFile.NB_META_PAGES);
+        final PageFile.Meta meta = new PageFile.Meta(0, 0, PageFile.NB_META_PAGES);
+        file.writeMeta(meta);
+        file.writeMeta(meta);
+        file.force();
+      }
+      current = loadSnapshot(file.readMeta());
+    }
+    catch (IOException | RuntimeException e)
+    {
+      file.close();
+      throw e instanceof IOException ? (IOException) e : new IOException(e);
+    }
+    durableTxnId = current.txnId;
+    nextPage = current.nextPage;
+    logger.info(NOTE_MMAP_OPENED, backendId, dbFile, nextPage, current.txnId);
+
+    if (writeable)
+    {
+      // Pinned before any commit can happen, so the pages freed by later commits remain reachable from it
+      final Snapshot openedSnapshot = acquireSnapshot();
+      backgroundThread = new DirectoryThread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          runBackgroundTasks(openedSnapshot);
+        }
+      }, "Mmap database " + backendId);
+      backgroundThread.setDaemon(true);
+      backgroundThread.start();
+    }
+  }
+
+  private Snapshot loadSnapshot(PageFile.Meta meta) throws IOException
+  {
+    if (meta.nextPage < PageFile.NB_META_PAGES || meta.nextPage > file.getCapacity()
+        || meta.catalogRoot >= meta.nextPage || (meta.catalogRoot != 0 && meta.catalogRoot < PageFile.NB_META_PAGES))
+    {
+      throw new IOException("Inconsistent meta page " + meta);
+    }
+    final Map<TreeName, TreeInfo> trees = new HashMap<>();
+    final BTreeCursor cursor = BTreeCursor.readOnly(getRoot(meta.catalogRoot));
+    while (cursor.next())
+    {
+      trees.put(TreeName.valueOf(cursor.getKey().toString()), WriteTxn.decodeTreeInfo(cursor.getValue()));
+    }
+    return new Snapshot(meta.txnId, meta.catalogRoot, meta.nextPage, trees);
+  }
+
+  PageFile getFile()
+  {
+    return file;
+  }
+
+  boolean isWriteable()
+  {
+    return writeable;
+  }
+
+  /**
+   * Returns the root of a tree stored in this database.
+   *
+   * @param rootPage
+   *          the root page of the tree, or zero if it is empty
+   * @return the root of the tree, or {@code null} if it is empty
+   */
+  BTreeNode getRoot(long rootPage)
+  {
+    return rootPage != 0 ? new MappedNode(file, rootPage) : null;
+  }
+
+  /**
+   * Sets whether each commit synchronizes the file, or if it is periodically synchronized.
+   *
+   * @param syncCommits
+   *          whether each commit synchronizes the file
+   */
+  void setSyncCommits(boolean syncCommits)
+  {
+    this.syncCommits = syncCommits;
+  }
+
+  /**
+   * Pins the last committed snapshot, whose pages will not be reused until it is released.
+   *
+   * @return the last committed snapshot
+   */
+  Snapshot acquireSnapshot()
+  {
+    for (;;)
+    {
+      final Snapshot snapshot = current;
+      snapshot.nbReaders.incrementAndGet();
+      // The writer may have superseded and recycled the snapshot before it was pinned
+      if (snapshot == current)
+      {
+        return snapshot;
+      }
+      snapshot.nbReaders.decrementAndGet();
+    }
+  }
+
+  void releaseSnapshot(Snapshot snapshot)
+  {
+    snapshot.nbReaders.decrementAndGet();
+  }
+
+  /**
+   * Starts a write transaction, waiting for the current one to end.
+   *
+   * @return the new write transaction
+   */
+  WriteTxn beginWrite()
+  {
+    writeLock.acquireUninterruptibly();
+    reclaimPages();
+    activeTxn = new WriteTxn(this, current);
+    return activeTxn;
+  }
+
+  /**
+   * Commits the provided write transaction, which must be the active one, and synchronizes the
+   * file if required.
+   *
+   * @param txn
+   *          the write transaction
+   * @param forceSync
+   *          whether to synchronize the file even if commits do not synchronize it
+   * @return the snapshot produced by the transaction
+   */
+  Snapshot commit(WriteTxn txn, boolean forceSync)
+  {
+    final Snapshot committed;
+    try
+    {
+      if (!txn.isModified())
+      {
+        return txn.getBase();
+      }
+      try
+      {
+        committed = txn.commit();
+      }
+      catch (RuntimeException e)
+      {
+        // Nothing references the pages written so far
+        freePages.addAll(txn.getAllocatedPages());
+        throw e;
+      }
+      oldSnapshots.add(current);
+      current = committed;
+      pendingPages.add(new FreedPages(committed.txnId, txn.getFreedPages()));
+    }
+    finally
+    {
+      endWrite(txn);
+    }
+    if (syncCommits || forceSync)
+    {
+      sync(committed.txnId);
+    }
+    return committed;
+  }
+
+  /**
+   * Ends the provided write transaction without publishing its modifications. Does nothing if it
+   * has already ended.
+   *
+   * @param txn
+   *          the write transaction
+   */
+  void abort(WriteTxn txn)
+  {
+    endWrite(txn);
+  }
+
+  private void endWrite(WriteTxn txn)
+  {
+    if (activeTxn == txn)
+    {
+      activeTxn = null;
+      writeLock.release();
+    }
+  }
+
+  /** Moves the pages which cannot be accessed anymore to the free pages. */
+  private void reclaimPages()
+  {
+    long oldestUsedTxnId = Math.min(durableTxnId, current.txnId);
+    for (Iterator<Snapshot> it = oldSnapshots.iterator(); it.hasNext();)
+    {
+      final Snapshot snapshot = it.next();
+      if (snapshot.nbReaders.get() == 0)
+      {
+        it.remove();
+      }
+      else
+      {
+        oldestUsedTxnId = Math.min(oldestUsedTxnId, snapshot.txnId);
+      }
+    }
+    // Pages freed by a transaction are still referenced by the snapshots preceding it
+    while (!pendingPages.isEmpty() && pendingPages.peekFirst().txnId <= oldestUsedTxnId)
+    {
+      freePages.addAll(pendingPages.removeFirst().pages);
+    }
+  }
+
+  /**
+   * Allocates consecutive pages. Must only be called by the writer.
+   *
+   * @param nbPages
+   *          the number of pages to allocate
+   * @return the first allocated page
+   */
+  long allocate(int nbPages)
+  {
+    if (nbPages == 1 && !freePages.isEmpty())
+    {
+      return freePages.removeLast();
+    }
+    if (nbPages > PageFile.PAGES_PER_SEGMENT)
+    {
+      throw new StorageRuntimeException("Cannot allocate " + nbPages + " consecutive pages");
+    }
+    // Multi-page values are read from a single segment
+    final long segmentEnd = (nextPage / PageFile.PAGES_PER_SEGMENT + 1) * PageFile.PAGES_PER_SEGMENT;
+    if (nextPage + nbPages > segmentEnd)
+    {
+      freePages.add(nextPage, (int) (segmentEnd - nextPage));
+      nextPage = segmentEnd;
+    }
+    final long page = nextPage;
+    try
+    {
+      file.ensureCapacity(page + nbPages);
+    }
+    catch (IOException e)
+    {
+      throw new StorageRuntimeException(e);
+    }
+    nextPage += nbPages;
+    return page;
+  }
+
+  long getNextPage()
+  {
+    return nextPage;
+  }
+
+  /**
+   * Makes sure the snapshot of the provided transaction, or a more recent one, will be recovered
+   * after a crash. Concurrent callers are satisfied by a single synchronization.
+   *
+   * @param txnId
+   *          the transaction
+   */
+  void sync(long txnId)
+  {
+    synchronized (syncLock)
+    {
+      if (durableTxnId >= txnId)
+      {
+        return;
+      }
+      final Snapshot snapshot = current;
+      // The meta page must not reach the storage device before the pages it references
+      file.force();
+      file.writeMeta(snapshot.toMeta());
+      file.force();
+      durableTxnId = snapshot.txnId;
+    }
+  }
+
+  /**
+   * Writes a consistent copy of the last committed snapshot to the provided file.
+   *
+   * @param target
+   *          the file to write
+   * @throws IOException
+   *           if the file cannot be written
+   */
+  void writeSnapshotTo(File target) throws IOException
+  {
+    final Snapshot snapshot = acquireSnapshot();
+    try (RandomAccessFile out = new RandomAccessFile(target, "rw"))
+    {
+      final FileChannel channel = out.getChannel();
+      channel.truncate(0);
+      file.copyTo(channel, snapshot.nextPage);
+      PageFile.writeMeta(channel, snapshot.toMeta());
+      channel.force(true);
+    }
+    finally
+    {
+      releaseSnapshot(snapshot);
+    }
+  }
+
+  private void runBackgroundTasks(Snapshot openedSnapshot)
+  {
+    try
+    {
+      findFreePages(openedSnapshot);
+    }
+    catch (RuntimeException e)
+    {
+      // The pages will be found next time the database is opened
+      logger.traceException(e);
+    }
+    finally
+    {
+      releaseSnapshot(openedSnapshot);
+      freePagesScanned.countDown();
+    }
+    while (!closing)
+    {
+      try
+      {
+        Thread.sleep(SYNC_INTERVAL_MS);
+      }
+      catch (InterruptedException e)
+      {
+        return;
+      }
+      if (!syncCommits)
+      {
+        sync(current.txnId);
+      }
+    }
+  }
+
+  /**
+   * Adds the pages which are not reachable from the snapshot opened at startup to the free pages.
+   * The snapshot must remain pinned until the end of the scan: this prevents the pages freed by
+   * the transactions committed since then from being reclaimed, which would add them twice.
+   */
+  private void findFreePages(Snapshot snapshot)
+  {
+    final BitSet reachablePages = new BitSet();
+    markReachablePages(snapshot.catalogRoot, reachablePages);
+    for (TreeInfo tree : snapshot.trees.values())
+    {
+      markReachablePages(tree.root, reachablePages);
+    }
+    if (closing)
+    {
+      // The scan is incomplete
+      return;
+    }
+
+    // Pages allocated since then are past the end of the snapshot, and pages freed since then are reachable from it
+    int nbFreePages = 0;
+    writeLock.acquireUninterruptibly();
+    try
+    {
+      for (long page = PageFile.NB_META_PAGES; page < snapshot.nextPage; page++)
+      {
+        if (!reachablePages.get((int) page))
+        {
+          freePages.add(page);
+          nbFreePages++;
+        }
+      }
+    }
+    finally
+    {
+      writeLock.release();
+    }
+    if (nbFreePages > 0)
+    {
+      logger.info(NOTE_MMAP_FREE_PAGES_FOUND, backendId, nbFreePages);
+    }
+  }
+
+  /**
+   * Waits for the end of the scan for the free pages which started when the database was opened.
+   * Returns immediately if the database is not writeable.
+   *
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  void awaitFreePagesScan() throws InterruptedException
+  {
+    if (backgroundThread != null)
+    {
+      freePagesScanned.await();
+    }
+  }
+
+  private void markReachablePages(long page, BitSet reachablePages)
+  {
+    if (page == 0 || closing)
+    {
+      return;
+    }
+    reachablePages.set((int) page);
+    final MappedNode node = new MappedNode(file, page);
+    for (int i = 0; i < node.getNbEntries(); i++)
+    {
+      if (node.isLeaf())
+      {
+        final long overflowPage = node.getOverflowPage(i);
+        if (overflowPage != 0)
+        {
+          final int nbPages = PageFile.getNbPages(node.getValueLength(i));
+          reachablePages.set((int) overflowPage, (int) overflowPage + nbPages);
+        }
+      }
+      else
+      {
+        markReachablePages(node.getChildPage(i), reachablePages);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    closing = true;
+    if (backgroundThread != null)
+    {
+      backgroundThread.interrupt();
+      try
+      {
+        backgroundThread.join();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (writeable)
+    {
+      writeLock.acquireUninterruptibly();
+      sync(current.txnId);
+    }
+    file.close();
+  }
+}
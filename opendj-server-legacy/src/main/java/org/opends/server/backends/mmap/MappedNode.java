@@ -0,0 +1,196 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import java.nio.ByteBuffer;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+
+/**
+ * A B+tree node read directly from its mapped page. Keys are compared in place, and keys and values
+ * are only copied when they are returned.
+ */
+final class MappedNode extends BTreeNode
+{
+  private final PageFile file;
+  private final long page;
+  private final ByteBuffer buffer;
+  private final int base;
+  private final boolean leaf;
+  private final int nbEntries;
+
+  MappedNode(PageFile file, long page)
+  {
+    this.file = file;
+    this.page = page;
+    this.buffer = file.getSegment(page);
+    this.base = PageFile.getOffset(page);
+    this.leaf = buffer.get(base) == LEAF;
+    this.nbEntries = buffer.getShort(base + 2) & 0xffff;
+  }
+
+  /**
+   * Returns the page of this node.
+   *
+   * @return the page of this node
+   */
+  long getPage()
+  {
+    return page;
+  }
+
+  @Override
+  boolean isLeaf()
+  {
+    return leaf;
+  }
+
+  @Override
+  int getNbEntries()
+  {
+    return nbEntries;
+  }
+
+  /**
+   * Returns the number of bytes used by this node in its page.
+   *
+   * @return the number of bytes used by this node in its page
+   */
+  int getEncodedSize()
+  {
+    if (nbEntries == 0)
+    {
+      return HEADER_SIZE;
+    }
+    // Entries are written in order, so the last entry ends the node
+    final int last = nbEntries - 1;
+    if (!leaf)
+    {
+      return getValuePosition(last) - base;
+    }
+    final int valuePosition = getValuePosition(last);
+    final boolean inline = buffer.get(valuePosition) == INLINE_VALUE;
+    return valuePosition + 5 + (inline ? buffer.getInt(valuePosition + 1) : 8) - base;
+  }
+
+  private int getEntryPosition(int index)
+  {
+    return base + (buffer.getShort(base + HEADER_SIZE + 2 * index) & 0xffff);
+  }
+
+  private int getKeyPosition(int index)
+  {
+    final int entryPosition = getEntryPosition(index);
+    return leaf ? entryPosition : entryPosition + 8;
+  }
+
+  @Override
+  int compareKey(int index, ByteSequence key)
+  {
+    final int keyPosition = getKeyPosition(index);
+    final int keyLength = buffer.getShort(keyPosition) & 0xffff;
+    final int length = Math.min(keyLength, key.length());
+    for (int i = 0; i < length; i++)
+    {
+      final int diff = (buffer.get(keyPosition + 2 + i) & 0xff) - (key.byteAt(i) & 0xff);
+      if (diff != 0)
+      {
+        return diff;
+      }
+    }
+    return keyLength - key.length();
+  }
+
+  @Override
+  ByteString getKey(int index)
+  {
+    final int keyPosition = getKeyPosition(index);
+    return copy(keyPosition + 2, buffer.getShort(keyPosition) & 0xffff);
+  }
+
+  private ByteString copy(int position, int length)
+  {
+    final byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++)
+    {
+      bytes[i] = buffer.get(position + i);
+    }
+    return ByteString.wrap(bytes);
+  }
+
+  private int getValuePosition(int index)
+  {
+    final int keyPosition = getKeyPosition(index);
+    return keyPosition + 2 + (buffer.getShort(keyPosition) & 0xffff);
+  }
+
+  @Override
+  ByteString getValue(int index)
+  {
+    final int valuePosition = getValuePosition(index);
+    final int valueLength = buffer.getInt(valuePosition + 1);
+    if (buffer.get(valuePosition) == INLINE_VALUE)
+    {
+      return copy(valuePosition + 5, valueLength);
+    }
+    return file.read(buffer.getLong(valuePosition + 5), valueLength);
+  }
+
+  /**
+   * Returns the first page holding the value of the provided leaf entry, or zero if the value is
+   * stored in the entry.
+   *
+   * @param index
+   *          the entry index
+   * @return the first page holding the value of the provided leaf entry, or zero
+   */
+  long getOverflowPage(int index)
+  {
+    final int valuePosition = getValuePosition(index);
+    return buffer.get(valuePosition) == INLINE_VALUE ? 0 : buffer.getLong(valuePosition + 5);
+  }
+
+  /**
+   * Returns the length of the value of the provided leaf entry.
+   *
+   * @param index
+   *          the entry index
+   * @return the length of the value of the provided leaf entry
+   */
+  int getValueLength(int index)
+  {
+    return buffer.getInt(getValuePosition(index) + 1);
+  }
+
+  /**
+   * Returns the child page of the provided branch entry.
+   *
+   * @param index
+   *          the entry index
+   * @return the child page of the provided branch entry
+   */
+  long getChildPage(int index)
+  {
+    return buffer.getLong(getEntryPosition(index));
+  }
+
+  @Override
+  BTreeNode getChild(int index)
+  {
+    return new MappedNode(file, getChildPage(index));
+  }
+}
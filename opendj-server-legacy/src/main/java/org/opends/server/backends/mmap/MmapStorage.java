@@ -0,0 +1,720 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import static org.opends.messages.BackendMessages.*;
+import static org.opends.messages.UtilityMessages.*;
+import static org.opends.server.backends.pluggable.spi.StorageUtils.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.config.server.ConfigChangeResult;
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.config.server.ConfigurationChangeListener;
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.server.config.server.MmapBackendCfg;
+import org.forgerock.util.Reject;
+import org.opends.server.api.Backupable;
+import org.opends.server.api.DiskSpaceMonitorHandler;
+import org.opends.server.backends.mmap.Snapshot.TreeInfo;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.Importer;
+import org.opends.server.backends.pluggable.spi.ReadOnlyStorageException;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.SequentialCursor;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
+import org.opends.server.backends.pluggable.spi.StorageStatus;
+import org.opends.server.backends.pluggable.spi.StorageUtils;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.UpdateFunction;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.ServerContext;
+import org.opends.server.extensions.DiskSpaceMonitor;
+import org.opends.server.types.BackupConfig;
+import org.opends.server.types.BackupDirectory;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.RestoreConfig;
+import org.opends.server.util.BackupManager;
+
+/**
+ * Memory-mapped copy-on-write B+tree implementation of the {@link Storage} engine.
+ * <p>
+ * All the trees are stored in a single file accessed through memory mappings, so that reads do not
+ * copy pages and do not take any lock. See {@link Database} for the concurrency model.
+ */
+public final class MmapStorage implements Storage, Backupable, ConfigurationChangeListener<MmapBackendCfg>,
+    DiskSpaceMonitorHandler
+{
+  private static final String DB_FILE_NAME = "data.db";
+  private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+  /** The importer commits its transaction once it holds this number of modified nodes in memory. */
+  private static final int IMPORT_MAX_DIRTY_NODES = 4096;
+
+  /** Filter to retrieve the database files to backup. */
+  private static final FileFilter BACKUP_FILES_FILTER = new FileFilter()
+  {
+    @Override
+    public boolean accept(File file)
+    {
+      return DB_FILE_NAME.equals(file.getName());
+    }
+  };
+
+  /** Read-only transaction on a snapshot, or on an empty storage if the snapshot is {@code null}. */
+  private final class SnapshotTransaction implements WriteableTransaction
+  {
+    private final Snapshot snapshot;
+
+    private SnapshotTransaction(Snapshot snapshot)
+    {
+      this.snapshot = snapshot;
+    }
+
+    private BTreeNode getRoot(TreeName treeName)
+    {
+      final TreeInfo tree = snapshot != null ? snapshot.trees.get(treeName) : null;
+      return tree != null ? db.getRoot(tree.root) : null;
+    }
+
+    @Override
+    public ByteString read(TreeName treeName, ByteSequence key)
+    {
+      return BTreeNode.lookup(getRoot(treeName), key);
+    }
+
+    @Override
+    public Cursor<ByteString, ByteString> openCursor(TreeName treeName)
+    {
+      return BTreeCursor.readOnly(getRoot(treeName));
+    }
+
+    @Override
+    public long getRecordCount(TreeName treeName)
+    {
+      final TreeInfo tree = snapshot != null ? snapshot.trees.get(treeName) : null;
+      return tree != null ? tree.recordCount : 0;
+    }
+
+    @Override
+    public void openTree(TreeName name, boolean createOnDemand)
+    {
+      if (createOnDemand)
+      {
+        throw new ReadOnlyStorageException();
+      }
+    }
+
+    @Override
+    public void deleteTree(TreeName name)
+    {
+      throw new ReadOnlyStorageException();
+    }
+
+    @Override
+    public void put(TreeName treeName, ByteSequence key, ByteSequence value)
+    {
+      throw new ReadOnlyStorageException();
+    }
+
+    @Override
+    public boolean update(TreeName treeName, ByteSequence key, UpdateFunction f)
+    {
+      throw new ReadOnlyStorageException();
+    }
+
+    @Override
+    public boolean delete(TreeName treeName, ByteSequence key)
+    {
+      throw new ReadOnlyStorageException();
+    }
+  }
+
+  /**
+   * Importer writing records in large transactions, which are only synchronized to the storage
+   * device when they are committed.
+   */
+  private final class ImporterImpl implements Importer
+  {
+    private WriteTxn txn = db.beginWrite();
+
+    @Override
+    public synchronized void clearTree(TreeName treeName)
+    {
+      txn.deleteTree(treeName);
+      txn.openTree(treeName, true);
+      commitIfNeeded();
+    }
+
+    @Override
+    public synchronized void put(TreeName treeName, ByteSequence key, ByteSequence value)
+    {
+      txn.put(treeName, key, value);
+      commitIfNeeded();
+    }
+
+    @Override
+    public synchronized ByteString read(TreeName treeName, ByteSequence key)
+    {
+      return txn.read(treeName, key);
+    }
+
+    @Override
+    public synchronized SequentialCursor<ByteString, ByteString> openCursor(TreeName treeName)
+    {
+      // The cursor reads the committed snapshot, which is not modified by subsequent puts
+      commit();
+      final Snapshot snapshot = db.acquireSnapshot();
+      final TreeInfo tree = snapshot.trees.get(treeName);
+      final BTreeCursor cursor = BTreeCursor.readOnly(tree != null ? db.getRoot(tree.root) : null);
+      return new SequentialCursorDecorator(cursor, snapshot);
+    }
+
+    private void commitIfNeeded()
+    {
+      if (txn.getNbDirtyNodes() >= IMPORT_MAX_DIRTY_NODES)
+      {
+        commit();
+      }
+    }
+
+    private void commit()
+    {
+      db.commit(txn, false);
+      txn = db.beginWrite();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+      try
+      {
+        db.commit(txn, true);
+      }
+      finally
+      {
+        MmapStorage.this.close();
+      }
+    }
+  }
+
+  /** Releases the snapshot read by a cursor when it is closed. */
+  private final class SequentialCursorDecorator implements SequentialCursor<ByteString, ByteString>
+  {
+    private final BTreeCursor delegate;
+    private Snapshot snapshot;
+
+    private SequentialCursorDecorator(BTreeCursor delegate, Snapshot snapshot)
+    {
+      this.delegate = delegate;
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public boolean next()
+    {
+      return delegate.next();
+    }
+
+    @Override
+    public boolean isDefined()
+    {
+      return delegate.isDefined();
+    }
+
+    @Override
+    public ByteString getKey()
+    {
+      return delegate.getKey();
+    }
+
+    @Override
+    public ByteString getValue()
+    {
+      return delegate.getValue();
+    }
+
+    @Override
+    public void delete()
+    {
+      delegate.delete();
+    }
+
+    @Override
+    public void close()
+    {
+      if (snapshot != null)
+      {
+        db.releaseSnapshot(snapshot);
+        snapshot = null;
+      }
+    }
+  }
+
+  /** Exposes the consistent copy of the database written for an online backup. */
+  private final class SnapshotBackupable implements Backupable
+  {
+    private final File snapshotDirectory;
+
+    private SnapshotBackupable(File snapshotDirectory)
+    {
+      this.snapshotDirectory = snapshotDirectory;
+    }
+
+    @Override
+    public ListIterator<Path> getFilesToBackup() throws DirectoryException
+    {
+      return BackupManager.getFiles(snapshotDirectory, BACKUP_FILES_FILTER, config.getBackendId()).listIterator();
+    }
+
+    @Override
+    public File getDirectory()
+    {
+      return snapshotDirectory;
+    }
+
+    @Override
+    public boolean isDirectRestore()
+    {
+      return MmapStorage.this.isDirectRestore();
+    }
+
+    @Override
+    public Path beforeRestore() throws DirectoryException
+    {
+      return MmapStorage.this.beforeRestore();
+    }
+
+    @Override
+    public void afterRestore(Path restoreDirectory, Path saveDirectory) throws DirectoryException
+    {
+      MmapStorage.this.afterRestore(restoreDirectory, saveDirectory);
+    }
+  }
+
+  private final ServerContext serverContext;
+  private final File backendDirectory;
+  private MmapBackendCfg config;
+  /** It is NULL when opening the storage READ-ONLY and no files have been created yet. */
+  private Database db;
+  private DiskSpaceMonitor diskMonitor;
+  private StorageStatus storageStatus = StorageStatus.working();
+
+  /**
+   * Creates a new memory-mapped storage with the provided configuration.
+   *
+   * @param cfg
+   *          The configuration.
+   * @param serverContext
+   *          This server instance context
+   */
+  MmapStorage(final MmapBackendCfg cfg, ServerContext serverContext)
+  {
+    this.serverContext = serverContext;
+    backendDirectory = getBackendDirectory(cfg);
+    config = cfg;
+    cfg.addMmapChangeListener(this);
+  }
+
+  @Override
+  public void open(AccessMode accessMode) throws ConfigException, StorageRuntimeException
+  {
+    Reject.ifNull(accessMode, "accessMode must not be null");
+    if (!accessMode.isWriteable() && !getDatabaseFile().exists())
+    {
+      // Do not create the database file
+      return;
+    }
+    open0(accessMode.isWriteable());
+    db.setSyncCommits(!config.isDBTxnNoSync());
+  }
+
+  private void open0(boolean writeable) throws ConfigException
+  {
+    setupStorageFiles(backendDirectory, config.getDBDirectoryPermissions(), config.dn());
+    if (db != null)
+    {
+      throw new IllegalStateException(
+          "Database is already open, either the backend is enabled or an import is currently running.");
+    }
+    final File dbFile = getDatabaseFile();
+    try
+    {
+      db = new Database(config.getBackendId(), dbFile, writeable);
+    }
+    catch (IOException e)
+    {
+      throw new StorageRuntimeException(
+          ERR_MMAP_INVALID_DATA_FILE.get(dbFile, config.getBackendId(), stackTraceToSingleLineString(e)).toString(), e);
+    }
+    diskMonitor = serverContext.getDiskSpaceMonitor();
+    registerMonitoredDirectory(config);
+  }
+
+  private File getDatabaseFile()
+  {
+    return new File(backendDirectory, DB_FILE_NAME);
+  }
+
+  @Override
+  public Importer startImport() throws ConfigException, StorageRuntimeException
+  {
+    open0(true);
+    // The importer synchronizes the database when it commits
+    db.setSyncCommits(false);
+    return new ImporterImpl();
+  }
+
+  @Override
+  public <T> T read(final ReadOperation<T> operation) throws Exception
+  {
+    final Snapshot snapshot = db != null ? db.acquireSnapshot() : null;
+    try
+    {
+      return operation.run(new SnapshotTransaction(snapshot));
+    }
+    catch (final StorageRuntimeException e)
+    {
+      throw unwrap(e);
+    }
+    finally
+    {
+      if (snapshot != null)
+      {
+        db.releaseSnapshot(snapshot);
+      }
+    }
+  }
+
+  @Override
+  public void write(final WriteOperation operation) throws Exception
+  {
+    if (db == null || !db.isWriteable())
+    {
+      final Snapshot snapshot = db != null ? db.acquireSnapshot() : null;
+      try
+      {
+        operation.run(new SnapshotTransaction(snapshot));
+      }
+      catch (final StorageRuntimeException e)
+      {
+        throw unwrap(e);
+      }
+      finally
+      {
+        if (snapshot != null)
+        {
+          db.releaseSnapshot(snapshot);
+        }
+      }
+      return;
+    }
+
+    final WriteTxn txn = db.beginWrite();
+    try
+    {
+      operation.run(txn);
+      db.commit(txn, false);
+    }
+    catch (final StorageRuntimeException e)
+    {
+      throw unwrap(e);
+    }
+    finally
+    {
+      db.abort(txn);
+    }
+  }
+
+  private Exception unwrap(StorageRuntimeException e) throws Exception
+  {
+    if (e.getCause() != null)
+    {
+      throw (Exception) e.getCause();
+    }
+    throw e;
+  }
+
+  @Override
+  public void close()
+  {
+    if (db != null)
+    {
+      try
+      {
+        db.close();
+        db = null;
+      }
+      catch (final IOException e)
+      {
+        throw new IllegalStateException(e);
+      }
+    }
+    config.removeMmapChangeListener(this);
+    if (diskMonitor != null)
+    {
+      diskMonitor.deregisterMonitoredDirectory(getDirectory(), this);
+    }
+  }
+
+  @Override
+  public Set<TreeName> listTrees()
+  {
+    if (db == null)
+    {
+      return Collections.<TreeName>emptySet();
+    }
+    final Snapshot snapshot = db.acquireSnapshot();
+    try
+    {
+      return new HashSet<>(snapshot.trees.keySet());
+    }
+    finally
+    {
+      db.releaseSnapshot(snapshot);
+    }
+  }
+
+  @Override
+  public boolean supportsBackupAndRestore()
+  {
+    return true;
+  }
+
+  @Override
+  public File getDirectory()
+  {
+    return getBackendDirectory(config);
+  }
+
+  private static File getBackendDirectory(MmapBackendCfg cfg)
+  {
+    return getDBDirectory(cfg.getDBDirectory(), cfg.getBackendId());
+  }
+
+  @Override
+  public ListIterator<Path> getFilesToBackup() throws DirectoryException
+  {
+    return BackupManager.getFiles(getDirectory(), BACKUP_FILES_FILTER, config.getBackendId()).listIterator();
+  }
+
+  @Override
+  public Path beforeRestore() throws DirectoryException
+  {
+    return null;
+  }
+
+  @Override
+  public boolean isDirectRestore()
+  {
+    // restore is done in an intermediate directory
+    return false;
+  }
+
+  @Override
+  public void afterRestore(Path restoreDirectory, Path saveDirectory) throws DirectoryException
+  {
+    // intermediate directory content is moved to database directory
+    File targetDirectory = getDirectory();
+    recursiveDelete(targetDirectory);
+    try
+    {
+      Files.move(restoreDirectory, targetDirectory.toPath());
+    }
+    catch(IOException e)
+    {
+      LocalizableMessage msg = ERR_CANNOT_RENAME_RESTORE_DIRECTORY.get(restoreDirectory, targetDirectory.getPath());
+      throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), msg);
+    }
+  }
+
+  @Override
+  public void createBackup(BackupConfig backupConfig) throws DirectoryException
+  {
+    if (db == null || !db.isWriteable())
+    {
+      // The database file is not being modified
+      new BackupManager(config.getBackendId()).createBackup(this, backupConfig);
+      return;
+    }
+
+    // Back up a consistent copy of the database, written while it keeps being modified
+    final File snapshotDirectory = new File(getDirectory().getAbsolutePath() + SNAPSHOT_SUFFIX);
+    try
+    {
+      recursiveDelete(snapshotDirectory);
+      Files.createDirectories(snapshotDirectory.toPath());
+      db.writeSnapshotTo(new File(snapshotDirectory, DB_FILE_NAME));
+    }
+    catch (IOException e)
+    {
+      recursiveDelete(snapshotDirectory);
+      throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+          ERR_MMAP_CANNOT_SNAPSHOT_FOR_BACKUP.get(config.getBackendId(), stackTraceToSingleLineString(e)), e);
+    }
+    try
+    {
+      new BackupManager(config.getBackendId()).createBackup(new SnapshotBackupable(snapshotDirectory), backupConfig);
+    }
+    finally
+    {
+      recursiveDelete(snapshotDirectory);
+    }
+  }
+
+  @Override
+  public void removeBackup(BackupDirectory backupDirectory, String backupID) throws DirectoryException
+  {
+    new BackupManager(config.getBackendId()).removeBackup(backupDirectory, backupID);
+  }
+
+  @Override
+  public void restoreBackup(RestoreConfig restoreConfig) throws DirectoryException
+  {
+    new BackupManager(config.getBackendId()).restoreBackup(this, restoreConfig);
+  }
+
+  @Override
+  public boolean isConfigurationChangeAcceptable(MmapBackendCfg newCfg, List<LocalizableMessage> unacceptableReasons)
+  {
+    return isConfigurationAcceptable(newCfg, unacceptableReasons);
+  }
+
+  /**
+   * Checks newly created backend has a valid configuration.
+   * @param cfg the new configuration
+   * @param unacceptableReasons the list of accumulated errors and their messages
+   * @return true if newly created backend has a valid configuration
+   */
+  static boolean isConfigurationAcceptable(MmapBackendCfg cfg, List<LocalizableMessage> unacceptableReasons)
+  {
+    final ConfigChangeResult ccr = new ConfigChangeResult();
+    File newBackendDirectory = getBackendDirectory(cfg);
+
+    checkDBDirExistsOrCanCreate(newBackendDirectory, ccr, true);
+    checkDBDirPermissions(cfg.getDBDirectoryPermissions(), cfg.dn(), ccr);
+    if (!ccr.getMessages().isEmpty())
+    {
+      unacceptableReasons.addAll(ccr.getMessages());
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public ConfigChangeResult applyConfigurationChange(MmapBackendCfg cfg)
+  {
+    final ConfigChangeResult ccr = new ConfigChangeResult();
+
+    try
+    {
+      File newBackendDirectory = getBackendDirectory(cfg);
+
+      // Create the directory if it doesn't exist.
+      if(!cfg.getDBDirectory().equals(config.getDBDirectory()))
+      {
+        checkDBDirExistsOrCanCreate(newBackendDirectory, ccr, false);
+        if (!ccr.getMessages().isEmpty())
+        {
+          return ccr;
+        }
+
+        ccr.setAdminActionRequired(true);
+        ccr.addMessage(NOTE_CONFIG_DB_DIR_REQUIRES_RESTART.get(config.getDBDirectory(), cfg.getDBDirectory()));
+      }
+
+      if (!cfg.getDBDirectoryPermissions().equalsIgnoreCase(config.getDBDirectoryPermissions())
+          || !cfg.getDBDirectory().equals(config.getDBDirectory()))
+      {
+        checkDBDirPermissions(cfg.getDBDirectoryPermissions(), cfg.dn(), ccr);
+        if (!ccr.getMessages().isEmpty())
+        {
+          return ccr;
+        }
+
+        setDBDirPermissions(newBackendDirectory, cfg.getDBDirectoryPermissions(), cfg.dn(), ccr);
+        if (!ccr.getMessages().isEmpty())
+        {
+          return ccr;
+        }
+      }
+      registerMonitoredDirectory(cfg);
+      config = cfg;
+      if (db != null)
+      {
+        db.setSyncCommits(!config.isDBTxnNoSync());
+      }
+    }
+    catch (Exception e)
+    {
+      addErrorMessage(ccr, LocalizableMessage.raw(stackTraceToSingleLineString(e)));
+    }
+    return ccr;
+  }
+
+  private void registerMonitoredDirectory(MmapBackendCfg cfg)
+  {
+    diskMonitor.registerMonitoredDirectory(
+      cfg.getBackendId() + " backend",
+      getDirectory(),
+      cfg.getDiskLowThreshold(),
+      cfg.getDiskFullThreshold(),
+      this);
+  }
+
+  @Override
+  public void removeStorageFiles() throws StorageRuntimeException
+  {
+    StorageUtils.removeStorageFiles(backendDirectory);
+  }
+
+  @Override
+  public StorageStatus getStorageStatus()
+  {
+    return storageStatus;
+  }
+
+  @Override
+  public void diskFullThresholdReached(File directory, long thresholdInBytes) {
+    storageStatus = statusWhenDiskSpaceFull(directory, thresholdInBytes, config.getBackendId());
+  }
+
+  @Override
+  public void diskLowThresholdReached(File directory, long thresholdInBytes) {
+    storageStatus = statusWhenDiskSpaceLow(directory, thresholdInBytes, config.getBackendId());
+  }
+
+  @Override
+  public void diskSpaceRestored(File directory, long lowThresholdInBytes, long fullThresholdInBytes) {
+    storageStatus = StorageStatus.working();
+  }
+}
@@ -0,0 +1,465 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+
+/**
+ * A B+tree node decoded for being modified by a write transaction. It is written to a new page
+ * when the transaction commits, its original page being freed.
+ */
+final class Node extends BTreeNode
+{
+  /** The value of a leaf entry. */
+  static final class Value
+  {
+    /** The value bytes, or {@code null} if they are stored in pages which have not been read. */
+    private final ByteString bytes;
+    /** The first page holding the value, or zero if not written in its own pages yet. */
+    private final long overflowPage;
+    private final int length;
+
+    private Value(ByteString bytes, long overflowPage, int length)
+    {
+      this.bytes = bytes;
+      this.overflowPage = overflowPage;
+      this.length = length;
+    }
+
+    static Value valueOf(ByteSequence bytes)
+    {
+      return new Value(bytes.toByteString(), 0, bytes.length());
+    }
+
+    /**
+     * Returns the first page holding this value, or zero if it is not stored in its own pages.
+     *
+     * @return the first page holding this value, or zero
+     */
+    long getOverflowPage()
+    {
+      return overflowPage;
+    }
+
+    int getLength()
+    {
+      return length;
+    }
+  }
+
+  /** A child of a branch node, which is decoded once it must be modified. */
+  static final class Child
+  {
+    /** The page of the child, or zero if it has never been written. */
+    private long page;
+    /** The decoded child, or {@code null} if it has not been modified. */
+    private Node node;
+
+    Child(long page, Node node)
+    {
+      this.page = page;
+      this.node = node;
+    }
+
+    long getPage()
+    {
+      return page;
+    }
+
+    Node getNode()
+    {
+      return node;
+    }
+
+    void setNode(Node node)
+    {
+      this.node = node;
+    }
+
+    void setPage(long page)
+    {
+      this.page = page;
+      this.node = null;
+    }
+  }
+
+  /** Allocates and writes the pages of values too large for being stored in their leaf entry. */
+  interface OverflowWriter
+  {
+    long writeOverflow(ByteString value);
+  }
+
+  private final PageFile file;
+  private final boolean leaf;
+  private final List<ByteString> keys = new ArrayList<>();
+  private final List<Value> values;
+  private final List<Child> children;
+  private int encodedSize = HEADER_SIZE;
+
+  private Node(PageFile file, boolean leaf)
+  {
+    this.file = file;
+    this.leaf = leaf;
+    this.values = leaf ? new ArrayList<Value>() : null;
+    this.children = leaf ? null : new ArrayList<Child>();
+  }
+
+  static Node newLeaf(PageFile file)
+  {
+    return new Node(file, true);
+  }
+
+  static Node newBranch(PageFile file)
+  {
+    return new Node(file, false);
+  }
+
+  /**
+   * Decodes the provided mapped node.
+   *
+   * @param file
+   *          the file holding the node
+   * @param mapped
+   *          the mapped node
+   * @return the decoded node
+   */
+  static Node decode(PageFile file, MappedNode mapped)
+  {
+    final Node node = new Node(file, mapped.isLeaf());
+    final int nbEntries = mapped.getNbEntries();
+    for (int i = 0; i < nbEntries; i++)
+    {
+      final ByteString key = mapped.getKey(i);
+      if (node.leaf)
+      {
+        final long overflowPage = mapped.getOverflowPage(i);
+        final Value value = overflowPage != 0
+            ? new Value(null, overflowPage, mapped.getValueLength(i))
+            : Value.valueOf(mapped.getValue(i));
+        node.insertRecord(i, key, value);
+      }
+      else
+      {
+        node.insertChild(i, key, new Child(mapped.getChildPage(i), null));
+      }
+    }
+    return node;
+  }
+
+  @Override
+  boolean isLeaf()
+  {
+    return leaf;
+  }
+
+  @Override
+  int getNbEntries()
+  {
+    return keys.size();
+  }
+
+  @Override
+  int compareKey(int index, ByteSequence key)
+  {
+    return keys.get(index).compareTo(key);
+  }
+
+  @Override
+  ByteString getKey(int index)
+  {
+    return keys.get(index);
+  }
+
+  @Override
+  ByteString getValue(int index)
+  {
+    final Value value = values.get(index);
+    return value.bytes != null ? value.bytes : file.read(value.overflowPage, value.length);
+  }
+
+  Value getRecordValue(int index)
+  {
+    return values.get(index);
+  }
+
+  @Override
+  BTreeNode getChild(int index)
+  {
+    final Child child = children.get(index);
+    return child.node != null ? child.node : new MappedNode(file, child.page);
+  }
+
+  Child getChildRef(int index)
+  {
+    return children.get(index);
+  }
+
+  /**
+   * Returns the number of bytes this node needs once encoded in a page.
+   *
+   * @return the number of bytes this node needs once encoded in a page
+   */
+  int getEncodedSize()
+  {
+    return encodedSize;
+  }
+
+  boolean isOverfull()
+  {
+    return encodedSize > PageFile.PAGE_SIZE;
+  }
+
+  boolean isUnderfull()
+  {
+    return encodedSize < PageFile.PAGE_SIZE / 4;
+  }
+
+  private int getEntrySize(int index)
+  {
+    final ByteString key = keys.get(index);
+    return leaf ? getLeafEntrySize(key.length(), values.get(index).length) : getBranchEntrySize(key.length());
+  }
+
+  void insertRecord(int index, ByteString key, Value value)
+  {
+    keys.add(index, key);
+    values.add(index, value);
+    encodedSize += getEntrySize(index);
+  }
+
+  /**
+   * Replaces the value of a record.
+   *
+   * @param index
+   *          the entry index
+   * @param value
+   *          the new value
+   * @return the replaced value
+   */
+  Value setRecordValue(int index, Value value)
+  {
+    encodedSize -= getEntrySize(index);
+    final Value oldValue = values.set(index, value);
+    encodedSize += getEntrySize(index);
+    return oldValue;
+  }
+
+  /**
+   * Removes a record.
+   *
+   * @param index
+   *          the entry index
+   * @return the value of the removed record
+   */
+  Value removeRecord(int index)
+  {
+    encodedSize -= getEntrySize(index);
+    keys.remove(index);
+    return values.remove(index);
+  }
+
+  void insertChild(int index, ByteString key, Child child)
+  {
+    keys.add(index, index == 0 ? ByteString.empty() : key);
+    children.add(index, child);
+    encodedSize += getEntrySize(index);
+  }
+
+  /**
+   * Removes a child.
+   *
+   * @param index
+   *          the entry index
+   * @return the removed child
+   */
+  Child removeChild(int index)
+  {
+    encodedSize -= getEntrySize(index);
+    keys.remove(index);
+    final Child child = children.remove(index);
+    if (index == 0 && !keys.isEmpty())
+    {
+      // The key of the first child is always empty
+      setKey(0, ByteString.empty());
+    }
+    return child;
+  }
+
+  private void setKey(int index, ByteString key)
+  {
+    encodedSize -= getEntrySize(index);
+    keys.set(index, key);
+    encodedSize += getEntrySize(index);
+  }
+
+  /**
+   * Moves the upper half of the entries of this node to a new node.
+   *
+   * @return the new node, holding the entries greater than those remaining in this node
+   */
+  Node split()
+  {
+    // Keep about half of the bytes in each node
+    int splitIndex = 0;
+    for (int size = HEADER_SIZE; size < encodedSize / 2 && splitIndex < keys.size() - 1; splitIndex++)
+    {
+      size += getEntrySize(splitIndex);
+    }
+    splitIndex = Math.max(1, splitIndex);
+
+    final Node right = new Node(file, leaf);
+    for (int i = splitIndex; i < keys.size(); i++)
+    {
+      if (leaf)
+      {
+        right.insertRecord(i - splitIndex, keys.get(i), values.get(i));
+      }
+      else
+      {
+        // The lowest key of the right node is kept by its parent
+        right.keys.add(keys.get(i));
+        right.children.add(children.get(i));
+        right.encodedSize += getEntrySize(i);
+      }
+    }
+    while (keys.size() > splitIndex)
+    {
+      final int last = keys.size() - 1;
+      encodedSize -= getEntrySize(last);
+      keys.remove(last);
+      if (leaf)
+      {
+        values.remove(last);
+      }
+      else
+      {
+        children.remove(last);
+      }
+    }
+    return right;
+  }
+
+  /**
+   * Returns the lowest key of the subtree rooted at this node, which must be a split node just
+   * returned by {@link #split()}, and clears it if this node is a branch.
+   *
+   * @return the lowest key of the subtree rooted at this node
+   */
+  ByteString takeLowestKey()
+  {
+    final ByteString lowestKey = keys.get(0);
+    if (!leaf)
+    {
+      setKey(0, ByteString.empty());
+    }
+    return lowestKey;
+  }
+
+  /**
+   * Returns whether the entries of the provided node would fit in this node.
+   *
+   * @param right
+   *          the node following this node
+   * @param separatorKey
+   *          the lowest key of the subtree rooted at the right node
+   * @return whether the entries of the provided node would fit in this node
+   */
+  boolean canMerge(Node right, ByteString separatorKey)
+  {
+    final int separatorSize = leaf ? 0 : separatorKey.length();
+    return encodedSize + right.encodedSize - HEADER_SIZE + separatorSize <= PageFile.PAGE_SIZE;
+  }
+
+  /**
+   * Appends the entries of the provided node to this node.
+   *
+   * @param right
+   *          the node following this node
+   * @param separatorKey
+   *          the lowest key of the subtree rooted at the right node
+   */
+  void merge(Node right, ByteString separatorKey)
+  {
+    for (int i = 0; i < right.keys.size(); i++)
+    {
+      final int index = keys.size();
+      if (leaf)
+      {
+        insertRecord(index, right.keys.get(i), right.values.get(i));
+      }
+      else
+      {
+        keys.add(i == 0 ? separatorKey : right.keys.get(i));
+        children.add(right.children.get(i));
+        encodedSize += getEntrySize(index);
+      }
+    }
+  }
+
+  /**
+   * Encodes this node in the provided page buffer. The pages of its children must have been written.
+   *
+   * @param page
+   *          the buffer receiving the encoded node
+   * @param overflowWriter
+   *          writes the values too large for being stored in their leaf entry
+   */
+  void encode(ByteBuffer page, OverflowWriter overflowWriter)
+  {
+    final int nbEntries = keys.size();
+    page.put(leaf ? LEAF : BRANCH).put((byte) 0).putShort((short) nbEntries);
+    int entryPosition = HEADER_SIZE + 2 * nbEntries;
+    for (int i = 0; i < nbEntries; i++)
+    {
+      page.putShort(HEADER_SIZE + 2 * i, (short) entryPosition);
+      page.position(entryPosition);
+      final ByteString key = keys.get(i);
+      if (leaf)
+      {
+        page.putShort((short) key.length());
+        key.copyTo(page);
+        final Value value = values.get(i);
+        if (isInline(key.length(), value.length))
+        {
+          page.put(INLINE_VALUE).putInt(value.length);
+          value.bytes.copyTo(page);
+        }
+        else
+        {
+          final long overflowPage =
+              value.overflowPage != 0 ? value.overflowPage : overflowWriter.writeOverflow(value.bytes);
+          page.put(OVERFLOW_VALUE).putInt(value.length).putLong(overflowPage);
+        }
+      }
+      else
+      {
+        final Child child = children.get(i);
+        if (child.node != null)
+        {
+          throw new IllegalStateException("Child node must be written before its parent");
+        }
+        page.putLong(child.page).putShort((short) key.length());
+        key.copyTo(page);
+      }
+      entryPosition = page.position();
+    }
+  }
+}
@@ -0,0 +1,441 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+
+/**
+ * A database file made of fixed size pages, accessed through memory mappings.
+ * <p>
+ * The file is mapped in segments of {@link #SEGMENT_SIZE} bytes which are added as the file grows,
+ * so that already mapped pages never move. The first two pages are meta pages, alternately
+ * overwritten each time the database is synchronized so that the last synchronized state can
+ * always be recovered, even if the system crashes while writing a meta page.
+ * <p>
+ * Pages are written by a single writer thread, but can be read concurrently by any number of
+ * threads since readers never access pages which may be written.
+ */
+final class PageFile implements Closeable
+{
+  /** The size of a page. */
+  static final int PAGE_SIZE = 16 * 1024;
+  /** The size of a mapped segment, which is the maximum size of a multi-page record. */
+  static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+  /** The number of pages in a segment. */
+  static final int PAGES_PER_SEGMENT = SEGMENT_SIZE / PAGE_SIZE;
+  /** The number of pages at the start of the file which hold meta pages. */
+  static final int NB_META_PAGES = 2;
+
+  private static final long MAGIC = 0x4f70656e444a4d4dL;
+  private static final int FORMAT_VERSION = 1;
+  /** Size of the meta page content which is covered by its checksum. */
+  private static final int META_SIZE = 40;
+
+  /** The content of a meta page, describing a consistent state of the database. */
+  static final class Meta
+  {
+    /** The transaction which produced this state. */
+    final long txnId;
+    /** The root page of the catalog, or zero if the catalog is empty. */
+    final long catalogRoot;
+    /** The first page which has never been allocated. */
+    final long nextPage;
+
+    Meta(long txnId, long catalogRoot, long nextPage)
+    {
+      this.txnId = txnId;
+      this.catalogRoot = catalogRoot;
+      this.nextPage = nextPage;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Meta(txnId=" + txnId + ", catalogRoot=" + catalogRoot + ", nextPage=" + nextPage + ")";
+    }
+  }
+
+  private final File file;
+  private final RandomAccessFile randomAccessFile;
+  private final FileChannel channel;
+  private final boolean writeable;
+  /** Readers access segments without locking: the array is replaced, never modified, when the file grows. */
+  private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+  /** The segments written since the last call to {@link #force()}. */
+  private final BitSet dirtySegments = new BitSet();
+  /** The meta page slot holding the most recent meta. */
+  private int lastMetaSlot;
+
+  /**
+   * Opens the provided database file, which is created if it does not exist and the file is opened
+   * for writing.
+   *
+   * @param file
+   *          the database file
+   * @param writeable
+   *          whether pages will be written
+   * @throws IOException
+   *           if the file cannot be opened
+   */
+  PageFile(File file, boolean writeable) throws IOException
+  {
+    this.file = file;
+    this.writeable = writeable;
+    this.randomAccessFile = new RandomAccessFile(file, writeable ? "rw" : "r");
+    this.channel = randomAccessFile.getChannel();
+    mapExistingSegments();
+  }
+
+  private void mapExistingSegments() throws IOException
+  {
+    final long fileSize = channel.size();
+    final int nbSegments = (int) ((fileSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+    final MappedByteBuffer[] mapped = new MappedByteBuffer[nbSegments];
+    for (int i = 0; i < nbSegments; i++)
+    {
+      mapped[i] = mapSegment(i, fileSize);
+    }
+    segments = mapped;
+  }
+
+  private MappedByteBuffer mapSegment(int segment, long fileSize) throws IOException
+  {
+    final long start = (long) segment * SEGMENT_SIZE;
+    if (writeable)
+    {
+      // Mapping past the end of the file grows the file
+      return channel.map(MapMode.READ_WRITE, start, SEGMENT_SIZE);
+    }
+    return channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, fileSize - start));
+  }
+
+  /**
+   * Returns the database file.
+   *
+   * @return the database file
+   */
+  File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * Returns whether this file does not contain any meta page yet.
+   *
+   * @return whether this file does not contain any meta page yet
+   */
+  boolean isEmpty()
+  {
+    return segments.length == 0;
+  }
+
+  /**
+   * Ensures the file is large enough to hold the provided number of pages. Must only be called by
+   * the writer.
+   *
+   * @param nbPages
+   *          the number of pages the file must be able to hold
+   * @throws IOException
+   *           if the file cannot be grown
+   */
+  void ensureCapacity(long nbPages) throws IOException
+  {
+    final MappedByteBuffer[] current = segments;
+    final int nbSegments = (int) ((nbPages + PAGES_PER_SEGMENT - 1) / PAGES_PER_SEGMENT);
+    if (nbSegments > current.length)
+    {
+      final MappedByteBuffer[] grown = Arrays.copyOf(current, nbSegments);
+      for (int i = current.length; i < nbSegments; i++)
+      {
+        grown[i] = mapSegment(i, 0);
+      }
+      segments = grown;
+    }
+  }
+
+  /**
+   * Returns the number of pages that the file can hold without growing.
+   *
+   * @return the number of pages that the file can hold without growing
+   */
+  long getCapacity()
+  {
+    return (long) segments.length * PAGES_PER_SEGMENT;
+  }
+
+  /**
+   * Returns the mapped segment holding the provided page. Its content must only be accessed using
+   * absolute methods since it is shared by all threads.
+   *
+   * @param page
+   *          the page
+   * @return the mapped segment holding the provided page
+   */
+  ByteBuffer getSegment(long page)
+  {
+    return segments[(int) (page / PAGES_PER_SEGMENT)];
+  }
+
+  /**
+   * Returns the offset of the provided page in its segment.
+   *
+   * @param page
+   *          the page
+   * @return the offset of the provided page in its segment
+   */
+  static int getOffset(long page)
+  {
+    return (int) (page % PAGES_PER_SEGMENT) * PAGE_SIZE;
+  }
+
+  /**
+   * Returns the number of pages needed to store the provided number of bytes.
+   *
+   * @param length
+   *          a number of bytes
+   * @return the number of pages needed to store the provided number of bytes
+   */
+  static int getNbPages(int length)
+  {
+    return (length + PAGE_SIZE - 1) / PAGE_SIZE;
+  }
+
+  /**
+   * Reads bytes stored from the start of the provided page, possibly spanning subsequent pages.
+   *
+   * @param page
+   *          the first page
+   * @param length
+   *          the number of bytes to read
+   * @return the bytes read
+   */
+  ByteString read(long page, int length)
+  {
+    final ByteBuffer buffer = getSegment(page).duplicate();
+    buffer.position(getOffset(page));
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return ByteString.wrap(bytes);
+  }
+
+  /**
+   * Writes the provided page. Must only be called by the writer.
+   *
+   * @param page
+   *          the page
+   * @param content
+   *          the page content, from its position to its limit
+   */
+  void write(long page, ByteBuffer content)
+  {
+    final ByteBuffer buffer = getSegment(page).duplicate();
+    buffer.position(getOffset(page));
+    buffer.put(content);
+    markDirty(page);
+  }
+
+  /**
+   * Writes bytes from the start of the provided page, possibly spanning subsequent pages of the
+   * same segment. Must only be called by the writer.
+   *
+   * @param page
+   *          the first page
+   * @param bytes
+   *          the bytes to write
+   */
+  void write(long page, ByteSequence bytes)
+  {
+    final ByteBuffer buffer = getSegment(page).duplicate();
+    buffer.position(getOffset(page));
+    bytes.copyTo(buffer);
+    markDirty(page);
+  }
+
+  private void markDirty(long page)
+  {
+    synchronized (dirtySegments)
+    {
+      dirtySegments.set((int) (page / PAGES_PER_SEGMENT));
+    }
+  }
+
+  /** Forces the segments written since the last call to this method to the storage device. */
+  void force()
+  {
+    final BitSet toForce;
+    synchronized (dirtySegments)
+    {
+      toForce = (BitSet) dirtySegments.clone();
+      dirtySegments.clear();
+    }
+    // Segments are added before being written, so they must be read after the dirty segments
+    final MappedByteBuffer[] current = segments;
+    for (int i = toForce.nextSetBit(0); i >= 0; i = toForce.nextSetBit(i + 1))
+    {
+      current[i].force();
+    }
+  }
+
+  /**
+   * Reads the most recent valid meta page.
+   *
+   * @return the most recent valid meta page
+   * @throws IOException
+   *           if none of the meta pages is valid
+   */
+  Meta readMeta() throws IOException
+  {
+    final Meta meta0 = readMeta(0);
+    final Meta meta1 = readMeta(1);
+    if (meta0 == null && meta1 == null)
+    {
+      throw new IOException("No valid meta page found");
+    }
+    lastMetaSlot = meta1 == null || (meta0 != null && meta0.txnId > meta1.txnId) ? 0 : 1;
+    return lastMetaSlot == 0 ? meta0 : meta1;
+  }
+
+  private Meta readMeta(int slot) throws IOException
+  {
+    if (getCapacity() < NB_META_PAGES)
+    {
+      return null;
+    }
+    final ByteBuffer buffer = getSegment(slot).duplicate();
+    buffer.position(getOffset(slot));
+    final byte[] content = new byte[META_SIZE];
+    buffer.get(content);
+    final long checksum = buffer.getLong();
+    if (checksum != checksum(content))
+    {
+      return null;
+    }
+    final ByteBuffer meta = ByteBuffer.wrap(content);
+    if (meta.getLong() != MAGIC)
+    {
+      return null;
+    }
+    final int version = meta.getInt();
+    final int pageSize = meta.getInt();
+    if (version != FORMAT_VERSION || pageSize != PAGE_SIZE)
+    {
+      throw new IOException("Unsupported format version " + version + " with page size " + pageSize);
+    }
+    return new Meta(meta.getLong(), meta.getLong(), meta.getLong());
+  }
+
+  /**
+   * Writes the provided meta in the slot which does not hold the most recent meta. The meta page
+   * must be forced to the storage device once all the pages it references have been forced.
+   *
+   * @param meta
+   *          the meta to write
+   */
+  void writeMeta(Meta meta)
+  {
+    final int slot = 1 - lastMetaSlot;
+    write(slot, encodeMeta(meta));
+    lastMetaSlot = slot;
+  }
+
+  /**
+   * Writes the provided meta in both meta pages of a copy of a database file.
+   *
+   * @param out
+   *          the copy of a database file
+   * @param meta
+   *          the meta to write
+   * @throws IOException
+   *           if the meta pages cannot be written
+   */
+  static void writeMeta(FileChannel out, Meta meta) throws IOException
+  {
+    for (int slot = 0; slot < NB_META_PAGES; slot++)
+    {
+      final ByteBuffer content = encodeMeta(meta);
+      long position = (long) slot * PAGE_SIZE;
+      while (content.hasRemaining())
+      {
+        position += out.write(content, position);
+      }
+    }
+  }
+
+  private static ByteBuffer encodeMeta(Meta meta)
+  {
+    final ByteBuffer content = ByteBuffer.allocate(META_SIZE + 8);
+    content.putLong(MAGIC).putInt(FORMAT_VERSION).putInt(PAGE_SIZE);
+    content.putLong(meta.txnId).putLong(meta.catalogRoot).putLong(meta.nextPage);
+    content.putLong(checksum(Arrays.copyOf(content.array(), META_SIZE)));
+    content.flip();
+    return content;
+  }
+
+  private static long checksum(byte[] content)
+  {
+    final CRC32 crc = new CRC32();
+    crc.update(content, 0, content.length);
+    return crc.getValue();
+  }
+
+  /**
+   * Copies the provided number of pages from the start of this file to the provided file.
+   *
+   * @param out
+   *          the file to copy pages to
+   * @param nbPages
+   *          the number of pages to copy
+   * @throws IOException
+   *           if the pages cannot be written
+   */
+  void copyTo(FileChannel out, long nbPages) throws IOException
+  {
+    final MappedByteBuffer[] current = segments;
+    long remaining = nbPages * PAGE_SIZE;
+    long position = 0;
+    for (int i = 0; remaining > 0; i++)
+    {
+      final ByteBuffer buffer = current[i].duplicate();
+      buffer.position(0).limit((int) Math.min(SEGMENT_SIZE, remaining));
+      while (buffer.hasRemaining())
+      {
+        position += out.write(buffer, position);
+      }
+      remaining -= SEGMENT_SIZE;
+    }
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    // Mapped segments are released once garbage collected
+    segments = new MappedByteBuffer[0];
+    randomAccessFile.close();
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import java.util.Arrays;
+
+/** A growable list of page numbers. */
+final class PageList
+{
+  private long[] pages = new long[16];
+  private int size;
+
+  void add(long page)
+  {
+    if (size == pages.length)
+    {
+      pages = Arrays.copyOf(pages, size * 2);
+    }
+    pages[size++] = page;
+  }
+
+  /**
+   * Adds a range of consecutive pages.
+   *
+   * @param firstPage
+   *          the first page of the range
+   * @param nbPages
+   *          the number of pages in the range
+   */
+  void add(long firstPage, int nbPages)
+  {
+    for (int i = 0; i < nbPages; i++)
+    {
+      add(firstPage + i);
+    }
+  }
+
+  void addAll(PageList other)
+  {
+    for (int i = 0; i < other.size; i++)
+    {
+      add(other.pages[i]);
+    }
+  }
+
+  long removeLast()
+  {
+    return pages[--size];
+  }
+
+  boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  int size()
+  {
+    return size;
+  }
+
+  void clear()
+  {
+    size = 0;
+  }
+}
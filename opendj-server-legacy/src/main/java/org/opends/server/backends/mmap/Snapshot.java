@@ -0,0 +1,69 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opends.server.backends.pluggable.spi.TreeName;
+
+/**
+ * An immutable committed state of the database. The pages reachable from a snapshot are never
+ * overwritten while it is used by readers.
+ */
+final class Snapshot
+{
+  /** The root page and record count of a tree. */
+  static final class TreeInfo
+  {
+    /** The root page, or zero if the tree is empty. */
+    final long root;
+    final long recordCount;
+
+    TreeInfo(long root, long recordCount)
+    {
+      this.root = root;
+      this.recordCount = recordCount;
+    }
+  }
+
+  final long txnId;
+  final long catalogRoot;
+  final long nextPage;
+  final Map<TreeName, TreeInfo> trees;
+  /** The number of readers currently using this snapshot. */
+  final AtomicInteger nbReaders = new AtomicInteger();
+
+  Snapshot(long txnId, long catalogRoot, long nextPage, Map<TreeName, TreeInfo> trees)
+  {
+    this.txnId = txnId;
+    this.catalogRoot = catalogRoot;
+    this.nextPage = nextPage;
+    this.trees = Collections.unmodifiableMap(trees);
+  }
+
+  PageFile.Meta toMeta()
+  {
+    return new PageFile.Meta(txnId, catalogRoot, nextPage);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "Snapshot(txnId=" + txnId + ", nbTrees=" + trees.size() + ", nextPage=" + nextPage + ")";
+  }
+}
@@ -0,0 +1,533 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import static org.opends.messages.BackendMessages.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteSequenceReader;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.opends.server.backends.mmap.Node.Child;
+import org.opends.server.backends.mmap.Node.Value;
+import org.opends.server.backends.mmap.Snapshot.TreeInfo;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.UpdateFunction;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+
+/**
+ * A write transaction, modifying copies of the nodes of the snapshot it started from.
+ * <p>
+ * Modified nodes are kept in memory until the transaction commits, when they are written bottom-up
+ * to newly allocated pages. The pages of the nodes they replace are freed once no reader can
+ * access them anymore.
+ */
+final class WriteTxn implements WriteableTransaction, Node.OverflowWriter
+{
+  /** The state of a tree in this transaction. */
+  private static final class TreeState
+  {
+    /** The root of the tree, which page is zero if the tree is empty. */
+    private Child root;
+    private long recordCount;
+    private boolean exists;
+    private boolean modified;
+
+    private TreeState(TreeInfo info)
+    {
+      this.root = new Child(info != null ? info.root : 0, null);
+      this.recordCount = info != null ? info.recordCount : 0;
+      this.exists = info != null;
+    }
+  }
+
+  private final Database db;
+  private final PageFile file;
+  private final Snapshot base;
+  private final Map<TreeName, TreeState> trees = new HashMap<>();
+  /** The catalog, mapping each tree name to its root page and record count. */
+  private final TreeState catalog;
+  /** The pages of the base snapshot which are not used anymore by this transaction. */
+  private final PageList freedPages = new PageList();
+  /** The pages allocated by this transaction. */
+  private final PageList allocatedPages = new PageList();
+  private final ByteBuffer pageBuffer = ByteBuffer.allocate(PageFile.PAGE_SIZE);
+  /** Incremented each time a tree is modified, for cursors to detect modifications. */
+  private int modCount;
+  private int nbDirtyNodes;
+
+  WriteTxn(Database db, Snapshot base)
+  {
+    this.db = db;
+    this.file = db.getFile();
+    this.base = base;
+    this.catalog = new TreeState(new TreeInfo(base.catalogRoot, base.trees.size()));
+  }
+
+  Snapshot getBase()
+  {
+    return base;
+  }
+
+  boolean isModified()
+  {
+    return modCount > 0;
+  }
+
+  /**
+   * Returns the number of nodes modified by this transaction, which are held in memory until it
+   * commits.
+   *
+   * @return the number of nodes modified by this transaction
+   */
+  int getNbDirtyNodes()
+  {
+    return nbDirtyNodes;
+  }
+
+  PageList getFreedPages()
+  {
+    return freedPages;
+  }
+
+  PageList getAllocatedPages()
+  {
+    return allocatedPages;
+  }
+
+  private TreeState getTree(TreeName treeName)
+  {
+    TreeState tree = trees.get(treeName);
+    if (tree == null)
+    {
+      tree = new TreeState(base.trees.get(treeName));
+      trees.put(treeName, tree);
+    }
+    return tree;
+  }
+
+  private BTreeNode getRoot(TreeState tree)
+  {
+    final Child root = tree.root;
+    if (root.getNode() != null)
+    {
+      return root.getNode();
+    }
+    return root.getPage() != 0 ? new MappedNode(file, root.getPage()) : null;
+  }
+
+  @Override
+  public ByteString read(TreeName treeName, ByteSequence key)
+  {
+    return BTreeNode.lookup(getRoot(getTree(treeName)), key);
+  }
+
+  @Override
+  public Cursor<ByteString, ByteString> openCursor(final TreeName treeName)
+  {
+    final TreeState tree = getTree(treeName);
+    return new BTreeCursor()
+    {
+      @Override
+      BTreeNode getRoot()
+      {
+        return WriteTxn.this.getRoot(tree);
+      }
+
+      @Override
+      int getModCount()
+      {
+        return modCount;
+      }
+
+      @Override
+      void deleteRecord(ByteString key)
+      {
+        WriteTxn.this.delete(treeName, key);
+      }
+    };
+  }
+
+  @Override
+  public long getRecordCount(TreeName treeName)
+  {
+    return getTree(treeName).recordCount;
+  }
+
+  @Override
+  public void openTree(TreeName treeName, boolean createOnDemand)
+  {
+    final TreeState tree = getTree(treeName);
+    if (createOnDemand && !tree.exists)
+    {
+      tree.exists = true;
+      tree.modified = true;
+      modCount++;
+    }
+  }
+
+  @Override
+  public void deleteTree(TreeName treeName)
+  {
+    final TreeState tree = getTree(treeName);
+    if (tree.exists)
+    {
+      freeSubtree(tree.root);
+      tree.root = new Child(0, null);
+      tree.recordCount = 0;
+      tree.exists = false;
+      tree.modified = true;
+      modCount++;
+    }
+  }
+
+  @Override
+  public void put(TreeName treeName, ByteSequence key, ByteSequence value)
+  {
+    if (key.length() > BTreeNode.MAX_KEY_SIZE)
+    {
+      throw new StorageRuntimeException(
+          ERR_MMAP_KEY_TOO_LARGE.get(key.length(), treeName, BTreeNode.MAX_KEY_SIZE).toString());
+    }
+    put(getTree(treeName), key.toByteString(), Value.valueOf(value));
+  }
+
+  @Override
+  public boolean update(TreeName treeName, ByteSequence key, UpdateFunction f)
+  {
+    final ByteString oldValue = read(treeName, key);
+    final ByteSequence newValue = f.computeNewValue(oldValue);
+    if (Objects.equals(newValue, oldValue))
+    {
+      return false;
+    }
+    if (newValue == null)
+    {
+      delete(treeName, key);
+    }
+    else
+    {
+      put(treeName, key, newValue);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean delete(TreeName treeName, ByteSequence key)
+  {
+    final TreeState tree = getTree(treeName);
+    // Avoid copying the nodes on the path to a missing key
+    if (BTreeNode.lookup(getRoot(tree), key) == null)
+    {
+      return false;
+    }
+    delete(tree, key);
+    return true;
+  }
+
+  private void put(TreeState tree, ByteString key, Value value)
+  {
+    if (tree.root.getPage() == 0 && tree.root.getNode() == null)
+    {
+      tree.root.setNode(Node.newLeaf(file));
+      nbDirtyNodes++;
+    }
+    final Node root = load(tree.root);
+    if (insert(root, key, value))
+    {
+      tree.recordCount++;
+    }
+    if (root.isOverfull())
+    {
+      final Node right = root.split();
+      final Node newRoot = Node.newBranch(file);
+      newRoot.insertChild(0, null, new Child(0, root));
+      newRoot.insertChild(1, right.takeLowestKey(), new Child(0, right));
+      tree.root = new Child(0, newRoot);
+      nbDirtyNodes += 2;
+    }
+    tree.exists = true;
+    tree.modified = true;
+    modCount++;
+  }
+
+  /**
+   * Inserts or replaces a record in the subtree rooted at the provided node, splitting its overfull
+   * children.
+   *
+   * @return {@code true} if a new record was inserted, {@code false} if a value was replaced
+   */
+  private boolean insert(Node node, ByteString key, Value value)
+  {
+    if (node.isLeaf())
+    {
+      final int index = node.findKey(key);
+      if (index < node.getNbEntries() && node.compareKey(index, key) == 0)
+      {
+        freeValue(node.setRecordValue(index, value));
+        return false;
+      }
+      node.insertRecord(index, key, value);
+      return true;
+    }
+
+    final int index = node.findChild(key);
+    final Node child = load(node.getChildRef(index));
+    final boolean inserted = insert(child, key, value);
+    if (child.isOverfull())
+    {
+      final Node right = child.split();
+      node.insertChild(index + 1, right.takeLowestKey(), new Child(0, right));
+      nbDirtyNodes++;
+    }
+    return inserted;
+  }
+
+  private void delete(TreeState tree, ByteSequence key)
+  {
+    final Node root = load(tree.root);
+    remove(root, key);
+    tree.recordCount--;
+    if (root.getNbEntries() == 0)
+    {
+      tree.root = new Child(0, null);
+    }
+    else
+    {
+      // A branch root with a single child is useless
+      while (!tree.root.getNode().isLeaf() && tree.root.getNode().getNbEntries() == 1)
+      {
+        tree.root = tree.root.getNode().getChildRef(0);
+        if (tree.root.getNode() == null)
+        {
+          break;
+        }
+      }
+    }
+    tree.modified = true;
+    modCount++;
+  }
+
+  /** Removes an existing record from the subtree rooted at the provided node, merging its underfull children. */
+  private void remove(Node node, ByteSequence key)
+  {
+    if (node.isLeaf())
+    {
+      freeValue(node.removeRecord(node.findKey(key)));
+      return;
+    }
+    final int index = node.findChild(key);
+    remove(load(node.getChildRef(index)), key);
+    rebalance(node, index);
+  }
+
+  private void rebalance(Node parent, int index)
+  {
+    final Node child = parent.getChildRef(index).getNode();
+    if (child.getNbEntries() == 0)
+    {
+      parent.removeChild(index);
+      nbDirtyNodes--;
+      return;
+    }
+    if (!child.isUnderfull() || parent.getNbEntries() < 2)
+    {
+      return;
+    }
+
+    final int leftIndex = index > 0 ? index - 1 : index;
+    final Child leftRef = parent.getChildRef(leftIndex);
+    final Child rightRef = parent.getChildRef(leftIndex + 1);
+    final ByteString separatorKey = parent.getKey(leftIndex + 1);
+    // Check the size of the sibling before copying it
+    final int separatorSize = child.isLeaf() ? 0 : separatorKey.length();
+    if (getEncodedSize(leftRef) + getEncodedSize(rightRef) - BTreeNode.HEADER_SIZE + separatorSize
+        > PageFile.PAGE_SIZE)
+    {
+      return;
+    }
+    final Node left = load(leftRef);
+    final Node right = load(rightRef);
+    left.merge(right, separatorKey);
+    parent.removeChild(leftIndex + 1);
+    nbDirtyNodes--;
+  }
+
+  private int getEncodedSize(Child child)
+  {
+    return child.getNode() != null
+        ? child.getNode().getEncodedSize()
+        : new MappedNode(file, child.getPage()).getEncodedSize();
+  }
+
+  /**
+   * Returns the node of the provided child, decoding it from its page if it has not been modified by
+   * this transaction yet. The page is then freed since the node will be written to a new page.
+   */
+  private Node load(Child child)
+  {
+    Node node = child.getNode();
+    if (node == null)
+    {
+      node = Node.decode(file, new MappedNode(file, child.getPage()));
+      freedPages.add(child.getPage());
+      child.setNode(node);
+      nbDirtyNodes++;
+    }
+    return node;
+  }
+
+  private void freeValue(Value value)
+  {
+    if (value.getOverflowPage() != 0)
+    {
+      freedPages.add(value.getOverflowPage(), PageFile.getNbPages(value.getLength()));
+    }
+  }
+
+  private void freeSubtree(Child child)
+  {
+    final Node node = child.getNode();
+    if (node == null)
+    {
+      if (child.getPage() != 0)
+      {
+        freeSubtree(new MappedNode(file, child.getPage()));
+      }
+      return;
+    }
+    // The page of a modified node has already been freed
+    for (int i = 0; i < node.getNbEntries(); i++)
+    {
+      if (node.isLeaf())
+      {
+        freeValue(node.getRecordValue(i));
+      }
+      else
+      {
+        freeSubtree(node.getChildRef(i));
+      }
+    }
+  }
+
+  private void freeSubtree(MappedNode node)
+  {
+    freedPages.add(node.getPage());
+    for (int i = 0; i < node.getNbEntries(); i++)
+    {
+      if (node.isLeaf())
+      {
+        final long overflowPage = node.getOverflowPage(i);
+        if (overflowPage != 0)
+        {
+          freedPages.add(overflowPage, PageFile.getNbPages(node.getValueLength(i)));
+        }
+      }
+      else
+      {
+        freeSubtree(new MappedNode(file, node.getChildPage(i)));
+      }
+    }
+  }
+
+  /**
+   * Writes the nodes modified by this transaction, then the catalog.
+   *
+   * @return the snapshot produced by this transaction
+   */
+  Snapshot commit()
+  {
+    final Map<TreeName, TreeInfo> infos = new HashMap<>(base.trees);
+    for (Map.Entry<TreeName, TreeState> entry : trees.entrySet())
+    {
+      final TreeName treeName = entry.getKey();
+      final TreeState tree = entry.getValue();
+      if (!tree.modified)
+      {
+        continue;
+      }
+      final ByteString catalogKey = ByteString.valueOfUtf8(treeName.toString());
+      if (tree.exists)
+      {
+        final TreeInfo info = new TreeInfo(writeSubtree(tree.root), tree.recordCount);
+        infos.put(treeName, info);
+        put(catalog, catalogKey, Value.valueOf(encodeTreeInfo(info)));
+      }
+      else if (infos.remove(treeName) != null)
+      {
+        delete(catalog, catalogKey);
+      }
+    }
+    final long catalogRoot = writeSubtree(catalog.root);
+    return new Snapshot(base.txnId + 1, catalogRoot, db.getNextPage(), infos);
+  }
+
+  private long writeSubtree(Child child)
+  {
+    final Node node = child.getNode();
+    if (node == null)
+    {
+      return child.getPage();
+    }
+    if (!node.isLeaf())
+    {
+      for (int i = 0; i < node.getNbEntries(); i++)
+      {
+        writeSubtree(node.getChildRef(i));
+      }
+    }
+    final long page = allocate(1);
+    pageBuffer.clear();
+    node.encode(pageBuffer, this);
+    pageBuffer.flip();
+    file.write(page, pageBuffer);
+    child.setPage(page);
+    return page;
+  }
+
+  @Override
+  public long writeOverflow(ByteString value)
+  {
+    final long page = allocate(PageFile.getNbPages(value.length()));
+    file.write(page, value);
+    return page;
+  }
+
+  private long allocate(int nbPages)
+  {
+    final long page = db.allocate(nbPages);
+    allocatedPages.add(page, nbPages);
+    return page;
+  }
+
+  static ByteString encodeTreeInfo(TreeInfo info)
+  {
+    return new ByteStringBuilder(16).appendLong(info.root).appendLong(info.recordCount).toByteString();
+  }
+
+  static TreeInfo decodeTreeInfo(ByteString value)
+  {
+    final ByteSequenceReader reader = value.asReader();
+    return new TreeInfo(reader.readLong(), reader.readLong());
+  }
+}
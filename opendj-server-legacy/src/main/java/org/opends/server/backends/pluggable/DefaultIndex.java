@@ -67,6 +67,13 @@ class DefaultIndex extends AbstractTree implements Index
    */
   private volatile boolean trusted;
 
+  /**
+   * A flag to indicate that this index is being rebuilt online. While it is set, updates are applied as if the index
+   * was trusted so that keys created by concurrent writers are not lost, whereas reads still consider the index as
+   * untrusted until the rebuild completes.
+   */
+  private volatile boolean rebuilding;
+
   /**
    * Create a new index object.
    *
@@ -179,7 +186,7 @@ class DefaultIndex extends AbstractTree implements Index
      * Avoid taking a write lock on a record which has hit all IDs because it is likely to be a
      * point of contention.
      */
-    if (!get(txn, key).isDefined())
+    if (!rebuilding && !get(txn, key).isDefined())
     {
       return;
     }
@@ -200,9 +207,9 @@ class DefaultIndex extends AbstractTree implements Index
            */
           return entryIDSet.size() == 0 ? null : toValue(entryIDSet);
         }
-        else if (trusted)
+        else if (trusted || rebuilding)
         {
-          if (deletedIDs != null)
+          if (deletedIDs != null && trusted)
           {
             logIndexCorruptError(txn, key);
           }
@@ -325,6 +332,23 @@ class DefaultIndex extends AbstractTree implements Index
     return trusted;
   }
 
+  /**
+   * Indicates whether this index is being rebuilt online. Updates to a rebuilding index add entry IDs to non-existing
+   * keys even though the index is not trusted yet.
+   *
+   * @param rebuilding
+   *          {@code true} while this index is being rebuilt online
+   */
+  final void setRebuilding(boolean rebuilding)
+  {
+    this.rebuilding = rebuilding;
+  }
+
+  final boolean isRebuilding()
+  {
+    return rebuilding;
+  }
+
   final boolean isEncrypted()
   {
     return cryptoSuite.isEncrypted();
@@ -25,6 +25,7 @@ import static org.opends.server.backends.pluggable.VLVIndex.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.protocols.ldap.LDAPResultCode.*;
 import static org.opends.server.types.AdditionalLogItem.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.StaticUtils.*;
 
 import java.util.ArrayList;
@@ -93,13 +94,13 @@ import org.opends.server.crypto.CryptoSuite;
 import org.opends.server.types.Attribute;
 import org.opends.server.types.Attributes;
 import org.opends.server.types.CanceledOperationException;
+import org.opends.server.types.CompiledSearchFilter;
 import org.opends.server.types.Control;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.Modification;
 import org.opends.server.types.Operation;
 import org.opends.server.types.Privilege;
-import org.opends.server.types.SearchFilter;
 import org.opends.server.types.VirtualAttributeRule;
 import org.opends.server.util.ServerConstants;
 import org.opends.server.util.StaticUtils;
@@ -772,7 +773,15 @@ public class EntryContainer
                 EntryContainer.this, txn, searchOperation, debugBuffer, rootContainer.getMonitorProvider());
 
             // Evaluate the filter against the attribute indexes.
-            candidateEntryIDs = indexFilter.evaluate();
+            final long indexStartTime = phaseStarted(searchOperation);
+            try
+            {
+              candidateEntryIDs = indexFilter.evaluate();
+            }
+            finally
+            {
+              phaseEnded(searchOperation, Phase.INDEX, indexStartTime);
+            }
             if (!isBelowFilterThreshold(candidateEntryIDs))
             {
               final int idSetLimit = getEntryIDSetLimit(searchOperation);
@@ -1142,6 +1151,7 @@ public class EntryContainer
 
     int lookthroughCount = 0;
     int lookthroughLimit = searchOperation.getClientConnection().getLookthroughLimit();
+    final CompiledSearchFilter filter = searchOperation.getFilter().compile();
 
     try (final Cursor<ByteString, ByteString> cursor = txn.openCursor(dn2id.getName()))
     {
@@ -1174,7 +1184,7 @@ public class EntryContainer
             lookthroughCount++;
 
             if ((manageDsaIT || entry.getReferralURLs() == null)
-                && searchOperation.getFilter().matchesEntry(entry))
+                && filter.matchesEntry(entry))
             {
               if (isPageFull(searchOperation, pageRequest))
               {
@@ -1318,7 +1328,7 @@ public class EntryContainer
     // Iterate through the index candidates.
     if (continueSearch)
     {
-      final SearchFilter filter = searchOperation.getFilter();
+      final CompiledSearchFilter filter = searchOperation.getFilter().compile();
       for (int i = findStartIndex(beginEntryID, entryIDReorderedSet); i < entryIDReorderedSet.length; i++)
       {
         EntryID entryID = new EntryID(entryIDReorderedSet[i]);
@@ -2546,7 +2556,7 @@ public class EntryContainer
 
     final DN baseDN = searchOperation.getBaseDN();
     final SearchScope scope = searchOperation.getScope();
-    final SearchFilter filter = searchOperation.getFilter();
+    final CompiledSearchFilter filter = searchOperation.getFilter().compile();
 
     final TreeMap<ByteString, EntryID> sortMap = new TreeMap<>();
     for (EntryID id : entryIDSet)
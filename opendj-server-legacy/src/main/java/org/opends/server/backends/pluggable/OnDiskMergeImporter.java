@@ -314,6 +314,10 @@ final class OnDiskMergeImporter
         clearDegradedState(entryContainer, indexesToRebuild);
         logger.info(NOTE_REBUILD_CLEARDEGRADEDSTATE_FINAL_STATUS, rebuildConfig.getRebuildList());
       }
+      else if (rebuildConfig.isOnline())
+      {
+        rebuildIndexOnline(entryContainer, rebuildConfig.getMaxEntriesPerSecond(), indexesToRebuild, totalEntries);
+      }
       else
       {
         rebuildIndex(entryContainer, rebuildConfig.getTmpDirectory(), indexesToRebuild, totalEntries);
@@ -340,6 +344,24 @@ final class OnDiskMergeImporter
       }
     }
 
+    private void rebuildIndexOnline(EntryContainer entryContainer, int maxEntriesPerSecond,
+        Set<String> indexesToRebuild, long totalEntries)
+        throws InitializationException, InterruptedException, ExecutionException
+    {
+      if (indexesToRebuild.isEmpty())
+      {
+        logger.info(NOTE_REBUILD_NOTHING_TO_REBUILD);
+        return;
+      }
+      final long startTime = System.currentTimeMillis();
+      final long processedEntries =
+          new OnlineIndexRebuilder(entryContainer, rootContainer.getStorage(), getDefaultNumberOfThread(),
+              maxEntriesPerSecond).rebuild(indexesToRebuild, totalEntries);
+      final long totalTime = System.currentTimeMillis() - startTime;
+      final float rate = totalTime > 0 ? 1000f * processedEntries / totalTime : 0;
+      logger.info(NOTE_REBUILD_FINAL_STATUS, processedEntries, totalTime / 1000, rate);
+    }
+
     private void rebuildIndex(EntryContainer entryContainer, String tmpDirectory, Set<String> indexesToRebuild,
         long totalEntries) throws InitializationException, ConfigException, InterruptedException, ExecutionException
     {
@@ -2288,7 +2310,20 @@ final class OnDiskMergeImporter
       checkThreadNotInterrupted();
       try (final SequentialCursor<ByteString, ByteString> sourceCursor = trackCursorProgress(reporter, source.flip()))
       {
-        final long nbRecords = copyIntoChunk(sourceCursor, asChunk(vlvIndex.getName(), destination));
+        final Chunk vlvChunk = asChunk(vlvIndex.getName(), destination);
+        final VLVBlockIndex.Builder blocks = vlvIndex.newBlocksImportBuilder(destination);
+        long nbRecords = 0;
+        while (sourceCursor.next())
+        {
+          if (!vlvChunk.put(sourceCursor.getKey(), sourceCursor.getValue()))
+          {
+            throw new IllegalStateException("Destination chunk is full");
+          }
+          blocks.add(sourceCursor.getKey());
+          nbRecords++;
+          checkThreadNotInterrupted();
+        }
+        blocks.close();
         vlvIndex.importCount(destination, nbRecords);
         return null;
       }
@@ -0,0 +1,463 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.forgerock.util.Utils.*;
+import static org.opends.messages.BackendMessages.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.backends.pluggable.AttributeIndex.MatchingRuleIndex;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.Storage;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.types.Entry;
+import org.opends.server.types.InitializationException;
+
+/**
+ * Rebuilds new or degraded attribute indexes while the backend keeps serving requests.
+ * <p>
+ * Indexes are rebuilt in place, so only untrusted indexes can be rebuilt online: searches already ignore them and keep
+ * doing so until the rebuild completes, whereas rebuilding a trusted index in place would silently turn the searches
+ * using it into unindexed ones. Trusted indexes must be rebuilt offline.
+ * <p>
+ * The rebuilt indexes are first marked as rebuilding under the entry container exclusive lock, so that every
+ * subsequent write keeps them fully up to date. Their content is then cleared and id2entry is scanned by several
+ * threads, each one claiming the next range of entry IDs and indexing the entries of that range in a single write
+ * transaction. Because entries are re-read in the transaction updating the index, a range can never reintroduce keys
+ * for entries deleted or modified concurrently. Once all the ranges have been processed, the indexes are marked as
+ * trusted again under the exclusive lock.
+ * <p>
+ * The number of entries processed per second can be limited in order to bound the amount of I/O and CPU taken away
+ * from the production load.
+ */
+final class OnlineIndexRebuilder
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  private static final String REBUILDER_THREAD_NAME = "ONLINE-REBUILDER-%d";
+
+  /** Number of entry IDs processed in a single write transaction. */
+  static final int RANGE_SIZE = 256;
+
+  /** Number of index keys deleted in a single write transaction while clearing an index. */
+  private static final int CLEAR_BATCH_SIZE = 1000;
+
+  private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private final EntryContainer entryContainer;
+  private final Storage storage;
+  private final int threadCount;
+  private final RateLimiter rateLimiter;
+
+  private final AtomicLong nextRangeStart = new AtomicLong(1);
+  private final AtomicLong processedEntries = new AtomicLong();
+  private final AtomicLong lastReportTime = new AtomicLong();
+  private volatile long lastReportCount;
+
+  OnlineIndexRebuilder(EntryContainer entryContainer, Storage storage, int threadCount, int maxEntriesPerSecond)
+  {
+    this.entryContainer = entryContainer;
+    this.storage = storage;
+    this.threadCount = threadCount;
+    this.rateLimiter = maxEntriesPerSecond > 0 ? new RateLimiter(maxEntriesPerSecond) : null;
+  }
+
+  /**
+   * Rebuilds the provided indexes.
+   *
+   * @param indexIds
+   *          the identifiers of the indexes to rebuild
+   * @param totalEntries
+   *          the number of entries in the entry container, only used for progress reporting
+   * @return the number of entries which have been indexed
+   * @throws InitializationException
+   *           if one of the indexes cannot be rebuilt online
+   * @throws ExecutionException
+   *           if an error occurred while rebuilding the indexes
+   * @throws InterruptedException
+   *           if the rebuild has been interrupted
+   */
+  long rebuild(Set<String> indexIds, long totalEntries)
+      throws InitializationException, ExecutionException, InterruptedException
+  {
+    final List<MatchingRuleIndex> indexes = selectIndexes(indexIds);
+    logger.info(NOTE_REBUILD_ONLINE_START, threadCount, rateLimiter != null ? rateLimiter.maxEntriesPerSecond : 0);
+
+    boolean success = false;
+    startRebuilding(indexes);
+    try
+    {
+      for (MatchingRuleIndex index : indexes)
+      {
+        clear(index);
+      }
+      indexEntries(indexes, totalEntries);
+      success = true;
+    }
+    finally
+    {
+      stopRebuilding(indexes, success);
+    }
+    return processedEntries.get();
+  }
+
+  List<MatchingRuleIndex> selectIndexes(Set<String> indexIds) throws InitializationException
+  {
+    final Set<String> remainingIds = new HashSet<>();
+    for (String indexId : indexIds)
+    {
+      remainingIds.add(indexId.toLowerCase());
+    }
+    final List<MatchingRuleIndex> indexes = new ArrayList<>();
+    for (AttributeIndex attribute : entryContainer.getAttributeIndexes())
+    {
+      for (MatchingRuleIndex index : attribute.getNameToIndexes().values())
+      {
+        if (remainingIds.remove(index.getName().getIndexId().toLowerCase()))
+        {
+          indexes.add(index);
+        }
+      }
+    }
+    if (!remainingIds.isEmpty())
+    {
+      // Only attribute indexes can be kept up to date by writers while rebuilding: other indexes require offline mode.
+      throw new InitializationException(ERR_REBUILD_ONLINE_UNSUPPORTED_INDEX.get(joinAsString(", ", remainingIds)));
+    }
+    return indexes;
+  }
+
+  void startRebuilding(Collection<MatchingRuleIndex> indexes) throws InitializationException
+  {
+    // The exclusive lock ensures that no writer which has not seen the rebuilding flag is still in progress.
+    entryContainer.exclusiveLock.lock();
+    try
+    {
+      final List<String> trustedIndexes = new ArrayList<>();
+      for (MatchingRuleIndex index : indexes)
+      {
+        if (index.isTrusted())
+        {
+          trustedIndexes.add(index.getName().getIndexId());
+        }
+      }
+      if (!trustedIndexes.isEmpty())
+      {
+        throw new InitializationException(ERR_REBUILD_ONLINE_TRUSTED_INDEX.get(joinAsString(", ", trustedIndexes)));
+      }
+      for (MatchingRuleIndex index : indexes)
+      {
+        index.setRebuilding(true);
+      }
+    }
+    finally
+    {
+      entryContainer.exclusiveLock.unlock();
+    }
+  }
+
+  void stopRebuilding(final Collection<MatchingRuleIndex> indexes, final boolean success)
+      throws ExecutionException
+  {
+    entryContainer.exclusiveLock.lock();
+    try
+    {
+      storage.write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          for (MatchingRuleIndex index : indexes)
+          {
+            index.setRebuilding(false);
+            if (success)
+            {
+              index.setTrusted(txn, true);
+            }
+          }
+        }
+      });
+    }
+    catch (Exception e)
+    {
+      throw new ExecutionException(e);
+    }
+    finally
+    {
+      entryContainer.exclusiveLock.unlock();
+    }
+  }
+
+  /**
+   * Removes all the keys of the index in small transactions. Concurrent writers keep updating the index meanwhile, so a
+   * batch may remove entry IDs which have just been added by a write. This is safe because the whole index is cleared
+   * before {@link #indexEntries(List, long)} reads the highest entry ID: a write whose index update has been removed
+   * was committed before that read, together with its id2entry record, hence the entry is re-indexed by the scan.
+   */
+  void clear(final MatchingRuleIndex index) throws ExecutionException
+  {
+    try
+    {
+      ClearIndexBatch batch = new ClearIndexBatch(index, null);
+      storage.write(batch);
+      while (batch.hasMoreKeys)
+      {
+        batch = new ClearIndexBatch(index, batch.lastDeletedKey);
+        storage.write(batch);
+      }
+    }
+    catch (Exception e)
+    {
+      throw new ExecutionException(e);
+    }
+  }
+
+  /**
+   * Indexes all the entries which exist when this method is called. The indexes must have been cleared beforehand.
+   */
+  void indexEntries(List<MatchingRuleIndex> indexes, long totalEntries) throws ExecutionException, InterruptedException
+  {
+    final long highestEntryID = getHighestEntryID();
+    lastReportTime.set(System.nanoTime());
+    indexRanges(indexes, highestEntryID, totalEntries);
+  }
+
+  private long getHighestEntryID() throws ExecutionException
+  {
+    try
+    {
+      return storage.read(new ReadOperation<Long>()
+      {
+        @Override
+        public Long run(ReadableTransaction txn) throws Exception
+        {
+          return entryContainer.getHighestEntryID(txn).longValue();
+        }
+      });
+    }
+    catch (Exception e)
+    {
+      throw new ExecutionException(e);
+    }
+  }
+
+  private void indexRanges(final List<MatchingRuleIndex> indexes, final long highestEntryID, final long totalEntries)
+      throws ExecutionException, InterruptedException
+  {
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(threadCount, newThreadFactory(null, REBUILDER_THREAD_NAME, true));
+    try
+    {
+      final List<Future<Void>> futures = new ArrayList<>(threadCount);
+      for (int i = 0; i < threadCount; i++)
+      {
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws Exception
+          {
+            for (long start = nextRangeStart.getAndAdd(RANGE_SIZE); start <= highestEntryID;
+                 start = nextRangeStart.getAndAdd(RANGE_SIZE))
+            {
+              final int nbEntries = indexRange(indexes, start, Math.min(start + RANGE_SIZE, highestEntryID + 1));
+              processedEntries.addAndGet(nbEntries);
+              reportProgress(totalEntries);
+              if (rateLimiter != null)
+              {
+                rateLimiter.acquire(nbEntries);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures)
+      {
+        future.get();
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Indexes the entries whose ID is in [start, end) and returns the number of entries found. */
+  private int indexRange(final List<MatchingRuleIndex> indexes, final long start, final long end) throws Exception
+  {
+    entryContainer.sharedLock.lock();
+    try
+    {
+      final IndexRange range = new IndexRange(indexes, start, end);
+      storage.write(range);
+      return range.nbEntries;
+    }
+    finally
+    {
+      entryContainer.sharedLock.unlock();
+    }
+  }
+
+  private void reportProgress(long totalEntries)
+  {
+    final long now = System.nanoTime();
+    final long lastTime = lastReportTime.get();
+    if (now - lastTime >= PROGRESS_INTERVAL_NANOS && lastReportTime.compareAndSet(lastTime, now))
+    {
+      final long processed = processedEntries.get();
+      final float rate = 1000000000f * (processed - lastReportCount) / (now - lastTime);
+      final float completed = totalEntries > 0 ? 100f * processed / totalEntries : 0;
+      lastReportCount = processed;
+      logger.info(NOTE_REBUILD_PROGRESS_REPORT, completed, processed, totalEntries, rate);
+    }
+  }
+
+  /** Write operation indexing the entries of a range of entry IDs. */
+  private final class IndexRange implements WriteOperation
+  {
+    private final List<MatchingRuleIndex> indexes;
+    private final long start;
+    private final long end;
+    private int nbEntries;
+
+    IndexRange(List<MatchingRuleIndex> indexes, long start, long end)
+    {
+      this.indexes = indexes;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public void run(WriteableTransaction txn) throws Exception
+    {
+      // The operation may be retried: start again from scratch.
+      final IndexBuffer buffer = new IndexBuffer();
+      nbEntries = 0;
+      try (Cursor<EntryID, Entry> cursor = entryContainer.getID2Entry().openCursor(txn))
+      {
+        boolean found = cursor.positionToKeyOrNext(new EntryID(start).toByteString());
+        while (found && cursor.getKey().longValue() < end)
+        {
+          final Entry entry = cursor.getValue();
+          for (MatchingRuleIndex index : indexes)
+          {
+            for (ByteString key : index.indexEntry(entry))
+            {
+              buffer.put(index, key, cursor.getKey());
+            }
+          }
+          nbEntries++;
+          found = cursor.next();
+        }
+      }
+      buffer.flush(txn);
+    }
+  }
+
+  /** Write operation deleting the next batch of keys of an index. */
+  private static final class ClearIndexBatch implements WriteOperation
+  {
+    private final MatchingRuleIndex index;
+    private final ByteString startKey;
+    private ByteString lastDeletedKey;
+    private boolean hasMoreKeys;
+
+    ClearIndexBatch(MatchingRuleIndex index, ByteString startKey)
+    {
+      this.index = index;
+      this.startKey = startKey;
+    }
+
+    @Override
+    public void run(WriteableTransaction txn) throws Exception
+    {
+      final List<ByteString> keys = new ArrayList<>(CLEAR_BATCH_SIZE);
+      try (Cursor<ByteString, ByteString> cursor = txn.openCursor(index.getName()))
+      {
+        boolean found = startKey != null ? cursor.positionToKeyOrNext(startKey) : cursor.next();
+        while (found && keys.size() < CLEAR_BATCH_SIZE)
+        {
+          keys.add(cursor.getKey());
+          found = cursor.next();
+        }
+      }
+      for (ByteString key : keys)
+      {
+        txn.delete(index.getName(), key);
+      }
+      lastDeletedKey = keys.isEmpty() ? startKey : keys.get(keys.size() - 1);
+      hasMoreKeys = keys.size() == CLEAR_BATCH_SIZE;
+    }
+  }
+
+  /** Spreads the processed entries over time so that the configured number of entries per second is not exceeded. */
+  static final class RateLimiter
+  {
+    private final int maxEntriesPerSecond;
+    private final long nanosPerEntry;
+    private final AtomicLong nextFreeSlot = new AtomicLong(System.nanoTime());
+
+    RateLimiter(int maxEntriesPerSecond)
+    {
+      this.maxEntriesPerSecond = maxEntriesPerSecond;
+      this.nanosPerEntry = TimeUnit.SECONDS.toNanos(1) / maxEntriesPerSecond;
+    }
+
+    /**
+     * Reserves the time needed to process the provided number of entries and returns the number of nanoseconds the
+     * caller has to wait for its reservation to end.
+     */
+    long reserve(int nbEntries, long now)
+    {
+      for (;;)
+      {
+        final long next = nextFreeSlot.get();
+        final long slotStart = Math.max(next, now);
+        final long slotEnd = slotStart + nbEntries * nanosPerEntry;
+        if (nextFreeSlot.compareAndSet(next, slotEnd))
+        {
+          return slotEnd - now;
+        }
+      }
+    }
+
+    void acquire(int nbEntries) throws InterruptedException
+    {
+      final long waitNanos = reserve(nbEntries, System.nanoTime());
+      if (waitNanos > 0)
+      {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      }
+    }
+  }
+}
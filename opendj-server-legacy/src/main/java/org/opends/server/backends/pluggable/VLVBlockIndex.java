@@ -0,0 +1,462 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteSequenceReader;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.Importer;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.UpdateFunction;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+
+/**
+ * Order statistics of a {@link VLVIndex}, used for locating the key at a given position without
+ * iterating over all the preceding keys.
+ * <p>
+ * The keys of the VLV tree are partitioned in blocks of contiguous keys and this tree holds the
+ * number of keys in each block. Locating a position only requires to sum the counts of the blocks
+ * preceding it and then to iterate over the keys of a single block. Blocks are split in two when
+ * they grow above {@link #MAX_BLOCK_SIZE} keys and are removed when they become empty.
+ * <p>
+ * Keys are the upper bound (inclusive) of each block, prefixed with {@code 0x01}. The last block
+ * has no upper bound and its key is {@code 0x02}. It always exists once this tree has been built.
+ * Values are the number of keys in the block followed by its lower bound (exclusive), the first
+ * block having no lower bound.
+ * <p>
+ * The count of a block is updated before a key is added to or removed from the block, and a split
+ * updates the count of the block being split. Hence any two transactions updating the same block
+ * conflict on its record, which keeps counts exact with both lock based and optimistic storages.
+ */
+final class VLVBlockIndex extends AbstractTree
+{
+  /** Blocks larger than this number of keys are split in two. */
+  static final int MAX_BLOCK_SIZE = 2048;
+
+  private static final byte BOUNDED_BLOCK_PREFIX = 0x01;
+  private static final ByteString LAST_BLOCK_KEY = ByteString.wrap(new byte[] { 0x02 });
+
+  /** A block as read or written by an update of its count. */
+  static final class Block
+  {
+    private final ByteString key;
+    private final ByteString lowerBound;
+    private final int count;
+
+    private Block(ByteString key, ByteString lowerBound, int count)
+    {
+      this.key = key;
+      this.lowerBound = lowerBound;
+      this.count = count;
+    }
+
+    private boolean contains(ByteSequence vlvKey)
+    {
+      return lowerBound.isEmpty() || lowerBound.compareTo(vlvKey) < 0;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Block(count=" + count + ")";
+    }
+  }
+
+  /** Writes the blocks of a VLV tree whose keys are provided in ascending order. */
+  abstract static class Builder
+  {
+    private final int blockSize;
+    private ByteString lowerBound = ByteString.empty();
+    private int count;
+
+    private Builder(int maxBlockSize)
+    {
+      // Leave room in each block for keys added later on.
+      this.blockSize = Math.max(1, maxBlockSize / 2);
+    }
+
+    /**
+     * Adds the next VLV key.
+     *
+     * @param vlvKey
+     *          a key of the VLV tree, greater than all the previously added ones
+     */
+    final void add(ByteString vlvKey)
+    {
+      if (++count == blockSize)
+      {
+        put(boundedKey(vlvKey), encodeValue(count, lowerBound));
+        lowerBound = vlvKey;
+        count = 0;
+      }
+    }
+
+    /** Writes the last block, must be called once all the VLV keys have been added. */
+    final void close()
+    {
+      put(LAST_BLOCK_KEY, encodeValue(count, lowerBound));
+    }
+
+    abstract void put(ByteString key, ByteString value);
+  }
+
+  private final int maxBlockSize;
+
+  VLVBlockIndex(TreeName name)
+  {
+    this(name, MAX_BLOCK_SIZE);
+  }
+
+  /** Package private for testing. */
+  VLVBlockIndex(TreeName name, int maxBlockSize)
+  {
+    super(name);
+    this.maxBlockSize = maxBlockSize;
+  }
+
+  /**
+   * Returns whether this tree has been built. When it has not, VLV keys must not be added to or
+   * removed from it and positions are located by iterating over the VLV tree.
+   */
+  boolean isBuilt(ReadableTransaction txn)
+  {
+    return txn.read(getName(), LAST_BLOCK_KEY) != null;
+  }
+
+  /**
+   * Builds this tree from the current content of the VLV tree, replacing any previous content.
+   *
+   * @param txn
+   *          the transaction
+   * @param vlvTreeName
+   *          the name of the VLV tree
+   */
+  void build(final WriteableTransaction txn, TreeName vlvTreeName)
+  {
+    try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
+    {
+      while (cursor.next())
+      {
+        cursor.delete();
+      }
+    }
+    final Builder builder = new Builder(maxBlockSize)
+    {
+      @Override
+      void put(ByteString key, ByteString value)
+      {
+        txn.put(getName(), key, value);
+      }
+    };
+    try (Cursor<ByteString, ByteString> cursor = txn.openCursor(vlvTreeName))
+    {
+      while (cursor.next())
+      {
+        builder.add(cursor.getKey());
+      }
+    }
+    builder.close();
+  }
+
+  /**
+   * Returns a builder writing the blocks of an imported VLV tree.
+   *
+   * @param importer
+   *          the importer writing the VLV tree
+   * @return a builder writing the blocks of an imported VLV tree
+   */
+  Builder newImportBuilder(final Importer importer)
+  {
+    return new Builder(maxBlockSize)
+    {
+      @Override
+      void put(ByteString key, ByteString value)
+      {
+        importer.put(getName(), key, value);
+      }
+    };
+  }
+
+  /**
+   * Updates the count of the block containing the provided VLV key. It must be called before the
+   * key is added to or removed from the VLV tree.
+   *
+   * @param txn
+   *          the transaction
+   * @param vlvKey
+   *          the key being added to or removed from the VLV tree
+   * @param delta
+   *          {@code 1} if the key is being added, {@code -1} if it is being removed
+   * @return the updated block, to be provided to {@link #afterUpdate(WriteableTransaction, TreeName, Block)}
+   *         once the VLV tree has been updated, or {@code null} if this tree has not been built
+   */
+  Block updateCount(WriteableTransaction txn, final ByteString vlvKey, final int delta)
+  {
+    final Block[] updatedBlock = new Block[1];
+    for (;;)
+    {
+      final ByteString blockKey = getBlockKey(txn, vlvKey);
+      if (blockKey == null)
+      {
+        return null;
+      }
+      txn.update(getName(), blockKey, new UpdateFunction()
+      {
+        @Override
+        public ByteSequence computeNewValue(ByteSequence oldValue)
+        {
+          updatedBlock[0] = null;
+          if (oldValue == null)
+          {
+            // The block has just been removed
+            return null;
+          }
+          final Block block = decodeBlock(blockKey, oldValue);
+          if (!block.contains(vlvKey))
+          {
+            // The block has just been split
+            return oldValue;
+          }
+          updatedBlock[0] = new Block(blockKey, block.lowerBound, block.count + delta);
+          return encodeValue(block.count + delta, block.lowerBound);
+        }
+      });
+      if (updatedBlock[0] != null)
+      {
+        return updatedBlock[0];
+      }
+    }
+  }
+
+  /**
+   * Splits or removes the provided block if needed, once the VLV tree has been updated.
+   *
+   * @param txn
+   *          the transaction
+   * @param vlvTreeName
+   *          the name of the VLV tree
+   * @param block
+   *          the block returned by {@link #updateCount(WriteableTransaction, ByteString, int)}, may
+   *          be {@code null}
+   */
+  void afterUpdate(WriteableTransaction txn, TreeName vlvTreeName, Block block)
+  {
+    if (block == null)
+    {
+      return;
+    }
+    if (block.count > maxBlockSize)
+    {
+      split(txn, vlvTreeName, block);
+    }
+    else if (block.count == 0 && !block.key.equals(LAST_BLOCK_KEY))
+    {
+      remove(txn, block);
+    }
+  }
+
+  private void split(WriteableTransaction txn, TreeName vlvTreeName, Block block)
+  {
+    final int lowerCount = block.count / 2;
+    try (Cursor<ByteString, ByteString> cursor = txn.openCursor(vlvTreeName))
+    {
+      if (!positionAfter(cursor, block.lowerBound) || !skip(cursor, lowerCount - 1))
+      {
+        throw new IllegalStateException("VLV block index " + getName() + " does not match its VLV tree");
+      }
+      final ByteString middle = cursor.getKey();
+      txn.put(getName(), boundedKey(middle), encodeValue(lowerCount, block.lowerBound));
+      txn.put(getName(), block.key, encodeValue(block.count - lowerCount, middle));
+    }
+  }
+
+  /** Removes an empty block by extending the lower bound of the next block. */
+  private void remove(WriteableTransaction txn, final Block block)
+  {
+    final ByteString nextBlockKey;
+    try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
+    {
+      // The last block always follows
+      cursor.positionToKey(block.key);
+      cursor.next();
+      nextBlockKey = cursor.getKey();
+    }
+    txn.update(getName(), nextBlockKey, new UpdateFunction()
+    {
+      @Override
+      public ByteSequence computeNewValue(ByteSequence oldValue)
+      {
+        return encodeValue(decodeBlock(nextBlockKey, oldValue).count, block.lowerBound);
+      }
+    });
+    txn.delete(getName(), block.key);
+  }
+
+  /**
+   * Positions the provided VLV tree cursor to the specified index.
+   *
+   * @param txn
+   *          the transaction
+   * @param vlvCursor
+   *          a cursor on the VLV tree
+   * @param index
+   *          the index where the cursor should be positioned, (0 is the first record)
+   * @return {@code true} if the cursor could be positioned to the index, {@code false} otherwise
+   * @see Cursor#positionToIndex(int)
+   */
+  boolean positionToIndex(ReadableTransaction txn, Cursor<ByteString, ByteString> vlvCursor, int index)
+  {
+    if (!isBuilt(txn))
+    {
+      return vlvCursor.positionToIndex(index);
+    }
+    int remaining = index;
+    try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
+    {
+      while (cursor.next())
+      {
+        final Block block = decodeBlock(cursor.getKey(), cursor.getValue());
+        if (remaining < block.count)
+        {
+          return positionAfter(vlvCursor, block.lowerBound) && skip(vlvCursor, remaining);
+        }
+        remaining -= block.count;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of VLV keys lower than the target key, which is the index of the first VLV
+   * key greater than or equal to the target.
+   *
+   * @param txn
+   *          the transaction
+   * @param vlvCursor
+   *          a cursor on the VLV tree, its position is undefined when this method returns
+   * @param target
+   *          the target key
+   * @return the number of VLV keys lower than the target key
+   */
+  int getNbKeysBefore(ReadableTransaction txn, Cursor<ByteString, ByteString> vlvCursor, ByteSequence target)
+  {
+    int nbKeysBefore = 0;
+    ByteString lowerBound = ByteString.empty();
+    if (isBuilt(txn))
+    {
+      try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
+      {
+        while (cursor.next())
+        {
+          final Block block = decodeBlock(cursor.getKey(), cursor.getValue());
+          if (block.key.equals(LAST_BLOCK_KEY) || getUpperBound(block).compareTo(target) >= 0)
+          {
+            lowerBound = block.lowerBound;
+            break;
+          }
+          nbKeysBefore += block.count;
+        }
+      }
+    }
+    if (positionAfter(vlvCursor, lowerBound))
+    {
+      do
+      {
+        if (vlvCursor.getKey().compareTo(target) >= 0)
+        {
+          break;
+        }
+        nbKeysBefore++;
+      }
+      while (vlvCursor.next());
+    }
+    return nbKeysBefore;
+  }
+
+  /** Positions the cursor on the first key strictly greater than the lower bound. */
+  private static boolean positionAfter(Cursor<ByteString, ByteString> cursor, ByteString lowerBound)
+  {
+    if (lowerBound.isEmpty())
+    {
+      return cursor.next();
+    }
+    if (!cursor.positionToKeyOrNext(lowerBound))
+    {
+      return false;
+    }
+    return !cursor.getKey().equals(lowerBound) || cursor.next();
+  }
+
+  private static boolean skip(Cursor<ByteString, ByteString> cursor, int nbKeys)
+  {
+    for (int i = 0; i < nbKeys; i++)
+    {
+      if (!cursor.next())
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the key of the block containing the provided VLV key, or null if this tree has not been built. */
+  private ByteString getBlockKey(ReadableTransaction txn, ByteString vlvKey)
+  {
+    try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
+    {
+      return cursor.positionToKeyOrNext(boundedKey(vlvKey)) ? cursor.getKey() : null;
+    }
+  }
+
+  private static ByteString getUpperBound(Block block)
+  {
+    return block.key.subSequence(1, block.key.length());
+  }
+
+  private static ByteString boundedKey(ByteSequence vlvKey)
+  {
+    return new ByteStringBuilder(1 + vlvKey.length()).appendByte(BOUNDED_BLOCK_PREFIX).appendBytes(vlvKey)
+        .toByteString();
+  }
+
+  private static ByteString encodeValue(int count, ByteSequence lowerBound)
+  {
+    return new ByteStringBuilder(4 + lowerBound.length()).appendInt(count).appendBytes(lowerBound).toByteString();
+  }
+
+  private static Block decodeBlock(ByteString key, ByteSequence value)
+  {
+    final ByteSequenceReader reader = value.asReader();
+    final int count = reader.readInt();
+    return new Block(key, reader.readByteString(reader.remaining()), count);
+  }
+
+  @Override
+  public String keyToString(ByteString key)
+  {
+    return key.equals(LAST_BLOCK_KEY)
+        ? "last" : String.valueOf(VLVIndex.decodeEntryIDFromVLVKey(key.subSequence(1, key.length())));
+  }
+
+  @Override
+  public String valueToString(ByteString value)
+  {
+    return String.valueOf(value.toInt());
+  }
+}
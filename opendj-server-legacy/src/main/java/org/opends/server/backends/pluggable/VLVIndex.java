@@ -28,7 +28,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.TreeSet;
 
@@ -95,6 +94,8 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
 
   /** The count of entries in this index. */
   private final ShardedCounter counter;
+  /** Locates VLV keys by position without iterating over all the preceding keys. */
+  private final VLVBlockIndex blocks;
 
   private DN baseDN;
   private SearchScope scope;
@@ -116,6 +117,7 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
   {
     super(new TreeName(entryContainer.getTreePrefix(), "vlv." + config.getName()));
     this.counter = new ShardedCounter(new TreeName(entryContainer.getTreePrefix(), "counter.vlv." + config.getName()));
+    this.blocks = new VLVBlockIndex(new TreeName(entryContainer.getTreePrefix(), "blocks.vlv." + config.getName()));
     this.config = config;
     this.baseDN = config.getBaseDN();
     this.scope = convertScope(config.getScope());
@@ -162,12 +164,19 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
   void afterOpen(final WriteableTransaction txn, boolean createOnDemand) throws StorageRuntimeException
   {
     counter.open(txn, createOnDemand);
+    blocks.open(txn, createOnDemand);
+    if (createOnDemand && !blocks.isBuilt(txn))
+    {
+      // The VLV index was created by a version without block index
+      blocks.build(txn, getName());
+    }
   }
 
   @Override
   void beforeDelete(WriteableTransaction txn) throws StorageRuntimeException
   {
     counter.delete(txn);
+    blocks.delete(txn);
   }
 
   void importCount(Importer importer, long count)
@@ -175,6 +184,15 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
     counter.importPut(importer, COUNT_KEY, count);
   }
 
+  /**
+   * Returns a builder of the block index of this VLV index, to which all the imported keys must be
+   * added in ascending order.
+   */
+  VLVBlockIndex.Builder newBlocksImportBuilder(Importer importer)
+  {
+    return blocks.newImportBuilder(importer);
+  }
+
   @Override
   public synchronized boolean isConfigurationChangeAcceptable(final BackendVLVIndexCfg cfg,
       final List<LocalizableMessage> unacceptableReasons)
@@ -452,13 +470,17 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
     {
       if (nextDeletedKey == null || (nextAddedKey != null && nextAddedKey.compareTo(nextDeletedKey) < 0))
       {
+        final VLVBlockIndex.Block block = blocks.updateCount(txn, nextAddedKey, 1);
         txn.put(getName(), nextAddedKey, toValue());
+        blocks.afterUpdate(txn, getName(), block);
         nextAddedKey = nextOrNull(ai);
         counter.addCount(txn, COUNT_KEY, 1);
       }
       else
       {
+        final VLVBlockIndex.Block block = blocks.updateCount(txn, nextDeletedKey, -1);
         txn.delete(getName(), nextDeletedKey);
+        blocks.afterUpdate(txn, getName(), block);
         nextDeletedKey = nextOrNull(di);
         counter.addCount(txn, COUNT_KEY, -1);
       }
@@ -547,69 +569,33 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
         encodeTargetAssertion(sortKeys, assertion, searchOperation, currentCount);
     try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
     {
-      final LinkedList<Long> selectedIDs = new LinkedList<>();
-      int targetPosition = 0;
+      final long[] selectedIDs;
+      final int targetPosition;
 
       // Don't waste cycles looking for an assertion that does not match anything.
-      if (cursor.positionToKeyOrNext(encodedTargetAssertion) && cursor.positionToIndex(0))
+      if (cursor.positionToKeyOrNext(encodedTargetAssertion))
       {
-        /*
-         * Unfortunately we need to iterate from the start of the index in order to correctly
-         * calculate the target position.
-         */
-        boolean targetFound = false;
-        int includedAfter = 0;
-        do
+        targetPosition = blocks.getNbKeysBefore(txn, cursor, encodedTargetAssertion);
+        final int startPos = Math.max(0, targetPosition - beforeCount);
+        final int count = targetPosition - startPos + 1 + afterCount;
+        if (blocks.positionToIndex(txn, cursor, startPos))
         {
-          final ByteString key = cursor.getKey();
-          if (!targetFound)
-          {
-            selectedIDs.add(decodeEntryIDFromVLVKey(key));
-            if (encodedTargetAssertion.compareTo(key) > 0)
-            {
-              if (targetPosition >= beforeCount)
-              {
-                // Strip out unwanted results.
-                selectedIDs.removeFirst();
-              }
-              targetPosition++;
-            }
-            else
-            {
-              targetFound = true;
-            }
-          }
-          else if (includedAfter < afterCount)
-          {
-            selectedIDs.add(decodeEntryIDFromVLVKey(key));
-            includedAfter++;
-          }
-          else
-          {
-            break;
-          }
+          selectedIDs = readRange(cursor, count, null);
+        }
+        else
+        {
+          selectedIDs = new long[0];
         }
-        while (cursor.next());
       }
       else
       {
         // Treat a non-matching assertion as matching beyond the end of the index.
         targetPosition = currentCount;
+        selectedIDs = new long[0];
       }
       addVLVResponseControl(searchOperation, targetPosition + 1, currentCount, LDAPResultCode.SUCCESS);
-      return newDefinedSet(toPrimitiveLongArray(selectedIDs)); // FIXME not ordered like a defined EntryIDSet expects
-    }
-  }
-
-  private long[] toPrimitiveLongArray(final List<Long> entryIDs)
-  {
-    final long[] result = new long[entryIDs.size()];
-    int i = 0;
-    for (Long entryID : entryIDs)
-    {
-      result[i++] = entryID;
+      return newDefinedSet(selectedIDs); // FIXME not ordered like a defined EntryIDSet expects
     }
-    return result;
   }
 
   /** Normalize the assertion using the primary key's ordering matching rule. */
@@ -692,7 +678,7 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
     final int count = 1 + beforeCount + afterCount;
     try (Cursor<ByteString, ByteString> cursor = txn.openCursor(getName()))
     {
-      if (cursor.positionToIndex(startPos))
+      if (blocks.positionToIndex(txn, cursor, startPos))
       {
         selectedIDs = readRange(cursor, count, debugBuilder);
       }
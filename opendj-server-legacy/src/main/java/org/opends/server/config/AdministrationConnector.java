@@ -99,6 +99,7 @@ public final class AdministrationConnector implements
   private static final int ADMIN_MAX_REQUEST_SIZE = 5000000;
   private static final int ADMIN_WRITE_BUFFER_SIZE = 4096;
   private static final int ADMIN_NUM_REQUEST_HANDLERS = 1;
+  private static final int ADMIN_MAX_CONCURRENT_OPS_PER_CONNECTION = 16;
   private static final boolean ADMIN_SEND_REJECTION_NOTICE = true;
   private static final boolean ADMIN_USE_TCP_KEEP_ALIVE = true;
   private static final boolean ADMIN_USE_TCP_NO_DELAY = true;
@@ -299,6 +300,12 @@ public final class AdministrationConnector implements
       return ADMIN_NUM_REQUEST_HANDLERS;
     }
 
+    @Override
+    public int getMaxConcurrentOpsPerConnection()
+    {
+      return ADMIN_MAX_CONCURRENT_OPS_PER_CONNECTION;
+    }
+
     @Override
     public boolean isSendRejectionNotice()
     {
@@ -4329,6 +4329,20 @@ public final class ConfigConstants
   public static final String ATTR_REBUILD_TMP_DIRECTORY =
        NAME_PREFIX_TASK + "rebuild-tmp-directory";
 
+  /**
+   * The name of the attribute in an rebuild task definition that specifies
+   * whether indexes must be rebuilt while the backend remains online.
+   */
+  public static final String ATTR_REBUILD_ONLINE =
+       NAME_PREFIX_TASK + "rebuild-online";
+
+  /**
+   * The name of the attribute in an rebuild task definition that specifies the
+   * maximum number of entries processed per second by an online rebuild.
+   */
+  public static final String ATTR_REBUILD_MAX_ENTRIES_PER_SECOND =
+       NAME_PREFIX_TASK + "rebuild-max-entries-per-second";
+
   /**
    * Used to specify that the rebuild all boolean should be set.
    */
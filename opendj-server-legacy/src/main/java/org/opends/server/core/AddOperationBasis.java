@@ -20,6 +20,7 @@ import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.config.ConfigConstants.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.loggers.AccessLogger.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.CollectionUtils.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
 
@@ -68,8 +69,11 @@ public class AddOperationBasis
   /** The set of response controls to send to the client. */
   private final ArrayList<Control> responseControls = new ArrayList<>();
 
-  /** The raw, unprocessed entry DN as provided in the request. This may or may not be a valid DN. */
-  private ByteString rawEntryDN;
+  /**
+   * The raw, unprocessed entry DN as provided in the request. This may or may not be a valid DN.
+   * When the operation is created from a processed DN, this is only computed from it on first access.
+   */
+  private volatile ByteString rawEntryDN;
   /** The processed DN of the entry to add. */
   private DN entryDN;
   /** The proxied authorization target DN for this operation. */
@@ -146,8 +150,6 @@ public class AddOperationBasis
     this.userAttributes        = entry.getUserAttributes();
     this.operationalAttributes = entry.getOperationalAttributes();
 
-    rawEntryDN = ByteString.valueOfUtf8(entryDN.toString());
-
     ArrayList<String> values = new ArrayList<>(objectClasses.values());
     rawAttributes = new ArrayList<>();
     rawAttributes.add(new LDAPAttribute(ATTR_OBJECTCLASS, values));
@@ -169,7 +171,13 @@ public class AddOperationBasis
   @Override
   public final ByteString getRawEntryDN()
   {
-    return rawEntryDN;
+    ByteString dn = rawEntryDN;
+    if (dn == null && entryDN != null)
+    {
+      dn = ByteString.valueOfUtf8(entryDN.toString());
+      rawEntryDN = dn;
+    }
+    return dn;
   }
 
   @Override
@@ -454,7 +462,7 @@ public class AddOperationBasis
     buffer.append(", opID=");
     buffer.append(operationID);
     buffer.append(", dn=");
-    buffer.append(rawEntryDN);
+    buffer.append(getRawEntryDN());
     buffer.append(")");
   }
 
@@ -482,7 +490,17 @@ public class AddOperationBasis
       checkIfCanceled(false);
 
       // Invoke the pre-parse add plugins.
-      if (!processOperationResult(getPluginConfigManager().invokePreParseAddPlugins(this)))
+      final long preParseStartTime = phaseStarted(this);
+      final boolean continueProcessing;
+      try
+      {
+        continueProcessing = processOperationResult(getPluginConfigManager().invokePreParseAddPlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.PRE_PARSE_PLUGINS, preParseStartTime);
+      }
+      if (!continueProcessing)
       {
         return;
       }
@@ -34,6 +34,7 @@ import static org.forgerock.opendj.ldap.ResultCode.*;
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.loggers.AccessLogger.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
 
 /**
@@ -492,7 +493,17 @@ public class BindOperationBasis
     try
     {
       // Invoke the pre-parse bind plugins.
-      if (!processOperationResult(getPluginConfigManager().invokePreParseBindPlugins(this)))
+      final long preParseStartTime = phaseStarted(this);
+      final boolean continueProcessing;
+      try
+      {
+        continueProcessing = processOperationResult(getPluginConfigManager().invokePreParseBindPlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.PRE_PARSE_PLUGINS, preParseStartTime);
+      }
+      if (!continueProcessing)
       {
         return;
       }
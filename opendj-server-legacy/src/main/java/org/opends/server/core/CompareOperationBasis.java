@@ -43,6 +43,7 @@ import org.opends.server.workflowelement.localbackend.LocalBackendCompareOperati
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.loggers.AccessLogger.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.StaticUtils.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
 
@@ -322,7 +323,17 @@ public class CompareOperationBasis
       checkIfCanceled(false);
 
       // Invoke the pre-parse compare plugins.
-      if (!processOperationResult(getPluginConfigManager().invokePreParseComparePlugins(this)))
+      final long preParseStartTime = phaseStarted(this);
+      final boolean continueProcessing;
+      try
+      {
+        continueProcessing = processOperationResult(getPluginConfigManager().invokePreParseComparePlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.PRE_PARSE_PLUGINS, preParseStartTime);
+      }
+      if (!continueProcessing)
       {
         return;
       }
@@ -132,6 +132,8 @@ public class CoreConfigManager implements ConfigurationChangeListener<GlobalCfg>
     private boolean saveConfigOnSuccessfulStartup;
     /** Whether to use collect operation processing times in nanosecond resolution. */
     private boolean useNanoTime;
+    /** Whether to log the time spent by operations in their processing phases. */
+    private boolean logOperationPhaseTimes;
     /** The maximum number of connections that will be allowed at any given time. */
     private long maxAllowedConnections;
     /** The maximum number of concurrent persistent searches. */
@@ -215,6 +217,7 @@ public class CoreConfigManager implements ConfigurationChangeListener<GlobalCfg>
     core.saveConfigOnSuccessfulStartup = globalConfig.isSaveConfigOnSuccessfulStartup();
 
     core.useNanoTime= globalConfig.getEtimeResolution() == GlobalCfgDefn.EtimeResolution.NANOSECONDS;
+    core.logOperationPhaseTimes = globalConfig.isLogOperationPhaseTimes();
     long maxAllowedConnections = globalConfig.getMaxAllowedClientConnections();
     core.maxAllowedConnections = (maxAllowedConnections > 0) ? maxAllowedConnections : -1;
     core.maxPSearches = globalConfig.getMaxPsearches();
@@ -850,6 +853,18 @@ public class CoreConfigManager implements ConfigurationChangeListener<GlobalCfg>
     return coreAttributes.useNanoTime;
   }
 
+  /**
+   * Indicates whether the time spent by operations in their processing phases
+   * should be logged.
+   *
+   * @return {@code true} if the operation phase times should be logged,
+   *         {@code false} otherwise
+   */
+  public boolean isLogOperationPhaseTimes()
+  {
+    return coreAttributes.logOperationPhaseTimes;
+  }
+
   /**
    * Indicates whether configuration should be saved on successful startup of the server.
    *
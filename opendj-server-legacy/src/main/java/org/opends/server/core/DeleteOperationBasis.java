@@ -33,6 +33,7 @@ import org.opends.server.workflowelement.localbackend.LocalBackendDeleteOperatio
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.loggers.AccessLogger.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
 
 /**
@@ -47,8 +48,11 @@ public class DeleteOperationBasis
 {
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
-  /** The raw, unprocessed entry DN as included in the client request. */
-  private ByteString rawEntryDN;
+  /**
+   * The raw, unprocessed entry DN as included in the client request.
+   * When the operation is created from a processed DN, this is only computed from it on first access.
+   */
+  private volatile ByteString rawEntryDN;
   /** The DN of the entry for the delete operation. */
   private DN entryDN;
   /** The proxied authorization target DN for this operation. */
@@ -99,13 +103,18 @@ public class DeleteOperationBasis
     super(clientConnection, operationID, messageID, requestControls);
 
     this.entryDN = entryDN;
-    rawEntryDN = ByteString.valueOfUtf8(entryDN.toString());
   }
 
   @Override
   public final ByteString getRawEntryDN()
   {
-    return rawEntryDN;
+    ByteString dn = rawEntryDN;
+    if (dn == null && entryDN != null)
+    {
+      dn = ByteString.valueOfUtf8(entryDN.toString());
+      rawEntryDN = dn;
+    }
+    return dn;
   }
 
   @Override
@@ -175,7 +184,7 @@ public class DeleteOperationBasis
     buffer.append(", opID=");
     buffer.append(operationID);
     buffer.append(", dn=");
-    buffer.append(rawEntryDN);
+    buffer.append(getRawEntryDN());
     buffer.append(")");
   }
 
@@ -200,7 +209,17 @@ public class DeleteOperationBasis
     try
     {
       // Invoke the pre-parse delete plugins.
-      if (!processOperationResult(getPluginConfigManager().invokePreParseDeletePlugins(this)))
+      final long preParseStartTime = phaseStarted(this);
+      final boolean continueProcessing;
+      try
+      {
+        continueProcessing = processOperationResult(getPluginConfigManager().invokePreParseDeletePlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.PRE_PARSE_PLUGINS, preParseStartTime);
+      }
+      if (!continueProcessing)
       {
         return;
       }
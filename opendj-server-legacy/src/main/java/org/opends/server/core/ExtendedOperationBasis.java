@@ -19,6 +19,7 @@ package org.opends.server.core;
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.loggers.AccessLogger.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.ServerConstants.*;
 
 import java.util.ArrayList;
@@ -232,7 +233,17 @@ public class ExtendedOperationBasis
       checkIfCanceled(false);
 
       // Invoke the pre-parse extended plugins.
-      if (!processOperationResult(getPluginConfigManager().invokePreParseExtendedPlugins(this)))
+      final long preParseStartTime = phaseStarted(this);
+      final boolean continueProcessing;
+      try
+      {
+        continueProcessing = processOperationResult(getPluginConfigManager().invokePreParseExtendedPlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.PRE_PARSE_PLUGINS, preParseStartTime);
+      }
+      if (!continueProcessing)
       {
         return;
       }
@@ -41,6 +41,7 @@ import org.opends.server.workflowelement.localbackend.LocalBackendModifyDNOperat
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.loggers.AccessLogger.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
 
 /**
@@ -376,7 +377,17 @@ public class ModifyDNOperationBasis
       checkIfCanceled(false);
 
       // Invoke the pre-parse modify DN plugins.
-      if (!processOperationResult(getPluginConfigManager().invokePreParseModifyDNPlugins(this)))
+      final long preParseStartTime = phaseStarted(this);
+      final boolean continueProcessing;
+      try
+      {
+        continueProcessing = processOperationResult(getPluginConfigManager().invokePreParseModifyDNPlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.PRE_PARSE_PLUGINS, preParseStartTime);
+      }
+      if (!continueProcessing)
       {
         return;
       }
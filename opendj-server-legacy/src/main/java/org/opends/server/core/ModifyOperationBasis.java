@@ -49,6 +49,7 @@ import org.opends.server.workflowelement.localbackend.LocalBackendModifyOperatio
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.loggers.AccessLogger.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
 
 /** This class defines an operation that may be used to modify an entry in the Directory Server. */
@@ -59,8 +60,11 @@ public class ModifyOperationBasis
 {
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
-  /** The raw, unprocessed entry DN as included by the client request. */
-  private ByteString rawEntryDN;
+  /**
+   * The raw, unprocessed entry DN as included by the client request.
+   * When the operation is created from a processed DN, this is only computed from it on first access.
+   */
+  private volatile ByteString rawEntryDN;
 
   /** The DN of the entry for the modify operation. */
   private DN entryDN;
@@ -132,8 +136,6 @@ public class ModifyOperationBasis
     this.entryDN       = entryDN;
     this.modifications = modifications;
 
-    rawEntryDN = ByteString.valueOfUtf8(entryDN.toString());
-
     rawModifications = new ArrayList<>(modifications.size());
     for (Modification m : modifications)
     {
@@ -148,7 +150,13 @@ public class ModifyOperationBasis
   @Override
   public final ByteString getRawEntryDN()
   {
-    return rawEntryDN;
+    ByteString dn = rawEntryDN;
+    if (dn == null && entryDN != null)
+    {
+      dn = ByteString.valueOfUtf8(entryDN.toString());
+      rawEntryDN = dn;
+    }
+    return dn;
   }
 
   @Override
@@ -291,7 +299,7 @@ public class ModifyOperationBasis
     buffer.append(", opID=");
     buffer.append(operationID);
     buffer.append(", dn=");
-    buffer.append(rawEntryDN);
+    buffer.append(getRawEntryDN());
     buffer.append(")");
   }
 
@@ -319,7 +327,17 @@ public class ModifyOperationBasis
       checkIfCanceled(false);
 
       // Invoke the pre-parse modify plugins.
-      if (!processOperationResult(getPluginConfigManager().invokePreParseModifyPlugins(this)))
+      final long preParseStartTime = phaseStarted(this);
+      final boolean continueProcessing;
+      try
+      {
+        continueProcessing = processOperationResult(getPluginConfigManager().invokePreParseModifyPlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.PRE_PARSE_PLUGINS, preParseStartTime);
+      }
+      if (!continueProcessing)
       {
         return;
       }
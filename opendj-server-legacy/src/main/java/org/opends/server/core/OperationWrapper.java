@@ -34,6 +34,7 @@ import org.opends.server.types.DirectoryException;
 import org.opends.server.types.DisconnectReason;
 import org.opends.server.types.Entry;
 import org.opends.server.types.Operation;
+import org.opends.server.types.OperationPhaseTimes;
 import org.opends.server.types.OperationType;
 
 /**
@@ -465,4 +466,10 @@ public class OperationWrapper<W extends Operation> implements Operation
   {
     operation.addAdditionalLogItem(item);
   }
+
+  @Override
+  public OperationPhaseTimes getPhaseTimes()
+  {
+    return operation.getPhaseTimes();
+  }
 }
@@ -26,6 +26,7 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.opends.server.controls.EntryChangeNotificationControl;
 import org.opends.server.controls.PersistentSearchChangeType;
 import org.opends.server.types.CancelResult;
+import org.opends.server.types.CompiledSearchFilter;
 import org.opends.server.types.Control;
 import org.forgerock.opendj.ldap.DN;
 import org.opends.server.types.DirectoryException;
@@ -127,6 +128,9 @@ public final class PersistentSearch
   /** The reference to the associated search operation. */
   private final SearchOperation searchOperation;
 
+  /** The search filter compiled once for matching every changed entry. */
+  private final CompiledSearchFilter filter;
+
   /**
    * Indicates whether to only return entries that have been updated since the
    * beginning of the search.
@@ -152,6 +156,7 @@ public final class PersistentSearch
       boolean returnECs)
   {
     this.searchOperation = searchOperation;
+    this.filter = searchOperation.getFilter().compile();
     this.changeTypes = changeTypes;
     this.changesOnly = changesOnly;
     this.returnECs = returnECs;
@@ -260,7 +265,7 @@ public final class PersistentSearch
   {
     try
     {
-      final boolean filterMatchesEntry = searchOperation.getFilter().matchesEntry(entry);
+      final boolean filterMatchesEntry = filter.matchesEntry(entry);
       if (logger.isTraceEnabled())
       {
         logger.trace(this + " " + entry + " filter=" + filterMatchesEntry);
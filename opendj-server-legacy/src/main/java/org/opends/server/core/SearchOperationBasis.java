@@ -63,6 +63,7 @@ import org.opends.server.util.TimeThread;
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.loggers.AccessLogger.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
@@ -119,8 +120,9 @@ public class SearchOperationBasis
 
   /**
    * The raw, unprocessed base DN as included in the request from the client.
+   * When the operation is created from a processed DN, this is only computed from it on first access.
    */
-  private ByteString rawBaseDN;
+  private volatile ByteString rawBaseDN;
 
   /** The dereferencing policy for the search operation. */
   private DereferenceAliasesPolicy derefPolicy;
@@ -145,8 +147,11 @@ public class SearchOperationBasis
   /** The time limit for the search operation. */
   private int timeLimit;
 
-  /** The raw, unprocessed filter as included in the request from the client. */
-  private RawFilter rawFilter;
+  /**
+   * The raw, unprocessed filter as included in the request from the client.
+   * When the operation is created from a processed filter, this is only computed from it on first access.
+   */
+  private volatile RawFilter rawFilter;
 
   /** The set of attributes that should be returned in matching entries. */
   private Set<String> attributes;
@@ -251,9 +256,7 @@ public class SearchOperationBasis
     this.typesOnly   = typesOnly;
     this.filter      = filter;
     this.attributes  = attributes != null ? attributes : new LinkedHashSet<String>(0);
-
-    rawBaseDN = ByteString.valueOfUtf8(baseDN.toString());
-    rawFilter = new LDAPFilter(filter);
+    // rawBaseDN and rawFilter are lazily computed: internal searches rarely need them
 
     this.sizeLimit = getSizeLimit(sizeLimit, clientConnection);
     this.timeLimit = getTimeLimit(timeLimit, clientConnection);
@@ -289,7 +292,13 @@ public class SearchOperationBasis
   @Override
   public final ByteString getRawBaseDN()
   {
-    return rawBaseDN;
+    ByteString dn = rawBaseDN;
+    if (dn == null && baseDN != null)
+    {
+      dn = ByteString.valueOfUtf8(baseDN.toString());
+      rawBaseDN = dn;
+    }
+    return dn;
   }
 
   @Override
@@ -322,6 +331,8 @@ public class SearchOperationBasis
   @Override
   public final void setBaseDN(DN baseDN)
   {
+    // The raw base DN remains the one from the request
+    getRawBaseDN();
     this.baseDN = baseDN;
   }
 
@@ -388,7 +399,13 @@ public class SearchOperationBasis
   @Override
   public final RawFilter getRawFilter()
   {
-    return rawFilter;
+    RawFilter raw = rawFilter;
+    if (raw == null && filter != null)
+    {
+      raw = new LDAPFilter(filter);
+      rawFilter = raw;
+    }
+    return raw;
   }
 
   @Override
@@ -561,9 +578,22 @@ public class SearchOperationBasis
 
     // Check to see if the entry can be read by the client.
     SearchResultEntry unfilteredSearchEntry = new SearchResultEntry(entry, controls);
-    if (evaluateAci && !getACIHandler().maySend(this, unfilteredSearchEntry))
+    if (evaluateAci)
     {
-      return true;
+      final long aciStartTime = phaseStarted(this);
+      final boolean maySend;
+      try
+      {
+        maySend = getACIHandler().maySend(this, unfilteredSearchEntry);
+      }
+      finally
+      {
+        phaseEnded(this, Phase.ACCESS_CONTROL, aciStartTime);
+      }
+      if (!maySend)
+      {
+        return true;
+      }
     }
 
     // Make a copy of the entry and pare it down to only include the set
@@ -659,7 +689,15 @@ public class SearchOperationBasis
     // values that the client is not permitted to see.
     if (evaluateAci)
     {
-      getACIHandler().filterEntry(this, unfilteredSearchEntry, filteredSearchEntry);
+      final long aciStartTime = phaseStarted(this);
+      try
+      {
+        getACIHandler().filterEntry(this, unfilteredSearchEntry, filteredSearchEntry);
+      }
+      finally
+      {
+        phaseEnded(this, Phase.ACCESS_CONTROL, aciStartTime);
+      }
     }
 
     // Invoke any search entry plugins that may be registered with the server.
@@ -834,11 +872,11 @@ public class SearchOperationBasis
     buffer.append(", opID=");
     buffer.append(operationID);
     buffer.append(", baseDN=");
-    buffer.append(rawBaseDN);
+    buffer.append(getRawBaseDN());
     buffer.append(", scope=");
     buffer.append(scope);
     buffer.append(", filter=");
-    buffer.append(rawFilter);
+    buffer.append(getRawFilter());
     buffer.append(")");
   }
 
@@ -942,14 +980,30 @@ public class SearchOperationBasis
   public void sendSearchEntry(SearchResultEntry searchEntry)
       throws DirectoryException
   {
-    getClientConnection().sendSearchEntry(this, searchEntry);
+    final long writeStartTime = phaseStarted(this);
+    try
+    {
+      getClientConnection().sendSearchEntry(this, searchEntry);
+    }
+    finally
+    {
+      phaseEnded(this, Phase.WRITE, writeStartTime);
+    }
   }
 
   @Override
   public boolean sendSearchReference(SearchResultReference searchReference)
       throws DirectoryException
   {
-    return getClientConnection().sendSearchReference(this, searchReference);
+    final long writeStartTime = phaseStarted(this);
+    try
+    {
+      return getClientConnection().sendSearchReference(this, searchReference);
+    }
+    finally
+    {
+      phaseEnded(this, Phase.WRITE, writeStartTime);
+    }
   }
 
   @Override
@@ -988,7 +1042,17 @@ public class SearchOperationBasis
       // Check for and handle a request to cancel this operation.
       checkIfCanceled(false);
 
-      if (!processOperationResult(getPluginConfigManager().invokePreParseSearchPlugins(this)))
+      final long preParseStartTime = phaseStarted(this);
+      final boolean continueProcessing;
+      try
+      {
+        continueProcessing = processOperationResult(getPluginConfigManager().invokePreParseSearchPlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.PRE_PARSE_PLUGINS, preParseStartTime);
+      }
+      if (!continueProcessing)
       {
         return;
       }
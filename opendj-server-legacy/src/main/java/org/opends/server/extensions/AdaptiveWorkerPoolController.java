@@ -0,0 +1,405 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ConfigMessages.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+
+/**
+ * Periodically resizes the pool of worker threads of a {@link TraditionalWorkQueue} according to
+ * the observed load.
+ * <p>
+ * Each evaluation compares the average time operations waited in the queue with a target wait
+ * time. The CPU time consumed by the worker threads is then used to decide whether more threads
+ * can help: when busy worker threads spend most of their time blocked (waiting for backend locks,
+ * disk or network I/O) additional threads increase throughput, whereas when they are running on
+ * all the CPUs additional threads only add context switches and memory.
+ * <p>
+ * The pool grows quickly when operations queue up and shrinks slowly, only after several
+ * consecutive evaluations where the worker threads were mostly idle.
+ */
+public class AdaptiveWorkerPoolController implements Runnable
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The decisions which can be taken by the controller after an evaluation. */
+  public enum Decision
+  {
+    /** Worker threads have been added. */
+    GROW,
+    /** Worker threads have been removed. */
+    SHRINK,
+    /** The number of worker threads has not changed. */
+    HOLD,
+    /** The number of worker threads has not changed because the CPUs are already saturated. */
+    HOLD_CPU_SATURATED
+  }
+
+  /** The interval in milliseconds between two evaluations of the load. */
+  static final long EVALUATION_INTERVAL_MS = 1000;
+  /** The number of consecutive mostly idle evaluations required before removing worker threads. */
+  static final int IDLE_EVALUATIONS_BEFORE_SHRINK = 5;
+  /** The CPU utilization above which adding worker threads cannot improve throughput. */
+  static final double CPU_SATURATION_RATIO = 0.9;
+  /** The blocked ratio above which the pool is grown aggressively. */
+  static final double HIGH_BLOCKED_RATIO = 0.5;
+  /** The busy ratio below which the worker threads are considered mostly idle. */
+  static final double LOW_BUSY_RATIO = 0.5;
+
+  /** A point in time measurement of the load of the work queue. */
+  static final class Measurement
+  {
+    /** The average time spent by operations waiting in the queue during the interval. */
+    private final long avgQueueWaitNanos;
+    /** The number of operations waiting in the queue at the end of the interval. */
+    private final int backlog;
+    /** The ratio of the available CPU time which was used by the worker threads. */
+    private final double cpuUtilization;
+    /** The ratio of the busy time of the worker threads which was not spent on a CPU. */
+    private final double blockedRatio;
+    /** The ratio of the worker threads time which was spent processing operations. */
+    private final double busyRatio;
+
+    Measurement(long avgQueueWaitNanos, int backlog, double cpuUtilization, double blockedRatio, double busyRatio)
+    {
+      this.avgQueueWaitNanos = avgQueueWaitNanos;
+      this.backlog = backlog;
+      this.cpuUtilization = cpuUtilization;
+      this.blockedRatio = blockedRatio;
+      this.busyRatio = busyRatio;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("queue-wait=%.3fms backlog=%d cpu=%.2f blocked=%.2f busy=%.2f",
+          avgQueueWaitNanos / 1000000.0, backlog, cpuUtilization, blockedRatio, busyRatio);
+    }
+  }
+
+  private final TraditionalWorkQueue workQueue;
+  private final int minWorkerThreads;
+  private final int maxWorkerThreads;
+  private final long targetQueueWaitNanos;
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+  private final int numProcessors = Runtime.getRuntime().availableProcessors();
+
+  /** The cumulated busy and CPU times of each worker thread at the last evaluation. */
+  private Map<TraditionalWorkerThread, long[]> lastThreadTimes = new HashMap<>();
+  private long lastEvaluationNanos;
+  private long lastQueueWaitNanos;
+  private long lastOpsDequeued;
+  private int consecutiveIdleEvaluations;
+  private ScheduledFuture<?> scheduledFuture;
+
+  /** Monitoring data, read by other threads. */
+  private volatile Decision lastDecision = Decision.HOLD;
+  private volatile Measurement lastMeasurement;
+  private volatile long lastResizeTime;
+  private volatile long numGrowDecisions;
+  private volatile long numShrinkDecisions;
+  private volatile long numCpuSaturatedDecisions;
+
+  /**
+   * Creates a new controller for the provided work queue.
+   *
+   * @param workQueue
+   *          the work queue whose worker threads are resized
+   * @param minWorkerThreads
+   *          the minimum number of worker threads
+   * @param maxWorkerThreads
+   *          the maximum number of worker threads
+   * @param targetQueueWaitTimeMs
+   *          the average queue wait time in milliseconds above which the pool is grown
+   */
+  AdaptiveWorkerPoolController(TraditionalWorkQueue workQueue, int minWorkerThreads, int maxWorkerThreads,
+      long targetQueueWaitTimeMs)
+  {
+    this.workQueue = workQueue;
+    this.minWorkerThreads = minWorkerThreads;
+    this.maxWorkerThreads = maxWorkerThreads;
+    this.targetQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetQueueWaitTimeMs);
+  }
+
+  /**
+   * Starts the periodic evaluations of the load.
+   *
+   * @param scheduler
+   *          the scheduler used to run the evaluations
+   */
+  void start(ScheduledExecutorService scheduler)
+  {
+    lastEvaluationNanos = System.nanoTime();
+    lastQueueWaitNanos = workQueue.getQueueWaitNanoTime();
+    lastOpsDequeued = workQueue.getOpsDequeued();
+    scheduledFuture = scheduler.scheduleWithFixedDelay(
+        this, EVALUATION_INTERVAL_MS, EVALUATION_INTERVAL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  /** Stops the periodic evaluations of the load. */
+  void stop()
+  {
+    if (scheduledFuture != null)
+    {
+      scheduledFuture.cancel(false);
+    }
+  }
+
+  @Override
+  public void run()
+  {
+    try
+    {
+      final Measurement measurement = measure();
+      final int currentThreads = workQueue.getCurrentNumWorkerThreads();
+      final int newThreads = evaluate(currentThreads, measurement);
+      lastMeasurement = measurement;
+      if (newThreads != currentThreads)
+      {
+        logger.debug(INFO_CONFIG_WORK_QUEUE_ADAPTIVE_RESIZE, currentThreads, newThreads, measurement);
+        lastResizeTime = System.currentTimeMillis();
+        workQueue.resizeWorkerThreads(newThreads);
+      }
+    }
+    catch (Exception e)
+    {
+      // Never let an exception cancel the scheduled evaluations.
+      logger.traceException(e);
+    }
+  }
+
+  /**
+   * Measures the load of the work queue since the previous measurement.
+   *
+   * @return the load of the work queue since the previous measurement
+   */
+  private Measurement measure()
+  {
+    final long now = System.nanoTime();
+    final long elapsed = Math.max(1, now - lastEvaluationNanos);
+    lastEvaluationNanos = now;
+
+    final long queueWaitNanos = workQueue.getQueueWaitNanoTime();
+    final long opsDequeued = workQueue.getOpsDequeued();
+    final long dequeued = opsDequeued - lastOpsDequeued;
+    final long avgQueueWaitNanos = dequeued > 0 ? (queueWaitNanos - lastQueueWaitNanos) / dequeued : 0;
+    lastQueueWaitNanos = queueWaitNanos;
+    lastOpsDequeued = opsDequeued;
+
+    final boolean cpuTimeEnabled = threadMXBean.isThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+    final List<TraditionalWorkerThread> threads = workQueue.getWorkerThreads();
+    final Map<TraditionalWorkerThread, long[]> threadTimes = new HashMap<>(threads.size() * 2);
+    long busyDelta = 0;
+    long cpuDelta = 0;
+    for (TraditionalWorkerThread thread : threads)
+    {
+      final long[] times = { thread.getBusyNanoTime(), cpuTimeEnabled ? threadMXBean.getThreadCpuTime(thread.getId()) : -1 };
+      threadTimes.put(thread, times);
+      final long[] previousTimes = lastThreadTimes.get(thread);
+      if (previousTimes != null && times[1] >= 0 && previousTimes[1] >= 0)
+      {
+        busyDelta += times[0] - previousTimes[0];
+        cpuDelta += times[1] - previousTimes[1];
+      }
+      else if (previousTimes != null)
+      {
+        busyDelta += times[0] - previousTimes[0];
+      }
+    }
+    lastThreadTimes = threadTimes;
+
+    final double cpuUtilization = cpuTimeEnabled ? ratio(cpuDelta, elapsed * numProcessors) : 0;
+    final double blockedRatio = cpuTimeEnabled && busyDelta > 0 ? 1 - ratio(cpuDelta, busyDelta) : 0;
+    final double busyRatio = threads.isEmpty() ? 0 : ratio(busyDelta, elapsed * threads.size());
+    return new Measurement(avgQueueWaitNanos, workQueue.size(), cpuUtilization, blockedRatio, busyRatio);
+  }
+
+  private static double ratio(long value, long total)
+  {
+    return Math.max(0, Math.min(1, (double) value / total));
+  }
+
+  /**
+   * Computes the number of worker threads which should be used given the provided load.
+   *
+   * @param currentThreads
+   *          the current number of worker threads
+   * @param measurement
+   *          the load observed since the previous evaluation
+   * @return the number of worker threads which should be used
+   */
+  int evaluate(int currentThreads, Measurement measurement)
+  {
+    if (currentThreads < minWorkerThreads)
+    {
+      return decide(Decision.GROW, minWorkerThreads);
+    }
+    if (currentThreads > maxWorkerThreads)
+    {
+      return decide(Decision.SHRINK, maxWorkerThreads);
+    }
+
+    if (measurement.avgQueueWaitNanos > targetQueueWaitNanos || measurement.backlog > currentThreads)
+    {
+      consecutiveIdleEvaluations = 0;
+      if (measurement.cpuUtilization >= CPU_SATURATION_RATIO && measurement.blockedRatio < HIGH_BLOCKED_RATIO)
+      {
+        // Threads are running, not waiting: more threads would only fight for the CPUs.
+        numCpuSaturatedDecisions++;
+        return decide(Decision.HOLD_CPU_SATURATED, currentThreads);
+      }
+      if (currentThreads >= maxWorkerThreads)
+      {
+        return decide(Decision.HOLD, currentThreads);
+      }
+      final int step = measurement.blockedRatio >= HIGH_BLOCKED_RATIO ? currentThreads / 4 : currentThreads / 8;
+      return decide(Decision.GROW, Math.min(maxWorkerThreads, currentThreads + Math.max(1, step)));
+    }
+
+    if (measurement.avgQueueWaitNanos < targetQueueWaitNanos / 4 && measurement.busyRatio < LOW_BUSY_RATIO)
+    {
+      consecutiveIdleEvaluations++;
+      if (consecutiveIdleEvaluations >= IDLE_EVALUATIONS_BEFORE_SHRINK && currentThreads > minWorkerThreads)
+      {
+        consecutiveIdleEvaluations = 0;
+        return decide(Decision.SHRINK, Math.max(minWorkerThreads, currentThreads - Math.max(1, currentThreads / 8)));
+      }
+      return decide(Decision.HOLD, currentThreads);
+    }
+
+    consecutiveIdleEvaluations = 0;
+    return decide(Decision.HOLD, currentThreads);
+  }
+
+  private int decide(Decision decision, int numWorkerThreads)
+  {
+    if (decision == Decision.GROW)
+    {
+      numGrowDecisions++;
+    }
+    else if (decision == Decision.SHRINK)
+    {
+      numShrinkDecisions++;
+    }
+    lastDecision = decision;
+    return numWorkerThreads;
+  }
+
+  /**
+   * Returns the minimum number of worker threads.
+   *
+   * @return the minimum number of worker threads
+   */
+  public int getMinWorkerThreads()
+  {
+    return minWorkerThreads;
+  }
+
+  /**
+   * Returns the maximum number of worker threads.
+   *
+   * @return the maximum number of worker threads
+   */
+  public int getMaxWorkerThreads()
+  {
+    return maxWorkerThreads;
+  }
+
+  /**
+   * Returns the target average queue wait time in milliseconds.
+   *
+   * @return the target average queue wait time in milliseconds
+   */
+  public long getTargetQueueWaitTime()
+  {
+    return TimeUnit.NANOSECONDS.toMillis(targetQueueWaitNanos);
+  }
+
+  /**
+   * Returns the decision taken at the last evaluation.
+   *
+   * @return the decision taken at the last evaluation
+   */
+  public Decision getLastDecision()
+  {
+    return lastDecision;
+  }
+
+  /**
+   * Returns a description of the load observed at the last evaluation.
+   *
+   * @return a description of the load observed at the last evaluation, or {@code null} if no
+   *         evaluation happened yet
+   */
+  public String getLastMeasurement()
+  {
+    final Measurement measurement = lastMeasurement;
+    return measurement != null ? measurement.toString() : null;
+  }
+
+  /**
+   * Returns the time of the last change in the number of worker threads.
+   *
+   * @return the time in milliseconds of the last change in the number of worker threads, or 0 if
+   *         it never changed
+   */
+  public long getLastResizeTime()
+  {
+    return lastResizeTime;
+  }
+
+  /**
+   * Returns the number of evaluations which added worker threads.
+   *
+   * @return the number of evaluations which added worker threads
+   */
+  public long getNumGrowDecisions()
+  {
+    return numGrowDecisions;
+  }
+
+  /**
+   * Returns the number of evaluations which removed worker threads.
+   *
+   * @return the number of evaluations which removed worker threads
+   */
+  public long getNumShrinkDecisions()
+  {
+    return numShrinkDecisions;
+  }
+
+  /**
+   * Returns the number of evaluations where operations were waiting but no worker threads were
+   * added because the CPUs were saturated.
+   *
+   * @return the number of evaluations where no worker threads were added because the CPUs were
+   *         saturated
+   */
+  public long getNumCpuSaturatedDecisions()
+  {
+    return numCpuSaturatedDecisions;
+  }
+}
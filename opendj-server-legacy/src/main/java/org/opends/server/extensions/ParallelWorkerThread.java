@@ -56,7 +56,7 @@ public class ParallelWorkerThread
   private boolean waitingForWork;
 
   /** The operation that this worker thread is currently processing. */
-  private Operation operation;
+  private volatile Operation operation;
 
   /** The handle to the actual thread for this worker thread. */
   private Thread workerThread;
@@ -118,6 +118,20 @@ public class ParallelWorkerThread
 
 
 
+  /**
+   * Retrieves the operation that this worker thread is currently processing.
+   * Note that this is a point-in-time determination.
+   *
+   * @return  The operation that this worker thread is currently processing, or
+   *          {@code null} if it is idle.
+   */
+  public Operation getOperation()
+  {
+    return operation;
+  }
+
+
+
   /**
    * Operates in a loop, retrieving the next request from the work queue,
    * processing it, and then going back to the queue for more.
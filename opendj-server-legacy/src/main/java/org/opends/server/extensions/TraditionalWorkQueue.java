@@ -21,7 +21,10 @@ import static org.opends.messages.CoreMessages.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -34,6 +37,7 @@ import org.forgerock.opendj.config.server.ConfigException;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.config.server.ConfigurationChangeListener;
 import org.forgerock.opendj.server.config.server.TraditionalWorkQueueCfg;
+import org.opends.server.api.DirectoryThread;
 import org.opends.server.api.WorkQueue;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.monitors.TraditionalWorkQueueMonitor;
@@ -42,6 +46,9 @@ import org.forgerock.opendj.config.server.ConfigChangeResult;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.InitializationException;
 import org.opends.server.types.Operation;
+import org.opends.server.types.OperationPhaseTimes;
+import org.opends.server.types.OperationPhaseTimes.Phase;
+import org.opends.server.util.Platform;
 
 /**
  * This class defines a data structure for storing and interacting with the
@@ -58,12 +65,23 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
    */
   private static final int MAX_RETRY_COUNT = 5;
 
-  /** The set of worker threads that will be used to process this work queue. */
-  private final ArrayList<TraditionalWorkerThread> workerThreads = new ArrayList<>();
+  /**
+   * The set of worker threads that will be used to process this work queue.
+   * Changes to the number of threads are made while synchronized on this list,
+   * without taking the queue write lock, so that they do not block clients
+   * submitting operations.
+   */
+  private final List<TraditionalWorkerThread> workerThreads = new CopyOnWriteArrayList<>();
 
   /** The number of operations that have been submitted to the work queue for processing. */
   private AtomicLong opsSubmitted;
 
+  /** The number of operations that have been picked up by the worker threads. */
+  private AtomicLong opsDequeued;
+
+  /** The total time in nanoseconds spent by operations waiting in the queue. */
+  private AtomicLong queueWaitNanoTime;
+
   /**
    * The number of times that an attempt to submit a new request has been
    * rejected because the work queue is already at its maximum capacity.
@@ -74,10 +92,10 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
    * Indicates whether one or more of the worker threads needs to be killed at
    * the next convenient opportunity.
    */
-  private boolean killThreads;
+  private volatile boolean killThreads;
 
   /** Indicates whether the Directory Server is shutting down. */
-  private boolean shutdownRequested;
+  private volatile boolean shutdownRequested;
 
   /** The thread number used for the last worker thread that was created. */
   private int lastThreadNumber;
@@ -92,7 +110,16 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
    * The number of worker threads that should be active (or will be shortly if a
    * configuration change has not been completely applied).
    */
-  private int numWorkerThreads;
+  private volatile int numWorkerThreads;
+
+  /**
+   * The controller adjusting the number of worker threads to the observed load,
+   * or {@code null} if the number of worker threads is fixed.
+   */
+  private volatile AdaptiveWorkerPoolController poolController;
+
+  /** The scheduler running the evaluations of the pool controller, created on demand. */
+  private ScheduledExecutorService poolControllerScheduler;
 
   /**
    * The queue overflow policy: true indicates that operations will be blocked
@@ -106,7 +133,20 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
   private final boolean isBlocking = true;
 
   /** The queue that will be used to actually hold the pending operations. */
-  private LinkedBlockingQueue<Operation> opQueue;
+  private LinkedBlockingQueue<QueuedOperation> opQueue;
+
+  /** A pending operation along with the time at which it was put in the queue. */
+  private static final class QueuedOperation
+  {
+    private final Operation operation;
+    private final long enqueueNanoTime;
+
+    private QueuedOperation(Operation operation)
+    {
+      this.operation = operation;
+      this.enqueueNanoTime = System.nanoTime();
+    }
+  }
 
   /** The lock used to provide threadsafe access for the queue, used for non-config changes. */
   private final ReadLock queueReadLock;
@@ -138,14 +178,28 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
       shutdownRequested = false;
       killThreads = false;
       opsSubmitted = new AtomicLong(0);
+      opsDequeued = new AtomicLong(0);
+      queueWaitNanoTime = new AtomicLong(0);
       queueFullRejects = new AtomicLong(0);
 
+      List<LocalizableMessage> unacceptableReasons = new ArrayList<>();
+      if (!isAdaptiveSizingAcceptable(configuration, unacceptableReasons))
+      {
+        throw new ConfigException(unacceptableReasons.get(0));
+      }
+
       // Register to be notified of any configuration changes.
       configuration.addTraditionalChangeListener(this);
 
       // Get the necessary configuration from the provided entry.
       numWorkerThreads =
           computeNumWorkerThreads(configuration.getNumWorkerThreads());
+      poolController = newPoolController(configuration, numWorkerThreads);
+      if (poolController != null)
+      {
+        numWorkerThreads = Math.max(poolController.getMinWorkerThreads(),
+            Math.min(numWorkerThreads, poolController.getMaxWorkerThreads()));
+      }
       maxCapacity = configuration.getMaxWorkQueueCapacity();
 
       // Create the actual work queue.
@@ -162,13 +216,21 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
 
       // Create the set of worker threads that should be used to service the
       // work queue.
-      for (lastThreadNumber = 0; lastThreadNumber < numWorkerThreads;
-        lastThreadNumber++)
+      synchronized (workerThreads)
+      {
+        for (lastThreadNumber = 0; lastThreadNumber < numWorkerThreads;
+          lastThreadNumber++)
+        {
+          TraditionalWorkerThread t = new TraditionalWorkerThread(this,
+              lastThreadNumber);
+          t.start();
+          workerThreads.add(t);
+        }
+      }
+
+      if (poolController != null)
       {
-        TraditionalWorkerThread t = new TraditionalWorkerThread(this,
-            lastThreadNumber);
-        t.start();
-        workerThreads.add(t);
+        poolController.start(getPoolControllerScheduler());
       }
 
       // Create and register a monitor provider for the work queue.
@@ -198,6 +260,12 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
     try
     {
       shutdownRequested = true;
+      stopPoolController();
+      if (poolControllerScheduler != null)
+      {
+        poolControllerScheduler.shutdown();
+        poolControllerScheduler = null;
+      }
     }
     finally
     {
@@ -209,10 +277,11 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
     // Send responses to any operations in the pending queue to indicate that
     // they won't be processed because the server is shutting down.
     CancelRequest cancelRequest = new CancelRequest(true, reason);
-    ArrayList<Operation> pendingOperations = new ArrayList<>();
-    opQueue.removeAll(pendingOperations);
-    for (Operation o : pendingOperations)
+    ArrayList<QueuedOperation> pendingOperations = new ArrayList<>();
+    opQueue.drainTo(pendingOperations);
+    for (QueuedOperation queuedOperation : pendingOperations)
     {
+      Operation o = queuedOperation.operation;
       try
       {
         // The operation has no chance of responding to the cancel
@@ -302,6 +371,7 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
   private void submitOperation(Operation operation,
       boolean blockEnqueuingWhenFull) throws DirectoryException
   {
+    QueuedOperation queuedOperation = new QueuedOperation(operation);
     queueReadLock.lock();
     try
     {
@@ -322,7 +392,7 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
           // worker threads cannot run, the queue will never empty and allow
           // this thread to proceed. To help things out we can periodically
           // yield the read lock when the queue is full.
-          while (!opQueue.offer(operation, 1, TimeUnit.SECONDS))
+          while (!opQueue.offer(queuedOperation, 1, TimeUnit.SECONDS))
           {
             queueReadLock.unlock();
             Thread.yield();
@@ -349,7 +419,7 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
       }
       else
       {
-        if (!opQueue.offer(operation))
+        if (!opQueue.offer(queuedOperation))
         {
           queueFullRejects.incrementAndGet();
 
@@ -427,10 +497,18 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
 
       while (true)
       {
-        Operation nextOperation = opQueue.poll(5, TimeUnit.SECONDS);
+        QueuedOperation nextOperation = opQueue.poll(5, TimeUnit.SECONDS);
         if (nextOperation != null)
         {
-          return nextOperation;
+          opsDequeued.incrementAndGet();
+          final long waitNanoTime = System.nanoTime() - nextOperation.enqueueNanoTime;
+          queueWaitNanoTime.addAndGet(waitNanoTime);
+          final OperationPhaseTimes phaseTimes = nextOperation.operation.getPhaseTimes();
+          if (phaseTimes != null)
+          {
+            phaseTimes.add(Phase.QUEUE, waitNanoTime);
+          }
+          return nextOperation.operation;
         }
 
         // There was no work to do in the specified length of time. Release the
@@ -487,30 +565,20 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
 
   /**
    * Kills this worker thread if needed. This method assumes that the read lock
-   * is already taken and ensure that it is taken on exit.
+   * is already taken.
    *
    * @param workerThread
    *          The worker thread associated with this thread.
-   * @return {@code true} if this thread was killed or is about to be killed as
-   *         a result of shutdown.
+   * @return {@code true} if this thread was killed.
    */
   private boolean tryKillThisWorkerThread(TraditionalWorkerThread workerThread)
   {
-    queueReadLock.unlock();
-    queueWriteLock.lock();
-    try
+    synchronized (workerThreads)
     {
-      if (shutdownRequested)
-      {
-        // Shutdown may have been requested between unlock/lock. This thread is
-        // about to shutdown anyway, so return true.
-        return true;
-      }
-
       int currentThreads = workerThreads.size();
       if (currentThreads > numWorkerThreads)
       {
-        if (workerThreads.remove(Thread.currentThread()))
+        if (workerThreads.remove(workerThread))
         {
           currentThreads--;
         }
@@ -524,18 +592,6 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
         return true;
       }
     }
-    finally
-    {
-      queueWriteLock.unlock();
-      queueReadLock.lock();
-
-      if (shutdownRequested)
-      {
-        // Shutdown may have been requested between unlock/lock. This thread is
-        // about to shutdown anyway, so return true.
-        return true;
-      }
-    }
     return false;
   }
 
@@ -565,6 +621,43 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
     return queueFullRejects.longValue();
   }
 
+  /**
+   * Retrieves the total number of operations that have been picked up from
+   * this work queue by the worker threads since server startup.
+   *
+   * @return The total number of operations that have been picked up from this
+   *         work queue since startup.
+   */
+  public long getOpsDequeued()
+  {
+    return opsDequeued.longValue();
+  }
+
+  /**
+   * Retrieves the total length of time in nanoseconds that the operations
+   * picked up by the worker threads have spent waiting in this work queue
+   * since server startup.
+   *
+   * @return The total length of time in nanoseconds that operations have spent
+   *         waiting in this work queue since startup.
+   */
+  public long getQueueWaitNanoTime()
+  {
+    return queueWaitNanoTime.longValue();
+  }
+
+  /**
+   * Retrieves the controller adjusting the number of worker threads to the
+   * observed load.
+   *
+   * @return The controller adjusting the number of worker threads, or
+   *         {@code null} if the number of worker threads is fixed.
+   */
+  public AdaptiveWorkerPoolController getPoolController()
+  {
+    return poolController;
+  }
+
   /**
    * Retrieves the number of pending operations in the queue that have not yet
    * been picked up for processing. Note that this method is not a constant-time
@@ -591,9 +684,71 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
   public boolean isConfigurationChangeAcceptable(
       TraditionalWorkQueueCfg configuration, List<LocalizableMessage> unacceptableReasons)
   {
+    return isAdaptiveSizingAcceptable(configuration, unacceptableReasons);
+  }
+
+  private boolean isAdaptiveSizingAcceptable(
+      TraditionalWorkQueueCfg configuration, List<LocalizableMessage> unacceptableReasons)
+  {
+    Integer minThreads = configuration.getMinWorkerThreads();
+    Integer maxThreads = configuration.getMaxWorkerThreads();
+    if (configuration.isAdaptiveWorkerThreads()
+        && minThreads != null && maxThreads != null && minThreads > maxThreads)
+    {
+      unacceptableReasons.add(
+          ERR_CONFIG_WORK_QUEUE_MIN_THREADS_GREATER_THAN_MAX.get(minThreads, maxThreads));
+      return false;
+    }
     return true;
   }
 
+  /**
+   * Creates the controller adjusting the number of worker threads if adaptive
+   * sizing is enabled in the provided configuration.
+   */
+  private AdaptiveWorkerPoolController newPoolController(
+      TraditionalWorkQueueCfg configuration, int configuredNumWorkerThreads)
+  {
+    if (!configuration.isAdaptiveWorkerThreads())
+    {
+      return null;
+    }
+
+    Integer minThreads = configuration.getMinWorkerThreads();
+    Integer maxThreads = configuration.getMaxWorkerThreads();
+    int max = maxThreads != null ? maxThreads : Math.max(configuredNumWorkerThreads,
+        4 * Platform.computeNumberOfThreads(16, 2.0f));
+    int min = minThreads != null ? minThreads : Runtime.getRuntime().availableProcessors();
+    if (maxThreads == null)
+    {
+      max = Math.max(max, min);
+    }
+    else if (minThreads == null)
+    {
+      min = Math.min(min, max);
+    }
+    return new AdaptiveWorkerPoolController(this, min, max, configuration.getTargetQueueWaitTime());
+  }
+
+  private ScheduledExecutorService getPoolControllerScheduler()
+  {
+    if (poolControllerScheduler == null)
+    {
+      poolControllerScheduler = Executors.newSingleThreadScheduledExecutor(
+          new DirectoryThread.Factory("Work Queue Pool Controller"));
+    }
+    return poolControllerScheduler;
+  }
+
+  private void stopPoolController()
+  {
+    if (poolController != null)
+    {
+      poolController.stop();
+      poolController = null;
+    }
+  }
+
   @Override
   public ConfigChangeResult applyConfigurationChange(
       TraditionalWorkQueueCfg configuration)
@@ -602,42 +757,28 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
         computeNumWorkerThreads(configuration.getNumWorkerThreads());
     int newMaxCapacity = configuration.getMaxWorkQueueCapacity();
 
-    // Apply a change to the number of worker threads if appropriate.
-    int currentThreads = workerThreads.size();
-    if (newNumThreads != currentThreads)
+    // Replace the pool controller, if any, so that it uses the new bounds.
+    AdaptiveWorkerPoolController newPoolController =
+        newPoolController(configuration, newNumThreads);
+    queueWriteLock.lock();
+    try
     {
-      queueWriteLock.lock();
-      try
-      {
-        int threadsToAdd = newNumThreads - currentThreads;
-        if (threadsToAdd > 0)
-        {
-          for (int i = 0; i < threadsToAdd; i++)
-          {
-            TraditionalWorkerThread t = new TraditionalWorkerThread(this,
-                lastThreadNumber++);
-            workerThreads.add(t);
-            t.start();
-          }
-
-          killThreads = false;
-        }
-        else
-        {
-          killThreads = true;
-        }
-
-        numWorkerThreads = newNumThreads;
-      }
-      catch (Exception e)
+      stopPoolController();
+      if (newPoolController != null)
       {
-        logger.traceException(e);
-      }
-      finally
-      {
-        queueWriteLock.unlock();
+        newNumThreads = Math.max(newPoolController.getMinWorkerThreads(),
+            Math.min(newNumThreads, newPoolController.getMaxWorkerThreads()));
+        poolController = newPoolController;
+        newPoolController.start(getPoolControllerScheduler());
       }
     }
+    finally
+    {
+      queueWriteLock.unlock();
+    }
+
+    // Apply a change to the number of worker threads if appropriate.
+    resizeWorkerThreads(newNumThreads);
 
     // Apply a change to the maximum capacity if appropriate. Since we can't
     // change capacity on the fly, then we'll have to create a new queue and
@@ -648,10 +789,10 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
     {
       // First switch the queue with the exclusive lock.
       queueWriteLock.lock();
-      LinkedBlockingQueue<Operation> oldOpQueue;
+      LinkedBlockingQueue<QueuedOperation> oldOpQueue;
       try
       {
-        LinkedBlockingQueue<Operation> newOpQueue = null;
+        LinkedBlockingQueue<QueuedOperation> newOpQueue = null;
         if (newMaxCapacity > 0)
         {
           newOpQueue = new LinkedBlockingQueue<>(newMaxCapacity);
@@ -672,7 +813,7 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
       }
 
       // Now resubmit any pending requests - we'll need the shared lock.
-      Operation pendingOperation = null;
+      QueuedOperation pendingOperation = null;
       queueReadLock.lock();
       try
       {
@@ -695,11 +836,11 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
         CancelRequest cancelRequest = new CancelRequest(true, message);
         if (pendingOperation != null)
         {
-          pendingOperation.abort(cancelRequest);
+          pendingOperation.operation.abort(cancelRequest);
         }
         while ((pendingOperation = oldOpQueue.poll()) != null)
         {
-          pendingOperation.abort(cancelRequest);
+          pendingOperation.operation.abort(cancelRequest);
         }
       }
       finally
@@ -711,6 +852,54 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
     return new ConfigChangeResult();
   }
 
+  /**
+   * Changes the number of worker threads servicing this work queue. Additional
+   * worker threads are created immediately, whereas extra worker threads exit
+   * as soon as they are done with the operation they are processing.
+   *
+   * @param newNumThreads
+   *          The new number of worker threads.
+   */
+  void resizeWorkerThreads(int newNumThreads)
+  {
+    synchronized (workerThreads)
+    {
+      if (shutdownRequested)
+      {
+        return;
+      }
+
+      try
+      {
+        int threadsToAdd = newNumThreads - workerThreads.size();
+        for (int i = 0; i < threadsToAdd; i++)
+        {
+          TraditionalWorkerThread t = new TraditionalWorkerThread(this,
+              lastThreadNumber++);
+          workerThreads.add(t);
+          t.start();
+        }
+
+        killThreads = threadsToAdd < 0;
+        numWorkerThreads = newNumThreads;
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+      }
+    }
+  }
+
+  /**
+   * Returns a snapshot of the worker threads servicing this work queue.
+   *
+   * @return a snapshot of the worker threads servicing this work queue
+   */
+  List<TraditionalWorkerThread> getWorkerThreads()
+  {
+    return new ArrayList<>(workerThreads);
+  }
+
   @Override
   public boolean isIdle()
   {
@@ -739,12 +928,30 @@ public class TraditionalWorkQueue extends WorkQueue<TraditionalWorkQueueCfg>
   }
 
   /**
-   * Return the number of worker threads used by this WorkQueue.
+   * Return the maximum number of worker threads used by this WorkQueue. When
+   * the number of worker threads is adjusted to the load, this is the upper
+   * bound of the worker thread pool.
    *
-   * @return the number of worker threads used by this WorkQueue
+   * @return the maximum number of worker threads used by this WorkQueue
    */
   @Override
   public int getNumWorkerThreads()
+  {
+    AdaptiveWorkerPoolController controller = poolController;
+    if (controller != null)
+    {
+      return controller.getMaxWorkerThreads();
+    }
+    return this.numWorkerThreads;
+  }
+
+  /**
+   * Return the number of worker threads currently used by this WorkQueue (or
+   * that will be shortly if a change has not been completely applied).
+   *
+   * @return the number of worker threads currently used by this WorkQueue
+   */
+  public int getCurrentNumWorkerThreads()
   {
     return this.numWorkerThreads;
   }
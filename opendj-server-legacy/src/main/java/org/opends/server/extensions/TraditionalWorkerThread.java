@@ -56,6 +56,15 @@ public class TraditionalWorkerThread
   /** The operation that this worker thread is currently processing. */
   private volatile Operation operation;
 
+  /**
+   * The time at which this thread started processing the current operation, or
+   * 0 if it is waiting for work.
+   */
+  private volatile long operationStartNanoTime;
+
+  /** The total time spent by this thread processing completed operations. */
+  private volatile long busyNanoTime;
+
   /** The handle to the actual thread for this worker thread. */
   private Thread workerThread;
 
@@ -116,6 +125,37 @@ public class TraditionalWorkerThread
 
 
 
+  /**
+   * Retrieves the operation that this worker thread is currently processing.
+   * Note that this is a point-in-time determination.
+   *
+   * @return  The operation that this worker thread is currently processing, or
+   *          {@code null} if it is idle.
+   */
+  public Operation getOperation()
+  {
+    return operation;
+  }
+
+
+
+  /**
+   * Retrieves the total length of time in nanoseconds that this thread has
+   * spent processing operations, including the operation currently being
+   * processed.
+   *
+   * @return  The total length of time in nanoseconds that this thread has spent
+   *          processing operations.
+   */
+  public long getBusyNanoTime()
+  {
+    final long startTime = operationStartNanoTime;
+    final long busyTime = busyNanoTime;
+    return startTime != 0 ? busyTime + System.nanoTime() - startTime : busyTime;
+  }
+
+
+
   /**
    * Operates in a loop, retrieving the next request from the work queue,
    * processing it, and then going back to the queue for more.
@@ -145,8 +185,17 @@ public class TraditionalWorkerThread
         {
           // The operation is not null, so process it.  Make sure that when
           // processing is complete.
-          operation.run();
-          operation.operationCompleted();
+          operationStartNanoTime = System.nanoTime();
+          try
+          {
+            operation.run();
+            operation.operationCompleted();
+          }
+          finally
+          {
+            busyNanoTime += System.nanoTime() - operationStartNanoTime;
+            operationStartNanoTime = 0;
+          }
         }
       }
       catch (Throwable t)
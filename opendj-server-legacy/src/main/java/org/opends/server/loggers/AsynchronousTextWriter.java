@@ -16,25 +16,44 @@
  */
 package org.opends.server.loggers;
 
+import static org.opends.messages.LoggerMessages.*;
+
 import java.util.ArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.opends.server.api.DirectoryThread;
 import org.opends.server.api.ServerShutdownListener;
 import org.opends.server.core.DirectoryServer;
 
-/** A Text Writer which writes log records asynchronously to character-based stream. */
+/**
+ * A Text Writer which writes log records asynchronously to character-based stream.
+ * <p>
+ * The records are handed to the writer thread through a lock-free ring buffer, so that the threads
+ * logging records do not contend on a lock. When the ring buffer is full, these threads either wait
+ * for the writer thread to catch up or drop their records, depending on the configuration.
+ */
 class AsynchronousTextWriter
     implements ServerShutdownListener, TextWriter
 {
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The maximum time the writer thread waits for records before checking whether it must stop. */
+  private static final long MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(10);
+  /** The time a thread logging a record waits before retrying when the ring buffer is full. */
+  private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  /** The minimum time between two warnings about dropped records. */
+  private static final long DROPPED_WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
   /** The wrapped Text Writer. */
   private final TextWriter writer;
 
-  /** Queue to store unpublished records. */
-  private final LinkedBlockingQueue<String> queue;
+  /** Ring buffer to store unpublished records. */
+  private final LogRecordRingBuffer queue;
 
   /** The capacity for the queue. */
   private final int capacity;
@@ -42,11 +61,18 @@ class AsynchronousTextWriter
   private String name;
   private AtomicBoolean stopRequested;
   private WriterThread writerThread;
+  /** Indicates whether the writer thread is waiting for records and must be woken up. */
+  private volatile boolean writerWaiting;
 
   private boolean autoFlush;
+  /** Indicates whether records are dropped rather than waiting for room when the queue is full. */
+  private volatile boolean dropWhenFull;
+  /** The number of records dropped because the queue was full. */
+  private final AtomicLong droppedRecords = new AtomicLong();
 
   /**
-   * Construct a new AsynchronousTextWriter wrapper.
+   * Construct a new AsynchronousTextWriter wrapper, which waits for room in the
+   * queue when it is full.
    *
    * @param name      the name of the thread.
    * @param capacity      the size of the queue before it gets flushed.
@@ -56,13 +82,31 @@ class AsynchronousTextWriter
    */
   public AsynchronousTextWriter(String name, int capacity, boolean autoFlush,
                                TextWriter writer)
+  {
+    this(name, capacity, autoFlush, false, writer);
+  }
+
+  /**
+   * Construct a new AsynchronousTextWriter wrapper.
+   *
+   * @param name      the name of the thread.
+   * @param capacity      the size of the queue before it gets flushed.
+   * @param autoFlush indicates if the underlying writer should be flushed
+   *                  after the queue is flushed.
+   * @param dropWhenFull indicates if records should be dropped rather than
+   *                  waiting for room when the queue is full.
+   * @param writer    a character stream used for output.
+   */
+  public AsynchronousTextWriter(String name, int capacity, boolean autoFlush,
+                               boolean dropWhenFull, TextWriter writer)
   {
     this.name = name;
     this.autoFlush = autoFlush;
+    this.dropWhenFull = dropWhenFull;
     this.writer = writer;
 
-    this.queue = new LinkedBlockingQueue<>(capacity);
-    this.capacity = capacity;
+    this.queue = new LogRecordRingBuffer(capacity);
+    this.capacity = queue.capacity();
     this.writerThread = null;
     this.stopRequested = new AtomicBoolean(false);
 
@@ -90,50 +134,49 @@ class AsynchronousTextWriter
     @Override
     public void run()
     {
-      ArrayList<String> drainList = new ArrayList<>(capacity);
+      ArrayList<String> drainList = new ArrayList<>(Math.min(capacity, 4096));
+      long lastDroppedRecords = 0;
+      long lastDroppedWarningTime = System.nanoTime() - DROPPED_WARNING_INTERVAL_NANOS;
 
-      String message = null;
-      while (!stopRequested.get() || !queue.isEmpty()) {
-        try
+      while (!stopRequested.get() || !queue.isEmpty())
+      {
+        if (queue.drainTo(drainList, capacity) == 0)
+        {
+          waitForRecords();
+          continue;
+        }
+
+        for (String record : drainList)
         {
-          queue.drainTo(drainList, capacity);
-          if (drainList.isEmpty())
-          {
-            message = queue.poll(10, TimeUnit.SECONDS);
-            if(message != null)
-            {
-              do
-              {
-                writer.writeRecord(message);
-                message = queue.poll();
-              }
-              while(message != null);
-
-              if(autoFlush)
-              {
-                flush();
-              }
-            }
-          }
-          else
-          {
-            for (String record : drainList)
-            {
-              writer.writeRecord(record);
-            }
-            drainList.clear();
-
-            if (autoFlush)
-            {
-              flush();
-            }
-          }
+          writer.writeRecord(record);
         }
-        catch (InterruptedException ex) {
-          // Ignore. We'll rerun the loop
-          // and presumably fall out.
+        drainList.clear();
+
+        if (autoFlush)
+        {
+          flush();
         }
+
+        final long dropped = droppedRecords.get();
+        if (dropped != lastDroppedRecords
+            && System.nanoTime() - lastDroppedWarningTime >= DROPPED_WARNING_INTERVAL_NANOS)
+        {
+          logger.warn(WARN_LOGGER_ASYNC_RECORDS_DROPPED, dropped - lastDroppedRecords, name);
+          lastDroppedRecords = dropped;
+          lastDroppedWarningTime = System.nanoTime();
+        }
+      }
+    }
+
+    private void waitForRecords()
+    {
+      writerWaiting = true;
+      // Check again, in case a record was added before the flag was visible
+      if (queue.isEmpty() && !stopRequested.get())
+      {
+        LockSupport.parkNanos(this, MAX_WAIT_NANOS);
       }
+      writerWaiting = false;
     }
   }
 
@@ -147,19 +190,25 @@ class AsynchronousTextWriter
   {
     // No writer?  Off to the bit bucket.
     if (writer != null) {
-      while (!stopRequested.get())
+      while (!queue.offer(record))
       {
-        // Put request on queue for writer
-        try
+        if (stopRequested.get())
         {
-          queue.put(record);
-          break;
+          return;
         }
-        catch(InterruptedException e)
+        if (dropWhenFull)
         {
-          // We expect this to happen. Just ignore it and hopefully
-          // drop out in the next try.
+          droppedRecords.incrementAndGet();
+          return;
         }
+        // Wait for the writer thread to make some room
+        LockSupport.unpark(writerThread);
+        LockSupport.parkNanos(FULL_WAIT_NANOS);
+      }
+
+      if (writerWaiting)
+      {
+        LockSupport.unpark(writerThread);
       }
     }
   }
@@ -186,6 +235,16 @@ class AsynchronousTextWriter
     return writer;
   }
 
+  /**
+   * Returns the number of records dropped because the queue was full.
+   *
+   * @return The number of records dropped because the queue was full.
+   */
+  public long getDroppedRecords()
+  {
+    return droppedRecords.get();
+  }
+
   @Override
   public String getShutdownListenerName()
   {
@@ -231,8 +290,8 @@ class AsynchronousTextWriter
     // The writer writerThread SHOULD have drained the queue.
     // If not, handle outstanding requests ourselves,
     // and push them to the writer.
-    while (!queue.isEmpty()) {
-      String message = queue.poll();
+    String message;
+    while ((message = queue.poll()) != null) {
       writer.writeRecord(message);
     }
 
@@ -254,4 +313,15 @@ class AsynchronousTextWriter
   {
     this.autoFlush = autoFlush;
   }
+
+  /**
+   * Set whether records should be dropped rather than waiting for room when the
+   * queue is full.
+   *
+   * @param dropWhenFull If records should be dropped when the queue is full.
+   */
+  public void setDropWhenFull(boolean dropWhenFull)
+  {
+    this.dropWhenFull = dropWhenFull;
+  }
 }
@@ -0,0 +1,171 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.loggers;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue of log records, which may be filled by several
+ * threads but must be emptied by a single thread.
+ * <p>
+ * The records are stored in a preallocated ring of slots. Each slot has a
+ * sequence number telling whether it can be written by a producer or read by
+ * the consumer for the current lap around the ring, so that producers only
+ * contend on the position of the next slot to write (see the bounded queue
+ * described by Dmitry Vyukov).
+ */
+final class LogRecordRingBuffer
+{
+  /** The maximum number of slots, since they are all allocated upfront. */
+  private static final int MAX_CAPACITY = 1 << 20;
+
+  private final String[] records;
+  private final AtomicLongArray sequences;
+  private final int mask;
+
+  /** The position of the next slot to write, shared by the producers. */
+  private final AtomicLong tail = new AtomicLong();
+  /** The position of the next slot to read, only used by the consumer. */
+  private long head;
+
+  /**
+   * Creates a new ring buffer.
+   *
+   * @param capacity
+   *          the minimum number of records that the ring buffer can hold,
+   *          rounded up to the next power of two (up to 2^20)
+   */
+  LogRecordRingBuffer(int capacity)
+  {
+    final int size = capacity <= 1 ? 1 : Integer.highestOneBit(Math.min(capacity, MAX_CAPACITY) - 1) << 1;
+    records = new String[size];
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++)
+    {
+      sequences.set(i, i);
+    }
+    mask = size - 1;
+  }
+
+  /**
+   * Returns the number of records that the ring buffer can hold.
+   *
+   * @return the number of records that the ring buffer can hold
+   */
+  int capacity()
+  {
+    return records.length;
+  }
+
+  /**
+   * Adds a record to the ring buffer, if it is not full. This method may be
+   * called by any thread.
+   *
+   * @param record
+   *          the record to add
+   * @return {@code true} if the record has been added, {@code false} if the
+   *         ring buffer is full
+   */
+  boolean offer(String record)
+  {
+    long pos = tail.get();
+    while (true)
+    {
+      final int index = (int) pos & mask;
+      final long diff = sequences.get(index) - pos;
+      if (diff == 0)
+      {
+        if (tail.compareAndSet(pos, pos + 1))
+        {
+          records[index] = record;
+          // Publishes the record to the consumer. This is a volatile write so that the producer
+          // then sees whether the consumer went to sleep in the meantime.
+          sequences.set(index, pos + 1);
+          return true;
+        }
+        pos = tail.get();
+      }
+      else if (diff < 0)
+      {
+        // The consumer has not read this slot yet during the previous lap
+        return false;
+      }
+      else
+      {
+        // Another producer took this slot
+        pos = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Removes the oldest record from the ring buffer. This method must only be
+   * called by the consumer thread.
+   *
+   * @return the oldest record, or {@code null} if the ring buffer is empty
+   */
+  String poll()
+  {
+    final int index = (int) head & mask;
+    if (sequences.get(index) != head + 1)
+    {
+      // Empty, or a producer has taken the slot but not written it yet
+      return null;
+    }
+    final String record = records[index];
+    records[index] = null;
+    // Gives the slot back to the producers for the next lap
+    sequences.lazySet(index, head + records.length);
+    head++;
+    return record;
+  }
+
+  /**
+   * Removes at most the provided number of records from the ring buffer, oldest
+   * first, and adds them to the provided collection. This method must only be
+   * called by the consumer thread.
+   *
+   * @param collection
+   *          the collection to which the records are added
+   * @param maxRecords
+   *          the maximum number of records to remove
+   * @return the number of records removed
+   */
+  int drainTo(Collection<String> collection, int maxRecords)
+  {
+    int nbRecords = 0;
+    String record;
+    while (nbRecords < maxRecords && (record = poll()) != null)
+    {
+      collection.add(record);
+      nbRecords++;
+    }
+    return nbRecords;
+  }
+
+  /**
+   * Indicates whether the ring buffer has no record ready to be read. This
+   * method must only be called by the consumer thread.
+   *
+   * @return {@code true} if the ring buffer has no record ready to be read
+   */
+  boolean isEmpty()
+  {
+    return sequences.get((int) head & mask) != head + 1;
+  }
+}
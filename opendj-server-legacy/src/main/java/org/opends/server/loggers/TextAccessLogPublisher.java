@@ -36,6 +36,7 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.util.Utils;
 import org.forgerock.opendj.config.server.ConfigurationChangeListener;
 import org.forgerock.opendj.server.config.meta.FileBasedAccessLogPublisherCfgDefn.LogFormat;
+import org.forgerock.opendj.server.config.meta.FileBasedAccessLogPublisherCfgDefn.QueueFullPolicy;
 import org.forgerock.opendj.server.config.server.FileBasedAccessLogPublisherCfg;
 import org.opends.server.api.ClientConnection;
 import org.opends.server.api.ExtendedOperationHandler;
@@ -136,6 +137,10 @@ public final class TextAccessLogPublisher extends
               writer = newAsyncWriter(mfWriter, config);
               previousWriter.shutdown(false);
             }
+            else
+            {
+              ((AsynchronousTextWriter) writer).setDropWhenFull(isDropWhenFull(config));
+            }
           }
           else
           {
@@ -285,7 +290,13 @@ public final class TextAccessLogPublisher extends
   private AsynchronousTextWriter newAsyncWriter(MultifileTextWriter mfWriter, FileBasedAccessLogPublisherCfg config)
   {
     String name = "Asynchronous Text Writer for " + config.dn();
-    return new AsynchronousTextWriter(name, config.getQueueSize(), config.isAutoFlush(), mfWriter);
+    return new AsynchronousTextWriter(
+        name, config.getQueueSize(), config.isAutoFlush(), isDropWhenFull(config), mfWriter);
+  }
+
+  private boolean isDropWhenFull(FileBasedAccessLogPublisherCfg config)
+  {
+    return config.getQueueFullPolicy() == QueueFullPolicy.DROP;
   }
 
   @Override
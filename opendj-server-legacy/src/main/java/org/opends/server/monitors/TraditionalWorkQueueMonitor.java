@@ -16,12 +16,14 @@
  */
 package org.opends.server.monitors;
 
+import java.util.Date;
 import java.util.concurrent.TimeUnit;
 
 import org.forgerock.opendj.config.server.ConfigException;
 import org.opends.server.api.MonitorData;
 import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
 import org.opends.server.api.MonitorProvider;
+import org.opends.server.extensions.AdaptiveWorkerPoolController;
 import org.opends.server.extensions.TraditionalWorkQueue;
 import org.opends.server.types.InitializationException;
 
@@ -54,6 +56,35 @@ public class TraditionalWorkQueueMonitor
    */
   public static final String ATTR_OPS_REJECTED_QUEUE_FULL = "requestsRejectedDueToQueueFull";
 
+  /** The name to use for the monitor attribute that provides the current number of worker threads. */
+  public static final String ATTR_WORKER_THREADS = "workerThreads";
+  /**
+   * The name to use for the monitor attribute that provides the average time in
+   * milliseconds spent by operations waiting in the queue.
+   */
+  public static final String ATTR_AVERAGE_QUEUE_WAIT_TIME = "averageQueueWaitTime";
+  /** The name to use for the monitor attribute indicating whether the worker thread pool is adaptive. */
+  public static final String ATTR_ADAPTIVE_WORKER_THREADS = "adaptiveWorkerThreads";
+  /** The name to use for the monitor attribute that provides the minimum number of worker threads. */
+  public static final String ATTR_MIN_WORKER_THREADS = "minWorkerThreads";
+  /** The name to use for the monitor attribute that provides the maximum number of worker threads. */
+  public static final String ATTR_MAX_WORKER_THREADS = "maxWorkerThreads";
+  /** The name to use for the monitor attribute that provides the last decision of the pool controller. */
+  public static final String ATTR_POOL_LAST_DECISION = "workerPoolLastDecision";
+  /** The name to use for the monitor attribute that provides the load observed by the pool controller. */
+  public static final String ATTR_POOL_LAST_MEASUREMENT = "workerPoolLastMeasurement";
+  /** The name to use for the monitor attribute that provides the time the worker pool was last resized. */
+  public static final String ATTR_POOL_LAST_RESIZE_TIME = "workerPoolLastResizeTime";
+  /** The name to use for the monitor attribute that provides the number of times the worker pool grew. */
+  public static final String ATTR_POOL_GROW_DECISIONS = "workerPoolGrowDecisions";
+  /** The name to use for the monitor attribute that provides the number of times the worker pool shrank. */
+  public static final String ATTR_POOL_SHRINK_DECISIONS = "workerPoolShrinkDecisions";
+  /**
+   * The name to use for the monitor attribute that provides the number of times
+   * the worker pool did not grow because the CPUs were saturated.
+   */
+  public static final String ATTR_POOL_CPU_SATURATED_DECISIONS = "workerPoolCpuSaturatedDecisions";
+
 
   /** The maximum backlog observed by polling the queue. */
   private int maxBacklog;
@@ -129,12 +160,35 @@ public class TraditionalWorkQueueMonitor
     }
     long averageBacklog = (long) (1.0 * totalBacklog / numPolls);
 
-    final MonitorData monitorAttrs = new MonitorData(5);
+    long opsDequeued = workQueue.getOpsDequeued();
+    long averageQueueWaitTime = opsDequeued > 0
+        ? TimeUnit.NANOSECONDS.toMillis(workQueue.getQueueWaitNanoTime() / opsDequeued) : 0;
+
+    final MonitorData monitorAttrs = new MonitorData(16);
     monitorAttrs.add(ATTR_CURRENT_BACKLOG, backlog);
     monitorAttrs.add(ATTR_AVERAGE_BACKLOG, averageBacklog);
     monitorAttrs.add(ATTR_MAX_BACKLOG, maxBacklog);
     monitorAttrs.add(ATTR_OPS_SUBMITTED, workQueue.getOpsSubmitted());
     monitorAttrs.add(ATTR_OPS_REJECTED_QUEUE_FULL, workQueue.getOpsRejectedDueToQueueFull());
+    monitorAttrs.add(ATTR_WORKER_THREADS, workQueue.getCurrentNumWorkerThreads());
+    monitorAttrs.add(ATTR_AVERAGE_QUEUE_WAIT_TIME, averageQueueWaitTime);
+
+    final AdaptiveWorkerPoolController controller = workQueue.getPoolController();
+    monitorAttrs.add(ATTR_ADAPTIVE_WORKER_THREADS, controller != null);
+    if (controller != null)
+    {
+      monitorAttrs.add(ATTR_MIN_WORKER_THREADS, controller.getMinWorkerThreads());
+      monitorAttrs.add(ATTR_MAX_WORKER_THREADS, controller.getMaxWorkerThreads());
+      monitorAttrs.add(ATTR_POOL_LAST_DECISION, controller.getLastDecision().name());
+      monitorAttrs.addIfNotNull(ATTR_POOL_LAST_MEASUREMENT, controller.getLastMeasurement());
+      if (controller.getLastResizeTime() != 0)
+      {
+        monitorAttrs.add(ATTR_POOL_LAST_RESIZE_TIME, new Date(controller.getLastResizeTime()));
+      }
+      monitorAttrs.add(ATTR_POOL_GROW_DECISIONS, controller.getNumGrowDecisions());
+      monitorAttrs.add(ATTR_POOL_SHRINK_DECISIONS, controller.getNumShrinkDecisions());
+      monitorAttrs.add(ATTR_POOL_CPU_SATURATED_DECISIONS, controller.getNumCpuSaturatedDecisions());
+    }
     return monitorAttrs;
   }
 }
@@ -0,0 +1,477 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.plugins.profiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.DN;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.LocalBackend;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.extensions.ParallelWorkerThread;
+import org.opends.server.extensions.TraditionalWorkerThread;
+import org.opends.server.types.Operation;
+import org.opends.server.types.operation.PreParseAddOperation;
+import org.opends.server.types.operation.PreParseBindOperation;
+import org.opends.server.types.operation.PreParseCompareOperation;
+import org.opends.server.types.operation.PreParseDeleteOperation;
+import org.opends.server.types.operation.PreParseModifyDNOperation;
+import org.opends.server.types.operation.PreParseModifyOperation;
+import org.opends.server.types.operation.PreParseSearchOperation;
+
+/**
+ * This class defines a thread which continuously samples the stack traces of the worker threads
+ * processing an operation. Idle worker threads and the other server threads are not sampled, which
+ * keeps the overhead low enough for the profiler to always run.
+ * <p>
+ * Each sample is tagged with the type of the operation and the naming context it targets, and is
+ * aggregated as a folded stack, which is the input format of flame graph tools. The samples are
+ * kept in time slots covering the profiling window, the oldest slot being discarded when a new one
+ * starts, so that latency spikes can be diagnosed after the fact.
+ */
+public class ContinuousProfiler extends DirectoryThread
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The number of time slots covering the profiling window. */
+  static final int NB_SLOTS = 10;
+  /** The maximum number of frames kept for each sample. */
+  private static final int MAX_STACK_DEPTH = 128;
+  /** The maximum number of distinct stacks kept in a time slot, to bound memory. */
+  static final int MAX_STACKS_PER_SLOT = 10000;
+  /** The stack aggregating the samples which did not fit in their time slot. */
+  static final String OTHER_STACKS = "[other stacks]";
+  /** The tag of the samples whose operation does not target any local naming context. */
+  private static final String NO_NAMING_CONTEXT = "[no naming context]";
+
+  /** The samples taken during a time slot. */
+  private static final class Slot
+  {
+    private final Map<String, long[]> stackCounts = new HashMap<>();
+    private final Map<Long, long[]> connectionCounts = new HashMap<>();
+    private long nbSamples;
+  }
+
+  /** The samples aggregated over the profiling window. */
+  static final class Profile
+  {
+    private final long nbSamples;
+    private final List<Map.Entry<String, Long>> stackCounts;
+    private final List<Map.Entry<Long, Long>> connectionCounts;
+
+    private Profile(long nbSamples, Map<String, Long> stackCounts, Map<Long, Long> connectionCounts)
+    {
+      this.nbSamples = nbSamples;
+      this.stackCounts = sortByDecreasingCount(stackCounts);
+      this.connectionCounts = sortByDecreasingCount(connectionCounts);
+    }
+
+    /**
+     * Returns the number of samples taken during the profiling window.
+     *
+     * @return the number of samples taken during the profiling window
+     */
+    long getNbSamples()
+    {
+      return nbSamples;
+    }
+
+    /**
+     * Returns the folded stacks with their number of samples, the most sampled first.
+     *
+     * @return the folded stacks with their number of samples
+     */
+    List<Map.Entry<String, Long>> getStackCounts()
+    {
+      return stackCounts;
+    }
+
+    /**
+     * Returns the connection IDs with their number of samples, the most sampled first.
+     *
+     * @return the connection IDs with their number of samples
+     */
+    List<Map.Entry<Long, Long>> getConnectionCounts()
+    {
+      return connectionCounts;
+    }
+
+    private static <K> List<Map.Entry<K, Long>> sortByDecreasingCount(Map<K, Long> counts)
+    {
+      final List<Map.Entry<K, Long>> entries = new ArrayList<>(counts.entrySet());
+      Collections.sort(entries, new Comparator<Map.Entry<K, Long>>()
+      {
+        @Override
+        public int compare(Map.Entry<K, Long> e1, Map.Entry<K, Long> e2)
+        {
+          return Long.compare(e2.getValue(), e1.getValue());
+        }
+      });
+      return entries;
+    }
+  }
+
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+  private final long sampleInterval;
+  private final long slotDuration;
+
+  /** The time slots, used as a ring. Guarded by this. */
+  private final Slot[] slots = new Slot[NB_SLOTS];
+  private int currentSlot;
+  private long currentSlotStartTime;
+
+  /** Indicates whether a request has been received to stop profiling. */
+  private volatile boolean stopProfiling;
+
+  /**
+   * Creates a new continuous profiler.
+   *
+   * @param sampleInterval
+   *          the length of time in milliseconds between two samples
+   * @param profilingWindow
+   *          the length of time in milliseconds during which samples are kept
+   */
+  public ContinuousProfiler(long sampleInterval, long profilingWindow)
+  {
+    super("Directory Server Continuous Profiler Thread");
+    setDaemon(true);
+    this.sampleInterval = sampleInterval;
+    this.slotDuration = Math.max(1, profilingWindow / NB_SLOTS);
+    resetSlots(System.currentTimeMillis());
+  }
+
+  /**
+   * Returns the length of time in milliseconds between two samples.
+   *
+   * @return the length of time in milliseconds between two samples
+   */
+  public long getSampleInterval()
+  {
+    return sampleInterval;
+  }
+
+  /**
+   * Returns the length of time in milliseconds during which samples are kept.
+   *
+   * @return the length of time in milliseconds during which samples are kept
+   */
+  public long getProfilingWindow()
+  {
+    return slotDuration * NB_SLOTS;
+  }
+
+  @Override
+  public void run()
+  {
+    while (!stopProfiling)
+    {
+      final long startTime = System.currentTimeMillis();
+      try
+      {
+        sampleWorkerThreads(startTime);
+      }
+      catch (Exception e)
+      {
+        // Never let an exception stop the profiler.
+        logger.traceException(e);
+      }
+
+      final long sleepTime = sampleInterval - (System.currentTimeMillis() - startTime);
+      if (sleepTime > 0 && !stopProfiling)
+      {
+        try
+        {
+          Thread.sleep(sleepTime);
+        }
+        catch (InterruptedException e)
+        {
+          logger.traceException(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Causes the continuous profiler to stop sampling. This method will not return until the thread
+   * has stopped.
+   */
+  public void stopProfiling()
+  {
+    stopProfiling = true;
+    interrupt();
+    try
+    {
+      join();
+    }
+    catch (InterruptedException e)
+    {
+      logger.traceException(e);
+    }
+  }
+
+  private void sampleWorkerThreads(long now)
+  {
+    final ThreadGroup threadGroup = DirectoryThread.DIRECTORY_THREAD_GROUP;
+    final Thread[] threads = new Thread[threadGroup.activeCount() + 16];
+    final int nbThreads = threadGroup.enumerate(threads);
+
+    final List<Operation> operations = new ArrayList<>();
+    final List<Long> threadIds = new ArrayList<>();
+    for (int i = 0; i < nbThreads; i++)
+    {
+      final Operation operation = getOperation(threads[i]);
+      if (operation != null)
+      {
+        operations.add(operation);
+        threadIds.add(threads[i].getId());
+      }
+    }
+    if (operations.isEmpty())
+    {
+      addSamples(now, Collections.<String> emptyList(), Collections.<Long> emptyList());
+      return;
+    }
+
+    final long[] ids = new long[threadIds.size()];
+    for (int i = 0; i < ids.length; i++)
+    {
+      ids[i] = threadIds.get(i);
+    }
+    // A single call, so that all the worker threads are sampled at the same safepoint
+    final ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(ids, MAX_STACK_DEPTH);
+
+    final List<String> stacks = new ArrayList<>(threadInfos.length);
+    final List<Long> connectionIds = new ArrayList<>(threadInfos.length);
+    for (int i = 0; i < threadInfos.length; i++)
+    {
+      final ThreadInfo threadInfo = threadInfos[i];
+      if (threadInfo != null && threadInfo.getStackTrace().length > 0)
+      {
+        final Operation operation = operations.get(i);
+        stacks.add(toFoldedStack(getTag(operation), threadInfo.getStackTrace()));
+        connectionIds.add(operation.getConnectionID());
+      }
+    }
+    addSamples(now, stacks, connectionIds);
+  }
+
+  private static Operation getOperation(Thread thread)
+  {
+    if (thread instanceof TraditionalWorkerThread)
+    {
+      return ((TraditionalWorkerThread) thread).getOperation();
+    }
+    else if (thread instanceof ParallelWorkerThread)
+    {
+      return ((ParallelWorkerThread) thread).getOperation();
+    }
+    return null;
+  }
+
+  /** Returns the operation type and the naming context targeted by the provided operation. */
+  private static String getTag(Operation operation)
+  {
+    return operation.getOperationType() + ";" + getNamingContext(getRawTargetDN(operation));
+  }
+
+  /**
+   * Returns the DN targeted by the provided operation, as sent by the client: the decoded DN is not
+   * used, since it is computed by the worker thread processing the operation.
+   */
+  private static ByteString getRawTargetDN(Operation operation)
+  {
+    if (operation instanceof PreParseSearchOperation)
+    {
+      return ((PreParseSearchOperation) operation).getRawBaseDN();
+    }
+    else if (operation instanceof PreParseModifyOperation)
+    {
+      return ((PreParseModifyOperation) operation).getRawEntryDN();
+    }
+    else if (operation instanceof PreParseAddOperation)
+    {
+      return ((PreParseAddOperation) operation).getRawEntryDN();
+    }
+    else if (operation instanceof PreParseDeleteOperation)
+    {
+      return ((PreParseDeleteOperation) operation).getRawEntryDN();
+    }
+    else if (operation instanceof PreParseModifyDNOperation)
+    {
+      return ((PreParseModifyDNOperation) operation).getRawEntryDN();
+    }
+    else if (operation instanceof PreParseCompareOperation)
+    {
+      return ((PreParseCompareOperation) operation).getRawEntryDN();
+    }
+    else if (operation instanceof PreParseBindOperation)
+    {
+      return ((PreParseBindOperation) operation).getRawBindDN();
+    }
+    return null;
+  }
+
+  private static String getNamingContext(ByteString rawDN)
+  {
+    if (rawDN == null)
+    {
+      return NO_NAMING_CONTEXT;
+    }
+    try
+    {
+      final DN dn = DN.valueOf(rawDN);
+      final LocalBackend<?> backend =
+          DirectoryServer.getInstance().getServerContext().getBackendConfigManager().findLocalBackendForEntry(dn);
+      if (backend != null)
+      {
+        for (DN baseDN : backend.getBaseDNs())
+        {
+          if (dn.isSubordinateOrEqualTo(baseDN))
+          {
+            return baseDN.toString().replace(';', ',');
+          }
+        }
+      }
+    }
+    catch (Exception e)
+    {
+      // The DN is invalid: the operation will fail
+      logger.traceException(e);
+    }
+    return NO_NAMING_CONTEXT;
+  }
+
+  /**
+   * Returns the folded representation of a stack, starting with the provided tag and then the
+   * outermost frame.
+   */
+  static String toFoldedStack(String tag, StackTraceElement[] stack)
+  {
+    final StringBuilder builder = new StringBuilder(tag);
+    for (int i = stack.length - 1; i >= 0; i--)
+    {
+      builder.append(';').append(stack[i].getClassName()).append('.').append(stack[i].getMethodName());
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Adds samples to the time slot covering the provided time.
+   *
+   * @param now
+   *          the time at which the samples were taken
+   * @param stacks
+   *          the folded stacks of the samples
+   * @param connectionIds
+   *          the IDs of the connections of the sampled operations
+   */
+  synchronized void addSamples(long now, List<String> stacks, List<Long> connectionIds)
+  {
+    final Slot slot = getSlot(now);
+    for (int i = 0; i < stacks.size(); i++)
+    {
+      String stack = stacks.get(i);
+      if (!slot.stackCounts.containsKey(stack) && slot.stackCounts.size() >= MAX_STACKS_PER_SLOT)
+      {
+        stack = OTHER_STACKS;
+      }
+      increment(slot.stackCounts, stack);
+      increment(slot.connectionCounts, connectionIds.get(i));
+      slot.nbSamples++;
+    }
+  }
+
+  private static <K> void increment(Map<K, long[]> counts, K key)
+  {
+    final long[] count = counts.get(key);
+    if (count != null)
+    {
+      count[0]++;
+    }
+    else
+    {
+      counts.put(key, new long[] { 1 });
+    }
+  }
+
+  /** Returns the slot covering the provided time, discarding the slots which are now too old. */
+  private Slot getSlot(long now)
+  {
+    if (now - currentSlotStartTime >= slotDuration * NB_SLOTS)
+    {
+      // Nothing was sampled for the whole window
+      resetSlots(now);
+    }
+    while (now - currentSlotStartTime >= slotDuration)
+    {
+      currentSlot = (currentSlot + 1) % NB_SLOTS;
+      slots[currentSlot] = new Slot();
+      currentSlotStartTime += slotDuration;
+    }
+    return slots[currentSlot];
+  }
+
+  private void resetSlots(long now)
+  {
+    for (int i = 0; i < NB_SLOTS; i++)
+    {
+      slots[i] = new Slot();
+    }
+    currentSlot = 0;
+    currentSlotStartTime = now;
+  }
+
+  /**
+   * Returns the samples aggregated over the profiling window ending at the provided time.
+   *
+   * @param now
+   *          the end of the profiling window
+   * @return the samples aggregated over the profiling window ending at the provided time
+   */
+  synchronized Profile getProfile(long now)
+  {
+    getSlot(now);
+    final Map<String, Long> stackCounts = new HashMap<>();
+    final Map<Long, Long> connectionCounts = new HashMap<>();
+    long nbSamples = 0;
+    for (Slot slot : slots)
+    {
+      addAll(stackCounts, slot.stackCounts);
+      addAll(connectionCounts, slot.connectionCounts);
+      nbSamples += slot.nbSamples;
+    }
+    return new Profile(nbSamples, stackCounts, connectionCounts);
+  }
+
+  private static <K> void addAll(Map<K, Long> total, Map<K, long[]> counts)
+  {
+    for (Map.Entry<K, long[]> entry : counts.entrySet())
+    {
+      final Long count = total.get(entry.getKey());
+      total.put(entry.getKey(), (count != null ? count : 0) + entry.getValue()[0]);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.plugins.profiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.opendj.server.config.server.MonitorProviderCfg;
+import org.opends.server.api.MonitorData;
+import org.opends.server.api.MonitorProvider;
+
+/**
+ * This class defines a Directory Server monitor that exposes the samples aggregated by the
+ * continuous profiler. The folded stacks can be fed as is to flame graph tools.
+ */
+public class ContinuousProfilerMonitor extends MonitorProvider<MonitorProviderCfg>
+{
+  /** The name to use for the monitor attribute that provides the interval between two samples. */
+  public static final String ATTR_SAMPLE_INTERVAL = "sampleInterval";
+  /** The name to use for the monitor attribute that provides the length of the profiling window. */
+  public static final String ATTR_PROFILING_WINDOW = "profilingWindow";
+  /** The name to use for the monitor attribute that provides the number of samples in the window. */
+  public static final String ATTR_SAMPLES = "samples";
+  /**
+   * The name to use for the monitor attribute that provides the number of samples taken for the
+   * most sampled connections.
+   */
+  public static final String ATTR_CONNECTION_SAMPLES = "connectionSamples";
+  /**
+   * The name to use for the monitor attribute that provides the most sampled stacks, in the folded
+   * format: the operation type, the naming context and the frames separated by semicolons, followed
+   * by the number of samples.
+   */
+  public static final String ATTR_FOLDED_STACK = "foldedStack";
+
+  /** The maximum number of connections exposed by this monitor. */
+  private static final int MAX_CONNECTIONS = 100;
+  /** The maximum number of stacks exposed by this monitor. */
+  private static final int MAX_STACKS = 1000;
+
+  /** The continuous profiler with which this monitor is associated. */
+  private final ContinuousProfiler profiler;
+
+  /**
+   * Creates a new continuous profiler monitor.
+   *
+   * @param profiler
+   *          the continuous profiler with which this monitor is associated
+   */
+  public ContinuousProfilerMonitor(ContinuousProfiler profiler)
+  {
+    this.profiler = profiler;
+  }
+
+  @Override
+  public String getMonitorInstanceName()
+  {
+    return "Continuous Profiler";
+  }
+
+  @Override
+  public MonitorData getMonitorData()
+  {
+    final ContinuousProfiler.Profile profile = profiler.getProfile(System.currentTimeMillis());
+
+    final List<String> connectionSamples = new ArrayList<>();
+    for (Map.Entry<Long, Long> entry : profile.getConnectionCounts())
+    {
+      if (connectionSamples.size() >= MAX_CONNECTIONS)
+      {
+        break;
+      }
+      connectionSamples.add("conn=" + entry.getKey() + " samples=" + entry.getValue());
+    }
+
+    final List<String> foldedStacks = new ArrayList<>();
+    for (Map.Entry<String, Long> entry : profile.getStackCounts())
+    {
+      if (foldedStacks.size() >= MAX_STACKS)
+      {
+        break;
+      }
+      foldedStacks.add(entry.getKey() + " " + entry.getValue());
+    }
+
+    final MonitorData monitorAttrs = new MonitorData(5);
+    monitorAttrs.add(ATTR_SAMPLE_INTERVAL, profiler.getSampleInterval());
+    monitorAttrs.add(ATTR_PROFILING_WINDOW, profiler.getProfilingWindow());
+    monitorAttrs.add(ATTR_SAMPLES, profile.getNbSamples());
+    monitorAttrs.add(ATTR_CONNECTION_SAMPLES, connectionSamples);
+    monitorAttrs.add(ATTR_FOLDED_STACK, foldedStacks);
+    return monitorAttrs;
+  }
+}
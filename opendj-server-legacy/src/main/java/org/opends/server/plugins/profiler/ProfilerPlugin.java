@@ -21,6 +21,7 @@ import static org.opends.server.util.StaticUtils.*;
 import java.io.File;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
@@ -34,6 +35,7 @@ import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.api.plugin.PluginType;
 import org.forgerock.opendj.config.server.ConfigChangeResult;
 import org.forgerock.opendj.ldap.DN;
+import org.opends.server.core.DirectoryServer;
 import org.opends.server.types.DirectoryConfig;
 import org.opends.server.util.TimeThread;
 
@@ -92,6 +94,12 @@ public final class ProfilerPlugin
   /** The thread that is actually capturing the profile information. */
   private ProfilerThread profilerThread;
 
+  /** The thread continuously sampling the worker threads, if enabled. */
+  private ContinuousProfiler continuousProfiler;
+
+  /** The monitor exposing the samples taken by the continuous profiler. */
+  private ContinuousProfilerMonitor continuousProfilerMonitor;
+
 
 
   /**
@@ -177,6 +185,8 @@ public final class ProfilerPlugin
                   stackTraceToSingleLineString(e));
         }
       }
+
+      stopContinuousProfiling();
     }
   }
 
@@ -195,11 +205,53 @@ public final class ProfilerPlugin
       profilerThread.start();
     }
 
+    if (config.isEnableContinuousProfiling())
+    {
+      synchronized (this)
+      {
+        startContinuousProfiling(config);
+      }
+    }
+
     return PluginResult.Startup.continueStartup();
   }
 
 
 
+  /**
+   * Starts continuously sampling the worker threads and registers the monitor exposing the samples.
+   * The caller must hold the lock on this plugin.
+   */
+  private void startContinuousProfiling(ProfilerPluginCfg config)
+  {
+    continuousProfiler = new ContinuousProfiler(config.getProfileSampleInterval(),
+        TimeUnit.SECONDS.toMillis(config.getContinuousProfilingWindow()));
+    continuousProfiler.start();
+
+    continuousProfilerMonitor = new ContinuousProfilerMonitor(continuousProfiler);
+    DirectoryServer.registerMonitorProvider(continuousProfilerMonitor);
+  }
+
+
+
+  /**
+   * Stops continuously sampling the worker threads, if needed, and deregisters the monitor
+   * exposing the samples. The caller must hold the lock on this plugin.
+   */
+  private void stopContinuousProfiling()
+  {
+    if (continuousProfiler != null)
+    {
+      DirectoryServer.deregisterMonitorProvider(continuousProfilerMonitor);
+      continuousProfilerMonitor = null;
+
+      continuousProfiler.stopProfiling();
+      continuousProfiler = null;
+    }
+  }
+
+
+
   /** {@inheritDoc} */
   @Override
   public boolean isConfigurationAcceptable(PluginCfg configuration,
@@ -354,6 +406,21 @@ public final class ProfilerPlugin
         break;
     }
 
+    // See if continuous profiling has been enabled or disabled.
+    synchronized (this)
+    {
+      if (configuration.isEnableContinuousProfiling() && continuousProfiler == null)
+      {
+        startContinuousProfiling(configuration);
+        ccr.addMessage(INFO_PLUGIN_PROFILER_STARTED_CONTINUOUS_PROFILING.get(configEntryDN));
+      }
+      else if (!configuration.isEnableContinuousProfiling() && continuousProfiler != null)
+      {
+        stopContinuousProfiling();
+        ccr.addMessage(INFO_PLUGIN_PROFILER_STOPPED_CONTINUOUS_PROFILING.get(configEntryDN));
+      }
+    }
+
     return ccr;
   }
 }
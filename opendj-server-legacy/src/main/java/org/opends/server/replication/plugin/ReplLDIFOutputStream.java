@@ -16,25 +16,34 @@
  */
 package org.opends.server.replication.plugin;
 
-
 import java.io.IOException;
 import java.io.OutputStream;
 
-import org.opends.server.util.ServerConstants;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
 
 /**
  * This class creates an output stream that can be used to export entries
  * to a synchronization domain.
+ * <p>
+ * The bytes are added to the checksum as they are written, one entry at a
+ * time: an entry ends with an empty line. Lines are never empty within an
+ * entry, since LDIF values containing line separators are base64 encoded.
  */
 public class ReplLDIFOutputStream
        extends OutputStream
 {
+  private static final byte CR = 0x0D;
+  private static final byte LF = 0x0A;
+
   /** The number of entries to be exported. */
   private final long numEntries;
 
   /** The current number of entries exported. */
   private long numExportedEntries;
-  private String entryBuffer = "";
+  /** The bytes of the entry being written. */
+  private final ByteStringBuilder entryBuffer = new ByteStringBuilder();
+  /** Whether the last line separator was not followed by any other character. */
+  private boolean atEndOfLine;
 
   /** The checksum for computing the generation id. */
   private final GenerationIdChecksum checkSum = new GenerationIdChecksum();
@@ -68,50 +77,47 @@ public class ReplLDIFOutputStream
   @Override
   public void write(byte b[], int off, int len) throws IOException
   {
-    String ebytes = entryBuffer;
-    entryBuffer = "";
-
-    ebytes = ebytes + new String(b, off, len);
-    int endIndex = ebytes.length();
-
-    while (true)
+    int entryStart = off;
+    for (int i = off; i < off + len; i++)
     {
-      // if we have the bytes for an entry, let's make an entry and send it
-      int endOfEntryIndex = ebytes.indexOf(ServerConstants.EOL + ServerConstants.EOL);
-      if (endOfEntryIndex < 0)
+      final byte c = b[i];
+      if (c == LF)
       {
-        // a next call to us will provide more bytes to make an entry
-        entryBuffer = entryBuffer.concat(ebytes);
-        break;
+        if (atEndOfLine)
+        {
+          // An empty line: we have all the bytes of an entry
+          entryBuffer.appendBytes(b, entryStart, i + 1 - entryStart);
+          endOfEntry();
+          entryStart = i + 1;
+        }
+        else
+        {
+          atEndOfLine = true;
+        }
       }
-
-      endOfEntryIndex += 2;
-      entryBuffer = ebytes.substring(0, endOfEntryIndex);
-
-      // Send the entry
-      if (numEntries > 0 && getNumExportedEntries() > numEntries)
+      else if (c != CR)
       {
-        // This outputstream has reached the total number
-        // of entries to export.
-        throw new IOException();
+        atEndOfLine = false;
       }
+    }
+    // a next call to us will provide more bytes to end the entry
+    entryBuffer.appendBytes(b, entryStart, off + len - entryStart);
+  }
 
-      // Add the entry bytes to the checksum
-      byte[] entryBytes = entryBuffer.getBytes();
-      checkSum.update(entryBytes, 0, entryBytes.length);
-
-      numExportedEntries++;
-      entryBuffer = "";
-
-      if (endIndex == endOfEntryIndex)
-      {
-        // no more data to process
-        break;
-      }
-      // loop to the data of the next entry
-      ebytes = ebytes.substring(endOfEntryIndex, endIndex);
-      endIndex = ebytes.length();
+  private void endOfEntry() throws IOException
+  {
+    atEndOfLine = false;
+    if (numEntries > 0 && getNumExportedEntries() > numEntries)
+    {
+      // This outputstream has reached the total number
+      // of entries to export.
+      throw new IOException();
     }
+
+    // Add the entry bytes to the checksum
+    checkSum.update(entryBuffer.getBackingArray(), 0, entryBuffer.length());
+    numExportedEntries++;
+    entryBuffer.clear();
   }
 
   /**
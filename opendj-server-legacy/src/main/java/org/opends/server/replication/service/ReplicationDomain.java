@@ -1310,7 +1310,7 @@ public abstract class ReplicationDomain
      * @param serverId serverId of the acknowledger/receiver/importer server.
      * @param numAck   id of the message received.
      */
-    private void setAckVal(int serverId, int numAck)
+    private synchronized void setAckVal(int serverId, int numAck)
     {
       if (logger.isTraceEnabled())
       {
@@ -1331,6 +1331,35 @@ public abstract class ReplicationDomain
           minMsgReceived = nbMsgReceived;
         }
       }
+
+      // Wake up the export waiting for the slowest server
+      notifyAll();
+    }
+
+    /**
+     * Returns the id of the last EntryMsg acknowledged by the provided server.
+     * @param serverId serverId of the acknowledger/receiver/importer server.
+     * @return the id of the last EntryMsg acknowledged by the provided server.
+     */
+    private synchronized int getAckVal(int serverId)
+    {
+      return ackVals.get(serverId);
+    }
+
+    /**
+     * Waits until the provided server acknowledges a more recent EntryMsg
+     * than the provided one, or until the timeout expires.
+     * @param serverId  serverId of the acknowledger/receiver/importer server.
+     * @param numAck    id of the last EntryMsg acknowledged by this server.
+     * @param timeoutMs maximum time to wait in milliseconds.
+     * @throws InterruptedException if the current thread is interrupted.
+     */
+    private synchronized void waitForAck(int serverId, int numAck, long timeoutMs) throws InterruptedException
+    {
+      if (ackVals.get(serverId) == numAck)
+      {
+        wait(timeoutMs);
+      }
     }
 
     /**
@@ -1339,7 +1368,7 @@ public abstract class ReplicationDomain
      * @return serverId of the server with latest acknowledge.
      *                  0 when no ack has been received yet.
      */
-    public int getSlowestServer()
+    public synchronized int getSlowestServer()
     {
       if (logger.isTraceEnabled())
       {
@@ -2072,7 +2101,7 @@ public abstract class ReplicationDomain
       }
 
       int ourLastExportedCnt = ieCtx.msgCnt;
-      int slowestCnt = ieCtx.ackVals.get(slowestServerId);
+      int slowestCnt = ieCtx.getAckVal(slowestServerId);
 
       if (logger.isTraceEnabled())
       {
@@ -2088,7 +2117,9 @@ public abstract class ReplicationDomain
         }
 
         // our export is too far beyond the slowest importer - let's wait
-        try { Thread.sleep(100); }
+        // until it acknowledges more messages, checking the connection
+        // at least every 100ms
+        try { ieCtx.waitForAck(slowestServerId, slowestCnt, 100); }
         catch(Exception e) { /* do nothing */ }
 
         // process any connection error
@@ -51,6 +51,7 @@ import org.opends.server.util.cli.LDAPConnectionArgumentParser;
 
 import com.forgerock.opendj.cli.ArgumentException;
 import com.forgerock.opendj.cli.BooleanArgument;
+import com.forgerock.opendj.cli.IntegerArgument;
 import com.forgerock.opendj.cli.StringArgument;
 
 /**
@@ -71,6 +72,8 @@ public class RebuildIndex extends TaskTool
   private BooleanArgument rebuildAll;
   private BooleanArgument rebuildDegraded;
   private BooleanArgument clearDegradedState;
+  private BooleanArgument online;
+  private IntegerArgument maxEntriesPerSecond;
 
   private final LDAPConnectionArgumentParser argParser = createArgParser(
       "org.opends.server.tools.RebuildIndex",
@@ -260,6 +263,17 @@ public class RebuildIndex extends TaskTool
             BooleanArgument.builder("clearDegradedState")
                     .description(INFO_REBUILDINDEX_DESCRIPTION_CLEAR_DEGRADED_STATE.get())
                     .buildAndAddToParser(argParser);
+    online =
+            BooleanArgument.builder("online")
+                    .description(INFO_REBUILDINDEX_DESCRIPTION_ONLINE.get())
+                    .buildAndAddToParser(argParser);
+    maxEntriesPerSecond =
+            IntegerArgument.builder("maxEntriesPerSecond")
+                    .description(INFO_REBUILDINDEX_DESCRIPTION_MAX_ENTRIES_PER_SECOND.get())
+                    .lowerBound(0)
+                    .defaultValue(0)
+                    .valuePlaceholder(INFO_NUM_ENTRIES_PLACEHOLDER.get())
+                    .buildAndAddToParser(argParser);
     tmpDirectory =
             StringArgument.builder("tmpdirectory")
                     .description(INFO_REBUILDINDEX_DESCRIPTION_TEMP_DIRECTORY.get())
@@ -397,6 +411,8 @@ public class RebuildIndex extends TaskTool
     }
 
     config.setTmpDirectory(tmpDirectory.getValue());
+    config.setOnline(online.isPresent());
+    config.setMaxEntriesPerSecond(getMaxEntriesPerSecond());
     return config;
   }
 
@@ -623,6 +639,29 @@ public class RebuildIndex extends TaskTool
     {
       addLdapAttribute(attributes, ATTR_REBUILD_INDEX_CLEARDEGRADEDSTATE, "true");
     }
+
+    if (hasNonDefaultValue(online))
+    {
+      addLdapAttribute(attributes, ATTR_REBUILD_ONLINE, "true");
+    }
+
+    if (maxEntriesPerSecond.isPresent())
+    {
+      addLdapAttribute(attributes, ATTR_REBUILD_MAX_ENTRIES_PER_SECOND, maxEntriesPerSecond.getValue());
+    }
+  }
+
+  private int getMaxEntriesPerSecond()
+  {
+    try
+    {
+      return maxEntriesPerSecond.getIntValue();
+    }
+    catch (ArgumentException e)
+    {
+      // Already validated by the argument parser
+      return 0;
+    }
   }
 
   private void addLdapAttribute(List<RawAttribute> attributes, String attrType, String attrValue)
@@ -18,7 +18,9 @@ package org.opends.server.types;
 
 import java.util.Collection;
 
+import org.forgerock.opendj.ldap.Assertion;
 import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ConditionResult;
 import org.forgerock.opendj.ldap.DecodeException;
 import org.forgerock.opendj.ldap.schema.AttributeType;
 import org.forgerock.opendj.ldap.schema.MatchingRule;
@@ -115,6 +117,42 @@ public abstract class AbstractAttribute implements Attribute
     return size() == 0;
   }
 
+  /**
+   * Indicates whether this attribute contains a value matching the provided
+   * assertion, once normalized with the provided matching rule.
+   * <p>
+   * This is used by {@link CompiledSearchFilter}, which builds its assertions
+   * once for all the evaluated entries.
+   *
+   * @param matchingRule
+   *          The matching rule which created the assertion.
+   * @param assertion
+   *          The assertion to evaluate against the values of this attribute.
+   * @return {@code TRUE} if a value matches the assertion, {@code UNDEFINED}
+   *         if no value matches but some values could not be normalized,
+   *         {@code FALSE} otherwise.
+   */
+  ConditionResult matchesAssertion(MatchingRule matchingRule, Assertion assertion)
+  {
+    ConditionResult result = ConditionResult.FALSE;
+    for (ByteString value : this)
+    {
+      try
+      {
+        if (assertion.matches(matchingRule.normalizeAttributeValue(value)).toBoolean())
+        {
+          return ConditionResult.TRUE;
+        }
+      }
+      catch (DecodeException e)
+      {
+        // If we cannot find a definite match, then we should return "undefined".
+        result = ConditionResult.UNDEFINED;
+      }
+    }
+    return result;
+  }
+
   @Override
   public boolean isReal()
   {
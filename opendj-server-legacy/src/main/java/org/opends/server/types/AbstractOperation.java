@@ -71,6 +71,9 @@ public abstract class AbstractOperation
   /** Whether nanotime was used for this operation. */
   private final boolean useNanoTime;
 
+  /** The time spent in each processing phase, or null if not tracked. */
+  private final OperationPhaseTimes phaseTimes;
+
   /** The cancel request for this operation. */
   protected CancelRequest cancelRequest;
   /** The cancel result for this operation. */
@@ -159,6 +162,8 @@ public abstract class AbstractOperation
     this.operationID      = operationID;
     this.messageID        = messageID;
     this.useNanoTime = DirectoryServer.getCoreConfigManager().isUseNanoTime();
+    this.phaseTimes =
+        DirectoryServer.getCoreConfigManager().isLogOperationPhaseTimes() ? new OperationPhaseTimes() : null;
     this.requestControls = requestControls != null ? requestControls : new ArrayList<Control>(0);
     authorizationEntry = clientConnection.getAuthenticationInfo().getAuthorizationEntry();
   }
@@ -336,6 +341,12 @@ public abstract class AbstractOperation
     additionalLogItems.add(item);
   }
 
+  @Override
+  public OperationPhaseTimes getPhaseTimes()
+  {
+    return phaseTimes;
+  }
+
   @Override
   public final DN getMatchedDN()
   {
@@ -594,7 +605,8 @@ public abstract class AbstractOperation
   /**
    * Set the time at which the processing stopped for this operation.
    * This will actually hold a time immediately before the response
-   * was sent to the client.
+   * was sent to the client. The time spent in each processing phase, if
+   * tracked, is added to the additional log items at this point.
    */
   public final void setProcessingStopTime()
   {
@@ -603,6 +615,10 @@ public abstract class AbstractOperation
     {
       this.processingStopNanoTime = System.nanoTime();
     }
+    if (phaseTimes != null)
+    {
+      phaseTimes.addLogItems(this, useNanoTime);
+    }
   }
 
   @Override
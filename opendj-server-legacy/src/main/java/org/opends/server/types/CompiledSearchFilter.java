@@ -0,0 +1,782 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.types;
+
+import static org.opends.server.util.ServerConstants.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.AVA;
+import org.forgerock.opendj.ldap.Assertion;
+import org.forgerock.opendj.ldap.AttributeDescription;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ConditionResult;
+import org.forgerock.opendj.ldap.DecodeException;
+import org.forgerock.opendj.ldap.RDN;
+import org.forgerock.opendj.ldap.schema.AttributeType;
+import org.forgerock.opendj.ldap.schema.MatchingRule;
+import org.forgerock.opendj.ldap.schema.MatchingRuleUse;
+import org.forgerock.opendj.ldap.schema.Schema;
+import org.forgerock.opendj.ldap.schema.UnknownSchemaElementException;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.ServerContext;
+
+/**
+ * A search filter compiled into an evaluation plan, for filters which are
+ * evaluated against many entries: search loops, persistent searches or access
+ * control target filters.
+ * <p>
+ * Whereas {@link SearchFilter#matchesEntry(Entry)} interprets the filter for
+ * each entry, the evaluation plan:
+ * <ul>
+ * <li>resolves once the attribute type and subtypes to look up in entries,</li>
+ * <li>builds once the assertions of the matching rules,</li>
+ * <li>evaluates the cheapest components of AND and OR filters first.</li>
+ * </ul>
+ * The plan is built again when the server schema changes. Filters which cannot
+ * be compiled, for instance because they are malformed or too deeply nested,
+ * are evaluated with {@link SearchFilter#matchesEntry(Entry)}.
+ * <p>
+ * AND filters follow RFC 4511: they evaluate to FALSE if any component is
+ * FALSE, even when another component is undefined, so that the result does
+ * not depend on the order of evaluation.
+ */
+@org.opends.server.types.PublicAPI(
+     stability=org.opends.server.types.StabilityLevel.UNCOMMITTED,
+     mayInstantiate=false,
+     mayExtend=false,
+     mayInvoke=true)
+public final class CompiledSearchFilter
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The attribute types and their subtypes for the current schema, shared by all compiled filters. */
+  private static volatile SubTypes subTypesCache;
+
+  /** Orders nodes by increasing cost, keeping the filter order for nodes of same cost. */
+  private static final Comparator<Node> BY_COST = new Comparator<Node>()
+  {
+    @Override
+    public int compare(Node n1, Node n2)
+    {
+      return Integer.compare(n1.cost, n2.cost);
+    }
+  };
+
+  private final SearchFilter filter;
+  private volatile Plan plan;
+
+  /**
+   * Compiles the provided search filter.
+   *
+   * @param filter
+   *          The search filter to compile.
+   */
+  CompiledSearchFilter(SearchFilter filter)
+  {
+    this.filter = filter;
+    this.plan = new Plan(filter, getSchema());
+  }
+
+  /**
+   * Retrieves the search filter which has been compiled.
+   *
+   * @return The search filter which has been compiled.
+   */
+  public SearchFilter getFilter()
+  {
+    return filter;
+  }
+
+  /**
+   * Indicates whether the compiled search filter matches the provided entry.
+   *
+   * @param entry
+   *          The entry for which to make the determination.
+   * @return {@code true} if the search filter matches the provided entry, or
+   *         {@code false} if it does not.
+   * @throws DirectoryException
+   *           If a problem is encountered during processing.
+   */
+  public boolean matchesEntry(Entry entry) throws DirectoryException
+  {
+    Plan currentPlan = plan;
+    final Schema schema = getSchema();
+    if (currentPlan.schema != schema)
+    {
+      currentPlan = new Plan(filter, schema);
+      plan = currentPlan;
+    }
+
+    if (currentPlan.root == null)
+    {
+      return filter.matchesEntry(entry);
+    }
+    return currentPlan.root.matches(entry) == ConditionResult.TRUE;
+  }
+
+  @Override
+  public String toString()
+  {
+    return filter.toString();
+  }
+
+  private static Schema getSchema()
+  {
+    final ServerContext serverContext = DirectoryServer.getInstance().getServerContext();
+    return serverContext != null ? serverContext.getSchema() : null;
+  }
+
+  /** The evaluation plan of a filter for a given schema. */
+  private static final class Plan
+  {
+    private final Schema schema;
+    /** The root node of the plan, or {@code null} if the filter cannot be compiled. */
+    private final Node root;
+
+    Plan(SearchFilter filter, Schema schema)
+    {
+      this.schema = schema;
+      this.root = schema != null ? compile(filter, schema, 0) : null;
+      if (root == null)
+      {
+        logger.trace("Search filter %s will not be compiled", filter);
+      }
+    }
+  }
+
+  /**
+   * Compiles the provided filter.
+   *
+   * @return the node evaluating the filter, or {@code null} if the filter cannot be compiled
+   */
+  private static Node compile(SearchFilter filter, Schema schema, int depth)
+  {
+    switch (filter.getFilterType())
+    {
+    case AND:
+    case OR:
+      return compileCompound(filter, schema, depth);
+
+    case NOT:
+      if (filter.getNotComponent() == null || depth >= MAX_NESTED_FILTER_DEPTH)
+      {
+        return null;
+      }
+      final Node notComponent = compile(filter.getNotComponent(), schema, depth + 1);
+      return notComponent != null ? new NotNode(notComponent) : null;
+
+    case PRESENT:
+      if (filter.getAttributeType() == null)
+      {
+        return null;
+      }
+      return new PresentNode(new AttributeLookup(filter.getAttributeDescription(), schema));
+
+    case SUBSTRING:
+      if (filter.getAttributeType() == null
+          || (filter.getSubInitialElement() == null && filter.getSubFinalElement() == null
+              && filter.getSubAnyElements().isEmpty()))
+      {
+        return null;
+      }
+      return new AssertionNode(filter, schema);
+
+    case EQUALITY:
+    case GREATER_OR_EQUAL:
+    case LESS_OR_EQUAL:
+    case APPROXIMATE_MATCH:
+      if (filter.getAttributeType() == null || filter.getAssertionValue() == null)
+      {
+        return null;
+      }
+      return new AssertionNode(filter, schema);
+
+    case EXTENSIBLE_MATCH:
+      return compileExtensibleMatch(filter, schema);
+
+    default:
+      return null;
+    }
+  }
+
+  private static Node compileCompound(SearchFilter filter, Schema schema, int depth)
+  {
+    if (filter.getFilterComponents() == null
+        || (!filter.getFilterComponents().isEmpty() && depth >= MAX_NESTED_FILTER_DEPTH))
+    {
+      return null;
+    }
+
+    final List<Node> components = new ArrayList<>(filter.getFilterComponents().size());
+    for (SearchFilter component : filter.getFilterComponents())
+    {
+      final Node node = compile(component, schema, depth + 1);
+      if (node == null)
+      {
+        return null;
+      }
+      components.add(node);
+    }
+    Collections.sort(components, BY_COST);
+
+    final Node[] nodes = components.toArray(new Node[components.size()]);
+    return filter.getFilterType() == FilterType.AND ? new AndNode(nodes) : new OrNode(nodes);
+  }
+
+  private static Node compileExtensibleMatch(SearchFilter filter, Schema schema)
+  {
+    final AttributeType attributeType = filter.getAttributeType();
+    if (filter.getAssertionValue() == null || (filter.getMatchingRuleID() == null && attributeType == null))
+    {
+      return null;
+    }
+
+    final MatchingRule matchingRule;
+    if (filter.getMatchingRuleID() != null)
+    {
+      try
+      {
+        matchingRule = schema.getMatchingRule(filter.getMatchingRuleID());
+      }
+      catch (UnknownSchemaElementException e)
+      {
+        return ConstantNode.UNDEFINED;
+      }
+    }
+    else
+    {
+      matchingRule = attributeType.getEqualityMatchingRule();
+      if (matchingRule == null)
+      {
+        return ConstantNode.UNDEFINED;
+      }
+    }
+
+    if (attributeType != null)
+    {
+      try
+      {
+        final MatchingRuleUse mru = schema.getMatchingRuleUse(matchingRule);
+        if (!mru.hasAttribute(attributeType))
+        {
+          return ConstantNode.UNDEFINED;
+        }
+      }
+      catch (UnknownSchemaElementException ignored)
+      {
+      }
+    }
+
+    try
+    {
+      final Assertion assertion = matchingRule.getAssertion(filter.getAssertionValue());
+      final AttributeLookup lookup =
+          attributeType != null ? new AttributeLookup(filter.getAttributeDescription(), schema) : null;
+      return new ExtensibleMatchNode(lookup, matchingRule, assertion, filter.getDNAttributes());
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      // We can't normalize the assertion value, so the result must be undefined.
+      return ConstantNode.UNDEFINED;
+    }
+  }
+
+  /** Returns the attribute type and all its subtypes in the provided schema. */
+  private static List<AttributeType> getTypeAndSubTypes(AttributeType attributeType, Schema schema)
+  {
+    SubTypes cache = subTypesCache;
+    if (cache == null || cache.schema != schema)
+    {
+      cache = new SubTypes(schema);
+      subTypesCache = cache;
+    }
+
+    List<AttributeType> types = cache.subTypes.get(attributeType);
+    if (types == null)
+    {
+      types = new ArrayList<>();
+      types.add(attributeType);
+      for (AttributeType type : schema.getAttributeTypes())
+      {
+        if (!type.equals(attributeType) && attributeType.isSuperTypeOf(type))
+        {
+          types.add(type);
+        }
+      }
+      types = Collections.unmodifiableList(types);
+      cache.subTypes.putIfAbsent(attributeType, types);
+    }
+    return types;
+  }
+
+  /** The attribute types and their subtypes for a given schema. */
+  private static final class SubTypes
+  {
+    private final Schema schema;
+    private final ConcurrentMap<AttributeType, List<AttributeType>> subTypes = new ConcurrentHashMap<>();
+
+    SubTypes(Schema schema)
+    {
+      this.schema = schema;
+    }
+  }
+
+  /** Retrieves from entries the attributes matching an attribute description. */
+  private static final class AttributeLookup
+  {
+    private final AttributeDescription attributeDescription;
+    /** The attribute type and its subtypes, or {@code null} if they cannot be resolved in advance. */
+    private final List<AttributeType> typeAndSubTypes;
+
+    AttributeLookup(AttributeDescription attributeDescription, Schema schema)
+    {
+      final AttributeType attributeType = attributeDescription.getAttributeType();
+      this.attributeDescription = attributeDescription;
+      this.typeAndSubTypes = attributeType.isObjectClass() || attributeType.isPlaceHolder()
+          ? null
+          : getTypeAndSubTypes(attributeType, schema);
+    }
+
+    Iterable<Attribute> getAttributes(Entry entry)
+    {
+      if (typeAndSubTypes == null)
+      {
+        return entry.getAllAttributes(attributeDescription);
+      }
+      return entry.getAllAttributes(attributeDescription, typeAndSubTypes);
+    }
+
+    boolean isPresent(Entry entry)
+    {
+      if (typeAndSubTypes == null)
+      {
+        return entry.hasAttribute(attributeDescription);
+      }
+      for (Attribute attribute : entry.getAllAttributes(attributeDescription, typeAndSubTypes))
+      {
+        // It's possible that there could be an attribute without any values,
+        // which we should treat as not having the requested attribute.
+        if (!attribute.isEmpty())
+        {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /** A node of an evaluation plan. */
+  private static abstract class Node
+  {
+    /** The estimated cost of evaluating this node, relative to other nodes. */
+    private final int cost;
+
+    Node(int cost)
+    {
+      this.cost = cost;
+    }
+
+    abstract ConditionResult matches(Entry entry) throws DirectoryException;
+  }
+
+  /** A node whose result does not depend on the entry. */
+  private static final class ConstantNode extends Node
+  {
+    static final ConstantNode UNDEFINED = new ConstantNode(ConditionResult.UNDEFINED);
+
+    private final ConditionResult result;
+
+    private ConstantNode(ConditionResult result)
+    {
+      super(0);
+      this.result = result;
+    }
+
+    @Override
+    ConditionResult matches(Entry entry)
+    {
+      return result;
+    }
+  }
+
+  /** An AND filter, whose components are evaluated by increasing cost. */
+  private static final class AndNode extends Node
+  {
+    private final Node[] components;
+
+    AndNode(Node[] components)
+    {
+      super(sumOfCosts(components));
+      this.components = components;
+    }
+
+    @Override
+    ConditionResult matches(Entry entry) throws DirectoryException
+    {
+      // An AND filter with no elements like "(&)" is always true (RFC 4526)
+      ConditionResult result = ConditionResult.TRUE;
+      for (Node component : components)
+      {
+        switch (component.matches(entry))
+        {
+        case FALSE:
+          return ConditionResult.FALSE;
+        case UNDEFINED:
+          result = ConditionResult.UNDEFINED;
+          break;
+        default:
+          break;
+        }
+      }
+      return result;
+    }
+  }
+
+  /** An OR filter, whose components are evaluated by increasing cost. */
+  private static final class OrNode extends Node
+  {
+    private final Node[] components;
+
+    OrNode(Node[] components)
+    {
+      super(sumOfCosts(components));
+      this.components = components;
+    }
+
+    @Override
+    ConditionResult matches(Entry entry) throws DirectoryException
+    {
+      // An OR filter with no elements like "(|)" is always false (RFC 4526)
+      ConditionResult result = ConditionResult.FALSE;
+      for (Node component : components)
+      {
+        switch (component.matches(entry))
+        {
+        case TRUE:
+          return ConditionResult.TRUE;
+        case UNDEFINED:
+          result = ConditionResult.UNDEFINED;
+          break;
+        default:
+          break;
+        }
+      }
+      return result;
+    }
+  }
+
+  private static int sumOfCosts(Node[] nodes)
+  {
+    int cost = 1;
+    for (Node node : nodes)
+    {
+      cost += node.cost;
+    }
+    return cost;
+  }
+
+  /** A NOT filter. */
+  private static final class NotNode extends Node
+  {
+    private final Node component;
+
+    NotNode(Node component)
+    {
+      super(component.cost + 1);
+      this.component = component;
+    }
+
+    @Override
+    ConditionResult matches(Entry entry) throws DirectoryException
+    {
+      return ConditionResult.not(component.matches(entry));
+    }
+  }
+
+  /** A presence filter. */
+  private static final class PresentNode extends Node
+  {
+    private final AttributeLookup lookup;
+
+    PresentNode(AttributeLookup lookup)
+    {
+      super(1);
+      this.lookup = lookup;
+    }
+
+    @Override
+    ConditionResult matches(Entry entry)
+    {
+      return ConditionResult.valueOf(lookup.isPresent(entry));
+    }
+  }
+
+  /**
+   * An equality, substring, greater-or-equal, less-or-equal or approximate filter.
+   * <p>
+   * The assertion is built once with the matching rule of the filter attribute type, and used
+   * for the real attributes having the same matching rule. Other attributes, such as virtual
+   * attributes or subtypes with a different matching rule, are evaluated by the attribute itself.
+   */
+  private static final class AssertionNode extends Node
+  {
+    private final SearchFilter filter;
+    private final AttributeLookup lookup;
+    private final MatchingRule matchingRule;
+    /** The assertion built once, or {@code null} if it cannot be built. */
+    private final Assertion assertion;
+
+    AssertionNode(SearchFilter filter, Schema schema)
+    {
+      super(getCost(filter.getFilterType()));
+      this.filter = filter;
+      this.lookup = new AttributeLookup(filter.getAttributeDescription(), schema);
+      this.matchingRule = getMatchingRule(filter.getAttributeType());
+      this.assertion = getAssertion();
+    }
+
+    private static int getCost(FilterType filterType)
+    {
+      switch (filterType)
+      {
+      case EQUALITY:
+        return 2;
+      case GREATER_OR_EQUAL:
+      case LESS_OR_EQUAL:
+        return 3;
+      case APPROXIMATE_MATCH:
+        return 4;
+      default:
+        return 5;
+      }
+    }
+
+    private MatchingRule getMatchingRule(AttributeType attributeType)
+    {
+      switch (filter.getFilterType())
+      {
+      case EQUALITY:
+        return attributeType.getEqualityMatchingRule();
+      case SUBSTRING:
+        return attributeType.getSubstringMatchingRule();
+      case GREATER_OR_EQUAL:
+      case LESS_OR_EQUAL:
+        return attributeType.getOrderingMatchingRule();
+      default:
+        return attributeType.getApproximateMatchingRule();
+      }
+    }
+
+    private Assertion getAssertion()
+    {
+      if (matchingRule == null)
+      {
+        return null;
+      }
+      try
+      {
+        final ByteString assertionValue = filter.getAssertionValue();
+        switch (filter.getFilterType())
+        {
+        case SUBSTRING:
+          return matchingRule.getSubstringAssertion(
+              filter.getSubInitialElement(), filter.getSubAnyElements(), filter.getSubFinalElement());
+        case GREATER_OR_EQUAL:
+          return matchingRule.getGreaterOrEqualAssertion(assertionValue);
+        case LESS_OR_EQUAL:
+          return matchingRule.getLessOrEqualAssertion(assertionValue);
+        default:
+          return matchingRule.getAssertion(assertionValue);
+        }
+      }
+      catch (DecodeException e)
+      {
+        logger.traceException(e);
+        return null;
+      }
+    }
+
+    @Override
+    ConditionResult matches(Entry entry)
+    {
+      final Iterable<Attribute> attributes = lookup.getAttributes(entry);
+      if (!attributes.iterator().hasNext())
+      {
+        return ConditionResult.FALSE;
+      }
+      if (matchingRule == null && filter.getFilterType() == FilterType.EQUALITY)
+      {
+        return ConditionResult.UNDEFINED;
+      }
+
+      ConditionResult result = ConditionResult.FALSE;
+      for (Attribute attribute : attributes)
+      {
+        switch (matches(attribute))
+        {
+        case TRUE:
+          return ConditionResult.TRUE;
+        case UNDEFINED:
+          result = ConditionResult.UNDEFINED;
+          break;
+        default:
+          break;
+        }
+      }
+      return result;
+    }
+
+    private ConditionResult matches(Attribute attribute)
+    {
+      if (assertion != null
+          && attribute instanceof AbstractAttribute
+          && !attribute.isVirtual()
+          && getMatchingRule(attribute.getAttributeDescription().getAttributeType()) == matchingRule)
+      {
+        return ((AbstractAttribute) attribute).matchesAssertion(matchingRule, assertion);
+      }
+
+      final ByteString assertionValue = filter.getAssertionValue();
+      switch (filter.getFilterType())
+      {
+      case EQUALITY:
+        return attribute.matchesEqualityAssertion(assertionValue);
+      case SUBSTRING:
+        return attribute.matchesSubstring(
+            filter.getSubInitialElement(), filter.getSubAnyElements(), filter.getSubFinalElement());
+      case GREATER_OR_EQUAL:
+        return attribute.greaterThanOrEqualTo(assertionValue);
+      case LESS_OR_EQUAL:
+        return attribute.lessThanOrEqualTo(assertionValue);
+      default:
+        return attribute.approximatelyEqualTo(assertionValue);
+      }
+    }
+  }
+
+  /** An extensible match filter, with its matching rule and assertion resolved once. */
+  private static final class ExtensibleMatchNode extends Node
+  {
+    /** The attributes to look up, or {@code null} if all the attributes must be checked. */
+    private final AttributeLookup lookup;
+    private final MatchingRule matchingRule;
+    private final Assertion assertion;
+    private final boolean dnAttributes;
+
+    ExtensibleMatchNode(AttributeLookup lookup, MatchingRule matchingRule, Assertion assertion,
+        boolean dnAttributes)
+    {
+      super(lookup != null ? 6 : 10);
+      this.lookup = lookup;
+      this.matchingRule = matchingRule;
+      this.assertion = assertion;
+      this.dnAttributes = dnAttributes;
+    }
+
+    @Override
+    ConditionResult matches(Entry entry)
+    {
+      // If there is an attribute type, then we should only check for that attribute.
+      // Otherwise, we should check against all attributes in the entry.
+      ConditionResult result = ConditionResult.FALSE;
+      if (lookup == null)
+      {
+        result = matchesAnyAttribute(entry.getAllAttributes(), result);
+        if (result == ConditionResult.TRUE)
+        {
+          return result;
+        }
+        result = matchesAnyValue(entry.getObjectClassAttribute(), result);
+      }
+      else
+      {
+        result = matchesAnyAttribute(lookup.getAttributes(entry), result);
+      }
+      if (result == ConditionResult.TRUE || !dnAttributes)
+      {
+        return result;
+      }
+
+      final AttributeType attributeType = lookup != null ? lookup.attributeDescription.getAttributeType() : null;
+      for (RDN rdn : entry.getName())
+      {
+        for (AVA ava : rdn)
+        {
+          if (attributeType == null || attributeType.equals(ava.getAttributeType()))
+          {
+            result = matchesValue(ava.getAttributeValue(), result);
+            if (result == ConditionResult.TRUE)
+            {
+              return result;
+            }
+          }
+        }
+      }
+      return result;
+    }
+
+    private ConditionResult matchesAnyAttribute(Iterable<Attribute> attributes, ConditionResult result)
+    {
+      for (Attribute attribute : attributes)
+      {
+        result = matchesAnyValue(attribute, result);
+        if (result == ConditionResult.TRUE)
+        {
+          return result;
+        }
+      }
+      return result;
+    }
+
+    private ConditionResult matchesAnyValue(Attribute attribute, ConditionResult result)
+    {
+      for (ByteString value : attribute)
+      {
+        result = matchesValue(value, result);
+        if (result == ConditionResult.TRUE)
+        {
+          return result;
+        }
+      }
+      return result;
+    }
+
+    private ConditionResult matchesValue(ByteString value, ConditionResult result)
+    {
+      try
+      {
+        final ConditionResult r = assertion.matches(matchingRule.normalizeAttributeValue(value));
+        return r == ConditionResult.FALSE ? result : r;
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+
+        // We couldn't normalize one of the values.
+        // If we don't find a definite match, then we should return undefined.
+        return ConditionResult.UNDEFINED;
+      }
+    }
+  }
+}
@@ -809,6 +809,49 @@ public class Entry
     return attributes;
   }
 
+  /**
+   * Retrieves the attributes of this entry matching the provided attribute
+   * description, looking up only the provided attribute types.
+   * <p>
+   * This is a faster alternative to {@link #getAllAttributes(AttributeDescription)}
+   * when the subtypes of the attribute type are already known, as done by
+   * {@link CompiledSearchFilter}.
+   *
+   * @param attributeDescription
+   *          The attribute description to retrieve, which must not be the
+   *          objectClass attribute.
+   * @param typeAndSubTypes
+   *          The attribute type of the attribute description and all its subtypes.
+   * @return The requested attributes, or an empty list if this entry does not
+   *         contain them.
+   */
+  List<Attribute> getAllAttributes(AttributeDescription attributeDescription,
+      Collection<AttributeType> typeAndSubTypes)
+  {
+    final List<Attribute> results = new ArrayList<>(1);
+    for (AttributeType attributeType : typeAndSubTypes)
+    {
+      addAttributesWithAllOptions(results, attributeDescription, userAttributes.get(attributeType));
+      addAttributesWithAllOptions(results, attributeDescription, operationalAttributes.get(attributeType));
+    }
+    return results;
+  }
+
+  private void addAttributesWithAllOptions(List<Attribute> results, AttributeDescription attributeDescription,
+      List<Attribute> attributes)
+  {
+    if (attributes != null)
+    {
+      for (Attribute attribute : attributes)
+      {
+        if (attributeDescription.isSuperTypeOf(attribute.getAttributeDescription()))
+        {
+          results.add(attribute);
+        }
+      }
+    }
+  }
+
   /**
    * Returns a parser for the named attribute contained in this entry.
    * <p>
@@ -278,6 +278,15 @@ public interface Operation extends Runnable
    */
   void addAdditionalLogItem(AdditionalLogItem item);
 
+  /**
+   * Returns the time spent by this operation in each of its processing phases,
+   * if the server is configured to log them.
+   *
+   * @return The time spent by this operation in each of its processing phases,
+   *         or {@code null} if they are not tracked for this operation.
+   */
+  OperationPhaseTimes getPhaseTimes();
+
   /**
    * Retrieves the matched DN for this operation.
    *
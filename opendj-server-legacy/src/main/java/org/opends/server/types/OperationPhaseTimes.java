@@ -0,0 +1,183 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.types;
+
+import static org.opends.server.types.AdditionalLogItem.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time spent by an operation in each of its main processing phases. These
+ * times are only tracked when the server is configured to log them, in which
+ * case they are added to the additional log items of the operation just before
+ * its response is logged.
+ * <p>
+ * Phases may be nested: for instance the time spent in the backend by a search
+ * includes the time spent evaluating the indexes and writing the entries to the
+ * client. A phase entered several times, such as the access control evaluation
+ * of each returned entry, accumulates the time spent in each of them.
+ * <p>
+ * This class is not thread safe: it must only be updated by the thread
+ * processing the operation.
+ */
+public final class OperationPhaseTimes
+{
+  /** The main processing phases of an operation. */
+  public enum Phase
+  {
+    /** The time spent waiting in the work queue. */
+    QUEUE("qtime"),
+    /** The time spent in the pre-parse plugins. */
+    PRE_PARSE_PLUGINS("preParseTime"),
+    /** The time spent evaluating access control. */
+    ACCESS_CONTROL("aciTime"),
+    /** The time spent in the pre-operation plugins. */
+    PRE_OPERATION_PLUGINS("preOpTime"),
+    /** The time spent evaluating the indexes. */
+    INDEX("indexTime"),
+    /** The time spent in the backend. */
+    BACKEND("backendTime"),
+    /** The time spent in the post-operation plugins. */
+    POST_OPERATION_PLUGINS("postOpTime"),
+    /** The time spent writing the search result entries and references to the client. */
+    WRITE("writeTime");
+
+    private final String logKey;
+
+    private Phase(String logKey)
+    {
+      this.logKey = logKey;
+    }
+
+    /**
+     * Returns the key of the additional log item for this phase.
+     *
+     * @return the key of the additional log item for this phase
+     */
+    public String getLogKey()
+    {
+      return logKey;
+    }
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+
+  /** The time spent in each phase in nanoseconds, or -1 if the operation did not go through it. */
+  private final long[] nanoTimes = new long[PHASES.length];
+  /** Whether the times have already been added to the additional log items. */
+  private boolean logged;
+
+  /** Creates new operation phase times, with no phase entered yet. */
+  public OperationPhaseTimes()
+  {
+    for (int i = 0; i < nanoTimes.length; i++)
+    {
+      nanoTimes[i] = -1;
+    }
+  }
+
+  /**
+   * Returns the time at which a phase of the provided operation starts, to be
+   * later passed to {@link #phaseEnded(Operation, Phase, long)}. The clock is
+   * not read when the phase times of the operation are not tracked.
+   *
+   * @param operation
+   *          the operation entering a phase
+   * @return the time at which the phase starts in nanoseconds, or 0 if the
+   *         phase times of the operation are not tracked
+   */
+  public static long phaseStarted(Operation operation)
+  {
+    return operation.getPhaseTimes() != null ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records that the provided operation left a phase, if its phase times are
+   * tracked.
+   *
+   * @param operation
+   *          the operation leaving a phase
+   * @param phase
+   *          the phase left by the operation
+   * @param startNanoTime
+   *          the value returned by {@link #phaseStarted(Operation)} when the
+   *          operation entered the phase
+   */
+  public static void phaseEnded(Operation operation, Phase phase, long startNanoTime)
+  {
+    final OperationPhaseTimes phaseTimes = operation.getPhaseTimes();
+    if (phaseTimes != null)
+    {
+      phaseTimes.add(phase, System.nanoTime() - startNanoTime);
+    }
+  }
+
+  /**
+   * Adds time spent in the provided phase.
+   *
+   * @param phase
+   *          the phase
+   * @param nanoTime
+   *          the time spent in the phase in nanoseconds
+   */
+  public void add(Phase phase, long nanoTime)
+  {
+    final int i = phase.ordinal();
+    nanoTimes[i] = Math.max(nanoTimes[i], 0) + nanoTime;
+  }
+
+  /**
+   * Returns the time spent in the provided phase.
+   *
+   * @param phase
+   *          the phase
+   * @return the time spent in the provided phase in nanoseconds, or -1 if the
+   *         operation did not go through it
+   */
+  public long getNanoTime(Phase phase)
+  {
+    return nanoTimes[phase.ordinal()];
+  }
+
+  /**
+   * Adds the time spent in each phase the provided operation went through to
+   * its additional log items. This method does nothing when called again for
+   * the same operation.
+   *
+   * @param operation
+   *          the operation whose phase times are logged
+   * @param useNanoTime
+   *          whether the times should be logged in nanoseconds rather than in
+   *          milliseconds, like the etime
+   */
+  public void addLogItems(Operation operation, boolean useNanoTime)
+  {
+    if (logged)
+    {
+      return;
+    }
+    logged = true;
+    for (Phase phase : PHASES)
+    {
+      final long nanoTime = nanoTimes[phase.ordinal()];
+      if (nanoTime >= 0)
+      {
+        final long time = useNanoTime ? nanoTime : TimeUnit.NANOSECONDS.toMillis(nanoTime);
+        operation.addAdditionalLogItem(unquotedKeyValue(OperationPhaseTimes.class, phase.getLogKey(), time));
+      }
+    }
+  }
+}
@@ -2036,6 +2036,19 @@ public final class SearchFilter
 
 
 
+  /**
+   * Retrieves the attribute description for this filter.
+   *
+   * @return  The attribute description for this filter, or
+   *          <CODE>null</CODE> if there is none.
+   */
+  public AttributeDescription getAttributeDescription()
+  {
+    return attributeDescription;
+  }
+
+
+
   /**
    * Retrieves the attribute type for this filter.
    *
@@ -2126,6 +2139,23 @@ public final class SearchFilter
 
 
 
+  /**
+   * Compiles this search filter into an evaluation plan, which is more
+   * efficient than {@link #matchesEntry(Entry)} when the filter is evaluated
+   * against many entries.
+   * <p>
+   * The compiled filter reflects the components of this filter at the time
+   * of the call: it must be compiled again if they are modified afterwards.
+   *
+   * @return  The compiled search filter.
+   */
+  public CompiledSearchFilter compile()
+  {
+    return new CompiledSearchFilter(this);
+  }
+
+
+
   /**
    * Indicates whether this search filter matches the provided entry.
    *
@@ -2280,11 +2310,14 @@ public final class SearchFilter
         throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), message);
       }
 
+      // A FALSE component makes the filter FALSE even if another
+      // component is UNDEFINED (RFC 4511 section 4.5.1.7).
+      ConditionResult result = ConditionResult.TRUE;
       for (SearchFilter f : filterComponents)
       {
-        ConditionResult result =
+        ConditionResult componentResult =
              f.matchesEntryInternal(completeFilter, entry, depth + 1);
-        switch (result)
+        switch (componentResult)
         {
           case TRUE:
             break;
@@ -2296,7 +2329,7 @@ public final class SearchFilter
                   "filter %s for entry %s",
                            f, completeFilter, entry.getName());
             }
-            return result;
+            return componentResult;
           case UNDEFINED:
             if (logger.isTraceEnabled())
             {
@@ -2304,24 +2337,23 @@ public final class SearchFilter
              "Undefined result for AND component %s in filter " +
              "%s for entry %s", f, completeFilter, entry.getName());
             }
-            return result;
+            result = ConditionResult.UNDEFINED;
+            break;
           default:
             LocalizableMessage message =
                 ERR_SEARCH_FILTER_INVALID_RESULT_TYPE.
-                  get(entry.getName(), completeFilter, result);
+                  get(entry.getName(), completeFilter, componentResult);
             throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), message);
         }
       }
 
-      // If we have gotten here, then all the components must have
-      // matched.
       if (logger.isTraceEnabled())
       {
         logger.trace(
-            "Returning TRUE for AND component %s in filter %s " +
-            "for entry %s", this, completeFilter, entry.getName());
+            "Returning %s for AND component %s in filter %s " +
+            "for entry %s", result, this, completeFilter, entry.getName());
       }
-      return ConditionResult.TRUE;
+      return result;
     }
   }
 
@@ -24,6 +24,7 @@ import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileFilter;
@@ -36,22 +37,36 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -63,6 +78,7 @@ import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.config.server.ConfigException;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.util.Pair;
+import org.forgerock.util.Utils;
 import org.opends.server.api.Backupable;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.types.BackupConfig;
@@ -86,16 +102,42 @@ public class BackupManager
   private static final String BACKUP_BASE_FILENAME = "backup-";
 
   /**
-   * The name of the property that holds the name of the latest log file
-   * at the time the backup was created.
+   * The name of the property that holds the format of the archive file. Archives
+   * without this property use the legacy format, with one zip entry per file.
    */
-  private static final String PROPERTY_LAST_LOGFILE_NAME = "last_logfile_name";
+  private static final String PROPERTY_ARCHIVE_FORMAT = "archive_format";
+
+  /** The archive format where each file is stored as a list of independently compressed blocks. */
+  private static final String ARCHIVE_FORMAT_BLOCKS = "blocks";
 
   /**
-   * The name of the property that holds the size of the latest log file
-   * at the time the backup was created.
+   * The name of the last entry in a block archive file, containing the list
+   * of all the backed up files with the digests of their blocks.
    */
-  private static final String PROPERTY_LAST_LOGFILE_SIZE = "last_logfile_size";
+  private static final String ZIPENTRY_BLOCK_MANIFEST = "blocks.txt";
+
+  /**
+   * The suffix of the file holding a copy of the block manifest next to the
+   * archive file, so that incremental backups do not need to read the archive.
+   */
+  private static final String BLOCK_MANIFEST_FILE_SUFFIX = ".blocks";
+
+  /** The separator between the file path and the block index in the names of block entries. */
+  private static final char BLOCK_INDEX_SEPARATOR = '#';
+
+  /** The size of the blocks in which files are split in a block archive. */
+  static final int BLOCK_SIZE = 1024 * 1024;
+
+  /** The algorithm used to compare blocks with the ones of the base backup. */
+  private static final String BLOCK_DIGEST_ALGORITHM = "SHA-256";
+
+  /** The number of threads compressing, uncompressing and digesting blocks. */
+  private static final int BLOCK_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+  /** The maximum number of blocks held in memory while waiting to be written to the archive or to disk. */
+  private static final int MAX_PENDING_BLOCKS = 2 * BLOCK_THREAD_COUNT;
+
+  private static final String BLOCK_THREAD_NAME = "BACKUP-BLOCKS-%d";
 
   /**
    * The name of the entry in an incremental backup archive file
@@ -505,9 +547,6 @@ public class BackupManager
   private static final class NewBackupArchive {
     private final String archiveFilename;
 
-    private String latestFileName;
-    private long latestFileSize;
-
     private final HashSet<String> dependencies;
 
     private final String backendID;
@@ -520,12 +559,6 @@ public class BackupManager
       this.newBackupParams = backupParams;
       this.cryptoEngine = crypt;
       dependencies = new HashSet<>();
-      if (backupParams.isIncremental)
-      {
-        Map<String, String> properties = backupParams.baseBackupInfo.getBackupProperties();
-        latestFileName = properties.get(PROPERTY_LAST_LOGFILE_NAME);
-        latestFileSize = Long.parseLong(properties.get(PROPERTY_LAST_LOGFILE_SIZE));
-      }
       archiveFilename = BACKUP_BASE_FILENAME + backendID + "-" +  backupParams.backupID;
     }
 
@@ -552,6 +585,40 @@ public class BackupManager
       dependencies.add(newBackupParams.baseBackupInfo.getBackupID());
     }
 
+    /**
+     * Returns the block manifest of the base backup, keyed by relative path of the files.
+     * <p>
+     * The map is empty for a full backup, or when the base backup does not provide a block
+     * manifest (legacy archive format): all the files are then written to the archive.
+     */
+    Map<String, FileBlocks> readBaseBlockManifest() throws DirectoryException
+    {
+      if (!newBackupParams.isIncremental)
+      {
+        return emptyMap();
+      }
+      final BackupInfo baseBackupInfo = newBackupParams.baseBackupInfo;
+      final File manifestFile = getBlockManifestFile(baseBackupInfo, getBackupPath());
+      if (!isBlockArchive(baseBackupInfo) || !manifestFile.exists())
+      {
+        logger.warn(WARN_BACKUP_INCREMENTAL_BASE_WITHOUT_BLOCKS, baseBackupInfo.getBackupID());
+        return emptyMap();
+      }
+
+      final CryptoEngine baseCryptoEngine = CryptoEngine.forRestore(baseBackupInfo);
+      try (InputStream input = baseCryptoEngine.encryptInput(new FileInputStream(manifestFile)))
+      {
+        return FileBlocks.toManifest(readAllLines(input));
+      }
+      catch (IOException e)
+      {
+        logger.traceException(e);
+        throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+            ERR_BACKUP_CANNOT_READ_BLOCK_MANIFEST.get(
+                manifestFile.getPath(), baseBackupInfo.getBackupID(), stackTraceToSingleLineString(e)), e);
+      }
+    }
+
     void updateBackupDirectory() throws DirectoryException
     {
       BackupInfo backupInfo = createDescriptorForBackup();
@@ -576,8 +643,7 @@ public class BackupManager
       byte[] bytes = cryptoEngine.generateBytes();
       byte[] digestBytes = cryptoEngine.hasSignedHash() ? null : bytes;
       byte[] macBytes = cryptoEngine.hasSignedHash() ? bytes : null;
-      newBackupParams.putProperty(PROPERTY_LAST_LOGFILE_NAME, latestFileName);
-      newBackupParams.putProperty(PROPERTY_LAST_LOGFILE_SIZE, String.valueOf(latestFileSize));
+      newBackupParams.putProperty(PROPERTY_ARCHIVE_FORMAT, ARCHIVE_FORMAT_BLOCKS);
       return new BackupInfo(
           newBackupParams.backupDir, newBackupParams.backupID, new Date(), newBackupParams.isIncremental,
           newBackupParams.shouldCompress, cryptoEngine.shouldEncrypt(), digestBytes, macBytes,
@@ -587,8 +653,7 @@ public class BackupManager
     @Override
     public String toString()
     {
-      return "NewArchive [archive file=" + archiveFilename + ", latestFileName=" + latestFileName
-          + ", backendID=" + backendID + "]";
+      return "NewArchive [archive file=" + archiveFilename + ", backendID=" + backendID + "]";
     }
   }
 
@@ -674,10 +739,138 @@ public class BackupManager
         throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(), message, e);
       }
 
+      new File(archiveFile.getPath() + BLOCK_MANIFEST_FILE_SUFFIX).delete();
       return archiveFile.delete();
     }
   }
 
+  /**
+   * Describes a backed up file as the list of the digests of its blocks.
+   * <p>
+   * A block archive ends with a manifest containing one line per file of the backup,
+   * in the form {@code <size> <last modified time> <comma separated digests> <relative path>}.
+   */
+  private static final class FileBlocks
+  {
+    private static final String NO_BLOCKS = "-";
+
+    private final String relativePath;
+    private final long lastModified;
+    private final List<String> digests;
+    private long size;
+
+    FileBlocks(String relativePath, long lastModified)
+    {
+      this(relativePath, 0, lastModified, new ArrayList<String>());
+    }
+
+    private FileBlocks(String relativePath, long size, long lastModified, List<String> digests)
+    {
+      this.relativePath = relativePath;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.digests = digests;
+    }
+
+    /** Appends a block to this file. */
+    void addBlock(String digest, int length)
+    {
+      digests.add(digest);
+      size += length;
+    }
+
+    /** Returns the digest of the block at the provided index, or {@code null} if there is no such block. */
+    String getDigest(int index)
+    {
+      return index < digests.size() ? digests.get(index) : null;
+    }
+
+    /** Indicates whether the file can be considered as unchanged, without reading its content. */
+    boolean isUnchanged(long fileSize, long fileLastModified)
+    {
+      return size == fileSize && lastModified == fileLastModified;
+    }
+
+    String toLine()
+    {
+      final String blocks = digests.isEmpty() ? NO_BLOCKS : Utils.joinAsString(",", digests);
+      return size + " " + lastModified + " " + blocks + " " + relativePath;
+    }
+
+    static FileBlocks valueOf(String line) throws IOException
+    {
+      final String[] fields = line.split(" ", 4);
+      if (fields.length != 4)
+      {
+        throw new IOException("Invalid line in block manifest: " + line);
+      }
+      try
+      {
+        final List<String> digests =
+            NO_BLOCKS.equals(fields[2]) ? new ArrayList<String>() : Arrays.asList(fields[2].split(","));
+        return new FileBlocks(fields[3], Long.parseLong(fields[0]), Long.parseLong(fields[1]), digests);
+      }
+      catch (NumberFormatException e)
+      {
+        throw new IOException("Invalid line in block manifest: " + line, e);
+      }
+    }
+
+    static List<String> toLines(List<FileBlocks> manifest)
+    {
+      final List<String> lines = new ArrayList<>(manifest.size());
+      for (FileBlocks fileBlocks : manifest)
+      {
+        lines.add(fileBlocks.toLine());
+      }
+      return lines;
+    }
+
+    static Map<String, FileBlocks> toManifest(List<String> lines) throws IOException
+    {
+      final Map<String, FileBlocks> manifest = new LinkedHashMap<>();
+      for (String line : lines)
+      {
+        final FileBlocks fileBlocks = valueOf(line);
+        manifest.put(fileBlocks.relativePath, fileBlocks);
+      }
+      return manifest;
+    }
+
+    @Override
+    public String toString()
+    {
+      return toLine();
+    }
+  }
+
+  /** A block of a file, digested and ready to be written to the archive. */
+  private static final class Block
+  {
+    private final FileBlocks file;
+    private final int index;
+    private final int length;
+    private final String digest;
+    /** The data to write in the archive, or {@code null} if the block is unchanged since the base backup. */
+    private final byte[] storedData;
+    private final long crc;
+
+    Block(FileBlocks file, int index, int length, String digest, byte[] storedData, long crc)
+    {
+      this.file = file;
+      this.index = index;
+      this.length = length;
+      this.digest = digest;
+      this.storedData = storedData;
+      this.crc = crc;
+    }
+
+    String getEntryName()
+    {
+      return file.relativePath + BLOCK_INDEX_SEPARATOR + index;
+    }
+  }
+
   /** Represents a writer of a backup archive. */
   private static final class BackupArchiveWriter implements Closeable {
     private final ZipOutputStream zipOutputStream;
@@ -697,46 +890,6 @@ public class BackupManager
       StaticUtils.close(zipOutputStream);
     }
 
-    /**
-     * Writes the provided file to a new entry in the archive.
-     *
-     * @param file
-     *          The file to be written.
-     * @param cryptoMethod
-     *          The cryptographic method for the written data.
-     * @param backupConfig
-     *          The configuration, used to know if operation is cancelled.
-     *
-     * @return The number of bytes written from the file.
-     * @throws FileNotFoundException If the file to be archived does not exist.
-     * @throws IOException If an I/O error occurs while archiving the file.
-     */
-    long writeFile(Path file, String relativePath, CryptoEngine cryptoMethod, BackupConfig backupConfig)
-         throws IOException, FileNotFoundException
-    {
-      ZipEntry zipEntry = new ZipEntry(relativePath);
-      zipOutputStream.putNextEntry(zipEntry);
-
-      cryptoMethod.updateHashWith(relativePath);
-
-      long totalBytesRead = 0;
-      try (InputStream inputStream = new FileInputStream(file.toFile())) {
-        byte[] buffer = new byte[8192];
-        int bytesRead = inputStream.read(buffer);
-        while (bytesRead > 0 && !backupConfig.isCancelled())
-        {
-          cryptoMethod.updateHashWith(buffer, 0, bytesRead);
-          zipOutputStream.write(buffer, 0, bytesRead);
-          totalBytesRead += bytesRead;
-          bytesRead = inputStream.read(buffer);
-        }
-      }
-
-      zipOutputStream.closeEntry();
-      logger.info(NOTE_BACKUP_ARCHIVED_FILE, zipEntry.getName());
-      return totalBytesRead;
-    }
-
     /**
      * Write a list of strings to an entry in the archive.
      *
@@ -769,101 +922,186 @@ public class BackupManager
       zipOutputStream.closeEntry();
     }
 
-    /** Writes a empty placeholder entry into the archive. */
-    void writeEmptyPlaceHolder() throws DirectoryException
+    /**
+     * Writes the provided files to the archive as blocks, which are digested and compressed in
+     * parallel, then written in order by the calling thread.
+     * <p>
+     * Blocks whose digest is equal to the digest of the same block in the base backup are not
+     * written, nor are the files whose size and modification time are unchanged since the base
+     * backup. The digests of all the blocks are listed in the manifest, which is the last entry
+     * of the archive.
+     *
+     * @return The manifest of the backup, describing all the backed up files.
+     */
+    List<FileBlocks> writeBlocks(Path rootDirectory, ListIterator<Path> files, Map<String, FileBlocks> baseManifest,
+        BackupConfig backupConfig) throws DirectoryException
     {
+      final List<FileBlocks> manifest = new ArrayList<>();
+      final Deque<Future<Block>> pendingBlocks = new ArrayDeque<>();
+      final ExecutorService executor = newBlockExecutor();
+      String relativePath = ZIPENTRY_BLOCK_MANIFEST;
       try
       {
-        ZipEntry emptyPlaceholder = new ZipEntry(ZIPENTRY_EMPTY_PLACEHOLDER);
-        zipOutputStream.putNextEntry(emptyPlaceholder);
+        while (files.hasNext() && !backupConfig.isCancelled())
+        {
+          final File file = files.next().toFile();
+          relativePath = rootDirectory.relativize(file.toPath()).toString();
+          final long lastModified = file.lastModified();
+          final FileBlocks baseBlocks = baseManifest.get(relativePath);
+          if (baseBlocks != null && baseBlocks.isUnchanged(file.length(), lastModified))
+          {
+            logger.info(NOTE_BACKUP_FILE_UNCHANGED, relativePath);
+            manifest.add(baseBlocks);
+            archive.addBaseBackupAsDependency();
+            continue;
+          }
+
+          final FileBlocks fileBlocks = new FileBlocks(relativePath, lastModified);
+          try (InputStream input = new FileInputStream(file))
+          {
+            byte[] data = readBlock(input);
+            for (int index = 0; data != null && !backupConfig.isCancelled(); index++)
+            {
+              final String baseDigest = baseBlocks != null ? baseBlocks.getDigest(index) : null;
+              pendingBlocks.add(executor.submit(new BlockCompressor(fileBlocks, index, data, baseDigest)));
+              writePendingBlocks(pendingBlocks, MAX_PENDING_BLOCKS);
+              data = readBlock(input);
+            }
+          }
+          catch (FileNotFoundException e)
+          {
+            // The file may have been deleted by a cleaner (i.e. for JE storage) since we started.
+            // The backupable entity is responsible for handling the changes through the files list iterator
+            logger.traceException(e);
+            continue;
+          }
+          manifest.add(fileBlocks);
+          logger.info(NOTE_BACKUP_ARCHIVED_FILE, relativePath);
+        }
+        writePendingBlocks(pendingBlocks, 0);
+
+        relativePath = ZIPENTRY_BLOCK_MANIFEST;
+        writeStrings(FileBlocks.toLines(manifest), ZIPENTRY_BLOCK_MANIFEST, cryptoEngine);
+        return manifest;
       }
-      catch (IOException e)
+      catch (IOException | InterruptedException | ExecutionException e)
       {
         logger.traceException(e);
         throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
-            ERR_BACKUP_CANNOT_WRITE_ARCHIVE_FILE.get(ZIPENTRY_EMPTY_PLACEHOLDER, archive.getBackupID(),
-                stackTraceToSingleLineString(e)),
-            e);
+             ERR_BACKUP_CANNOT_WRITE_ARCHIVE_FILE.get(relativePath, archive.getBackupID(),
+                 stackTraceToSingleLineString(e)), e);
       }
+      finally
+      {
+        executor.shutdownNow();
+      }
+    }
+
+    /** Writes the oldest pending blocks to the archive, until at most the provided number of blocks are pending. */
+    private void writePendingBlocks(Deque<Future<Block>> pendingBlocks, int maxPendingBlocks)
+        throws IOException, InterruptedException, ExecutionException
+    {
+      while (pendingBlocks.size() > maxPendingBlocks)
+      {
+        writeBlock(pendingBlocks.poll().get());
+      }
+    }
+
+    private void writeBlock(Block block) throws IOException
+    {
+      block.file.addBlock(block.digest, block.length);
+      if (block.storedData == null)
+      {
+        // unchanged since the base backup
+        archive.addBaseBackupAsDependency();
+        return;
+      }
+
+      final String entryName = block.getEntryName();
+      final ZipEntry zipEntry = new ZipEntry(entryName);
+      zipEntry.setMethod(ZipEntry.STORED);
+      zipEntry.setSize(block.storedData.length);
+      zipEntry.setCompressedSize(block.storedData.length);
+      zipEntry.setCrc(block.crc);
+      zipOutputStream.putNextEntry(zipEntry);
+      zipOutputStream.write(block.storedData);
+      zipOutputStream.closeEntry();
+
+      cryptoEngine.updateHashWith(entryName);
+      cryptoEngine.updateHashWith(block.digest);
     }
 
     /**
-     * Writes the files that are unchanged from the base backup (for an
-     * incremental backup only).
-     * <p>
-     * The unchanged files names are listed in the "unchanged.txt" file, which
-     * is put in the archive.
+     * Writes a copy of the manifest next to the archive file, so that a later incremental
+     * backup can compare its blocks without reading the whole archive.
      */
-    void writeUnchangedFiles(Path rootDirectory, ListIterator<Path> files, BackupConfig backupConfig)
-        throws DirectoryException
+    void writeBlockManifestFile(List<FileBlocks> manifest) throws DirectoryException
     {
-      List<String> unchangedFilenames = new ArrayList<>();
-      while (files.hasNext() && !backupConfig.isCancelled())
+      final File manifestFile = new File(archive.getBackupPath(), archive.getArchiveFilename()
+          + BLOCK_MANIFEST_FILE_SUFFIX);
+      try (Writer writer = new OutputStreamWriter(cryptoEngine.encryptOutput(new FileOutputStream(manifestFile))))
       {
-        Path file = files.next();
-        String relativePath = rootDirectory.relativize(file).toString();
-        int cmp = relativePath.compareTo(archive.latestFileName);
-        if (cmp > 0 || (cmp == 0 && file.toFile().length() != archive.latestFileSize))
+        for (String line : FileBlocks.toLines(manifest))
         {
-          files.previous();
-          break;
+          writer.write(line);
+          writer.write(EOL);
         }
-        logger.info(NOTE_BACKUP_FILE_UNCHANGED, relativePath);
-        unchangedFilenames.add(relativePath);
       }
-
-      if (!unchangedFilenames.isEmpty())
+      catch (IOException e)
       {
-        writeUnchangedFilenames(unchangedFilenames);
+        logger.traceException(e);
+        throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+            ERR_BACKUP_CANNOT_WRITE_ARCHIVE_FILE.get(manifestFile.getName(), archive.getBackupID(),
+                stackTraceToSingleLineString(e)), e);
       }
     }
 
-    /** Writes the list of unchanged files names in a file as new entry in the archive. */
-    private void writeUnchangedFilenames(List<String> unchangedList) throws DirectoryException
+    /** Reads the next block of the provided stream, or returns {@code null} if the end of stream is reached. */
+    private byte[] readBlock(InputStream input) throws IOException
     {
-      String zipEntryName = ZIPENTRY_UNCHANGED_LOGFILES;
-      try
+      final byte[] block = new byte[BLOCK_SIZE];
+      int length = 0;
+      int bytesRead;
+      while (length < BLOCK_SIZE && (bytesRead = input.read(block, length, BLOCK_SIZE - length)) > 0)
       {
-        writeStrings(unchangedList, zipEntryName, archive.cryptoEngine);
+        length += bytesRead;
       }
-      catch (IOException e)
+      if (length == 0)
       {
-        logger.traceException(e);
-        throw new DirectoryException(
-             DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
-             ERR_BACKUP_CANNOT_WRITE_ARCHIVE_FILE.get(zipEntryName, archive.getBackupID(),
-                 stackTraceToSingleLineString(e)), e);
+        return null;
       }
-      archive.addBaseBackupAsDependency();
+      return length == BLOCK_SIZE ? block : Arrays.copyOf(block, length);
     }
 
-    /** Writes the new files in the archive. */
-    void writeChangedFiles(Path rootDirectory, ListIterator<Path> files, BackupConfig backupConfig)
-        throws DirectoryException
+    /** Digests a block and compresses it if it has changed since the base backup. */
+    private final class BlockCompressor implements Callable<Block>
     {
-        while (files.hasNext() && !backupConfig.isCancelled())
+      private final FileBlocks file;
+      private final int index;
+      private final byte[] data;
+      private final String baseDigest;
+
+      BlockCompressor(FileBlocks file, int index, byte[] data, String baseDigest)
+      {
+        this.file = file;
+        this.index = index;
+        this.data = data;
+        this.baseDigest = baseDigest;
+      }
+
+      @Override
+      public Block call() throws Exception
+      {
+        final String digest = digestBlock(data);
+        if (digest.equals(baseDigest))
         {
-          Path file = files.next();
-          String relativePath = rootDirectory.relativize(file).toString();
-          try
-          {
-            archive.latestFileSize = writeFile(file, relativePath, archive.cryptoEngine, backupConfig);
-            archive.latestFileName = relativePath;
-          }
-          catch (FileNotFoundException e)
-          {
-            // The file may have been deleted by a cleaner (i.e. for JE storage) since we started.
-            // The backupable entity is responsible for handling the changes through the files list iterator
-            logger.traceException(e);
-          }
-          catch (IOException e)
-          {
-            logger.traceException(e);
-            throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
-                 ERR_BACKUP_CANNOT_WRITE_ARCHIVE_FILE.get(relativePath, archive.getBackupID(),
-                     stackTraceToSingleLineString(e)), e);
-          }
+          return new Block(file, index, data.length, digest, null, 0);
         }
+        final byte[] storedData = archive.newBackupParams.shouldCompress ? deflate(data) : data;
+        final CRC32 crc = new CRC32();
+        crc.update(storedData);
+        return new Block(file, index, data.length, digest, storedData, crc.getValue());
+      }
     }
 
     private ZipOutputStream open(String backupPath, String archiveFilename) throws DirectoryException
@@ -1015,11 +1253,220 @@ public class BackupManager
             ERR_BACKUP_CANNOT_RESTORE.get(identifier, stackTraceToSingleLineString(e)), e);
       }
 
-      // check the hash
+      checkHash();
+    }
+
+    private void checkHash() throws DirectoryException
+    {
       byte[] hash = backupInfo.getUnsignedHash() != null ? backupInfo.getUnsignedHash() : backupInfo.getSignedHash();
       cryptoEngine.check(hash, backupInfo.getBackupID());
     }
 
+    /**
+     * Restores a block archive, or only verifies it if the restore configuration requires so.
+     * <p>
+     * Blocks are read sequentially from the archive, then uncompressed, digested and written at
+     * their offset in parallel. The hash of the archive is updated in archive order.
+     * <p>
+     * Blocks that are not in the archive are expected to be already restored from the previous
+     * archives of the backup chain. Once all blocks are written, files are truncated to their
+     * backed up size and files that were removed since the previous archive are deleted.
+     *
+     * @param restoreDir
+     *          The target directory for restored files.
+     * @param previousManifest
+     *          The manifest of the previously restored archive of the chain, empty if this
+     *          archive is the first one.
+     * @param restoreConfig
+     *          The restore configuration, used to check for cancellation of this restore operation.
+     * @return The manifest of this archive.
+     * @throws DirectoryException
+     *          If an error occurs.
+     */
+    Map<String, FileBlocks> restoreBlocks(Path restoreDir, Map<String, FileBlocks> previousManifest,
+        RestoreConfig restoreConfig) throws DirectoryException
+    {
+      final boolean mustRestoreOnDisk = !restoreConfig.verifyOnly();
+      final Map<String, FileChannel> channels = new HashMap<>();
+      final Deque<Pair<String, Future<String>>> pendingBlocks = new ArrayDeque<>();
+      final ExecutorService executor = newBlockExecutor();
+      Map<String, FileBlocks> manifest = null;
+      try (ZipInputStream zipStream = openZipStream())
+      {
+        ZipEntry zipEntry = zipStream.getNextEntry();
+        while (zipEntry != null && !restoreConfig.isCancelled())
+        {
+          final String zipEntryName = zipEntry.getName();
+          if (ZIPENTRY_BLOCK_MANIFEST.equals(zipEntryName))
+          {
+            // Like "unchanged.txt", the hash is computed on the strings
+            checkPendingBlocks(pendingBlocks, 0);
+            cryptoEngine.updateHashWith(zipEntryName);
+            final List<String> lines = readAllLines(zipStream);
+            for (String line : lines)
+            {
+              cryptoEngine.updateHashWith(line);
+            }
+            manifest = FileBlocks.toManifest(lines);
+          }
+          else
+          {
+            final int separatorIndex = zipEntryName.lastIndexOf(BLOCK_INDEX_SEPARATOR);
+            final String relativePath = zipEntryName.substring(0, separatorIndex);
+            final long position = Long.parseLong(zipEntryName.substring(separatorIndex + 1)) * BLOCK_SIZE;
+            final FileChannel channel = mustRestoreOnDisk ? getChannel(channels, restoreDir, relativePath) : null;
+            final byte[] storedData = readEntry(zipStream);
+            pendingBlocks.add(Pair.of(zipEntryName, executor.submit(new BlockRestorer(storedData, channel, position))));
+            checkPendingBlocks(pendingBlocks, MAX_PENDING_BLOCKS);
+          }
+          zipEntry = zipStream.getNextEntry();
+        }
+        checkPendingBlocks(pendingBlocks, 0);
+      }
+      catch (IOException | InterruptedException | ExecutionException | NumberFormatException e)
+      {
+        logger.traceException(e);
+        throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+            ERR_BACKUP_CANNOT_RESTORE.get(identifier, stackTraceToSingleLineString(e)), e);
+      }
+      finally
+      {
+        executor.shutdownNow();
+        for (FileChannel channel : channels.values())
+        {
+          StaticUtils.close(channel);
+        }
+      }
+
+      if (restoreConfig.isCancelled())
+      {
+        return previousManifest;
+      }
+      if (manifest == null)
+      {
+        throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+            ERR_BACKUP_MISSING_BLOCK_MANIFEST.get(identifier));
+      }
+      if (mustRestoreOnDisk)
+      {
+        completeRestoredFiles(restoreDir, previousManifest, manifest);
+      }
+      checkHash();
+      return manifest;
+    }
+
+    /**
+     * Waits for the oldest pending blocks, until at most the provided number of blocks are pending,
+     * and updates the hash with their digest.
+     */
+    private void checkPendingBlocks(Deque<Pair<String, Future<String>>> pendingBlocks, int maxPendingBlocks)
+        throws InterruptedException, ExecutionException
+    {
+      while (pendingBlocks.size() > maxPendingBlocks)
+      {
+        final Pair<String, Future<String>> block = pendingBlocks.poll();
+        final String digest = block.getSecond().get();
+        cryptoEngine.updateHashWith(block.getFirst());
+        cryptoEngine.updateHashWith(digest);
+      }
+    }
+
+    private FileChannel getChannel(Map<String, FileChannel> channels, Path restoreDir, String relativePath)
+        throws IOException, DirectoryException
+    {
+      FileChannel channel = channels.get(relativePath);
+      if (channel == null)
+      {
+        final Path fileToRestore = restoreDir.resolve(relativePath);
+        ensureFileCanBeRestored(fileToRestore);
+        channel = FileChannel.open(fileToRestore, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channels.put(relativePath, channel);
+      }
+      return channel;
+    }
+
+    /** Sets restored files to their backed up size and removes the files which no longer belong to the backup. */
+    private void completeRestoredFiles(Path restoreDir, Map<String, FileBlocks> previousManifest,
+        Map<String, FileBlocks> manifest) throws DirectoryException
+    {
+      String relativePath = null;
+      try
+      {
+        for (FileBlocks fileBlocks : manifest.values())
+        {
+          relativePath = fileBlocks.relativePath;
+          final Path fileToRestore = restoreDir.resolve(relativePath);
+          ensureFileCanBeRestored(fileToRestore);
+          try (FileChannel channel =
+              FileChannel.open(fileToRestore, StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+          {
+            if (channel.size() > fileBlocks.size)
+            {
+              channel.truncate(fileBlocks.size);
+            }
+          }
+          logger.info(NOTE_BACKUP_RESTORED_FILE, relativePath, fileBlocks.size);
+        }
+        for (String previousPath : previousManifest.keySet())
+        {
+          if (!manifest.containsKey(previousPath))
+          {
+            relativePath = previousPath;
+            Files.deleteIfExists(restoreDir.resolve(previousPath));
+          }
+        }
+      }
+      catch (IOException e)
+      {
+        logger.traceException(e);
+        throw new DirectoryException(DirectoryServer.getCoreConfigManager().getServerErrorResultCode(),
+            ERR_BACKUP_CANNOT_RESTORE.get(identifier, stackTraceToSingleLineString(e)), e);
+      }
+    }
+
+    private byte[] readEntry(ZipInputStream zipStream) throws IOException
+    {
+      final ByteArrayOutputStream output = new ByteArrayOutputStream(BLOCK_SIZE);
+      final byte[] buffer = new byte[8192];
+      int bytesRead;
+      while ((bytesRead = zipStream.read(buffer)) > 0)
+      {
+        output.write(buffer, 0, bytesRead);
+      }
+      return output.toByteArray();
+    }
+
+    /** Uncompresses and digests a block, and writes it to its file if required. */
+    private final class BlockRestorer implements Callable<String>
+    {
+      private final byte[] storedData;
+      private final FileChannel channel;
+      private final long position;
+
+      BlockRestorer(byte[] storedData, FileChannel channel, long position)
+      {
+        this.storedData = storedData;
+        this.channel = channel;
+        this.position = position;
+      }
+
+      @Override
+      public String call() throws Exception
+      {
+        final byte[] data = backupInfo.isCompressed() ? inflate(storedData) : storedData;
+        if (channel != null)
+        {
+          final ByteBuffer buffer = ByteBuffer.wrap(data);
+          long writePosition = position;
+          while (buffer.hasRemaining())
+          {
+            writePosition += channel.write(buffer, writePosition);
+          }
+        }
+        return digestBlock(data);
+      }
+    }
+
     private void restoreArchive0(Path restoreDir, Set<String> filesToRestore, RestoreConfig restoreConfig)
         throws DirectoryException, IOException
     {
@@ -1173,18 +1620,6 @@ public class BackupManager
       inputStream = cryptoEngine.encryptInput(inputStream);
       return new ZipInputStream(inputStream);
     }
-
-    private List<String> readAllLines(ZipInputStream zipStream) throws IOException
-    {
-      final ArrayList<String> results = new ArrayList<>();
-      String line;
-      BufferedReader reader = new BufferedReader(new InputStreamReader(zipStream));
-      while ((line = reader.readLine()) != null)
-      {
-        results.add(line);
-      }
-      return results;
-    }
   }
 
   /**
@@ -1192,10 +1627,14 @@ public class BackupManager
    * <p>
    * The backup is stored in a single zip file in the backup directory.
    * <p>
-   * If the backup is incremental, then the first entry in the zip is a text
-   * file containing a list of all the log files that are unchanged since the
-   * previous backup. The remaining zip entries are the log files themselves,
-   * which, for an incremental, only include those files that have changed.
+   * Each file is split in blocks which are digested and compressed in parallel,
+   * and stored as one zip entry per block. The last entry of the zip is a text
+   * file listing all the backed up files with the digests of their blocks, a
+   * copy of which is kept next to the zip file.
+   * <p>
+   * If the backup is incremental, only the blocks whose digest differs from the
+   * one recorded by the base backup are stored, so that files modified in place
+   * (e.g. database volumes) do not need to be archived again entirely.
    *
    * @param backupable
    *          The underlying entity (storage, backend) to be backed up.
@@ -1210,20 +1649,13 @@ public class BackupManager
     final CryptoEngine cryptoEngine = CryptoEngine.forCreation(backupConfig, backupParams);
     final NewBackupArchive newArchive = new NewBackupArchive(backendID, backupParams, cryptoEngine);
 
+    final Map<String, FileBlocks> baseManifest = newArchive.readBaseBlockManifest();
     final ListIterator<Path> files = backupable.getFilesToBackup();
     final Path rootDirectory = backupable.getDirectory().toPath();
     try (BackupArchiveWriter archiveWriter = new BackupArchiveWriter(newArchive))
     {
-      if (files.hasNext())
-      {
-        if (backupParams.isIncremental) {
-          archiveWriter.writeUnchangedFiles(rootDirectory, files, backupConfig);
-        }
-        archiveWriter.writeChangedFiles(rootDirectory, files, backupConfig);
-      }
-      else {
-        archiveWriter.writeEmptyPlaceHolder();
-      }
+      List<FileBlocks> manifest = archiveWriter.writeBlocks(rootDirectory, files, baseManifest, backupConfig);
+      archiveWriter.writeBlockManifestFile(manifest);
     }
     catch (IOException e)
     {
@@ -1265,6 +1697,16 @@ public class BackupManager
         new ExistingBackupArchive(backupID, restoreConfig.getBackupDirectory());
     final Path restoreDirectory = getRestoreDirectory(backupable, backupID);
 
+    if (isBlockArchive(existingArchive.getBackupInfo()))
+    {
+      restoreBlockArchives(restoreDirectory, restoreConfig, existingArchive);
+      if (!restoreConfig.verifyOnly())
+      {
+        backupable.afterRestore(restoreDirectory, saveDirectory);
+      }
+      return;
+    }
+
     if (existingArchive.hasDependencies())
     {
       final BackupArchiveReader zipArchiveReader = new BackupArchiveReader(backupID, existingArchive);
@@ -1370,6 +1812,101 @@ public class BackupManager
     zipArchiveReader.restoreArchive(restoreDir, filesToRestore, restoreConfig, backupable);
   }
 
+  /** Indicates whether the archive of the provided backup uses the block format. */
+  private static boolean isBlockArchive(BackupInfo backupInfo)
+  {
+    return ARCHIVE_FORMAT_BLOCKS.equals(backupInfo.getBackupProperties().get(PROPERTY_ARCHIVE_FORMAT));
+  }
+
+  /** Retrieves the full path of the copy of the block manifest of the provided backup. */
+  private static File getBlockManifestFile(BackupInfo backupInfo, String backupDirectoryPath)
+  {
+    return new File(retrieveArchiveFile(backupInfo, backupDirectoryPath).getPath() + BLOCK_MANIFEST_FILE_SUFFIX);
+  }
+
+  private static ExecutorService newBlockExecutor()
+  {
+    return Executors.newFixedThreadPool(BLOCK_THREAD_COUNT, Utils.newThreadFactory(null, BLOCK_THREAD_NAME, true));
+  }
+
+  private static String digestBlock(byte[] data) throws Exception
+  {
+    return bytesToHexNoSpace(MessageDigest.getInstance(BLOCK_DIGEST_ALGORITHM).digest(data));
+  }
+
+  private static byte[] deflate(byte[] data)
+  {
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    try
+    {
+      deflater.setInput(data);
+      deflater.finish();
+      final ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2);
+      final byte[] buffer = new byte[8192];
+      while (!deflater.finished())
+      {
+        output.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return output.toByteArray();
+    }
+    finally
+    {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] data) throws DataFormatException
+  {
+    final Inflater inflater = new Inflater();
+    try
+    {
+      inflater.setInput(data);
+      final ByteArrayOutputStream output = new ByteArrayOutputStream(BLOCK_SIZE);
+      final byte[] buffer = new byte[8192];
+      while (!inflater.finished())
+      {
+        final int length = inflater.inflate(buffer);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+        {
+          throw new DataFormatException("Truncated block");
+        }
+        output.write(buffer, 0, length);
+      }
+      return output.toByteArray();
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
+  private static List<String> readAllLines(InputStream input) throws IOException
+  {
+    final ArrayList<String> results = new ArrayList<>();
+    String line;
+    BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+    while ((line = reader.readLine()) != null)
+    {
+      results.add(line);
+    }
+    return results;
+  }
+
+  /** Restores the archives of the backup chain, from the full backup to the provided archive. */
+  private void restoreBlockArchives(Path restoreDir, RestoreConfig restoreConfig, ExistingBackupArchive archive)
+      throws DirectoryException
+  {
+    final String backupDirectoryPath = restoreConfig.getBackupDirectory().getPath();
+    Map<String, FileBlocks> manifest = emptyMap();
+    for (BackupInfo dependencyBackupInfo : archive.getBackupDependencies())
+    {
+      BackupArchiveReader zipArchiveReader =
+          new BackupArchiveReader(dependencyBackupInfo.getBackupID(), dependencyBackupInfo, backupDirectoryPath);
+      manifest = zipArchiveReader.restoreBlocks(restoreDir, manifest, restoreConfig);
+    }
+    new BackupArchiveReader(restoreConfig.getBackupID(), archive).restoreBlocks(restoreDir, manifest, restoreConfig);
+  }
+
   /** Retrieves the full path of the archive file. */
   private static File retrieveArchiveFile(BackupInfo backupInfo, String backupDirectoryPath)
   {
@@ -20,6 +20,7 @@ import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.config.ConfigConstants.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.types.AbstractOperation.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.CollectionUtils.*;
 import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
@@ -173,7 +174,18 @@ public class LocalBackendAddOperation
       else if (executePostOpPlugins.get())
       {
         // FIXME -- Should this also be done while holding the locks?
-        if (!processOperationResult(this, getPluginConfigManager().invokePostOperationAddPlugins(this)))
+        final long postOpStartTime = phaseStarted(this);
+        final boolean continueProcessing;
+        try
+        {
+          continueProcessing =
+              processOperationResult(this, getPluginConfigManager().invokePostOperationAddPlugins(this));
+        }
+        finally
+        {
+          phaseEnded(this, Phase.POST_OPERATION_PLUGINS, postOpStartTime);
+        }
+        if (!continueProcessing)
         {
           return;
         }
@@ -316,7 +328,15 @@ public class LocalBackendAddOperation
       Entry parentEntry = null;
       if (parentDN != null)
       {
-        parentEntry = DirectoryServer.getEntry(parentDN);
+        final long readStartTime = phaseStarted(this);
+        try
+        {
+          parentEntry = DirectoryServer.getEntry(parentDN);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.BACKEND, readStartTime);
+        }
 
         if (parentEntry == null)
         {
@@ -406,7 +426,17 @@ public class LocalBackendAddOperation
       // sensitive information to the client.
       try
       {
-        if (!getAccessControlHandler().isAllowed(this))
+        final long aciStartTime = phaseStarted(this);
+        final boolean isAllowed;
+        try
+        {
+          isAllowed = getAccessControlHandler().isAllowed(this);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.ACCESS_CONTROL, aciStartTime);
+        }
+        if (!isAllowed)
         {
           setResultCodeAndMessageNoInfoDisclosure(entryDN,
               ResultCode.INSUFFICIENT_ACCESS_RIGHTS,
@@ -429,7 +459,18 @@ public class LocalBackendAddOperation
       if (!isSynchronizationOperation())
       {
         executePostOpPlugins.set(true);
-        if (!processOperationResult(this, getPluginConfigManager().invokePreOperationAddPlugins(this)))
+        final long preOpStartTime = phaseStarted(this);
+        final boolean continueProcessing;
+        try
+        {
+          continueProcessing =
+              processOperationResult(this, getPluginConfigManager().invokePreOperationAddPlugins(this));
+        }
+        finally
+        {
+          phaseEnded(this, Phase.PRE_OPERATION_PLUGINS, preOpStartTime);
+        }
+        if (!continueProcessing)
         {
           return;
         }
@@ -462,7 +503,15 @@ public class LocalBackendAddOperation
           }
         }
 
-        backend.addEntry(entry, this);
+        final long backendStartTime = phaseStarted(this);
+        try
+        {
+          backend.addEntry(entry, this);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.BACKEND, backendStartTime);
+        }
       }
 
       LocalBackendWorkflowElement.addPostReadResponse(this, postReadRequest,
@@ -42,6 +42,7 @@ import org.opends.server.types.operation.PreOperationBindOperation;
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.config.ConfigConstants.*;
 import static org.opends.server.types.AbstractOperation.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.types.Privilege.*;
 import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
@@ -178,7 +179,15 @@ public class LocalBackendBindOperation
     // Invoke the post-operation bind plugins.
     if (executePostOpPlugins)
     {
-      processOperationResult(this, pluginConfigManager.invokePostOperationBindPlugins(this));
+      final long postOpStartTime = phaseStarted(this);
+      try
+      {
+        processOperationResult(this, pluginConfigManager.invokePostOperationBindPlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.POST_OPERATION_PLUGINS, postOpStartTime);
+      }
     }
 
     // Update the authentication information for the user.
@@ -245,7 +254,17 @@ public class LocalBackendBindOperation
     // pertinent to the operation. This includes any controls specified.
     try
     {
-      if (!AccessControlConfigManager.getInstance().getAccessControlHandler().isAllowed(this))
+      final long aciStartTime = phaseStarted(this);
+      final boolean isAllowed;
+      try
+      {
+        isAllowed = AccessControlConfigManager.getInstance().getAccessControlHandler().isAllowed(this);
+      }
+      finally
+      {
+        phaseEnded(this, Phase.ACCESS_CONTROL, aciStartTime);
+      }
+      if (!isAllowed)
       {
         setResultCode(ResultCode.INVALID_CREDENTIALS);
         setAuthFailureReason(ERR_BIND_AUTHZ_INSUFFICIENT_ACCESS_RIGHTS.get());
@@ -369,7 +388,15 @@ public class LocalBackendBindOperation
     Entry userEntry;
     try
     {
-      userEntry = backend.getEntry(bindDN);
+      final long readStartTime = phaseStarted(this);
+      try
+      {
+        userEntry = backend.getEntry(bindDN);
+      }
+      finally
+      {
+        phaseEnded(this, Phase.BACKEND, readStartTime);
+      }
     }
     catch (DirectoryException de)
     {
@@ -732,7 +759,17 @@ public class LocalBackendBindOperation
   private boolean invokePreOpPlugins()
   {
     executePostOpPlugins = true;
-    return processOperationResult(this, pluginConfigManager.invokePreOperationBindPlugins(this));
+    final long preOpStartTime = phaseStarted(this);
+    final boolean continueProcessing;
+    try
+    {
+      continueProcessing = processOperationResult(this, pluginConfigManager.invokePreOperationBindPlugins(this));
+    }
+    finally
+    {
+      phaseEnded(this, Phase.PRE_OPERATION_PLUGINS, preOpStartTime);
+    }
+    return continueProcessing;
   }
 
   /**
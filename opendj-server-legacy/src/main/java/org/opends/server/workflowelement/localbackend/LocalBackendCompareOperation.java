@@ -19,6 +19,7 @@ package org.opends.server.workflowelement.localbackend;
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.types.AbstractOperation.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.CollectionUtils.*;
 import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
@@ -129,7 +130,15 @@ public class LocalBackendCompareOperation
       // Invoke the post-operation compare plugins.
       if (executePostOpPlugins.get())
       {
-        processOperationResult(this, getPluginConfigManager().invokePostOperationComparePlugins(this));
+        final long postOpStartTime = phaseStarted(this);
+        try
+        {
+          processOperationResult(this, getPluginConfigManager().invokePostOperationComparePlugins(this));
+        }
+        finally
+        {
+          phaseEnded(this, Phase.POST_OPERATION_PLUGINS, postOpStartTime);
+        }
       }
     }
     finally
@@ -169,7 +178,15 @@ public class LocalBackendCompareOperation
       // Get the entry. If it does not exist, then fail.
       try
       {
-        entry = DirectoryServer.getEntry(entryDN);
+        final long readStartTime = phaseStarted(this);
+        try
+        {
+          entry = DirectoryServer.getEntry(entryDN);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.BACKEND, readStartTime);
+        }
         if (entry == null)
         {
           setResultCode(ResultCode.NO_SUCH_OBJECT);
@@ -205,7 +222,17 @@ public class LocalBackendCompareOperation
       // have already exposed sensitive information to the client.
       try
       {
-        if (!getAccessControlHandler().isAllowed(this))
+        final long aciStartTime = phaseStarted(this);
+        final boolean isAllowed;
+        try
+        {
+          isAllowed = getAccessControlHandler().isAllowed(this);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.ACCESS_CONTROL, aciStartTime);
+        }
+        if (!isAllowed)
         {
           setResultCodeAndMessageNoInfoDisclosure(entry, entryDN,
               ResultCode.INSUFFICIENT_ACCESS_RIGHTS,
@@ -226,7 +253,18 @@ public class LocalBackendCompareOperation
 
       // Invoke the pre-operation compare plugins.
       executePostOpPlugins.set(true);
-      if (!processOperationResult(this, getPluginConfigManager().invokePreOperationComparePlugins(this)))
+      final long preOpStartTime = phaseStarted(this);
+      final boolean continueProcessing;
+      try
+      {
+        continueProcessing =
+            processOperationResult(this, getPluginConfigManager().invokePreOperationComparePlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.PRE_OPERATION_PLUGINS, preOpStartTime);
+      }
+      if (!continueProcessing)
       {
         return;
       }
@@ -49,6 +49,7 @@ import org.opends.server.types.operation.PreOperationDeleteOperation;
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.types.AbstractOperation.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
@@ -146,7 +147,18 @@ public class LocalBackendDeleteOperation
       }
       else if (executePostOpPlugins.get())
       {
-        if (!processOperationResult(this, getPluginConfigManager().invokePostOperationDeletePlugins(this)))
+        final long postOpStartTime = phaseStarted(this);
+        final boolean continueProcessing;
+        try
+        {
+          continueProcessing =
+              processOperationResult(this, getPluginConfigManager().invokePostOperationDeletePlugins(this));
+        }
+        finally
+        {
+          phaseEnded(this, Phase.POST_OPERATION_PLUGINS, postOpStartTime);
+        }
+        if (!continueProcessing)
         {
           return;
         }
@@ -209,7 +221,15 @@ public class LocalBackendDeleteOperation
       }
 
       // Get the entry to delete. If it doesn't exist, then fail.
-      entry = backend.getEntry(entryDN);
+      final long readStartTime = phaseStarted(this);
+      try
+      {
+        entry = backend.getEntry(entryDN);
+      }
+      finally
+      {
+        phaseEnded(this, Phase.BACKEND, readStartTime);
+      }
       if (entry == null)
       {
         setResultCode(ResultCode.NO_SUCH_OBJECT);
@@ -238,7 +258,17 @@ public class LocalBackendDeleteOperation
       // have already exposed sensitive information to the client.
       try
       {
-        if (!getAccessControlHandler().isAllowed(this))
+        final long aciStartTime = phaseStarted(this);
+        final boolean isAllowed;
+        try
+        {
+          isAllowed = getAccessControlHandler().isAllowed(this);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.ACCESS_CONTROL, aciStartTime);
+        }
+        if (!isAllowed)
         {
           setResultCodeAndMessageNoInfoDisclosure(entry,
               ResultCode.INSUFFICIENT_ACCESS_RIGHTS,
@@ -261,7 +291,18 @@ public class LocalBackendDeleteOperation
       if (!isSynchronizationOperation())
       {
         executePostOpPlugins.set(true);
-        if (!processOperationResult(this, getPluginConfigManager().invokePreOperationDeletePlugins(this)))
+        final long preOpStartTime = phaseStarted(this);
+        final boolean continueProcessing;
+        try
+        {
+          continueProcessing =
+              processOperationResult(this, getPluginConfigManager().invokePreOperationDeletePlugins(this));
+        }
+        finally
+        {
+          phaseEnded(this, Phase.PRE_OPERATION_PLUGINS, preOpStartTime);
+        }
+        if (!continueProcessing)
         {
           return;
         }
@@ -295,7 +336,15 @@ public class LocalBackendDeleteOperation
         {
           return;
         }
-        backend.deleteEntry(entryDN, this);
+        final long backendStartTime = phaseStarted(this);
+        try
+        {
+          backend.deleteEntry(entryDN, this);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.BACKEND, backendStartTime);
+        }
       }
 
       LocalBackendWorkflowElement.addPreReadResponse(this, preReadRequest, entry);
@@ -61,6 +61,7 @@ import org.opends.server.types.operation.PreOperationModifyDNOperation;
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.types.AbstractOperation.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
@@ -186,7 +187,18 @@ public class LocalBackendModifyDNOperation
       }
       else if (executePostOpPlugins.get())
       {
-        if (!processOperationResult(this, getPluginConfigManager().invokePostOperationModifyDNPlugins(this)))
+        final long postOpStartTime = phaseStarted(this);
+        final boolean continueProcessing;
+        try
+        {
+          continueProcessing =
+              processOperationResult(this, getPluginConfigManager().invokePostOperationModifyDNPlugins(this));
+        }
+        finally
+        {
+          phaseEnded(this, Phase.POST_OPERATION_PLUGINS, postOpStartTime);
+        }
+        if (!continueProcessing)
         {
           return;
         }
@@ -328,7 +340,15 @@ public class LocalBackendModifyDNOperation
 
       // Get the current entry from the appropriate backend. If it doesn't
       // exist, then fail.
-      currentEntry = currentBackend.getEntry(entryDN);
+      final long readStartTime = phaseStarted(this);
+      try
+      {
+        currentEntry = currentBackend.getEntry(entryDN);
+      }
+      finally
+      {
+        phaseEnded(this, Phase.BACKEND, readStartTime);
+      }
 
       if (getOriginalEntry() == null)
       {
@@ -356,7 +376,17 @@ public class LocalBackendModifyDNOperation
       // to the client.
       try
       {
-        if (!getAccessControlHandler().isAllowed(this))
+        final long aciStartTime = phaseStarted(this);
+        final boolean isAllowed;
+        try
+        {
+          isAllowed = getAccessControlHandler().isAllowed(this);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.ACCESS_CONTROL, aciStartTime);
+        }
+        if (!isAllowed)
         {
           setResultCodeAndMessageNoInfoDisclosure(currentEntry, entryDN,
               ResultCode.INSUFFICIENT_ACCESS_RIGHTS,
@@ -406,7 +436,18 @@ public class LocalBackendModifyDNOperation
         int modCount = modifications.size();
 
         executePostOpPlugins.set(true);
-        if (!processOperationResult(this, getPluginConfigManager().invokePreOperationModifyDNPlugins(this)))
+        final long preOpStartTime = phaseStarted(this);
+        final boolean continueProcessing;
+        try
+        {
+          continueProcessing =
+              processOperationResult(this, getPluginConfigManager().invokePreOperationModifyDNPlugins(this));
+        }
+        finally
+        {
+          phaseEnded(this, Phase.PRE_OPERATION_PLUGINS, preOpStartTime);
+        }
+        if (!continueProcessing)
         {
           return;
         }
@@ -437,7 +478,15 @@ public class LocalBackendModifyDNOperation
         {
           return;
         }
-        currentBackend.renameEntry(entryDN, newEntry, this);
+        final long backendStartTime = phaseStarted(this);
+        try
+        {
+          currentBackend.renameEntry(entryDN, newEntry, this);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.BACKEND, backendStartTime);
+        }
       }
 
       // Attach the pre-read and/or post-read controls to the response if
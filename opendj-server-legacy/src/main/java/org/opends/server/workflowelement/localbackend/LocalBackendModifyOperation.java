@@ -84,6 +84,7 @@ import static org.opends.server.config.ConfigConstants.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.types.AbstractOperation.*;
 import static org.opends.server.types.AccountStatusNotificationType.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 import static org.opends.server.workflowelement.localbackend.LocalBackendWorkflowElement.*;
@@ -314,7 +315,18 @@ public class LocalBackendModifyOperation
     if (!isSynchronizationOperation())
     {
       preOperationPluginsExecuted = true;
-      if (!processOperationResult(this, getPluginConfigManager().invokePreOperationModifyPlugins(this)))
+      final long preOpStartTime = phaseStarted(this);
+      final boolean continueProcessing;
+      try
+      {
+        continueProcessing =
+            processOperationResult(this, getPluginConfigManager().invokePreOperationModifyPlugins(this));
+      }
+      finally
+      {
+        phaseEnded(this, Phase.PRE_OPERATION_PLUGINS, preOpStartTime);
+      }
+      if (!continueProcessing)
       {
         return false;
       }
@@ -333,7 +345,16 @@ public class LocalBackendModifyOperation
     }
     else if (preOperationPluginsExecuted)
     {
-      PostOperation result = getPluginConfigManager().invokePostOperationModifyPlugins(this);
+      final long postOpStartTime = phaseStarted(this);
+      PostOperation result;
+      try
+      {
+        result = getPluginConfigManager().invokePostOperationModifyPlugins(this);
+      }
+      finally
+      {
+        phaseEnded(this, Phase.POST_OPERATION_PLUGINS, postOpStartTime);
+      }
       if (!processOperationResult(this, result))
       {
         return;
@@ -385,7 +406,15 @@ public class LocalBackendModifyOperation
 
       checkIfCanceled(false);
 
-      currentEntry = backend.getEntry(entryDN);
+      final long readStartTime = phaseStarted(this);
+      try
+      {
+        currentEntry = backend.getEntry(entryDN);
+      }
+      finally
+      {
+        phaseEnded(this, Phase.BACKEND, readStartTime);
+      }
       if (currentEntry == null)
       {
         setResultCode(ResultCode.NO_SUCH_OBJECT);
@@ -489,7 +518,15 @@ public class LocalBackendModifyOperation
           return;
         }
 
-        backend.replaceEntry(currentEntry, modifiedEntry, this);
+        final long backendStartTime = phaseStarted(this);
+        try
+        {
+          backend.replaceEntry(currentEntry, modifiedEntry, this);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.BACKEND, backendStartTime);
+        }
 
         if (isAuthnManagedLocally())
         {
@@ -526,7 +563,17 @@ public class LocalBackendModifyOperation
   {
     try
     {
-      if (!getAccessControlHandler().isAllowed(this))
+      final long aciStartTime = phaseStarted(this);
+      final boolean isAllowed;
+      try
+      {
+        isAllowed = getAccessControlHandler().isAllowed(this);
+      }
+      finally
+      {
+        phaseEnded(this, Phase.ACCESS_CONTROL, aciStartTime);
+      }
+      if (!isAllowed)
       {
         setResultCodeAndMessageNoInfoDisclosure(modifiedEntry,
             ResultCode.INSUFFICIENT_ACCESS_RIGHTS,
@@ -35,6 +35,7 @@ import org.opends.server.types.operation.SearchReferenceSearchOperation;
 import static org.opends.messages.CoreMessages.*;
 import static org.opends.server.core.DirectoryServer.*;
 import static org.opends.server.types.AbstractOperation.*;
+import static org.opends.server.types.OperationPhaseTimes.*;
 import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 
@@ -106,7 +107,15 @@ public class LocalBackendSearchOperation
       // Invoke the post-operation search plugins.
       if (executePostOpPlugins.get())
       {
-        processOperationResult(this, getPluginConfigManager().invokePostOperationSearchPlugins(this));
+        final long postOpStartTime = phaseStarted(this);
+        try
+        {
+          processOperationResult(this, getPluginConfigManager().invokePostOperationSearchPlugins(this));
+        }
+        finally
+        {
+          phaseEnded(this, Phase.POST_OPERATION_PLUGINS, postOpStartTime);
+        }
       }
     }
     finally
@@ -150,7 +159,17 @@ public class LocalBackendSearchOperation
     // and any other controls specified.
     try
     {
-      if (!getAccessControlHandler().isAllowed(this))
+      final long aciStartTime = phaseStarted(this);
+      final boolean isAllowed;
+      try
+      {
+        isAllowed = getAccessControlHandler().isAllowed(this);
+      }
+      finally
+      {
+        phaseEnded(this, Phase.ACCESS_CONTROL, aciStartTime);
+      }
+      if (!isAllowed)
       {
         setResultCode(ResultCode.INSUFFICIENT_ACCESS_RIGHTS);
         appendErrorMessage(ERR_SEARCH_AUTHZ_INSUFFICIENT_ACCESS_RIGHTS.get(baseDN));
@@ -170,7 +189,17 @@ public class LocalBackendSearchOperation
 
     // Invoke the pre-operation search plugins.
     executePostOpPlugins.set(true);
-    if (!processOperationResult(this, getPluginConfigManager().invokePreOperationSearchPlugins(this)))
+    final long preOpStartTime = phaseStarted(this);
+    final boolean continueProcessing;
+    try
+    {
+      continueProcessing = processOperationResult(this, getPluginConfigManager().invokePreOperationSearchPlugins(this));
+    }
+    finally
+    {
+      phaseEnded(this, Phase.PRE_OPERATION_PLUGINS, preOpStartTime);
+    }
+    if (!continueProcessing)
     {
       return;
     }
@@ -221,7 +250,15 @@ public class LocalBackendSearchOperation
       if (processSearchNow)
       {
         // Process the search in the backend and all its subordinates.
-        backend.search(this);
+        final long backendStartTime = phaseStarted(this);
+        try
+        {
+          backend.search(this);
+        }
+        finally
+        {
+          phaseEnded(this, Phase.BACKEND, backendStartTime);
+        }
       }
     }
     catch (DirectoryException de)
@@ -299,7 +336,15 @@ public class LocalBackendSearchOperation
         Entry entry;
         try
         {
-          entry = DirectoryServer.getEntry(baseDN);
+          final long readStartTime = phaseStarted(this);
+          try
+          {
+            entry = DirectoryServer.getEntry(baseDN);
+          }
+          finally
+          {
+            phaseEnded(this, Phase.BACKEND, readStartTime);
+          }
         }
         catch (DirectoryException de)
         {
@@ -382,6 +382,33 @@ public class ConvertersTestCase extends DirectoryServerTestCase {
         assertThat(srvFilter.getAssertionValue().toString()).isEqualTo("bjensen");
     }
 
+    @DataProvider
+    public Object[][] sdkFilters() {
+        return new Object[][] {
+            { "(objectClass=*)" },
+            { "(CN=John Doe)" },
+            { "(commonName~=jon)" },
+            { "(uid>=a)" },
+            { "(uid<=z)" },
+            { "(description;lang-fr=\\28value\\29)" },
+            { "(cn=J*o*h*n)" },
+            { "(cn=*Doe)" },
+            { "(&(objectClass=person)(|(uid=jdoe)(!(cn=John*))))" },
+            { "(cn:caseExactMatch:=John Doe)" },
+            { "(:dn:2.5.13.5:=John)" },
+        };
+    }
+
+    /** Converting a SDK filter must give the same result as parsing its string representation. */
+    @Test(dataProvider = "sdkFilters", groups = { "needRunningServer" })
+    public final void testToSearchFilter(String filterString) throws Exception {
+        final org.opends.server.types.SearchFilter expected =
+                org.opends.server.types.SearchFilter.createFilterFromString(filterString);
+        final org.opends.server.types.SearchFilter actual = toSearchFilter(Filter.valueOf(filterString));
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual.toString()).isEqualTo(expected.toString());
+    }
+
     /**
      * Converts a SDK search result reference to a LDAP server search result
      * reference.
@@ -0,0 +1,238 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.inmemory;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.forgerock.opendj.ldap.ByteString.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.ReadOnlyStorageException;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class InMemoryStorageTest extends DirectoryServerTestCase
+{
+  private final TreeName treeName = new TreeName("dc=test", "test");
+  private InMemoryStorage storage;
+
+  @BeforeMethod
+  public void setUp()
+  {
+    storage = new InMemoryStorage("InMemoryStorageTest");
+    storage.open(AccessMode.READ_WRITE);
+  }
+
+  @Test
+  public void testFailedWriteIsRolledBack() throws Exception
+  {
+    put(valueOfUtf8("key"), valueOfUtf8("before"));
+    try
+    {
+      storage.write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          txn.put(treeName, valueOfUtf8("key"), valueOfUtf8("after"));
+          txn.put(treeName, valueOfUtf8("key"), valueOfUtf8("after again"));
+          txn.put(treeName, valueOfUtf8("other"), valueOfUtf8("value"));
+          throw new IllegalStateException();
+        }
+      });
+      failBecauseExceptionWasNotThrown(IllegalStateException.class);
+    }
+    catch (IllegalStateException expected)
+    {
+      // Nothing to do
+    }
+
+    assertThat(read(valueOfUtf8("key"))).isEqualTo(valueOfUtf8("before"));
+    assertThat(read(valueOfUtf8("other"))).isNull();
+    assertThat(readAll()).containsExactly(valueOfUtf8("key"));
+    assertThat(getRecordCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testDeletedRecordsAreNotVisible() throws Exception
+  {
+    for (int i = 0; i < 10; i++)
+    {
+      put(valueOfInt(i), valueOfUtf8("value" + i));
+    }
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        assertThat(txn.delete(treeName, valueOfInt(3))).isTrue();
+        assertThat(txn.delete(treeName, valueOfInt(3))).isFalse();
+        try (Cursor<ByteString, ByteString> cursor = txn.openCursor(treeName))
+        {
+          assertThat(cursor.positionToKey(valueOfInt(5))).isTrue();
+          cursor.delete();
+        }
+      }
+    });
+    // Let the next write transaction remove the deleted records
+    put(valueOfInt(20), valueOfUtf8("value20"));
+
+    assertThat(read(valueOfInt(3))).isNull();
+    assertThat(readAll()).containsExactly(valueOfInt(0), valueOfInt(1), valueOfInt(2), valueOfInt(4),
+        valueOfInt(6), valueOfInt(7), valueOfInt(8), valueOfInt(9), valueOfInt(20));
+    assertThat(getRecordCount()).isEqualTo(9);
+  }
+
+  @Test
+  public void testReadersDoNotSeeConcurrentWrites() throws Exception
+  {
+    put(valueOfUtf8("key"), valueOfUtf8("before"));
+
+    final CountDownLatch readStarted = new CountDownLatch(1);
+    final CountDownLatch writeDone = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try
+    {
+      final Future<List<ByteString>> valuesRead = executor.submit(new Callable<List<ByteString>>()
+      {
+        @Override
+        public List<ByteString> call() throws Exception
+        {
+          return storage.read(new ReadOperation<List<ByteString>>()
+          {
+            @Override
+            public List<ByteString> run(ReadableTransaction txn) throws Exception
+            {
+              readStarted.countDown();
+              writeDone.await();
+              final List<ByteString> values = new ArrayList<>();
+              values.add(txn.read(treeName, valueOfUtf8("key")));
+              values.add(txn.read(treeName, valueOfUtf8("new")));
+              return values;
+            }
+          });
+        }
+      });
+      readStarted.await();
+      // Several writes, so that the writer drops the versions no other reader can see
+      put(valueOfUtf8("key"), valueOfUtf8("after"));
+      put(valueOfUtf8("key"), valueOfUtf8("after again"));
+      put(valueOfUtf8("new"), valueOfUtf8("value"));
+      writeDone.countDown();
+
+      assertThat(valuesRead.get()).containsExactly(valueOfUtf8("before"), null);
+      assertThat(read(valueOfUtf8("key"))).isEqualTo(valueOfUtf8("after again"));
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testContentIsKeptUntilStorageFilesAreRemoved() throws Exception
+  {
+    put(valueOfUtf8("key"), valueOfUtf8("value"));
+
+    storage.close();
+    storage.open(AccessMode.READ_ONLY);
+    assertThat(storage.listTrees()).containsOnly(treeName);
+    assertThat(read(valueOfUtf8("key"))).isEqualTo(valueOfUtf8("value"));
+
+    storage.removeStorageFiles();
+    assertThat(storage.listTrees()).isEmpty();
+  }
+
+  @Test(expectedExceptions = ReadOnlyStorageException.class)
+  public void testReadOnly() throws Exception
+  {
+    storage.close();
+    storage.open(AccessMode.READ_ONLY);
+    put(valueOfUtf8("key"), valueOfUtf8("value"));
+  }
+
+  private void put(final ByteString key, final ByteString value) throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        txn.put(treeName, key, value);
+      }
+    });
+  }
+
+  private ByteString read(final ByteString key) throws Exception
+  {
+    return storage.read(new ReadOperation<ByteString>()
+    {
+      @Override
+      public ByteString run(ReadableTransaction txn) throws Exception
+      {
+        return txn.read(treeName, key);
+      }
+    });
+  }
+
+  private List<ByteString> readAll() throws Exception
+  {
+    return storage.read(new ReadOperation<List<ByteString>>()
+    {
+      @Override
+      public List<ByteString> run(ReadableTransaction txn) throws Exception
+      {
+        final List<ByteString> keys = new ArrayList<>();
+        try (Cursor<ByteString, ByteString> cursor = txn.openCursor(treeName))
+        {
+          while (cursor.next())
+          {
+            keys.add(cursor.getKey());
+          }
+        }
+        return keys;
+      }
+    });
+  }
+
+  private long getRecordCount() throws Exception
+  {
+    return storage.read(new ReadOperation<Long>()
+    {
+      @Override
+      public Long run(ReadableTransaction txn) throws Exception
+      {
+        return txn.getRecordCount(treeName);
+      }
+    });
+  }
+}
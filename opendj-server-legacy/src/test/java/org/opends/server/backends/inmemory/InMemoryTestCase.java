@@ -0,0 +1,55 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.inmemory;
+
+import static org.mockito.Mockito.when;
+import static org.forgerock.opendj.config.ConfigurationMock.mockCfg;
+import static org.testng.Assert.assertFalse;
+
+import org.forgerock.opendj.server.config.server.InMemoryBackendCfg;
+import org.opends.server.backends.pluggable.PluggableBackendImplTestCase;
+import org.opends.server.types.BackupConfig;
+import org.opends.server.types.DirectoryException;
+import org.testng.annotations.Test;
+
+/** {@link InMemoryBackend} Tester. */
+@Test
+public class InMemoryTestCase extends PluggableBackendImplTestCase<InMemoryBackendCfg>
+{
+  @Override
+  protected InMemoryBackend createBackend()
+  {
+    return new InMemoryBackend();
+  }
+
+  @Override
+  protected InMemoryBackendCfg createBackendCfg()
+  {
+    InMemoryBackendCfg backendCfg = mockCfg(InMemoryBackendCfg.class);
+    when(backendCfg.getBackendId()).thenReturn("InMemoryTestCase");
+    return backendCfg;
+  }
+
+  /** The content of an in-memory backend can only be saved as LDIF. */
+  @Override
+  @Test(expectedExceptions = DirectoryException.class)
+  public void testBackupAndRestore() throws Exception
+  {
+    final InMemoryStorage storage = new InMemoryStorage("InMemoryTestCase");
+    assertFalse(storage.supportsBackupAndRestore());
+    storage.createBackup(new BackupConfig(null, "backupID", false));
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.forgerock.opendj.config.ConfigurationMock.*;
+import static org.opends.server.util.StaticUtils.*;
+import static org.forgerock.opendj.ldap.ByteString.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.server.config.server.MmapBackendCfg;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.core.ServerContext;
+import org.opends.server.extensions.DiskSpaceMonitor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class MmapStorageTest extends DirectoryServerTestCase
+{
+  private final TreeName treeName = new TreeName("dc=test", "test");
+  private ServerContext serverContext;
+  private MmapStorage storage;
+
+  @BeforeClass
+  public static void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception
+  {
+    serverContext = mock(ServerContext.class);
+    when(serverContext.getDiskSpaceMonitor()).thenReturn(mock(DiskSpaceMonitor.class));
+
+    storage = new MmapStorage(createBackendCfg(), serverContext);
+    storage.removeStorageFiles();
+    storage.open(AccessMode.READ_WRITE);
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    storage.close();
+  }
+
+  @Test
+  public void testCanAddLargeValues() throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        txn.openTree(treeName, true);
+        txn.put(treeName, valueOfUtf8("4mb"), valueOfBytes(new byte[4 * MB]));
+        txn.put(treeName, valueOfUtf8("32mb"), valueOfBytes(new byte[32 * MB]));
+        txn.put(treeName, valueOfUtf8("64mb"), valueOfBytes(new byte[64 * MB]));
+      }
+    });
+
+    assertThat(read(valueOfUtf8("32mb")).length()).isEqualTo(32 * MB);
+  }
+
+  @Test
+  public void testRecordsAreSortedAfterSplitsAndMerges() throws Exception
+  {
+    final TreeMap<ByteString, ByteString> expected = new TreeMap<>();
+    final Random random = new Random(0);
+    for (int i = 0; i < 20; i++)
+    {
+      storage.write(new WriteOperation()
+      {
+        @Override
+        public void run(WriteableTransaction txn) throws Exception
+        {
+          for (int j = 0; j < 1000; j++)
+          {
+            final ByteString key = valueOfInt(random.nextInt(10000));
+            if (random.nextInt(3) == 0)
+            {
+              assertThat(txn.delete(treeName, key)).isEqualTo(expected.remove(key) != null);
+            }
+            else
+            {
+              final ByteString value = valueOfBytes(new byte[random.nextInt(3000)]);
+              txn.put(treeName, key, value);
+              expected.put(key, value);
+            }
+          }
+        }
+      });
+    }
+
+    assertThat(readAll()).containsExactlyElementsOf(expected.keySet());
+    assertThat(getRecordCount()).isEqualTo(expected.size());
+  }
+
+  @Test
+  public void testRecordsArePersistent() throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        txn.openTree(treeName, true);
+        for (int i = 0; i < 10000; i++)
+        {
+          txn.put(treeName, valueOfInt(i), valueOfUtf8("value" + i));
+        }
+      }
+    });
+
+    storage.close();
+    storage = new MmapStorage(createBackendCfg(), serverContext);
+    storage.open(AccessMode.READ_ONLY);
+
+    assertThat(storage.listTrees()).containsOnly(treeName);
+    assertThat(getRecordCount()).isEqualTo(10000);
+    assertThat(read(valueOfInt(1234))).isEqualTo(valueOfUtf8("value1234"));
+  }
+
+  @Test
+  public void testReadersDoNotSeeConcurrentWrites() throws Exception
+  {
+    put(valueOfUtf8("key"), valueOfUtf8("before"));
+
+    final CountDownLatch readStarted = new CountDownLatch(1);
+    final CountDownLatch writeDone = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try
+    {
+      final Future<ByteString> valueRead = executor.submit(new Callable<ByteString>()
+      {
+        @Override
+        public ByteString call() throws Exception
+        {
+          return storage.read(new ReadOperation<ByteString>()
+          {
+            @Override
+            public ByteString run(ReadableTransaction txn) throws Exception
+            {
+              readStarted.countDown();
+              writeDone.await();
+              return txn.read(treeName, valueOfUtf8("key"));
+            }
+          });
+        }
+      });
+      readStarted.await();
+      put(valueOfUtf8("key"), valueOfUtf8("after"));
+      writeDone.countDown();
+
+      assertThat(valueRead.get()).isEqualTo(valueOfUtf8("before"));
+      assertThat(read(valueOfUtf8("key"))).isEqualTo(valueOfUtf8("after"));
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testPagesFreedDuringTheFreePagesScanAreNotAllocatedTwice() throws Exception
+  {
+    final File dbDirectory = TestCaseUtils.createTemporaryDirectory("MmapStorageTest");
+    final File dbFile = new File(dbDirectory, "test.db");
+    try
+    {
+      Database db = new Database("MmapStorageTest", dbFile, true);
+      try
+      {
+        WriteTxn txn = db.beginWrite();
+        txn.openTree(treeName, true);
+        for (int i = 0; i < 20000; i++)
+        {
+          txn.put(treeName, valueOfInt(i), valueOfBytes(new byte[100]));
+        }
+        db.commit(txn, true);
+        // The free pages are not persisted, they will be found by the scan when the file is reopened
+        txn = db.beginWrite();
+        for (int i = 0; i < 10000; i++)
+        {
+          txn.delete(treeName, valueOfInt(i));
+        }
+        db.commit(txn, true);
+      }
+      finally
+      {
+        db.close();
+      }
+
+      db = new Database("MmapStorageTest", dbFile, true);
+      try
+      {
+        // Free more pages while the scan started by opening the file is running
+        for (int i = 10000; i < 20000; i += 1000)
+        {
+          final WriteTxn txn = db.beginWrite();
+          for (int j = i; j < i + 500; j++)
+          {
+            txn.delete(treeName, valueOfInt(j));
+          }
+          db.commit(txn, true);
+        }
+        db.awaitFreePagesScan();
+
+        final WriteTxn txn = db.beginWrite();
+        try
+        {
+          final Set<Long> allocatedPages = new HashSet<>();
+          for (;;)
+          {
+            final long nextPage = db.getNextPage();
+            final long page = db.allocate(1);
+            if (page == nextPage)
+            {
+              break;
+            }
+            assertThat(allocatedPages.add(page)).as("page " + page + " allocated twice").isTrue();
+          }
+          assertThat(allocatedPages).isNotEmpty();
+        }
+        finally
+        {
+          db.abort(txn);
+        }
+      }
+      finally
+      {
+        db.close();
+      }
+    }
+    finally
+    {
+      TestCaseUtils.deleteDirectory(dbDirectory);
+    }
+  }
+
+  private void put(final ByteString key, final ByteString value) throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        txn.put(treeName, key, value);
+      }
+    });
+  }
+
+  private ByteString read(final ByteString key) throws Exception
+  {
+    return storage.read(new ReadOperation<ByteString>()
+    {
+      @Override
+      public ByteString run(ReadableTransaction txn) throws Exception
+      {
+        return txn.read(treeName, key);
+      }
+    });
+  }
+
+  private long getRecordCount() throws Exception
+  {
+    return storage.read(new ReadOperation<Long>()
+    {
+      @Override
+      public Long run(ReadableTransaction txn) throws Exception
+      {
+        return txn.getRecordCount(treeName);
+      }
+    });
+  }
+
+  private List<ByteString> readAll() throws Exception
+  {
+    return storage.read(new ReadOperation<List<ByteString>>()
+    {
+      @Override
+      public List<ByteString> run(ReadableTransaction txn) throws Exception
+      {
+        final List<ByteString> keys = new ArrayList<>();
+        try (Cursor<ByteString, ByteString> cursor = txn.openCursor(treeName))
+        {
+          while (cursor.next())
+          {
+            keys.add(cursor.getKey());
+          }
+        }
+        return keys;
+      }
+    });
+  }
+
+  private MmapBackendCfg createBackendCfg()
+  {
+    MmapBackendCfg backendCfg = mockCfg(MmapBackendCfg.class);
+    when(backendCfg.getBackendId()).thenReturn("MmapStorageTest");
+    when(backendCfg.getDBDirectory()).thenReturn("MmapStorageTest");
+    when(backendCfg.getDBDirectoryPermissions()).thenReturn("755");
+    return backendCfg;
+  }
+}
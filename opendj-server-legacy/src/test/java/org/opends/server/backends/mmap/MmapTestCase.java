@@ -0,0 +1,44 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.mmap;
+
+import static org.mockito.Mockito.when;
+import static org.forgerock.opendj.config.ConfigurationMock.mockCfg;
+
+import org.forgerock.opendj.server.config.server.MmapBackendCfg;
+import org.opends.server.backends.pluggable.PluggableBackendImplTestCase;
+import org.testng.annotations.Test;
+
+/** {@link MmapBackend} Tester. */
+@Test
+public class MmapTestCase extends PluggableBackendImplTestCase<MmapBackendCfg>
+{
+  @Override
+  protected MmapBackend createBackend()
+  {
+    return new MmapBackend();
+  }
+
+  @Override
+  protected MmapBackendCfg createBackendCfg()
+  {
+    MmapBackendCfg backendCfg = mockCfg(MmapBackendCfg.class);
+    when(backendCfg.getBackendId()).thenReturn("MmapTestCase");
+    when(backendCfg.getDBDirectory()).thenReturn("MmapTestCase");
+    when(backendCfg.getDBDirectoryPermissions()).thenReturn("755");
+    return backendCfg;
+  }
+}
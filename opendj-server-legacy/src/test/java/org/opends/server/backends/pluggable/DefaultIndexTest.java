@@ -98,6 +98,36 @@ public class DefaultIndexTest extends DirectoryServerTestCase
     assertThat(txn.read(index.getName(), valueOfUtf8("key"))).isNull();
   }
 
+  @Test
+  public void testUntrustedIndexIgnoresAddedIDsForMissingKey() {
+    index = newIndex("untrusted", 5, EnumSet.of(COMPACTED));
+    index.open(txn, true);
+    update(newDefinedSet(), newDefinedSet(1, 2));
+
+    assertThat(getFromDb()).isNull();
+  }
+
+  @Test
+  public void testRebuildingIndexAddsIDsForMissingKey() {
+    index = newIndex("rebuilding", 5, EnumSet.of(COMPACTED));
+    index.open(txn, true);
+    index.setRebuilding(true);
+    update(newDefinedSet(), newDefinedSet(1, 2));
+
+    assertIdsEquals(get(), 1, 2);
+    assertThat(index.isTrusted()).isFalse();
+  }
+
+  @Test
+  public void testRebuildingIndexIgnoresDeletedIDsForMissingKey() {
+    index = newIndex("rebuilding", 5, EnumSet.of(COMPACTED));
+    index.open(txn, true);
+    index.setRebuilding(true);
+    update(newDefinedSet(1), newDefinedSet());
+
+    assertThat(getFromDb()).isNull();
+  }
+
   private void update(EntryIDSet deletedIDSet, EntryIDSet addedIDSet) {
     index.update(txn, valueOfUtf8("key"), deletedIDSet, addedIDSet);
   }
@@ -0,0 +1,52 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.backends.pluggable.OnlineIndexRebuilder.RateLimiter;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend" })
+public class OnlineIndexRebuilderTest extends DirectoryServerTestCase
+{
+  private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void testRateLimiterSpreadsReservations()
+  {
+    final RateLimiter limiter = new RateLimiter(100);
+    final long now = System.nanoTime() + ONE_SECOND;
+
+    assertThat(limiter.reserve(50, now)).isEqualTo(ONE_SECOND / 2);
+    assertThat(limiter.reserve(100, now)).isEqualTo(ONE_SECOND + ONE_SECOND / 2);
+  }
+
+  @Test
+  public void testRateLimiterDoesNotAccumulateIdleTime()
+  {
+    final RateLimiter limiter = new RateLimiter(100);
+    final long now = System.nanoTime() + ONE_SECOND;
+
+    assertThat(limiter.reserve(100, now)).isEqualTo(ONE_SECOND);
+    // Nothing was processed during the following ten seconds: no burst is allowed afterwards
+    assertThat(limiter.reserve(100, now + 10 * ONE_SECOND)).isEqualTo(ONE_SECOND);
+  }
+}
@@ -58,6 +58,7 @@ import org.opends.server.api.LocalBackend.BackendOperation;
 import org.opends.server.backends.RebuildConfig;
 import org.opends.server.backends.RebuildConfig.RebuildMode;
 import org.opends.server.backends.VerifyConfig;
+import org.opends.server.backends.pluggable.AttributeIndex.MatchingRuleIndex;
 import org.opends.server.backends.pluggable.spi.AccessMode;
 import org.opends.server.backends.pluggable.spi.ReadOnlyStorageException;
 import org.opends.server.backends.pluggable.spi.ReadOperation;
@@ -79,6 +80,7 @@ import org.opends.server.types.BackupConfig;
 import org.opends.server.types.BackupDirectory;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
+import org.opends.server.types.InitializationException;
 import org.opends.server.types.LDIFExportConfig;
 import org.opends.server.types.LDIFImportConfig;
 import org.opends.server.types.Modification;
@@ -1100,6 +1102,150 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     assertThat(backend.verifyBackend(config)).isEqualTo(0);
   }
 
+  @Test
+  public void testRebuildIndexOnline() throws Exception
+  {
+    final EntryContainer entryContainer =  backend.getRootContainer().getEntryContainers().iterator().next();
+
+    final Set<String> dirtyIndexes = new HashSet<>(Arrays.asList("sn", "uid"));
+    assertThat(backendIndexes.keySet()).containsAll(dirtyIndexes);
+    degradeIndexes(entryContainer, dirtyIndexes);
+
+    RebuildConfig rebuildConf = new RebuildConfig();
+    rebuildConf.setBaseDN(DN.valueOf("dc=test,dc=com"));
+    rebuildConf.setRebuildMode(RebuildMode.DEGRADED);
+    rebuildConf.setOnline(true);
+    rebuildConf.setMaxEntriesPerSecond(1000);
+
+    // The backend remains open
+    backend.rebuildBackend(rebuildConf, TestCaseUtils.getServerContext());
+
+    for (AttributeIndex attribute : entryContainer.getAttributeIndexes())
+    {
+      assertThat(attribute.isTrusted()).isTrue();
+    }
+
+    VerifyConfig config = new VerifyConfig();
+    config.setBaseDN(DN.valueOf("dc=test,dc=com"));
+    for (String indexName : dirtyIndexes)
+    {
+      config.addCompleteIndex(indexName);
+    }
+    assertThat(backend.verifyBackend(config)).isEqualTo(0);
+
+    config = new VerifyConfig();
+    config.setBaseDN(DN.valueOf("dc=test,dc=com"));
+    for (String indexName : dirtyIndexes)
+    {
+      config.addCleanIndex(indexName);
+    }
+    assertThat(backend.verifyBackend(config)).isEqualTo(0);
+  }
+
+  @Test
+  public void testRebuildIndexOnlineKeepsUpdatesRemovedByClear() throws Exception
+  {
+    final EntryContainer entryContainer = backend.getRootContainer().getEntryContainers().iterator().next();
+    final Set<String> dirtyIndexes = newHashSet("sn");
+    degradeIndexes(entryContainer, dirtyIndexes);
+
+    final OnlineIndexRebuilder rebuilder =
+        new OnlineIndexRebuilder(entryContainer, backend.getRootContainer().getStorage(), 2, 0);
+    final List<MatchingRuleIndex> indexes = rebuilder.selectIndexes(getIndexIds(entryContainer, dirtyIndexes));
+    rebuilder.startRebuilding(indexes);
+
+    // A write performed before the index is cleared adds a key which is then removed by the clear
+    final Entry oldEntry = backend.getEntry(workEntries.get(0).getName());
+    final Entry newEntry = replaceAttribute(oldEntry, "sn", "Concurrent");
+    try
+    {
+      for (MatchingRuleIndex index : indexes)
+      {
+        rebuilder.clear(index);
+      }
+      rebuilder.indexEntries(indexes, 0);
+      rebuilder.stopRebuilding(indexes, true);
+
+      final VerifyConfig config = new VerifyConfig();
+      config.setBaseDN(DN.valueOf("dc=test,dc=com"));
+      config.addCompleteIndex("sn");
+      config.addCleanIndex("sn");
+      assertThat(backend.verifyBackend(config)).isEqualTo(0);
+
+      final List<Entry> returnedEntries = new ArrayList<>();
+      backend.search(createSearchOperation(testBaseDN, SearchScope.WHOLE_SUBTREE, "(sn=Concurrent)", returnedEntries));
+      assertThat(returnedEntries).hasSize(1);
+    }
+    finally
+    {
+      replaceAttribute(newEntry, "sn", oldEntry.parseAttribute("sn").asString());
+    }
+  }
+
+  @Test(expectedExceptions = InitializationException.class)
+  public void testRebuildIndexOnlineRejectsTrustedIndexes() throws Exception
+  {
+    final EntryContainer entryContainer = backend.getRootContainer().getEntryContainers().iterator().next();
+    final OnlineIndexRebuilder rebuilder =
+        new OnlineIndexRebuilder(entryContainer, backend.getRootContainer().getStorage(), 2, 0);
+    final List<MatchingRuleIndex> indexes = rebuilder.selectIndexes(getIndexIds(entryContainer, newHashSet("uid")));
+    assertThat(indexes.get(0).isTrusted()).isTrue();
+
+    rebuilder.startRebuilding(indexes);
+  }
+
+  /** Marks the indexes of the provided attributes as untrusted and adds a key which does not match any entry. */
+  private void degradeIndexes(final EntryContainer entryContainer, final Set<String> attributeNames) throws Exception
+  {
+    backend.getRootContainer().getStorage().write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        for (AttributeIndex attribute : entryContainer.getAttributeIndexes())
+        {
+          if (attributeNames.contains(attribute.getAttributeType().getNameOrOID()))
+          {
+            for (Index idx : attribute.getNameToIndexes().values())
+            {
+              idx.setTrusted(txn, false);
+              txn.put(idx.getName(), ByteString.valueOfUtf8("stale"), EntryIDSet.CODEC_V2.encode(
+                  EntryIDSet.newDefinedSet(1)));
+            }
+          }
+        }
+      }
+    });
+  }
+
+  private Set<String> getIndexIds(EntryContainer entryContainer, Set<String> attributeNames)
+  {
+    final Set<String> indexIds = new HashSet<>();
+    for (AttributeIndex attribute : entryContainer.getAttributeIndexes())
+    {
+      if (attributeNames.contains(attribute.getAttributeType().getNameOrOID()))
+      {
+        for (Index idx : attribute.getNameToIndexes().values())
+        {
+          indexIds.add(idx.getName().getIndexId());
+        }
+      }
+    }
+    return indexIds;
+  }
+
+  private Entry replaceAttribute(Entry oldEntry, String attributeName, String value) throws Exception
+  {
+    final List<Modification> mods = Arrays.asList(new Modification(REPLACE, create(attributeName, value)));
+    final Entry newEntry = oldEntry.duplicate(false);
+    newEntry.applyModifications(mods);
+
+    final ModifyOperation modifyOp = mock(ModifyOperation.class);
+    when(modifyOp.getModifications()).thenReturn(mods);
+    backend.replaceEntry(oldEntry, newEntry, modifyOp);
+    return newEntry;
+  }
+
   @Test
   public void testVerifyID2ChildrenCount() throws Exception
   {
@@ -0,0 +1,323 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.forgerock.opendj.config.ConfigurationMock.*;
+import static org.mockito.Mockito.*;
+import static org.opends.server.util.CollectionUtils.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.server.config.server.PDBBackendCfg;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.backends.pdb.PDBStorage;
+import org.opends.server.backends.pluggable.spi.AccessMode;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.ReadOperation;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.WriteOperation;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.core.MemoryQuota;
+import org.opends.server.core.ServerContext;
+import org.opends.server.extensions.DiskSpaceMonitor;
+import org.opends.server.types.DirectoryException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend" }, sequential = true)
+public class VLVBlockIndexTest extends DirectoryServerTestCase
+{
+  private static final int MAX_BLOCK_SIZE = 16;
+  private static final ByteString AFTER_ALL_KEYS = new ByteStringBuilder().appendLong(-1).appendLong(-1).toByteString();
+
+  private final TreeName vlvTreeName = new TreeName("base-dn", "vlv.test");
+  private final TreeName blocksTreeName = new TreeName("base-dn", "blocks.vlv.test");
+  private final TreeSet<ByteString> expectedKeys = new TreeSet<>();
+  private final Random random = new Random(0);
+  private VLVBlockIndex blocks;
+  private PDBStorage storage;
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception
+  {
+    ServerContext serverContext = mock(ServerContext.class);
+    when(serverContext.getMemoryQuota()).thenReturn(new MemoryQuota());
+    when(serverContext.getDiskSpaceMonitor()).thenReturn(mock(DiskSpaceMonitor.class));
+
+    storage = new PDBStorage(createBackendCfg(), serverContext);
+    storage.open(AccessMode.READ_WRITE);
+    blocks = new VLVBlockIndex(blocksTreeName, MAX_BLOCK_SIZE);
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        txn.openTree(vlvTreeName, true);
+        blocks.open(txn, true);
+      }
+    });
+    expectedKeys.clear();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    storage.close();
+    storage.removeStorageFiles();
+  }
+
+  @Test
+  public void testPositionsWhenNotBuilt() throws Exception
+  {
+    for (int i = 0; i < 100; i++)
+    {
+      putWithoutBlocks(randomKey());
+    }
+    assertThat(isBuilt()).isFalse();
+    assertPositions();
+  }
+
+  @Test
+  public void testBuild() throws Exception
+  {
+    for (int i = 0; i < 500; i++)
+    {
+      putWithoutBlocks(randomKey());
+    }
+    build();
+    assertThat(isBuilt()).isTrue();
+    assertPositions();
+  }
+
+  @Test
+  public void testBuildEmpty() throws Exception
+  {
+    build();
+    assertPositions();
+    add(randomKey());
+    assertPositions();
+  }
+
+  @Test
+  public void testAddSplitsBlocks() throws Exception
+  {
+    build();
+    for (int i = 0; i < 1000; i++)
+    {
+      add(randomKey());
+    }
+    assertThat(getNbBlocks()).isGreaterThanOrEqualTo(1000 / MAX_BLOCK_SIZE);
+    assertPositions();
+  }
+
+  @Test
+  public void testAddAscendingKeys() throws Exception
+  {
+    build();
+    for (long i = 0; i < 500; i++)
+    {
+      add(ByteString.valueOfLong(i));
+    }
+    assertPositions();
+  }
+
+  @Test
+  public void testDeleteRemovesEmptyBlocks() throws Exception
+  {
+    build();
+    for (int i = 0; i < 1000; i++)
+    {
+      add(randomKey());
+    }
+    final int nbBlocks = getNbBlocks();
+    final List<ByteString> keys = new ArrayList<>(expectedKeys);
+    for (int i = 0; i < keys.size(); i += 2)
+    {
+      delete(keys.get(i));
+    }
+    assertPositions();
+
+    for (ByteString key : keys.subList(0, keys.size() / 2))
+    {
+      if (expectedKeys.contains(key))
+      {
+        delete(key);
+      }
+    }
+    assertThat(getNbBlocks()).isLessThan(nbBlocks);
+    assertPositions();
+  }
+
+  private ByteString randomKey()
+  {
+    ByteString key;
+    do
+    {
+      key = ByteString.valueOfLong(random.nextLong());
+    }
+    while (expectedKeys.contains(key));
+    return key;
+  }
+
+  /** Adds a key following the same protocol as {@link VLVIndex#updateIndex}. */
+  private void add(final ByteString key) throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        final VLVBlockIndex.Block block = blocks.updateCount(txn, key, 1);
+        txn.put(vlvTreeName, key, ByteString.empty());
+        blocks.afterUpdate(txn, vlvTreeName, block);
+      }
+    });
+    expectedKeys.add(key);
+  }
+
+  private void delete(final ByteString key) throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        final VLVBlockIndex.Block block = blocks.updateCount(txn, key, -1);
+        txn.delete(vlvTreeName, key);
+        blocks.afterUpdate(txn, vlvTreeName, block);
+      }
+    });
+    expectedKeys.remove(key);
+  }
+
+  private void putWithoutBlocks(final ByteString key) throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        txn.put(vlvTreeName, key, ByteString.empty());
+      }
+    });
+    expectedKeys.add(key);
+  }
+
+  private void build() throws Exception
+  {
+    storage.write(new WriteOperation()
+    {
+      @Override
+      public void run(WriteableTransaction txn) throws Exception
+      {
+        blocks.build(txn, vlvTreeName);
+      }
+    });
+  }
+
+  private boolean isBuilt() throws Exception
+  {
+    return storage.read(new ReadOperation<Boolean>()
+    {
+      @Override
+      public Boolean run(ReadableTransaction txn) throws Exception
+      {
+        return blocks.isBuilt(txn);
+      }
+    });
+  }
+
+  private int getNbBlocks() throws Exception
+  {
+    return storage.read(new ReadOperation<Integer>()
+    {
+      @Override
+      public Integer run(ReadableTransaction txn) throws Exception
+      {
+        int nbBlocks = 0;
+        try (Cursor<ByteString, ByteString> cursor = txn.openCursor(blocksTreeName))
+        {
+          while (cursor.next())
+          {
+            nbBlocks++;
+          }
+        }
+        return nbBlocks;
+      }
+    });
+  }
+
+  /** Checks every position and the number of keys before every key against the expected keys. */
+  private void assertPositions() throws Exception
+  {
+    final List<ByteString> keys = new ArrayList<>(expectedKeys);
+    storage.read(new ReadOperation<Void>()
+    {
+      @Override
+      public Void run(ReadableTransaction txn) throws Exception
+      {
+        try (Cursor<ByteString, ByteString> cursor = txn.openCursor(vlvTreeName))
+        {
+          for (int i = 0; i < keys.size(); i++)
+          {
+            assertThat(blocks.positionToIndex(txn, cursor, i)).isTrue();
+            assertThat(cursor.getKey()).isEqualTo(keys.get(i));
+            assertThat(blocks.getNbKeysBefore(txn, cursor, keys.get(i))).isEqualTo(i);
+          }
+          assertThat(blocks.positionToIndex(txn, cursor, keys.size())).isFalse();
+          assertThat(blocks.getNbKeysBefore(txn, cursor, AFTER_ALL_KEYS)).isEqualTo(keys.size());
+        }
+        return null;
+      }
+    });
+  }
+
+  private PDBBackendCfg createBackendCfg() throws ConfigException, DirectoryException
+  {
+    String homeDirName = "pdb_test";
+    PDBBackendCfg backendCfg = mockCfg(PDBBackendCfg.class);
+
+    when(backendCfg.getBackendId()).thenReturn("persTest" + homeDirName);
+    when(backendCfg.getDBDirectory()).thenReturn(homeDirName);
+    when(backendCfg.getDBDirectoryPermissions()).thenReturn("755");
+    when(backendCfg.getDBCacheSize()).thenReturn(0L);
+    when(backendCfg.getDBCachePercent()).thenReturn(20);
+    when(backendCfg.getBaseDN()).thenReturn(newTreeSet(DN.valueOf("dc=test,dc=com")));
+    when(backendCfg.dn()).thenReturn(DN.valueOf("dc=test,dc=com"));
+    when(backendCfg.listBackendIndexes()).thenReturn(new String[0]);
+    when(backendCfg.listBackendVLVIndexes()).thenReturn(new String[0]);
+    return backendCfg;
+  }
+}
@@ -65,6 +65,7 @@ import org.opends.server.types.Control;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.Operation;
+import org.opends.server.types.SearchFilter;
 import org.opends.server.types.SearchResultEntry;
 import org.opends.server.types.SearchResultReference;
 import org.opends.server.util.StaticUtils;
@@ -300,6 +301,18 @@ public class SearchOperationTestCase extends OperationTestCase
     examineCompletedOperation(searchOperation);
   }
 
+  @Test
+  public void testSetBaseDNKeepsRawBaseDN() throws Exception
+  {
+    SearchOperationBasis searchOperation = new SearchOperationBasis(getRootConnection(), nextOperationID(),
+        nextMessageID(), null, DN.valueOf(BASE), SearchScope.BASE_OBJECT, DereferenceAliasesPolicy.NEVER, 0, 0,
+        false, SearchFilter.objectClassPresent(), null);
+    searchOperation.setBaseDN(DN.valueOf("ou=People," + BASE));
+
+    assertEquals(searchOperation.getBaseDN(), DN.valueOf("ou=People," + BASE));
+    assertEquals(searchOperation.getRawBaseDN().toString(), BASE);
+  }
+
   @Test
   public void testSearchNonExistingDN_baseObject() throws Exception
   {
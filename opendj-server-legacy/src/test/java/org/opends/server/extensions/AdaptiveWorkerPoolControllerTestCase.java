@@ -0,0 +1,128 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.extensions;
+
+import static org.fest.assertions.Assertions.*;
+import static org.opends.server.extensions.AdaptiveWorkerPoolController.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.extensions.AdaptiveWorkerPoolController.Decision;
+import org.opends.server.extensions.AdaptiveWorkerPoolController.Measurement;
+import org.testng.annotations.Test;
+
+/** Tests the decisions taken by the {@link AdaptiveWorkerPoolController}. */
+@SuppressWarnings("javadoc")
+public class AdaptiveWorkerPoolControllerTestCase extends ExtensionsTestCase
+{
+  private static final long TARGET_WAIT_MS = 10;
+
+  private static Measurement load(long queueWaitMs, int backlog, double cpu, double blocked, double busy)
+  {
+    return new Measurement(TimeUnit.MILLISECONDS.toNanos(queueWaitMs), backlog, cpu, blocked, busy);
+  }
+
+  private static AdaptiveWorkerPoolController newController()
+  {
+    return new AdaptiveWorkerPoolController(null, 4, 64, TARGET_WAIT_MS);
+  }
+
+  @Test
+  public void growsQuicklyWhenWorkersAreBlocked()
+  {
+    AdaptiveWorkerPoolController controller = newController();
+    assertThat(controller.evaluate(16, load(50, 100, 0.3, 0.8, 1.0))).isEqualTo(20);
+    assertThat(controller.getLastDecision()).isEqualTo(Decision.GROW);
+    assertThat(controller.getNumGrowDecisions()).isEqualTo(1);
+  }
+
+  @Test
+  public void growsSlowlyWhenWorkersAreRunning()
+  {
+    AdaptiveWorkerPoolController controller = newController();
+    assertThat(controller.evaluate(16, load(50, 100, 0.5, 0.1, 1.0))).isEqualTo(18);
+    assertThat(controller.getLastDecision()).isEqualTo(Decision.GROW);
+  }
+
+  @Test
+  public void doesNotGrowWhenCpuIsSaturated()
+  {
+    AdaptiveWorkerPoolController controller = newController();
+    assertThat(controller.evaluate(16, load(50, 100, 0.95, 0.1, 1.0))).isEqualTo(16);
+    assertThat(controller.getLastDecision()).isEqualTo(Decision.HOLD_CPU_SATURATED);
+    assertThat(controller.getNumCpuSaturatedDecisions()).isEqualTo(1);
+  }
+
+  @Test
+  public void growsWhenCpuIsSaturatedButWorkersAreBlocked()
+  {
+    AdaptiveWorkerPoolController controller = newController();
+    assertThat(controller.evaluate(16, load(50, 100, 0.95, 0.7, 1.0))).isEqualTo(20);
+  }
+
+  @Test
+  public void neverGrowsAboveMaximum()
+  {
+    AdaptiveWorkerPoolController controller = newController();
+    assertThat(controller.evaluate(62, load(50, 100, 0.3, 0.8, 1.0))).isEqualTo(64);
+    assertThat(controller.evaluate(64, load(50, 100, 0.3, 0.8, 1.0))).isEqualTo(64);
+    assertThat(controller.getLastDecision()).isEqualTo(Decision.HOLD);
+  }
+
+  @Test
+  public void shrinksOnlyAfterSeveralIdleEvaluations()
+  {
+    AdaptiveWorkerPoolController controller = newController();
+    for (int i = 1; i < IDLE_EVALUATIONS_BEFORE_SHRINK; i++)
+    {
+      assertThat(controller.evaluate(16, load(0, 0, 0.05, 0.0, 0.1))).isEqualTo(16);
+    }
+    assertThat(controller.evaluate(16, load(0, 0, 0.05, 0.0, 0.1))).isEqualTo(14);
+    assertThat(controller.getLastDecision()).isEqualTo(Decision.SHRINK);
+    assertThat(controller.getNumShrinkDecisions()).isEqualTo(1);
+  }
+
+  @Test
+  public void busyEvaluationResetsShrinking()
+  {
+    AdaptiveWorkerPoolController controller = newController();
+    for (int i = 1; i < IDLE_EVALUATIONS_BEFORE_SHRINK; i++)
+    {
+      controller.evaluate(16, load(0, 0, 0.05, 0.0, 0.1));
+    }
+    assertThat(controller.evaluate(16, load(5, 0, 0.5, 0.0, 0.9))).isEqualTo(16);
+    assertThat(controller.evaluate(16, load(0, 0, 0.05, 0.0, 0.1))).isEqualTo(16);
+  }
+
+  @Test
+  public void neverShrinksBelowMinimum()
+  {
+    AdaptiveWorkerPoolController controller = newController();
+    for (int i = 1; i < IDLE_EVALUATIONS_BEFORE_SHRINK; i++)
+    {
+      controller.evaluate(4, load(0, 0, 0.0, 0.0, 0.0));
+    }
+    assertThat(controller.evaluate(4, load(0, 0, 0.0, 0.0, 0.0))).isEqualTo(4);
+  }
+
+  @Test
+  public void enforcesBounds()
+  {
+    AdaptiveWorkerPoolController controller = newController();
+    assertThat(controller.evaluate(2, load(0, 0, 0.0, 0.0, 0.0))).isEqualTo(4);
+    assertThat(controller.evaluate(100, load(0, 0, 0.0, 0.0, 0.0))).isEqualTo(64);
+  }
+}
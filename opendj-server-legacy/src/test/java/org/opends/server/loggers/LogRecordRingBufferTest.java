@@ -0,0 +1,125 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.loggers;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class LogRecordRingBufferTest extends DirectoryServerTestCase
+{
+  @Test
+  public void testCapacityIsRoundedUpToPowerOfTwo()
+  {
+    assertEquals(new LogRecordRingBuffer(1).capacity(), 1);
+    assertEquals(new LogRecordRingBuffer(4).capacity(), 4);
+    assertEquals(new LogRecordRingBuffer(5000).capacity(), 8192);
+  }
+
+  @Test
+  public void testRecordsAreReadInOrderUntilFull()
+  {
+    LogRecordRingBuffer buffer = new LogRecordRingBuffer(4);
+    assertTrue(buffer.isEmpty());
+    assertNull(buffer.poll());
+
+    for (int i = 0; i < 4; i++)
+    {
+      assertTrue(buffer.offer("record" + i));
+    }
+    assertFalse(buffer.offer("record4"));
+    assertFalse(buffer.isEmpty());
+
+    assertEquals(buffer.poll(), "record0");
+    assertTrue(buffer.offer("record4"));
+
+    List<String> records = new ArrayList<>();
+    assertEquals(buffer.drainTo(records, 2), 2);
+    assertEquals(buffer.drainTo(records, 10), 2);
+    assertEquals(records.toString(), "[record1, record2, record3, record4]");
+    assertTrue(buffer.isEmpty());
+  }
+
+  @Test(timeOut = 60000)
+  public void testConcurrentProducersDoNotLoseRecords() throws Exception
+  {
+    final int nbProducers = 4;
+    final int nbRecordsPerProducer = 20000;
+    final LogRecordRingBuffer buffer = new LogRecordRingBuffer(64);
+    final CountDownLatch start = new CountDownLatch(1);
+
+    List<Thread> producers = new ArrayList<>();
+    for (int p = 0; p < nbProducers; p++)
+    {
+      final String prefix = p + ":";
+      Thread producer = new Thread()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            start.await();
+          }
+          catch (InterruptedException e)
+          {
+            return;
+          }
+          for (int i = 0; i < nbRecordsPerProducer; i++)
+          {
+            while (!buffer.offer(prefix + i))
+            {
+              Thread.yield();
+            }
+          }
+        }
+      };
+      producer.start();
+      producers.add(producer);
+    }
+    start.countDown();
+
+    // Each producer's records must be read in the order they were written
+    int[] nextRecord = new int[nbProducers];
+    int nbRecords = 0;
+    while (nbRecords < nbProducers * nbRecordsPerProducer)
+    {
+      String record = buffer.poll();
+      if (record == null)
+      {
+        Thread.yield();
+        continue;
+      }
+      int separator = record.indexOf(':');
+      int producer = Integer.parseInt(record.substring(0, separator));
+      assertEquals(Integer.parseInt(record.substring(separator + 1)), nextRecord[producer]);
+      nextRecord[producer]++;
+      nbRecords++;
+    }
+
+    for (Thread producer : producers)
+    {
+      producer.join();
+    }
+    assertTrue(buffer.isEmpty());
+  }
+}
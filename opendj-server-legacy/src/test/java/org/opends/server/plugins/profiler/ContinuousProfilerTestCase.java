@@ -0,0 +1,122 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.plugins.profiler;
+
+import static java.util.Arrays.*;
+import static org.fest.assertions.Assertions.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.opends.server.plugins.PluginTestCase;
+import org.opends.server.plugins.profiler.ContinuousProfiler.Profile;
+import org.testng.annotations.Test;
+
+/** Tests the aggregation of the samples taken by the {@link ContinuousProfiler}. */
+@SuppressWarnings("javadoc")
+public class ContinuousProfilerTestCase extends PluginTestCase
+{
+  private static final long WINDOW_MS = 10000;
+  private static final long SLOT_MS = WINDOW_MS / ContinuousProfiler.NB_SLOTS;
+  private static final String SEARCH = "SEARCH;dc=example,dc=com;Thread.run;Backend.search";
+  private static final String MODIFY = "MODIFY;dc=example,dc=com;Thread.run;Backend.modify";
+
+  private static ContinuousProfiler newProfiler()
+  {
+    return new ContinuousProfiler(10, WINDOW_MS);
+  }
+
+  @Test
+  public void foldsStacksFromTheOutermostFrame()
+  {
+    StackTraceElement[] stack = {
+      new StackTraceElement("Backend", "search", null, -1),
+      new StackTraceElement("Thread", "run", null, -1) };
+    assertThat(ContinuousProfiler.toFoldedStack("SEARCH;dc=example,dc=com", stack)).isEqualTo(SEARCH);
+  }
+
+  @Test
+  public void aggregatesSamplesByStackAndConnection()
+  {
+    ContinuousProfiler profiler = newProfiler();
+    long now = System.currentTimeMillis();
+    profiler.addSamples(now, asList(SEARCH, MODIFY), asList(1L, 2L));
+    profiler.addSamples(now + SLOT_MS, asList(SEARCH), asList(1L));
+
+    Profile profile = profiler.getProfile(now + SLOT_MS);
+    assertThat(profile.getNbSamples()).isEqualTo(3);
+    assertCounts(profile.getStackCounts(), SEARCH, 2L, MODIFY, 1L);
+    assertCounts(profile.getConnectionCounts(), 1L, 2L, 2L, 1L);
+  }
+
+  @Test
+  public void discardsSamplesOlderThanTheWindow()
+  {
+    ContinuousProfiler profiler = newProfiler();
+    long now = System.currentTimeMillis();
+    profiler.addSamples(now, asList(MODIFY), asList(2L));
+    profiler.addSamples(now + WINDOW_MS - SLOT_MS, asList(SEARCH), asList(1L));
+
+    assertThat(profiler.getProfile(now + WINDOW_MS - SLOT_MS).getNbSamples()).isEqualTo(2);
+
+    Profile profile = profiler.getProfile(now + WINDOW_MS);
+    assertThat(profile.getNbSamples()).isEqualTo(1);
+    assertCounts(profile.getStackCounts(), SEARCH, 1L);
+  }
+
+  @Test
+  public void discardsAllSamplesAfterAnIdleWindow()
+  {
+    ContinuousProfiler profiler = newProfiler();
+    long now = System.currentTimeMillis();
+    profiler.addSamples(now, asList(SEARCH), asList(1L));
+    profiler.addSamples(now + 3 * WINDOW_MS, Collections.<String> emptyList(), Collections.<Long> emptyList());
+
+    Profile profile = profiler.getProfile(now + 3 * WINDOW_MS);
+    assertThat(profile.getNbSamples()).isEqualTo(0);
+    assertThat(profile.getStackCounts()).isEmpty();
+    assertThat(profile.getConnectionCounts()).isEmpty();
+  }
+
+  @Test
+  public void boundsTheNumberOfStacksPerSlot()
+  {
+    ContinuousProfiler profiler = newProfiler();
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < ContinuousProfiler.MAX_STACKS_PER_SLOT + 5; i++)
+    {
+      profiler.addSamples(now, asList(SEARCH + i), asList(1L));
+    }
+
+    Profile profile = profiler.getProfile(now);
+    assertThat(profile.getNbSamples()).isEqualTo(ContinuousProfiler.MAX_STACKS_PER_SLOT + 5);
+    assertThat(profile.getStackCounts()).hasSize(ContinuousProfiler.MAX_STACKS_PER_SLOT + 1);
+    Map.Entry<String, Long> mostSampled = profile.getStackCounts().get(0);
+    assertThat(mostSampled.getKey()).isEqualTo(ContinuousProfiler.OTHER_STACKS);
+    assertThat(mostSampled.getValue()).isEqualTo(5L);
+  }
+
+  private static <K> void assertCounts(List<Map.Entry<K, Long>> actual, Object... expectedKeysAndCounts)
+  {
+    assertThat(actual).hasSize(expectedKeysAndCounts.length / 2);
+    for (int i = 0; i < actual.size(); i++)
+    {
+      assertThat(actual.get(i).getKey()).isEqualTo(expectedKeysAndCounts[2 * i]);
+      assertThat(actual.get(i).getValue()).isEqualTo((Long) expectedKeysAndCounts[2 * i + 1]);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.replication.plugin;
+
+import static org.opends.server.util.ServerConstants.*;
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+
+import org.opends.server.replication.ReplicationTestCase;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/** Tests the generation ID computed by the {@link ReplLDIFOutputStream}. */
+@SuppressWarnings("javadoc")
+public class ReplLDIFOutputStreamTest extends ReplicationTestCase
+{
+  private static final byte[] LDIF = ("2" + EOL
+      + "dn: dc=example,dc=com" + EOL
+      + "objectClass: domain" + EOL
+      + EOL
+      + "dn: ou=people,dc=example,dc=com" + EOL
+      + "objectClass: organizationalUnit" + EOL
+      + EOL).getBytes();
+
+  @DataProvider
+  public Object[][] chunkSizes()
+  {
+    return new Object[][] { { 1 }, { 2 }, { 7 }, { LDIF.length } };
+  }
+
+  @Test(dataProvider = "chunkSizes")
+  public void testChecksumDoesNotDependOnWrites(int chunkSize) throws Exception
+  {
+    GenerationIdChecksum expected = new GenerationIdChecksum();
+    expected.update(LDIF, 0, LDIF.length);
+
+    ReplLDIFOutputStream os = new ReplLDIFOutputStream(0);
+    for (int i = 0; i < LDIF.length; i += chunkSize)
+    {
+      os.write(LDIF, i, Math.min(chunkSize, LDIF.length - i));
+    }
+
+    assertEquals(os.getNumExportedEntries(), 2);
+    assertEquals(os.getChecksumValue(), expected.getValue());
+  }
+
+  @Test
+  public void testIncompleteEntryIsIgnored() throws Exception
+  {
+    ReplLDIFOutputStream os = new ReplLDIFOutputStream(0);
+    byte[] partialEntry = ("0" + EOL + "dn: dc=example,dc=com" + EOL).getBytes();
+    os.write(partialEntry, 0, partialEntry.length);
+
+    assertEquals(os.getNumExportedEntries(), 0);
+    assertEquals(os.getChecksumValue(), GenerationIdChecksum.EMPTY_BACKEND_GENERATION_ID);
+  }
+
+  @Test
+  public void testStopsAfterMaxEntries() throws Exception
+  {
+    ReplLDIFOutputStream os = new ReplLDIFOutputStream(1);
+    byte[] ldif = (new String(LDIF) + "dn: ou=groups,dc=example,dc=com" + EOL + EOL).getBytes();
+    try
+    {
+      os.write(ldif, 0, ldif.length);
+      fail("Expected an IOException after the last entry");
+    }
+    catch (IOException expected)
+    {
+      assertEquals(os.getNumExportedEntries(), 2);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.opends.server.types;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.ArgumentCaptor;
+import org.opends.server.types.OperationPhaseTimes.Phase;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link OperationPhaseTimes}.
+ */
+@SuppressWarnings("javadoc")
+public class OperationPhaseTimesTest extends TypesTestCase
+{
+  @Test
+  public void testPhasesNotEnteredAreNotLogged()
+  {
+    OperationPhaseTimes phaseTimes = new OperationPhaseTimes();
+    phaseTimes.add(Phase.BACKEND, 1500);
+    assertEquals(phaseTimes.getNanoTime(Phase.BACKEND), 1500);
+    assertEquals(phaseTimes.getNanoTime(Phase.QUEUE), -1);
+
+    List<AdditionalLogItem> items = addLogItems(phaseTimes, true);
+    assertEquals(items.size(), 1);
+    assertEquals(items.get(0).toString(), "backendTime=1500");
+  }
+
+  @Test
+  public void testTimesAccumulateAndFollowEtimeResolution()
+  {
+    OperationPhaseTimes phaseTimes = new OperationPhaseTimes();
+    phaseTimes.add(Phase.QUEUE, TimeUnit.MILLISECONDS.toNanos(2));
+    phaseTimes.add(Phase.ACCESS_CONTROL, TimeUnit.MILLISECONDS.toNanos(3));
+    phaseTimes.add(Phase.ACCESS_CONTROL, TimeUnit.MILLISECONDS.toNanos(4));
+
+    List<AdditionalLogItem> items = addLogItems(phaseTimes, false);
+    assertEquals(items.size(), 2);
+    assertEquals(items.get(0).toString(), "qtime=2");
+    assertEquals(items.get(1).toString(), "aciTime=7");
+  }
+
+  @Test
+  public void testLogItemsAreOnlyAddedOnce()
+  {
+    OperationPhaseTimes phaseTimes = new OperationPhaseTimes();
+    phaseTimes.add(Phase.WRITE, 10);
+    Operation operation = mock(Operation.class);
+    phaseTimes.addLogItems(operation, true);
+    phaseTimes.addLogItems(operation, true);
+    verify(operation, times(1)).addAdditionalLogItem(any(AdditionalLogItem.class));
+  }
+
+  @Test
+  public void testPhasesAreNotTimedWhenNotTracked()
+  {
+    Operation operation = mock(Operation.class);
+    assertEquals(OperationPhaseTimes.phaseStarted(operation), 0);
+    OperationPhaseTimes.phaseEnded(operation, Phase.BACKEND, 0);
+
+    OperationPhaseTimes phaseTimes = new OperationPhaseTimes();
+    when(operation.getPhaseTimes()).thenReturn(phaseTimes);
+    long startTime = OperationPhaseTimes.phaseStarted(operation);
+    assertTrue(startTime != 0);
+    OperationPhaseTimes.phaseEnded(operation, Phase.BACKEND, startTime);
+    assertTrue(phaseTimes.getNanoTime(Phase.BACKEND) >= 0);
+  }
+
+  private List<AdditionalLogItem> addLogItems(OperationPhaseTimes phaseTimes, boolean useNanoTime)
+  {
+    Operation operation = mock(Operation.class);
+    phaseTimes.addLogItems(operation, useNanoTime);
+    ArgumentCaptor<AdditionalLogItem> items = ArgumentCaptor.forClass(AdditionalLogItem.class);
+    verify(operation, atLeast(0)).addAdditionalLogItem(items.capture());
+    return items.getAllValues();
+  }
+}
@@ -431,6 +431,8 @@ public class SearchFilterTests extends DirectoryServerTestCase {
     final SearchFilter filter = SearchFilter.createFilterFromString(filterStr);
     boolean matches = filter.matchesEntry(entry);
     Assert.assertEquals(matches, expectMatch, "Filter=" + filter + "\nEntry=" + entry);
+    boolean compiledMatches = filter.compile().matchesEntry(entry);
+    Assert.assertEquals(compiledMatches, expectMatch, "Compiled filter=" + filter + "\nEntry=" + entry);
   }
 
   ////////////////////////////////////////////////////////////////////////////
@@ -1045,7 +1047,51 @@ public class SearchFilterTests extends DirectoryServerTestCase {
                                          boolean expectMatch) throws Exception
   {
     Entry entry = TestCaseUtils.entryFromLdifString(ldifEntry);
-    boolean matches = SearchFilter.createFilterFromString(filterStr).matchesEntry(entry);
-    Assert.assertEquals(matches, expectMatch, "Filter=" + filterStr + "\nEntry=" + entry);
+    SearchFilter filter = SearchFilter.createFilterFromString(filterStr);
+    Assert.assertEquals(filter.matchesEntry(entry), expectMatch, "Filter=" + filterStr + "\nEntry=" + entry);
+    Assert.assertEquals(filter.compile().matchesEntry(entry), expectMatch,
+        "Compiled filter=" + filterStr + "\nEntry=" + entry);
+  }
+
+  /**
+   * Dataprovider for testing NOT filters over AND/OR filters having an undefined component.
+   */
+  @DataProvider
+  public Object[][] undefinedComponents() throws Exception
+  {
+    final String LDIF_ENTRY = TestCaseUtils.makeLdif(
+          "dn: cn=John Smith,dc=example,dc=com",
+          "objectclass: inetorgperson",
+          "cn: John Smith",
+          "sn: Smith");
+    // The matching rule is unknown, so the result is undefined
+    final String UNDEFINED = "(cn:1.2.3.4.5.6.7:=John Smith)";
+    final String TRUE = "(sn=Smith)";
+    final String FALSE = "(sn=Jones)";
+
+    return new Object[][]{
+      { LDIF_ENTRY, "(&" + UNDEFINED + FALSE + ")", false },
+      { LDIF_ENTRY, "(!(&" + UNDEFINED + FALSE + "))", true },
+      { LDIF_ENTRY, "(!(&" + FALSE + UNDEFINED + "))", true },
+      { LDIF_ENTRY, "(&" + UNDEFINED + TRUE + ")", false },
+      { LDIF_ENTRY, "(!(&" + UNDEFINED + TRUE + "))", false },
+      { LDIF_ENTRY, "(|" + UNDEFINED + TRUE + ")", true },
+      { LDIF_ENTRY, "(!(|" + UNDEFINED + TRUE + "))", false },
+      { LDIF_ENTRY, "(!(|" + TRUE + UNDEFINED + "))", false },
+      { LDIF_ENTRY, "(|" + UNDEFINED + FALSE + ")", false },
+      { LDIF_ENTRY, "(!(|" + UNDEFINED + FALSE + "))", false },
+      { LDIF_ENTRY, "(!(|" + FALSE + UNDEFINED + "))", false },
+    };
+  }
+
+  @Test(dataProvider = "undefinedComponents")
+  public void testCompiledAndInterpretedFiltersAgreeOnUndefinedComponents(String ldifEntry, String filterStr,
+      boolean expectMatch) throws Exception
+  {
+    Entry entry = TestCaseUtils.entryFromLdifString(ldifEntry);
+    SearchFilter filter = SearchFilter.createFilterFromString(filterStr);
+    Assert.assertEquals(filter.matchesEntry(entry), expectMatch, "Filter=" + filterStr + "\nEntry=" + entry);
+    Assert.assertEquals(filter.compile().matchesEntry(entry), expectMatch,
+        "Compiled filter=" + filterStr + "\nEntry=" + entry);
   }
 }
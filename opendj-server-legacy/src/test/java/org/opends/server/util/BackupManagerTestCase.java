@@ -26,10 +26,14 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Random;
 
 import org.forgerock.opendj.ldap.DN;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.opends.server.DirectoryServerTestCase;
 import org.opends.server.TestCaseUtils;
 import org.opends.server.api.Backupable;
@@ -214,6 +218,62 @@ public class BackupManagerTestCase extends DirectoryServerTestCase
     cleanDirectories(sourceDirectory, backupPath);
   }
 
+  /**
+   * An incremental backup of a file modified in place must only store the blocks which changed
+   * since the base backup, and restoring it must rebuild the file from the whole backup chain.
+   */
+  @Test
+  public void testIncrementalBackupStoresOnlyChangedBlocks() throws Exception
+  {
+    Path sourceDirectory = createSourceDirectory("blocks");
+    BackupDirectory backupDir = buildBackupDir("blocks");
+    BackupManager backupManager = new BackupManager(BACKEND_ID);
+    String backupPath = backupDir.getPath();
+
+    final Path file = sourceDirectory.resolve(FILE_NAME_PREFIX + 0);
+    byte[] content = new byte[BackupManager.BLOCK_SIZE * 5 / 2];
+    new Random(0).nextBytes(content);
+    createFile(file, content);
+    Backupable backupable = mock(Backupable.class);
+    when(backupable.getDirectory()).thenReturn(sourceDirectory.toFile());
+    when(backupable.getFilesToBackup()).thenAnswer(new Answer<ListIterator<Path>>()
+    {
+      @Override
+      public ListIterator<Path> answer(InvocationOnMock invocation)
+      {
+        return Arrays.asList(file).listIterator();
+      }
+    });
+    when(backupable.isDirectRestore()).thenReturn(true);
+
+    String initialBackupId = BACKUP_ID + "_0";
+    backupManager.createBackup(backupable, new BackupConfig(backupDir, initialBackupId, false));
+    assertThat(new File(backupPath, getArchiveFileName(initialBackupId)).length())
+        .isGreaterThan(2L * BackupManager.BLOCK_SIZE);
+
+    // modify the second block in place and shrink the last block
+    content[BackupManager.BLOCK_SIZE + 1]++;
+    content = Arrays.copyOf(content, 2 * BackupManager.BLOCK_SIZE + 10);
+    createFile(file, content);
+    file.toFile().setLastModified(file.toFile().lastModified() + 10000);
+
+    BackupConfig incrementalConfig = new BackupConfig(backupDir, BACKUP_ID, true);
+    incrementalConfig.setIncrementalBaseID(initialBackupId);
+    incrementalConfig.setHashData(true);
+    backupManager.createBackup(backupable, incrementalConfig);
+    assertThat(new File(backupPath, getArchiveFileName(BACKUP_ID)).length())
+        .isLessThan(BackupManager.BLOCK_SIZE + BackupManager.BLOCK_SIZE / 2);
+
+    backupManager.restoreBackup(backupable, new RestoreConfig(backupDir, BACKUP_ID, true));
+    Files.delete(file);
+    backupManager.restoreBackup(backupable, new RestoreConfig(backupDir, BACKUP_ID, false));
+    assertThat(Files.readAllBytes(file)).isEqualTo(content);
+
+    backupManager.removeBackup(backupDir, BACKUP_ID);
+    backupManager.removeBackup(backupDir, initialBackupId);
+    cleanDirectories(sourceDirectory, backupPath);
+  }
+
   @Test
   public void testCreateDirectoryWithNumericSuffix() throws Exception
   {